@@ -26,11 +26,20 @@ export default new Vuex.Store({
         colorPicking: false,
         logsOverlay: false,
         compactMode: localStorage.getItem("compactMode") === undefined ? undefined : localStorage.getItem("compactMode") === "true", // Compact mode is initially unset on purpose
+        clientSideOverlay: localStorage.getItem("clientSideOverlay") === "true", // Draw target overlays in the browser instead of into the stream
+        overlay: {timestamp: 0, overlay: null, drawnIntoFrames: false}, // Latest overlay for the current camera, see Overlay.java for the format
         logMessages: [],
         currentCameraIndex: 0,
+        settingsRevision: 0, // Revision of the last settings snapshot or patch applied
         cameraSettings: [ // This is a list of objects representing the settings of all cameras
             {
                 tiltDegrees: 0.0,
+                visionCpuAffinity: "",
+                visionThreadNiceness: 0,
+                h264BitrateKbps: 1500,
+                h264KeyframeInterval: 30,
+                recordingEnabled: false,
+                recordingMaxMegabytes: 1024,
                 currentPipelineIndex: 0,
                 pipelineNicknames: ["Unknown"],
                 outputStreamPort: 1181,
@@ -144,6 +153,7 @@ export default new Vuex.Store({
     },
     mutations: {
         compactMode: set('compactMode'),
+        clientSideOverlay: set('clientSideOverlay'),
         cameraSettings: set('cameraSettings'),
         currentCameraIndex: set('currentCameraIndex'),
         selectedOutputs: set('selectedOutputs'),
@@ -152,6 +162,7 @@ export default new Vuex.Store({
         metrics: set('metrics'),
         ntConnectionInfo: set('ntConnectionInfo'),
         backendConnected: set('backendConnected'),
+        settingsRevision: set('settingsRevision'),
         logString: (state, newStr) => {
             const str = state.logMessages;
             str.push(newStr);
@@ -201,6 +212,15 @@ export default new Vuex.Store({
             }
         },
 
+        applyCameraSettingsPatch: (state, patch) => {
+            const settings = state.cameraSettings[patch.cameraIndex];
+            for (let key in patch.changes) {
+                if (!patch.changes.hasOwnProperty(key)) continue;
+                Vue.set(settings, key, patch.changes[key]);
+            }
+            Vue.set(state, 'settingsRevision', patch.revision);
+        },
+
         mutatePipelineResults(state, payload) {
             // Key: index, value: result
             for (let key in payload) {
@@ -212,6 +232,17 @@ export default new Vuex.Store({
             }
         },
 
+        mutateOverlay(state, payload) {
+            // Key: index, value: overlay
+            for (let key in payload) {
+                if (!payload.hasOwnProperty(key)) continue;
+                const index = parseInt(key);
+                if (index === state.currentCameraIndex) {
+                    Vue.set(state, 'overlay', payload[key])
+                }
+            }
+        },
+
         mutateEnabledLEDPercentage(state, payload)  {
             const settings = state.settings;
             settings.lighting.brightness = payload;
@@ -234,7 +265,9 @@ export default new Vuex.Store({
         isDriverMode: state => state.cameraSettings[state.currentCameraIndex].currentPipelineIndex === -1,
         streamAddress: state =>
             ["http://" + location.hostname + ":" + state.cameraSettings[state.currentCameraIndex].inputStreamPort + "/stream.mjpg",
-                "http://" + location.hostname + ":" + state.cameraSettings[state.currentCameraIndex].outputStreamPort + "/stream.mjpg"],
+                "http://" + location.hostname + ":" + state.cameraSettings[state.currentCameraIndex].outputStreamPort + "/stream.mjpg"]
+                // Ask for frames without targets drawn in; we draw them ourselves from updateOverlay
+                .map(address => state.clientSideOverlay ? address + "?overlay=client" : address),
         currentPipelineResults: state => {
             return state.pipelineResults;
         },
@@ -27,6 +27,8 @@ import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.vision.calibration.CameraCalibrationCoefficients;
 import org.photonvision.vision.camera.CameraType;
+import org.photonvision.vision.frame.consumer.H264FrameConsumer;
+import org.photonvision.vision.frame.consumer.MatchRecorder;
 import org.photonvision.vision.pipeline.CVPipelineSettings;
 import org.photonvision.vision.pipeline.DriverModePipelineSettings;
 import org.photonvision.vision.processes.PipelineManager;
@@ -54,6 +56,24 @@ public class CameraConfiguration {
 
     public int streamIndex = 0; // 0 index means ports [1181, 1182], 1 means [1183, 1184], etc...
 
+    /** CPUs to pin this camera's vision thread to, in taskset -c syntax. Empty means any CPU. */
+    public String visionCpuAffinity = "";
+
+    /** Niceness of this camera's vision thread, from -20 to 19. Lower gets more CPU time. */
+    public int visionThreadNiceness = 0;
+
+    /** Target bitrate of the H.264 output stream, in kbps. */
+    public int h264BitrateKbps = H264FrameConsumer.DEFAULT_BITRATE_KBPS;
+
+    /** Frames between H.264 keyframes. New viewers wait for the next one before video starts. */
+    public int h264KeyframeInterval = H264FrameConsumer.DEFAULT_KEYFRAME_INTERVAL;
+
+    /** Whether to continuously record this camera to disk for replaying matches. */
+    public boolean recordingEnabled = false;
+
+    /** Disk space the recording may use before the oldest footage is deleted, in megabytes. */
+    public int recordingMaxMegabytes = MatchRecorder.DEFAULT_MAX_MEGABYTES;
+
     @JsonIgnore // this ignores the pipes as we serialize them to their own subfolder
     public List<CVPipelineSettings> pipelineSettings = new ArrayList<>();
 
@@ -29,10 +29,16 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
-import org.photonvision.common.util.TimedTaskManager;
 import org.photonvision.common.util.file.FileUtils;
 import org.photonvision.common.util.file.JacksonUtils;
 import org.photonvision.vision.pipeline.CVPipelineSettings;
@@ -53,10 +59,22 @@ public class ConfigManager {
     private final File hardwareSettingsFile;
     private final File networkConfigFile;
     private final File camerasFolder;
+    private final Path snapshotFile;
 
     final File configDirectoryFile;
 
-    private long saveRequestTimestamp = -1;
+    private volatile long saveRequestTimestamp = -1;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService saveExecutor =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> {
+                        var thread = new Thread(r, "ConfigSaveThread");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    // What each file was last known to hold on disk, so unchanged files aren't rewritten
+    private final HashMap<Path, String> writtenContents = new HashMap<>();
 
     public static ConfigManager getInstance() {
         if (INSTANCE == null) {
@@ -96,8 +114,7 @@ public class ConfigManager {
         this.networkConfigFile =
                 new File(Path.of(configDirectoryFile.toString(), NET_SET_FNAME).toUri());
         this.camerasFolder = new File(Path.of(configDirectoryFile.toString(), "cameras").toUri());
-
-        TimedTaskManager.getInstance().addTask("ConfigManager", this::checkSaveAndWrite, 1000);
+        this.snapshotFile = Path.of(configDirectoryFile.toString(), ConfigSnapshot.SNAPSHOT_FNAME);
     }
 
     public void load() {
@@ -120,6 +137,17 @@ public class ConfigManager {
             }
         }
 
+        if (!camerasFolder.exists()) {
+            if (camerasFolder.mkdirs()) {
+                logger.debug("Cameras config folder did not exist. Created!");
+            } else {
+                logger.error("Failed to create cameras config folder!");
+            }
+        }
+
+        // Cameras are by far the most to load, so get started on them while we do everything else
+        var cameraConfigsFuture = CompletableFuture.supplyAsync(this::loadCameraConfigs);
+
         HardwareConfig hardwareConfig;
         HardwareSettings hardwareSettings;
         NetworkConfig networkConfig;
@@ -174,162 +202,244 @@ public class ConfigManager {
             networkConfig = new NetworkConfig();
         }
 
-        if (!camerasFolder.exists()) {
-            if (camerasFolder.mkdirs()) {
-                logger.debug("Cameras config folder did not exist. Created!");
-            } else {
-                logger.error("Failed to create cameras config folder!");
-            }
-        }
-
-        HashMap<String, CameraConfiguration> cameraConfigurations = loadCameraConfigs();
+        HashMap<String, CameraConfiguration> cameraConfigurations = cameraConfigsFuture.join();
 
         this.config =
                 new PhotonConfiguration(
                         hardwareConfig, hardwareSettings, networkConfig, cameraConfigurations);
     }
 
-    public void saveToDisk() {
-        // Delete old configs
-        FileUtils.deleteDirectory(camerasFolder.toPath());
+    /**
+     * Write any settings that changed since the last save. Each file is replaced atomically, and
+     * files belonging to cameras or pipelines that no longer exist are removed afterwards.
+     */
+    public synchronized void saveToDisk() {
+        int written = 0;
+        int cameraWritten = 0;
 
-        try {
-            JacksonUtils.serialize(networkConfigFile.toPath(), config.getNetworkConfig());
-        } catch (IOException e) {
-            logger.error("Could not save network config!", e);
-        }
-        try {
-            JacksonUtils.serialize(hardwareSettingsFile.toPath(), config.getHardwareSettings());
-        } catch (IOException e) {
-            logger.error("Could not save hardware config!", e);
-        }
+        written +=
+                writeIfChanged(networkConfigFile.toPath(), config.getNetworkConfig(), "network config");
+        written +=
+                writeIfChanged(
+                        hardwareSettingsFile.toPath(), config.getHardwareSettings(), "hardware config");
 
         // save all of our cameras
         var cameraConfigMap = config.getCameraConfigurations();
+        var cameraFiles = new HashSet<Path>();
         for (var subdirName : cameraConfigMap.keySet()) {
             var camConfig = cameraConfigMap.get(subdirName);
             var subdir = Path.of(camerasFolder.toPath().toString(), subdirName);
 
-            if (!subdir.toFile().exists()) {
-                // TODO: check for error
-                subdir.toFile().mkdirs();
+            var configPath = Path.of(subdir.toString(), "config.json");
+            cameraWritten += writeIfChanged(configPath, camConfig, "config.json for " + subdir);
+            cameraFiles.add(configPath);
+
+            var driverModePath = Path.of(subdir.toString(), "drivermode.json");
+            cameraWritten +=
+                    writeIfChanged(
+                            driverModePath, camConfig.driveModeSettings, "drivermode.json for " + subdir);
+            cameraFiles.add(driverModePath);
+
+            for (var pipe : camConfig.pipelineSettings) {
+                var pipePath = Path.of(subdir.toString(), "pipelines", pipe.pipelineNickname + ".json");
+                cameraWritten += writeIfChanged(pipePath, pipe, pipe.pipelineNickname + ".json");
+                cameraFiles.add(pipePath);
             }
+        }
 
-            try {
-                JacksonUtils.serialize(Path.of(subdir.toString(), "config.json"), camConfig);
-            } catch (IOException e) {
-                logger.error("Could not save config.json for " + subdir, e);
+        int removed = removeStaleCameraFiles(cameraFiles);
+        if (cameraWritten > 0 || removed > 0 || !Files.exists(snapshotFile)) {
+            var snapshotContents = new HashMap<Path, String>();
+            for (var path : cameraFiles) {
+                var contents = writtenContents.get(path);
+                if (contents != null) snapshotContents.put(path, contents);
             }
+            ConfigSnapshot.write(snapshotFile, camerasFolder.toPath(), snapshotContents);
+        }
 
-            try {
-                JacksonUtils.serialize(
-                        Path.of(subdir.toString(), "drivermode.json"), camConfig.driveModeSettings);
-            } catch (IOException e) {
-                logger.error("Could not save drivermode.json for " + subdir, e);
+        logger.info("Settings saved! " + (written + cameraWritten) + " file(s) changed");
+    }
+
+    /** @return 1 if the file was written, 0 if it already held the same contents or failed. */
+    private int writeIfChanged(Path path, Object object, String description) {
+        try {
+            var json = JacksonUtils.serializeToString(object);
+
+            var previous = writtenContents.get(path);
+            if (previous == null && Files.exists(path)) {
+                // Not written since startup. Reading is much cheaper than writing on an SD card.
+                previous = Files.readString(path);
+                writtenContents.put(path, previous);
             }
+            if (json.equals(previous)) return 0;
 
-            for (var pipe : camConfig.pipelineSettings) {
-                var pipePath = Path.of(subdir.toString(), "pipelines", pipe.pipelineNickname + ".json");
+            JacksonUtils.saveJsonString(json, path, true);
+            writtenContents.put(path, json);
+            return 1;
+        } catch (IOException e) {
+            logger.error("Could not save " + description + "!", e);
+            return 0;
+        }
+    }
 
-                if (!pipePath.getParent().toFile().exists()) {
-                    // TODO: check for error
-                    pipePath.getParent().toFile().mkdirs();
-                }
+    /** @return How many files were removed. */
+    private int removeStaleCameraFiles(Set<Path> cameraFiles) {
+        if (!camerasFolder.exists()) return 0;
+        int removed = 0;
+        try (var files = Files.walk(camerasFolder.toPath())) {
+            var stale =
+                    files
+                            .filter(Files::isRegularFile)
+                            .filter(p -> !cameraFiles.contains(p))
+                            .collect(Collectors.toList());
+            for (var path : stale) {
+                logger.debug("Removing stale config file " + path);
+                FileUtils.deleteFile(path);
+                writtenContents.remove(path);
+                removed++;
+            }
+        } catch (IOException e) {
+            logger.error("Could not clean up old camera configs!", e);
+        }
 
-                try {
-                    JacksonUtils.serialize(pipePath, pipe);
-                } catch (IOException e) {
-                    logger.error("Could not save " + pipe.pipelineNickname + ".json!", e);
-                }
+        // Then any folders left empty, deepest first
+        try (var dirs = Files.walk(camerasFolder.toPath())) {
+            var empty =
+                    dirs.filter(Files::isDirectory)
+                            .filter(d -> !d.equals(camerasFolder.toPath()))
+                            .sorted(Comparator.reverseOrder())
+                            .collect(Collectors.toList());
+            for (var dir : empty) {
+                var contents = dir.toFile().list();
+                if (contents != null && contents.length == 0) dir.toFile().delete();
             }
+        } catch (IOException e) {
+            logger.error("Could not clean up old camera folders!", e);
         }
-        logger.info("Settings saved!");
+        return removed;
     }
 
     private HashMap<String, CameraConfiguration> loadCameraConfigs() {
+        // Everything read is remembered, so the first save doesn't have to read it all again
+        Map<Path, String> contents = new ConcurrentHashMap<>();
+
+        var snapshot = ConfigSnapshot.load(snapshotFile, camerasFolder.toPath());
+        if (snapshot != null) {
+            logger.debug("Loading camera configs from snapshot");
+            contents.putAll(snapshot);
+        }
+
         HashMap<String, CameraConfiguration> loadedConfigurations = new HashMap<>();
-        try {
-            var subdirectories =
-                    Files.list(camerasFolder.toPath())
-                            .filter(f -> f.toFile().isDirectory())
+        try (var files = Files.list(camerasFolder.toPath())) {
+            var subdirectories = files.filter(f -> f.toFile().isDirectory()).collect(Collectors.toList());
+
+            // Cameras don't depend on each other, so load them all at once
+            var loaded =
+                    subdirectories.parallelStream()
+                            .map(subdir -> Pair.of(subdir, loadCameraConfig(subdir, contents)))
+                            .filter(it -> it.getRight() != null)
                             .collect(Collectors.toList());
+            for (var it : loaded) {
+                loadedConfigurations.put(it.getLeft().toFile().getName(), it.getRight());
+            }
+        } catch (IOException e) {
+            logger.error("Error loading camera configs!", e);
+        }
 
-            for (var subdir : subdirectories) {
-                var cameraConfigPath = Path.of(subdir.toString(), "config.json");
-                CameraConfiguration loadedConfig = null;
-                try {
-                    loadedConfig =
-                            JacksonUtils.deserialize(
-                                    cameraConfigPath.toAbsolutePath(), CameraConfiguration.class);
-                } catch (JsonProcessingException e) {
-                    logger.error("Camera config deserialization failed!", e);
-                    e.printStackTrace();
-                }
-                if (loadedConfig == null) { // If the file could not be deserialized
-                    logger.warn("Could not load camera " + subdir + "'s config.json! Loading " + "default");
-                    continue; // TODO how do we later try to load this camera if it gets reconnected?
-                }
+        synchronized (this) {
+            writtenContents.putAll(contents);
+            // Holding the save lock, so this can't land on top of a newer save's snapshot
+            if (snapshot == null) ConfigSnapshot.write(snapshotFile, camerasFolder.toPath(), contents);
+        }
+        return loadedConfigurations;
+    }
 
-                // At this point we have only loaded the base stuff
-                // We still need to deserialize pipelines, as well as
-                // driver mode settings
-                var driverModeFile = Path.of(subdir.toString(), "drivermode.json");
-                DriverModePipelineSettings driverMode;
-                try {
-                    driverMode =
-                            JacksonUtils.deserialize(
-                                    driverModeFile.toAbsolutePath(), DriverModePipelineSettings.class);
-                } catch (JsonProcessingException e) {
-                    logger.error("Could not deserialize drivermode.json! Loading defaults");
-                    logger.debug(Arrays.toString(e.getStackTrace()));
-                    driverMode = new DriverModePipelineSettings();
-                }
-                if (driverMode == null) {
-                    logger.warn(
-                            "Could not load camera " + subdir + "'s drivermode.json! Loading" + " default");
-                    driverMode = new DriverModePipelineSettings();
-                }
+    private CameraConfiguration loadCameraConfig(Path subdir, Map<Path, String> contents) {
+        var cameraConfigPath = Path.of(subdir.toString(), "config.json");
+        CameraConfiguration loadedConfig = null;
+        try {
+            loadedConfig =
+                    JacksonUtils.deserializeFromString(
+                            readConfigFile(cameraConfigPath, contents), CameraConfiguration.class);
+        } catch (JsonProcessingException e) {
+            logger.error("Camera config deserialization failed!", e);
+            e.printStackTrace();
+        } catch (IOException e) {
+            logger.error("Could not read " + cameraConfigPath, e);
+        }
+        if (loadedConfig == null) { // If the file could not be deserialized
+            logger.warn("Could not load camera " + subdir + "'s config.json! Loading " + "default");
+            return null; // TODO how do we later try to load this camera if it gets reconnected?
+        }
+
+        // At this point we have only loaded the base stuff
+        // We still need to deserialize pipelines, as well as
+        // driver mode settings
+        var driverModeFile = Path.of(subdir.toString(), "drivermode.json");
+        DriverModePipelineSettings driverMode;
+        try {
+            driverMode =
+                    JacksonUtils.deserializeFromString(
+                            readConfigFile(driverModeFile, contents), DriverModePipelineSettings.class);
+        } catch (IOException e) {
+            logger.error("Could not deserialize drivermode.json! Loading defaults");
+            logger.debug(Arrays.toString(e.getStackTrace()));
+            driverMode = new DriverModePipelineSettings();
+        }
+        if (driverMode == null) {
+            logger.warn("Could not load camera " + subdir + "'s drivermode.json! Loading" + " default");
+            driverMode = new DriverModePipelineSettings();
+        }
 
-                // Load pipelines by mapping the files within the pipelines subdir
-                // to their deserialized equivalents
-                var pipelineSubdirectory = Path.of(subdir.toString(), "pipelines");
-                List<CVPipelineSettings> settings =
-                        pipelineSubdirectory.toFile().exists()
-                                ? Files.list(pipelineSubdirectory)
-                                        .filter(p -> p.toFile().isFile())
-                                        .map(
-                                                p -> {
-                                                    var relativizedFilePath =
-                                                            configDirectoryFile
-                                                                    .toPath()
-                                                                    .toAbsolutePath()
-                                                                    .relativize(p)
-                                                                    .toString();
-                                                    try {
-                                                        return JacksonUtils.deserialize(p, CVPipelineSettings.class);
-                                                    } catch (JsonProcessingException e) {
-                                                        logger.error("Exception while deserializing " + relativizedFilePath, e);
-                                                    } catch (IOException e) {
-                                                        logger.warn(
-                                                                "Could not load pipeline at "
-                                                                        + relativizedFilePath
-                                                                        + "! Skipping...");
-                                                    }
-                                                    return null;
-                                                })
-                                        .filter(Objects::nonNull)
-                                        .collect(Collectors.toList())
-                                : Collections.emptyList();
-
-                loadedConfig.driveModeSettings = driverMode;
-                loadedConfig.addPipelineSettings(settings);
-
-                loadedConfigurations.put(subdir.toFile().getName(), loadedConfig);
+        // Load pipelines by mapping the files within the pipelines subdir
+        // to their deserialized equivalents
+        var pipelineSubdirectory = Path.of(subdir.toString(), "pipelines");
+        List<CVPipelineSettings> settings = Collections.emptyList();
+        if (pipelineSubdirectory.toFile().exists()) {
+            try (var files = Files.list(pipelineSubdirectory)) {
+                settings =
+                        files
+                                .filter(p -> p.toFile().isFile())
+                                .filter(p -> p.getFileName().toString().endsWith(".json"))
+                                .collect(Collectors.toList())
+                                .parallelStream()
+                                .map(p -> loadPipeline(p, contents))
+                                .filter(Objects::nonNull)
+                                .collect(Collectors.toList());
+            } catch (IOException e) {
+                logger.error("Could not list pipelines in " + pipelineSubdirectory, e);
             }
+        }
+
+        loadedConfig.driveModeSettings = driverMode;
+        loadedConfig.addPipelineSettings(settings);
+        return loadedConfig;
+    }
+
+    private CVPipelineSettings loadPipeline(Path path, Map<Path, String> contents) {
+        var relativizedFilePath =
+                configDirectoryFile.toPath().toAbsolutePath().relativize(path).toString();
+        try {
+            return JacksonUtils.deserializeFromString(
+                    readConfigFile(path, contents), CVPipelineSettings.class);
+        } catch (JsonProcessingException e) {
+            logger.error("Exception while deserializing " + relativizedFilePath, e);
         } catch (IOException e) {
-            logger.error("Error loading camera configs!", e);
+            logger.warn("Could not load pipeline at " + relativizedFilePath + "! Skipping...");
         }
-        return loadedConfigurations;
+        return null;
+    }
+
+    /** @return The file's contents, from the snapshot if we have them, or null if it's missing. */
+    private static String readConfigFile(Path path, Map<Path, String> contents)
+            throws IOException {
+        var known = contents.get(path);
+        if (known != null) return known;
+        if (!Files.exists(path)) return null;
+
+        var read = Files.readString(path);
+        contents.put(path, read);
+        return read;
     }
 
     public void addCameraConfigurations(List<VisionSource> sources) {
@@ -365,6 +475,10 @@ public class ConfigManager {
         return Path.of(configDirectoryFile.toString(), "calibImgs");
     }
 
+    public Path getRecordingsDir() {
+        return Path.of(configDirectoryFile.toString(), "recordings");
+    }
+
     public static final String LOG_PREFIX = "photonvision-";
     public static final String LOG_EXT = ".log";
     public static final String LOG_DATE_TIME_FORMAT = "yyyy-M-d_hh-mm-ss";
@@ -423,14 +537,27 @@ public class ConfigManager {
     public void requestSave() {
         logger.trace("Requesting save...");
         saveRequestTimestamp = System.currentTimeMillis();
+
+        // Requests that come in while a save is already pending just push it back
+        if (saveScheduled.compareAndSet(false, true)) {
+            saveExecutor.schedule(this::checkSaveAndWrite, 1000, TimeUnit.MILLISECONDS);
+        }
     }
 
     private void checkSaveAndWrite() {
-        // Only save if 1 second has past since the request was made
-        if (saveRequestTimestamp > 0 && (System.currentTimeMillis() - saveRequestTimestamp) > 1000L) {
-            saveRequestTimestamp = -1;
-            logger.debug("Saving to disk...");
+        // Only save if 1 second has past since the last request was made
+        long sinceRequest = System.currentTimeMillis() - saveRequestTimestamp;
+        if (sinceRequest < 1000L) {
+            saveExecutor.schedule(this::checkSaveAndWrite, 1000L - sinceRequest, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        saveScheduled.set(false);
+        logger.debug("Saving to disk...");
+        try {
             saveToDisk();
+        } catch (Exception e) {
+            logger.error("Exception saving settings!", e);
         }
     }
 }
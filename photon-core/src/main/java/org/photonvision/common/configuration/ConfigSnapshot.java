@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+
+/**
+ * The contents of every camera config file, packed into one binary file so a cold boot needs one
+ * sequential read rather than one per pipeline. The snapshot remembers the size and modification
+ * time of each file it holds, and is only used if the files on disk still match exactly, so editing
+ * or copying in JSON by hand always wins.
+ */
+class ConfigSnapshot {
+    private static final Logger logger = new Logger(ConfigSnapshot.class, LogGroup.General);
+
+    static final String SNAPSHOT_FNAME = ".cameras.snapshot";
+
+    private static final ObjectMapper mapper = new ObjectMapper(new MessagePackFactory());
+
+    // Path relative to the cameras folder -> file contents / size and mtime
+    public HashMap<String, String> contents = new HashMap<>();
+    public HashMap<String, String> stamps = new HashMap<>();
+
+    /**
+     * @return The contents of every JSON file under the cameras folder keyed by absolute path, or
+     *     null if there's no snapshot or it's out of date.
+     */
+    static Map<Path, String> load(Path snapshotFile, Path camerasFolder) {
+        if (!Files.exists(snapshotFile)) return null;
+
+        ConfigSnapshot snapshot;
+        try {
+            snapshot = mapper.readValue(snapshotFile.toFile(), ConfigSnapshot.class);
+        } catch (IOException e) {
+            logger.warn("Could not read config snapshot, loading from JSON instead");
+            return null;
+        }
+
+        try {
+            if (!snapshot.stamps.equals(stampFiles(camerasFolder))) {
+                logger.info("Config snapshot is out of date, loading from JSON instead");
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        var ret = new HashMap<Path, String>();
+        for (var entry : snapshot.contents.entrySet()) {
+            ret.put(camerasFolder.resolve(entry.getKey()), entry.getValue());
+        }
+        return ret;
+    }
+
+    /**
+     * Write a snapshot of the given files, which must be every JSON file under the cameras folder,
+     * with exactly what's on disk.
+     */
+    static synchronized void write(Path snapshotFile, Path camerasFolder, Map<Path, String> files) {
+        var snapshot = new ConfigSnapshot();
+        for (var entry : files.entrySet()) {
+            snapshot.contents.put(camerasFolder.relativize(entry.getKey()).toString(), entry.getValue());
+        }
+
+        var tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            snapshot.stamps = stampFiles(camerasFolder);
+            if (!snapshot.stamps.keySet().equals(snapshot.contents.keySet())) {
+                // Something else is in there that we don't know the contents of
+                Files.deleteIfExists(snapshotFile);
+                return;
+            }
+            mapper.writeValue(tempFile.toFile(), snapshot);
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Could not write config snapshot!", e);
+        }
+    }
+
+    private static HashMap<String, String> stampFiles(Path camerasFolder) throws IOException {
+        if (!Files.exists(camerasFolder)) return new HashMap<>();
+        try (var files = Files.walk(camerasFolder)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(".json"))
+                    .collect(
+                            Collectors.toMap(
+                                    p -> camerasFolder.relativize(p).toString(),
+                                    p -> {
+                                        var file = p.toFile();
+                                        return file.length() + "@" + file.lastModified();
+                                    },
+                                    (a, b) -> a,
+                                    HashMap::new));
+        }
+    }
+}
@@ -51,6 +51,10 @@ public class HardwareConfig {
     public final double vendorFOV; // -1 for unmanaged
     public final List<Integer> blacklistedResIndices; // this happens before the defaults are applied
 
+    // Placement of the UI, NetworkTables and timed task threads, see ThreadPlacement
+    public final String backgroundCpuAffinity;
+    public final int backgroundThreadNiceness;
+
     public HardwareConfig() {
         deviceName = "";
         deviceLogoPath = "";
@@ -74,6 +78,8 @@ public class HardwareConfig {
         restartHardwareCommand = "";
         vendorFOV = -1;
         blacklistedResIndices = Collections.emptyList();
+        backgroundCpuAffinity = "";
+        backgroundThreadNiceness = 0;
     }
 
     @SuppressWarnings("unused")
@@ -97,7 +103,9 @@ public class HardwareConfig {
             String diskUsageCommand,
             String restartHardwareCommand,
             double vendorFOV,
-            List<Integer> blacklistedResIndices) {
+            List<Integer> blacklistedResIndices,
+            String backgroundCpuAffinity,
+            int backgroundThreadNiceness) {
         this.deviceName = deviceName;
         this.deviceLogoPath = deviceLogoPath;
         this.supportURL = supportURL;
@@ -118,6 +126,8 @@ public class HardwareConfig {
         this.restartHardwareCommand = restartHardwareCommand;
         this.vendorFOV = vendorFOV;
         this.blacklistedResIndices = blacklistedResIndices;
+        this.backgroundCpuAffinity = backgroundCpuAffinity;
+        this.backgroundThreadNiceness = backgroundThreadNiceness;
     }
 
     public final boolean hasPresetFOV() {
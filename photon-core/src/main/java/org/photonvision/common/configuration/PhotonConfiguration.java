@@ -138,5 +138,11 @@ public class PhotonConfiguration {
         public int inputStreamPort;
         public List<HashMap<String, Object>> calibrations;
         public boolean isFovConfigurable = true;
+        public String visionCpuAffinity;
+        public int visionThreadNiceness;
+        public int h264BitrateKbps;
+        public int h264KeyframeInterval;
+        public boolean recordingEnabled;
+        public int recordingMaxMegabytes;
     }
 }
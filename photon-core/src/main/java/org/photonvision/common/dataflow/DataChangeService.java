@@ -17,18 +17,42 @@
 
 package org.photonvision.common.dataflow;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.photonvision.common.dataflow.events.DataChangeEvent;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
+import org.photonvision.common.util.ThreadPlacement;
 
+/**
+ * Routes events to subscribers. Every subscriber has its own bounded queue and dispatch thread, so
+ * a slow subscriber (a websocket send, a config save) only ever delays its own events.
+ */
 @SuppressWarnings("rawtypes")
 public class DataChangeService {
     private static final Logger logger = new Logger(DataChangeService.class, LogGroup.WebServer);
 
+    /**
+     * Events a subscriber can have waiting before new ones are dropped. Events with a coalesce key
+     * (telemetry) and events for the UI are dropped straight away, so a slow UI client can't hold up
+     * whoever published them (the log writer, a vision thread). Anything else (pipeline switches,
+     * settings changes) waits up to kControlEventTimeoutMillis for room first.
+     */
+    static final int kSubscriberQueueCapacity = 1024;
+
+    static final long kControlEventTimeoutMillis = 500;
+
     private static class ThreadSafeSingleton {
         private static final DataChangeService INSTANCE = new DataChangeService();
     }
@@ -37,59 +61,60 @@ public class DataChangeService {
         return ThreadSafeSingleton.INSTANCE;
     }
 
-    private final CopyOnWriteArrayList<DataChangeSubscriber> subscribers;
+    private final CopyOnWriteArrayList<SubscriberQueue> subscribers = new CopyOnWriteArrayList<>();
 
-    @SuppressWarnings("FieldCanBeLocal")
-    private final Thread dispatchThread;
+    // Destination -> source -> the subscribers that want that pair, filled in at subscribe time
+    private final EnumMap<DataChangeDestination, EnumMap<DataChangeSource, List<SubscriberQueue>>>
+            routes = new EnumMap<>(DataChangeDestination.class);
 
-    private final BlockingQueue<DataChangeEvent> eventQueue = new LinkedBlockingQueue<>();
-
-    private DataChangeService() {
-        subscribers = new CopyOnWriteArrayList<>();
-        dispatchThread = new Thread(this::dispatchFromQueue);
-        dispatchThread.setName("DataChangeEventDispatchThread");
-        dispatchThread.start();
+    DataChangeService() {
+        for (var dest : DataChangeDestination.values()) {
+            var bySource = new EnumMap<DataChangeSource, List<SubscriberQueue>>(DataChangeSource.class);
+            for (var source : DataChangeSource.values()) {
+                bySource.put(source, new CopyOnWriteArrayList<>());
+            }
+            routes.put(dest, bySource);
+        }
     }
 
     public boolean hasEvents() {
-        return !eventQueue.isEmpty();
+        for (var sub : subscribers) {
+            if (sub.getQueueDepth() != 0) return true;
+        }
+        return false;
     }
 
-    private void dispatchFromQueue() {
-        while (true) {
-            try {
-                var taken = eventQueue.take();
-                for (var sub : subscribers) {
-                    if (sub.wantedSources.contains(taken.sourceType)
-                            && sub.wantedDestinations.contains(taken.destType)) {
-                        sub.onDataChangeEvent(taken);
-                    }
-                }
-            } catch (Exception e) {
-                logger.error("Exception when dispatching event!", e);
-                e.printStackTrace();
+    public synchronized void addSubscriber(DataChangeSubscriber subscriber) {
+        for (var existing : subscribers) {
+            if (existing.subscriber == subscriber) {
+                logger.warn("Attempted to add already added subscriber!");
+                return;
             }
         }
-    }
 
-    public void addSubscriber(DataChangeSubscriber subscriber) {
-        if (!subscribers.addIfAbsent(subscriber)) {
-            logger.warn("Attempted to add already added subscriber!");
-        } else {
-            logger.debug(
-                    () -> {
-                        var sources =
-                                subscriber.wantedSources.stream()
-                                        .map(Enum::toString)
-                                        .collect(Collectors.joining(", "));
-                        var dests =
-                                subscriber.wantedDestinations.stream()
-                                        .map(Enum::toString)
-                                        .collect(Collectors.joining(", "));
-
-                        return "Added subscriber - " + "Sources: " + sources + ", Destinations: " + dests;
-                    });
+        var queue = new SubscriberQueue(subscriber);
+        subscribers.add(queue);
+        for (var dest : subscriber.wantedDestinations) {
+            var bySource = routes.get(dest);
+            for (var source : subscriber.wantedSources) {
+                bySource.get(source).add(queue);
+            }
         }
+        queue.start();
+
+        logger.debug(
+                () -> {
+                    var sources =
+                            subscriber.wantedSources.stream()
+                                    .map(Enum::toString)
+                                    .collect(Collectors.joining(", "));
+                    var dests =
+                            subscriber.wantedDestinations.stream()
+                                    .map(Enum::toString)
+                                    .collect(Collectors.joining(", "));
+
+                    return "Added subscriber - " + "Sources: " + sources + ", Destinations: " + dests;
+                });
     }
 
     public void addSubscribers(DataChangeSubscriber... subs) {
@@ -99,7 +124,9 @@ public class DataChangeService {
     }
 
     public void publishEvent(DataChangeEvent event) {
-        eventQueue.offer(event);
+        for (var sub : routes.get(event.destType).get(event.sourceType)) {
+            sub.offer(event);
+        }
     }
 
     public void publishEvents(DataChangeEvent... events) {
@@ -107,4 +134,204 @@ public class DataChangeService {
             publishEvent(event);
         }
     }
+
+    /** @return A snapshot of every subscriber's queue statistics, in subscription order. */
+    public List<SubscriberStats> getSubscriberStats() {
+        var ret = new ArrayList<SubscriberStats>();
+        for (var sub : subscribers) {
+            ret.add(sub.getStats());
+        }
+        return ret;
+    }
+
+    /**
+     * @return Every subscriber's queue statistics, keyed by subscriber class. Subscribers of the same
+     *     class are numbered in subscription order.
+     */
+    public Map<String, Map<String, Object>> getAllStats() {
+        var all = new TreeMap<String, Map<String, Object>>();
+        for (var sub : subscribers) {
+            var name = sub.subscriber.getClass().getSimpleName();
+            var key = name;
+            for (int i = 2; all.containsKey(key); i++) {
+                key = name + " #" + i;
+            }
+            all.put(key, sub.getStats().toMap());
+        }
+        return all;
+    }
+
+    public static class SubscriberStats {
+        public final String name;
+        public final int queueDepth;
+        public final long delivered;
+        public final long coalesced;
+        public final long dropped;
+        public final double maxLatencyMillis;
+
+        SubscriberStats(
+                String name,
+                int queueDepth,
+                long delivered,
+                long coalesced,
+                long dropped,
+                double maxLatencyMillis) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.delivered = delivered;
+            this.coalesced = coalesced;
+            this.dropped = dropped;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        Map<String, Object> toMap() {
+            var stats = new HashMap<String, Object>();
+            stats.put("queueDepth", queueDepth);
+            stats.put("delivered", delivered);
+            stats.put("coalesced", coalesced);
+            stats.put("dropped", dropped);
+            stats.put("maxLatencyMs", Math.round(maxLatencyMillis * 10) / 10.0);
+            return stats;
+        }
+
+        @Override
+        public String toString() {
+            return name
+                    + ": depth "
+                    + queueDepth
+                    + ", delivered "
+                    + delivered
+                    + ", coalesced "
+                    + coalesced
+                    + ", dropped "
+                    + dropped
+                    + ", max latency "
+                    + String.format("%.2f", maxLatencyMillis)
+                    + "ms";
+        }
+    }
+
+    private static class QueuedEvent {
+        final DataChangeEvent event;
+        final long enqueuedNanos;
+
+        QueuedEvent(DataChangeEvent event, long enqueuedNanos) {
+            this.event = event;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private static class SubscriberQueue {
+        final DataChangeSubscriber subscriber;
+
+        private final BlockingQueue<QueuedEvent> queue =
+                new ArrayBlockingQueue<>(kSubscriberQueueCapacity);
+
+        // Newest event per coalesce key. The queue only holds one entry per key that has an event
+        // here; the dispatcher swaps in whatever is newest when it gets to it.
+        private final ConcurrentHashMap<String, QueuedEvent> latestByKey = new ConcurrentHashMap<>();
+
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile long maxLatencyNanos = 0;
+        // Only touched by the dispatch thread
+        private long reportedDropped = 0;
+
+        private final Thread dispatchThread;
+
+        SubscriberQueue(DataChangeSubscriber subscriber) {
+            this.subscriber = subscriber;
+            dispatchThread = new Thread(this::dispatchFromQueue);
+            dispatchThread.setName("DataChangeDispatch-" + subscriber.getClass().getSimpleName());
+            dispatchThread.setDaemon(true);
+        }
+
+        void start() {
+            dispatchThread.start();
+        }
+
+        int getQueueDepth() {
+            return queue.size();
+        }
+
+        SubscriberStats getStats() {
+            return new SubscriberStats(
+                    dispatchThread.getName(),
+                    queue.size(),
+                    delivered.get(),
+                    coalesced.get(),
+                    dropped.get(),
+                    maxLatencyNanos / 1e6);
+        }
+
+        void offer(DataChangeEvent event) {
+            var queued = new QueuedEvent(event, System.nanoTime());
+            var key = event.coalesceKey;
+            if (key != null && latestByKey.put(key, queued) != null) {
+                // An older event with this key is still waiting, and will be swapped for this one
+                coalesced.incrementAndGet();
+                return;
+            }
+
+            // No logging here. The logger publishes events itself, and would recurse. Drops are
+            // logged from the dispatch thread instead.
+            boolean mustDeliver = key == null && event.destType != DataChangeDestination.DCD_UI;
+            if (!enqueue(queued, mustDeliver)) {
+                if (key != null) latestByKey.remove(key);
+                dropped.incrementAndGet();
+            }
+        }
+
+        private boolean enqueue(QueuedEvent queued, boolean mustDeliver) {
+            // A subscriber publishing to itself would just wait out the timeout, so don't block it
+            if (!mustDeliver || Thread.currentThread() == dispatchThread) {
+                return queue.offer(queued);
+            }
+            try {
+                return queue.offer(queued, kControlEventTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void logNewDrops() {
+            long droppedNow = dropped.get();
+            if (droppedNow == reportedDropped) return;
+            logger.warn(
+                    "Subscriber "
+                            + subscriber.getClass().getSimpleName()
+                            + " fell behind; "
+                            + (droppedNow - reportedDropped)
+                            + " events were dropped");
+            reportedDropped = droppedNow;
+        }
+
+        private void dispatchFromQueue() {
+            while (true) {
+                try {
+                    var taken = queue.take();
+                    ThreadPlacement.background().applyIfChanged();
+                    logNewDrops();
+                    var key = taken.event.coalesceKey;
+                    if (key != null) {
+                        var latest = latestByKey.remove(key);
+                        if (latest != null) taken = latest;
+                    }
+
+                    long latency = System.nanoTime() - taken.enqueuedNanos;
+                    if (latency > maxLatencyNanos) maxLatencyNanos = latency;
+
+                    delivered.incrementAndGet();
+                    subscriber.onDataChangeEvent(taken.event);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    logger.error("Exception when dispatching event!", e);
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
 }
@@ -26,15 +26,31 @@ public class DataChangeEvent<T> {
     public final String propertyName;
     public final T data;
 
+    /**
+     * If non-null, this event is superseded by any later event with the same key. Subscribers that
+     * haven't received it yet by the time the next one is published only see the newest.
+     */
+    public final String coalesceKey;
+
     public DataChangeEvent(
             DataChangeSource sourceType,
             DataChangeDestination destType,
             String propertyName,
             T newValue) {
+        this(sourceType, destType, propertyName, newValue, null);
+    }
+
+    public DataChangeEvent(
+            DataChangeSource sourceType,
+            DataChangeDestination destType,
+            String propertyName,
+            T newValue,
+            String coalesceKey) {
         this.sourceType = sourceType;
         this.destType = destType;
         this.propertyName = propertyName;
         this.data = newValue;
+        this.coalesceKey = coalesceKey;
     }
 
     @Override
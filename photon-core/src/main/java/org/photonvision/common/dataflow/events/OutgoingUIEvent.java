@@ -24,14 +24,41 @@ import org.photonvision.common.dataflow.DataChangeSource;
 
 public class OutgoingUIEvent<T> extends DataChangeEvent<T> {
     public final WsContext originContext;
+    // If set, only this client gets the event
+    public final WsContext destinationContext;
 
     public OutgoingUIEvent(String propertyName, T newValue) {
         this(propertyName, newValue, null);
     }
 
     public OutgoingUIEvent(String propertyName, T newValue, WsContext originContext) {
-        super(DataChangeSource.DCS_WEBSOCKET, DataChangeDestination.DCD_UI, propertyName, newValue);
+        this(propertyName, newValue, originContext, null);
+    }
+
+    public OutgoingUIEvent(
+            String propertyName, T newValue, WsContext originContext, String coalesceKey) {
+        this(propertyName, newValue, originContext, coalesceKey, null);
+    }
+
+    private OutgoingUIEvent(
+            String propertyName,
+            T newValue,
+            WsContext originContext,
+            String coalesceKey,
+            WsContext destinationContext) {
+        super(
+                DataChangeSource.DCS_WEBSOCKET,
+                DataChangeDestination.DCD_UI,
+                propertyName,
+                newValue,
+                coalesceKey);
         this.originContext = originContext;
+        this.destinationContext = destinationContext;
+    }
+
+    public static <T> OutgoingUIEvent<T> toClient(
+            String propertyName, T newValue, WsContext destinationContext) {
+        return new OutgoingUIEvent<>(propertyName, newValue, null, null, destinationContext);
     }
 
     public static OutgoingUIEvent<HashMap<String, Object>> wrappedOf(
@@ -59,8 +59,14 @@ public class UIDataPublisher implements CVPipelineResultConsumer {
         dataMap.put("targets", uiTargets);
         uiMap.put(index, dataMap);
 
+        var uiData = new HashMap<String, Object>();
+        uiData.put("updatePipelineResult", uiMap);
+
+        // Only the newest result for each camera matters to a client that's falling behind
         DataChangeService.getInstance()
-                .publishEvent(OutgoingUIEvent.wrappedOf("updatePipelineResult", uiMap));
+                .publishEvent(
+                        new OutgoingUIEvent<>(
+                                "updatePipelineResult", uiData, null, "updatePipelineResult" + index));
         lastUIResultUpdateTime = now;
     }
 }
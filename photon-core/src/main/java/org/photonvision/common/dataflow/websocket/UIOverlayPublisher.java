@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.dataflow.websocket;
+
+import java.util.HashMap;
+import org.photonvision.common.dataflow.DataChangeService;
+import org.photonvision.common.dataflow.events.OutgoingUIEvent;
+import org.photonvision.vision.opencv.Overlay;
+
+/**
+ * Sends each stream frame's target overlay to the web UI, for clients that draw overlays over the
+ * stream themselves instead of having them drawn into the JPEGs. See {@link Overlay#encode()} for
+ * the format.
+ */
+public class UIOverlayPublisher {
+    private final int index;
+
+    public UIOverlayPublisher(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Publish an overlay.
+     *
+     * @param overlay The overlay drawn, or that would have been drawn, over a stream frame.
+     * @param timestampNanos The capture timestamp of that frame, also sent in its X-Timestamp. The
+     *     web UI shows streams in an img, which can't read headers, so it doesn't match on this.
+     * @param drawnIntoFrames Whether the overlay was drawn into the frames anyway, for some other
+     *     viewer. Clients then skip drawing it again.
+     */
+    public void accept(Overlay overlay, long timestampNanos, boolean drawnIntoFrames) {
+        var dataMap = new HashMap<String, Object>();
+        dataMap.put("timestamp", timestampNanos);
+        dataMap.put("drawnIntoFrames", drawnIntoFrames);
+        dataMap.put("overlay", overlay.encode());
+
+        var uiMap = new HashMap<Integer, HashMap<String, Object>>();
+        uiMap.put(index, dataMap);
+
+        var uiData = new HashMap<String, Object>();
+        uiData.put("updateOverlay", uiMap);
+
+        // Overlays go stale as fast as frames do, so a slow client only gets the newest
+        DataChangeService.getInstance()
+                .publishEvent(
+                        new OutgoingUIEvent<>("updateOverlay", uiData, null, "updateOverlay" + index));
+    }
+}
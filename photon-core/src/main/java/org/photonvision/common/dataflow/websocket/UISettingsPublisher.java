@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.dataflow.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.websocket.WsContext;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.photonvision.common.configuration.ConfigManager;
+import org.photonvision.common.configuration.PhotonConfiguration;
+import org.photonvision.common.dataflow.DataChangeService;
+import org.photonvision.common.dataflow.events.OutgoingUIEvent;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+import org.photonvision.common.util.SerializationUtils;
+
+/**
+ * Publishes settings to the UI as a full snapshot on connect, and as revisioned per-camera patches
+ * afterwards. Every message carries a revision number; a client that sees a patch whose revision
+ * isn't exactly one past the last one it applied asks for a fresh snapshot instead.
+ */
+public class UISettingsPublisher {
+    private static final Logger logger = new Logger(UISettingsPublisher.class, LogGroup.WebServer);
+
+    private static class ThreadSafeSingleton {
+        private static final UISettingsPublisher INSTANCE = new UISettingsPublisher();
+    }
+
+    public static UISettingsPublisher getInstance() {
+        return ThreadSafeSingleton.INSTANCE;
+    }
+
+    private final ObjectMapper snapshotMapper = new ObjectMapper(new MessagePackFactory());
+
+    // Serialized form of each top-level field, as last sent, keyed by camera index. Values are
+    // serialized rather than kept by reference, as the settings objects are mutated in place.
+    private final HashMap<Integer, HashMap<String, byte[]>> lastSentCameras = new HashMap<>();
+    private long revision = 0;
+
+    UISettingsPublisher() {}
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    /** Broadcast the complete settings to every client, resetting their revision. */
+    public synchronized void publishFullSettings() {
+        var settings = ConfigManager.getInstance().getConfig().toHashMap();
+
+        lastSentCameras.clear();
+        @SuppressWarnings("unchecked")
+        var cameras = (List<HashMap<String, Object>>) settings.get("cameraSettings");
+        for (int i = 0; i < cameras.size(); i++) {
+            computeChanges(i, cameras.get(i));
+        }
+
+        settings.put("settingsRevision", ++revision);
+        DataChangeService.getInstance().publishEvent(new OutgoingUIEvent<>("fullsettings", settings));
+    }
+
+    /**
+     * Send the complete settings to one client, e.g. one that just connected or missed a patch. The
+     * snapshot carries the current revision, so other clients carry on applying patches as before.
+     *
+     * @param destination The client to send the settings to.
+     */
+    public synchronized void publishFullSettings(WsContext destination) {
+        var settings = ConfigManager.getInstance().getConfig().toHashMap();
+        settings.put("settingsRevision", revision);
+        DataChangeService.getInstance()
+                .publishEvent(OutgoingUIEvent.toClient("fullsettings", settings, destination));
+    }
+
+    /**
+     * Broadcast the fields of one camera's settings that changed since they were last sent. Nothing
+     * is sent if nothing changed.
+     *
+     * @param cameraIndex The index of the camera in the UI's camera list.
+     * @param config The camera's current settings.
+     */
+    public synchronized void publishCameraSettings(
+            int cameraIndex, PhotonConfiguration.UICameraConfiguration config) {
+        if (!lastSentCameras.containsKey(cameraIndex)) {
+            // The UI has never seen this camera, so there's nothing to patch against
+            publishFullSettings();
+            return;
+        }
+
+        var changes = computeChanges(cameraIndex, SerializationUtils.objectToHashMap(config));
+        if (changes.isEmpty()) return;
+
+        var patch = new HashMap<String, Object>();
+        patch.put("revision", ++revision);
+        patch.put("cameraIndex", cameraIndex);
+        patch.put("changes", changes);
+
+        var message = new HashMap<String, Object>();
+        message.put("cameraSettingsPatch", patch);
+        DataChangeService.getInstance()
+                .publishEvent(new OutgoingUIEvent<>("cameraSettingsPatch", message));
+    }
+
+    /**
+     * Diff a camera's settings against those last sent for it, and remember them as sent.
+     *
+     * @return The top-level fields whose values differ.
+     */
+    HashMap<String, Object> computeChanges(int cameraIndex, Map<String, Object> current) {
+        var lastSent = lastSentCameras.computeIfAbsent(cameraIndex, k -> new HashMap<>());
+        var changes = new HashMap<String, Object>();
+
+        for (var entry : current.entrySet()) {
+            byte[] serialized;
+            try {
+                serialized = snapshotMapper.writeValueAsBytes(entry.getValue());
+            } catch (JsonProcessingException e) {
+                logger.error("Couldn't serialize camera setting " + entry.getKey(), e);
+                changes.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            if (!Arrays.equals(serialized, lastSent.put(entry.getKey(), serialized))) {
+                changes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changes;
+    }
+}
@@ -21,14 +21,22 @@ public class CPUMetrics extends MetricsBase {
     private String cpuMemSplit = null;
 
     public String getMemory() {
-        if (cpuMemoryCommand.isEmpty()) return "";
         if (cpuMemSplit == null) {
-            cpuMemSplit = execute(cpuMemoryCommand);
+            var total = procMetrics.getTotalRam();
+            if (total.isPresent()) {
+                cpuMemSplit = String.valueOf(total.getAsLong());
+            } else {
+                if (cpuMemoryCommand.isEmpty()) return "";
+                cpuMemSplit = execute(cpuMemoryCommand);
+            }
         }
         return cpuMemSplit;
     }
 
     public String getTemp() {
+        var temp = procMetrics.getCpuTemperature();
+        if (temp.isPresent()) return String.format("%.1f", temp.getAsDouble());
+
         if (cpuTemperatureCommand.isEmpty()) return "";
         try {
             return execute(cpuTemperatureCommand);
@@ -38,6 +46,10 @@ public class CPUMetrics extends MetricsBase {
     }
 
     public String getUtilization() {
+        var util = procMetrics.getCpuUtilization();
+        if (util.isPresent()) return String.format("%.1f", util.getAsDouble());
+
+        if (cpuUtilizationCommand.isEmpty()) return "";
         return execute(cpuUtilizationCommand);
     }
 }
@@ -19,6 +19,10 @@ package org.photonvision.common.hardware.metrics;
 
 public class DiskMetrics extends MetricsBase {
     public String getUsedDiskPct() {
+        var pct = procMetrics.getDiskUsedPct();
+        // df rounds up
+        if (pct.isPresent()) return (int) Math.ceil(pct.getAsDouble()) + "%";
+
         if (diskUsageCommand.isEmpty()) return "";
         return execute(diskUsageCommand);
     }
@@ -17,10 +17,12 @@
 
 package org.photonvision.common.hardware.metrics;
 
+// There's no procfs equivalent for the VideoCore memory split, so these always shell out
 public class GPUMetrics extends MetricsBase {
     private String gpuMemSplit = null;
 
     public String getGPUMemorySplit() {
+        if (gpuMemoryCommand.isEmpty()) return "";
         if (gpuMemSplit == null) {
             gpuMemSplit = execute(gpuMemoryCommand);
         }
@@ -28,6 +30,7 @@ public class GPUMetrics extends MetricsBase {
     }
 
     public String getMallocedMemory() {
+        if (gpuMemUsageCommand.isEmpty()) return "";
         return execute(gpuMemUsageCommand);
     }
 }
@@ -46,6 +46,9 @@ public abstract class MetricsBase {
 
     private static ShellExec runCommand = new ShellExec(true, true);
 
+    // Read first; the commands above are only run when procfs can't answer
+    protected static final ProcMetrics procMetrics = new ProcMetrics();
+
     public static void setConfig(HardwareConfig config) {
         if (Platform.isRaspberryPi()) return;
         cpuMemoryCommand = config.cpuMemoryCommand;
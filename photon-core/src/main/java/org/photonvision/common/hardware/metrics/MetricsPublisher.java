@@ -18,12 +18,21 @@
 package org.photonvision.common.hardware.metrics;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import org.photonvision.common.dataflow.DataChangeService;
 import org.photonvision.common.dataflow.events.OutgoingUIEvent;
 import org.photonvision.common.hardware.Platform;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
+import org.photonvision.common.util.MemoryManager;
 import org.photonvision.common.util.TimedTaskManager;
+import org.photonvision.common.util.file.ImageWriter;
+import org.photonvision.vision.frame.consumer.H264FrameConsumer;
+import org.photonvision.vision.frame.consumer.MJPGFrameConsumer;
+import org.photonvision.vision.frame.consumer.MatchRecorder;
 
 public class MetricsPublisher {
     private static final Logger logger = new Logger(MetricsPublisher.class, LogGroup.General);
@@ -32,6 +41,9 @@ public class MetricsPublisher {
     private static RAMMetrics ramMetrics;
     private static DiskMetrics diskMetrics;
 
+    // Metrics from outside photon-core, e.g. the web server's
+    private final Map<String, Supplier<Object>> sources = new ConcurrentHashMap<>();
+
     public static MetricsPublisher getInstance() {
         return Singleton.INSTANCE;
     }
@@ -43,19 +55,29 @@ public class MetricsPublisher {
         diskMetrics = new DiskMetrics();
     }
 
+    /**
+     * Publishes whatever the source returns under the given name, along with the built-in metrics.
+     *
+     * @param name The key to publish the source's metrics under.
+     * @param source Supplies the metrics; called on every publish.
+     */
+    public void addSource(String name, Supplier<Object> source) {
+        sources.put(name, source);
+    }
+
     public void stopTask() {
         TimedTaskManager.getInstance().cancelTask("Metrics");
         logger.info("This device does not support running bash commands. Stopped metrics thread.");
     }
 
     public void publish() {
-        if (!Platform.isRaspberryPi()) {
-            logger.debug("Ignoring metrics on non-Pi devices");
+        if (!Platform.isLinux()) {
+            logger.debug("Ignoring metrics on non-Linux devices");
             return;
         }
 
         logger.debug("Publishing Metrics...");
-        final var metrics = new HashMap<String, String>();
+        final var metrics = new HashMap<String, Object>();
 
         metrics.put("cpuTemp", cpuMetrics.getTemp());
         metrics.put("cpuUtil", cpuMetrics.getUtilization());
@@ -64,10 +86,33 @@ public class MetricsPublisher {
         metrics.put("ramUtil", ramMetrics.getUsedRam());
         metrics.put("gpuMemUtil", gpuMetrics.getMallocedMemory());
         metrics.put("diskUtilPct", diskMetrics.getUsedDiskPct());
+        metrics.put("threadCpu", getThreadCpu());
+        metrics.put("memory", MemoryManager.getInstance().getStats());
+        var streams = new TreeMap<String, Object>(MJPGFrameConsumer.getAllStats());
+        H264FrameConsumer.getAllStats().forEach((name, stats) -> streams.put(name + "-h264", stats));
+        metrics.put("streams", streams);
+        metrics.put("imageWriter", ImageWriter.getInstance().getStats());
+        metrics.put("recording", MatchRecorder.getAllStats());
+        metrics.put("dataChange", DataChangeService.getInstance().getAllStats());
+        metrics.put("logging", Logger.getStats());
+        sources.forEach((name, source) -> metrics.put(name, source.get()));
 
         DataChangeService.getInstance().publishEvent(OutgoingUIEvent.wrappedOf("metrics", metrics));
     }
 
+    /**
+     * Per-thread CPU since the last publish, rounded to a tenth of a percent. Vision runner and
+     * stream threads are named after their camera, so this shows which camera is eating the CPU.
+     */
+    private static Map<String, Double> getThreadCpu() {
+        var threadCpu = new TreeMap<String, Double>();
+        for (var entry : MetricsBase.procMetrics.getThreadCpuUtilization().entrySet()) {
+            double pct = Math.round(entry.getValue() * 10) / 10.0;
+            if (pct > 0) threadCpu.put(entry.getKey(), pct);
+        }
+        return threadCpu;
+    }
+
     private static class Singleton {
         public static final MetricsPublisher INSTANCE = new MetricsPublisher();
     }
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.hardware.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+
+/**
+ * Reads system metrics straight from procfs, sysfs and the filesystem, so that collecting them
+ * doesn't spawn any processes. Every getter returns an empty optional when its source isn't
+ * available, in which case callers fall back to the shell commands from the hardware config.
+ */
+public class ProcMetrics {
+    private static final long BYTES_PER_MB = 1_000_000; // Matches free --mega
+
+    private final Path procRoot;
+    private final Path sysRoot;
+    private final Path diskPath;
+
+    // Previous /proc/stat sample, so utilization covers the time between publishes
+    private long lastTotalJiffies = -1;
+    private long lastIdleJiffies = -1;
+    private double lastCpuUtilization = 0;
+
+    // Previous per-thread sample, keyed by thread ID
+    private Map<Long, Long> lastThreadCpuNanos = new HashMap<>();
+    private long lastThreadSampleNanos = -1;
+
+    public ProcMetrics() {
+        this(Paths.get("/proc"), Paths.get("/sys"), Paths.get("./"));
+    }
+
+    public ProcMetrics(Path procRoot, Path sysRoot, Path diskPath) {
+        this.procRoot = procRoot;
+        this.sysRoot = sysRoot;
+        this.diskPath = diskPath;
+    }
+
+    /** @return Percent of CPU time spent not idle since the previous call (or since boot). */
+    public synchronized OptionalDouble getCpuUtilization() {
+        List<String> lines = readLines(procRoot.resolve("stat"));
+        if (lines == null || lines.isEmpty() || !lines.get(0).startsWith("cpu ")) {
+            return OptionalDouble.empty();
+        }
+
+        // cpu  user nice system idle iowait irq softirq steal guest guest_nice
+        // guest time is already counted in user, so only the first 8 fields are summed
+        String[] fields = lines.get(0).trim().split("\\s+");
+        if (fields.length < 5) return OptionalDouble.empty();
+        long total = 0;
+        long idle = 0;
+        try {
+            for (int i = 1; i < Math.min(fields.length, 9); i++) {
+                long value = Long.parseLong(fields[i]);
+                total += value;
+                if (i == 4 || i == 5) idle += value; // idle and iowait
+            }
+        } catch (NumberFormatException e) {
+            return OptionalDouble.empty();
+        }
+
+        long deltaTotal = lastTotalJiffies < 0 ? total : total - lastTotalJiffies;
+        long deltaIdle = lastIdleJiffies < 0 ? idle : idle - lastIdleJiffies;
+        lastTotalJiffies = total;
+        lastIdleJiffies = idle;
+
+        // Two calls within the same tick have nothing new to report
+        if (deltaTotal > 0) {
+            lastCpuUtilization = 100.0 * (deltaTotal - deltaIdle) / deltaTotal;
+        }
+        return OptionalDouble.of(lastCpuUtilization);
+    }
+
+    /** @return The temperature of the first thermal zone, in degrees C. */
+    public OptionalDouble getCpuTemperature() {
+        List<String> lines = readLines(sysRoot.resolve("class/thermal/thermal_zone0/temp"));
+        if (lines == null || lines.isEmpty()) return OptionalDouble.empty();
+        try {
+            return OptionalDouble.of(Long.parseLong(lines.get(0).trim()) / 1000.0);
+        } catch (NumberFormatException e) {
+            return OptionalDouble.empty();
+        }
+    }
+
+    /** @return Total memory visible to the kernel, in MB. */
+    public OptionalLong getTotalRam() {
+        var memInfo = readMemInfo();
+        if (memInfo == null || !memInfo.containsKey("MemTotal")) return OptionalLong.empty();
+        return OptionalLong.of(kbToMb(memInfo.get("MemTotal")));
+    }
+
+    /** @return Memory that isn't available to new allocations, in MB. */
+    public OptionalLong getUsedRam() {
+        var memInfo = readMemInfo();
+        if (memInfo == null || !memInfo.containsKey("MemTotal")) return OptionalLong.empty();
+
+        long available;
+        if (memInfo.containsKey("MemAvailable")) {
+            available = memInfo.get("MemAvailable");
+        } else {
+            // Kernels older than 3.14 don't estimate this for us
+            available =
+                    memInfo.getOrDefault("MemFree", 0L)
+                            + memInfo.getOrDefault("Buffers", 0L)
+                            + memInfo.getOrDefault("Cached", 0L);
+        }
+        return OptionalLong.of(kbToMb(memInfo.get("MemTotal") - available));
+    }
+
+    /** @return Resident memory of this process, including native allocations, in MB. */
+    public OptionalLong getProcessRss() {
+        List<String> lines = readLines(procRoot.resolve("self/status"));
+        if (lines == null) return OptionalLong.empty();
+
+        // VmRSS:    123456 kB
+        for (var line : lines) {
+            if (!line.startsWith("VmRSS:")) continue;
+            String[] parts = line.substring("VmRSS:".length()).trim().split("\\s+");
+            try {
+                return OptionalLong.of(kbToMb(Long.parseLong(parts[0])));
+            } catch (NumberFormatException e) {
+                return OptionalLong.empty();
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /** @return Percent of the disk holding the working directory that is in use, like df. */
+    public OptionalDouble getDiskUsedPct() {
+        try {
+            var store = Files.getFileStore(diskPath);
+            long used = store.getTotalSpace() - store.getUnallocatedSpace();
+            long usable = store.getUsableSpace();
+            if (used + usable <= 0) return OptionalDouble.empty();
+            return OptionalDouble.of(100.0 * used / (used + usable));
+        } catch (IOException e) {
+            return OptionalDouble.empty();
+        }
+    }
+
+    /**
+     * Get the CPU used by each live Java thread since the previous call, as a percent of one core.
+     * Threads that didn't run in that time are left out.
+     *
+     * @return Thread name to CPU percent, empty on the first call or if the JVM can't measure it.
+     */
+    public Map<String, Double> getThreadCpuUtilization() {
+        var threadBean = ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadCpuTimeSupported()) return new HashMap<>();
+        if (!threadBean.isThreadCpuTimeEnabled()) threadBean.setThreadCpuTimeEnabled(true);
+
+        var names = new HashMap<Long, String>();
+        var cpuNanos = new HashMap<Long, Long>();
+        for (var info : threadBean.getThreadInfo(threadBean.getAllThreadIds())) {
+            if (info == null) continue; // Died since we listed IDs
+            long id = info.getThreadId();
+            long time = threadBean.getThreadCpuTime(id);
+            if (time < 0) continue;
+            names.put(id, info.getThreadName());
+            cpuNanos.put(id, time);
+        }
+        return getThreadCpuUtilization(names, cpuNanos, System.nanoTime());
+    }
+
+    /**
+     * Like {@link #getThreadCpuUtilization()}, but from a sample taken by the caller.
+     *
+     * @param threadNames Thread ID to thread name.
+     * @param threadCpuNanos Thread ID to the CPU time that thread has used in total.
+     * @param nowNanos When the sample was taken, on the {@link System#nanoTime()} clock.
+     * @return Thread name to CPU percent since the previous sample, empty for the first one.
+     */
+    public synchronized Map<String, Double> getThreadCpuUtilization(
+            Map<Long, String> threadNames, Map<Long, Long> threadCpuNanos, long nowNanos) {
+        var usage = new HashMap<String, Double>();
+        long elapsed = nowNanos - lastThreadSampleNanos;
+        for (var entry : threadCpuNanos.entrySet()) {
+            long time = entry.getValue();
+            // Threads started since the last sample did all of their work within it
+            long last = lastThreadCpuNanos.getOrDefault(entry.getKey(), 0L);
+            if (lastThreadSampleNanos < 0 || time <= last) continue;
+            // Thread names aren't unique, so sum any that share one
+            usage.merge(
+                    threadNames.get(entry.getKey()), 100.0 * (time - last) / elapsed, Double::sum);
+        }
+
+        lastThreadCpuNanos = new HashMap<>(threadCpuNanos);
+        lastThreadSampleNanos = nowNanos;
+        return usage;
+    }
+
+    private Map<String, Long> readMemInfo() {
+        List<String> lines = readLines(procRoot.resolve("meminfo"));
+        if (lines == null) return null;
+
+        // MemTotal:        3884328 kB
+        var values = new HashMap<String, Long>();
+        for (var line : lines) {
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String[] parts = line.substring(colon + 1).trim().split("\\s+");
+            try {
+                values.put(line.substring(0, colon), Long.parseLong(parts[0]));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return values;
+    }
+
+    private static long kbToMb(long kb) {
+        return kb * 1024 / BYTES_PER_MB;
+    }
+
+    private static List<String> readLines(Path path) {
+        try {
+            return Files.readAllLines(path);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+}
@@ -18,8 +18,11 @@
 package org.photonvision.common.hardware.metrics;
 
 public class RAMMetrics extends MetricsBase {
-    // TODO: Output in MBs for consistency
+    /** @return Used RAM, in MB. */
     public String getUsedRam() {
+        var used = procMetrics.getUsedRam();
+        if (used.isPresent()) return String.valueOf(used.getAsLong());
+
         if (ramUsageCommand.isEmpty()) return "";
         return execute(ramUsageCommand);
     }
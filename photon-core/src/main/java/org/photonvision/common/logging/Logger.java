@@ -20,20 +20,31 @@ package org.photonvision.common.logging;
 import java.io.*;
 import java.nio.file.Path;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import org.apache.commons.lang3.tuple.Pair;
 import org.photonvision.common.configuration.ConfigManager;
 import org.photonvision.common.dataflow.DataChangeService;
 import org.photonvision.common.dataflow.events.OutgoingUIEvent;
-import org.photonvision.common.util.TimedTaskManager;
 
+/**
+ * Logging front end. Calls only check the level and queue a record; formatting and writing to the
+ * console, UI and log file all happen in batches on a single writer thread, so logging from a
+ * vision thread never waits on I/O.
+ */
 @SuppressWarnings("unused")
 public class Logger {
     public static final String ANSI_RESET = "\u001B[0m";
@@ -48,11 +59,29 @@ public class Logger {
 
     public static final int MAX_LOGS_TO_KEEP = 100;
 
-    private static final SimpleDateFormat simpleDateFormat =
-            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    /** Records that can be waiting for the writer before new ones are dropped. */
+    static final int MAX_QUEUED_RECORDS = 8192;
+
+    /** Messages kept for the first UI client to connect. Older ones are dropped past this. */
+    static final int MAX_UI_BACKLOG = 1000;
+
+    private static final DateTimeFormatter dateFormatter =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // A fixed ring of slots, so queueing a record never allocates more than the record itself
+    private static final BlockingQueue<LogRecord> queue =
+            new ArrayBlockingQueue<>(MAX_QUEUED_RECORDS);
+    private static final AtomicLong droppedCount = new AtomicLong();
 
-    private static final List<Pair<String, LogLevel>> uiBacklog = new ArrayList<>();
-    private static boolean connected = false;
+    // Only touched by the writer thread, and by sendConnectedBacklog while holding the lock
+    private static final ArrayDeque<Pair<String, LogLevel>> uiBacklog = new ArrayDeque<>();
+    private static long uiBacklogDropped = 0;
+    private static volatile boolean connected = false;
+
+    // Writer thread state
+    private static long lastReportedDrops = 0;
+    private static long lastDateSecond = Long.MIN_VALUE;
+    private static String lastDate = "";
 
     private static UILogAppender uiLogAppender = new UILogAppender();
 
@@ -70,12 +99,21 @@ public class Logger {
     }
 
     public static String getDate() {
-        return simpleDateFormat.format(new Date());
+        return dateFormatter.format(Instant.now());
     }
 
     public static String format(
             String logMessage, LogLevel level, LogGroup group, String clazz, boolean color) {
-        var date = getDate();
+        return format(getDate(), logMessage, level, group, clazz, color);
+    }
+
+    private static String format(
+            String date,
+            String logMessage,
+            LogLevel level,
+            LogGroup group,
+            String clazz,
+            boolean color) {
         var builder = new StringBuilder();
         if (color) builder.append(level.colorCode);
         builder
@@ -93,15 +131,12 @@ public class Logger {
         return builder.toString();
     }
 
-    private static final HashMap<LogGroup, LogLevel> levelMap = new HashMap<>();
+    // Indexed by LogGroup ordinal, so checking a level is a single array read
+    private static final LogLevel[] levelMap = new LogLevel[LogGroup.values().length];
     private static final List<LogAppender> currentAppenders = new ArrayList<>();
 
     static {
-        levelMap.put(LogGroup.Camera, LogLevel.INFO);
-        levelMap.put(LogGroup.General, LogLevel.INFO);
-        levelMap.put(LogGroup.WebServer, LogLevel.INFO);
-        levelMap.put(LogGroup.Data, LogLevel.INFO);
-        levelMap.put(LogGroup.VisionModule, LogLevel.INFO);
+        Arrays.fill(levelMap, LogLevel.INFO);
     }
 
     static {
@@ -111,6 +146,15 @@ public class Logger {
         cleanLogs(ConfigManager.getInstance().getLogsDir());
     }
 
+    private static final Thread writerThread = new Thread(Logger::writeLoop, "LogWriterThread");
+
+    static {
+        writerThread.setDaemon(true);
+        writerThread.start();
+        // Whatever is still queued when we exit is usually the most interesting part
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::drainAll, "LogShutdownFlush"));
+    }
+
     @SuppressWarnings("ResultOfMethodCallIgnored")
     public static void addFileAppender(Path logFilePath) {
         var file = logFilePath.toFile();
@@ -122,7 +166,9 @@ public class Logger {
                 e.printStackTrace();
             }
         }
-        currentAppenders.add(new FileLogAppender(logFilePath));
+        synchronized (currentAppenders) {
+            currentAppenders.add(new FileLogAppender(logFilePath));
+        }
     }
 
     public static void cleanLogs(Path folderToClean) {
@@ -168,35 +214,144 @@ public class Logger {
     }
 
     public static void setLevel(LogGroup group, LogLevel newLevel) {
-        levelMap.put(group, newLevel);
+        levelMap[group.ordinal()] = newLevel;
+    }
+
+    /** @return How many log records have been dropped because the writer couldn't keep up. */
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public static Map<String, Object> getStats() {
+        var stats = new HashMap<String, Object>();
+        stats.put("queued", queue.size());
+        stats.put("dropped", droppedCount.get());
+        return stats;
+    }
+
+    static void addAppender(LogAppender appender) {
+        synchronized (currentAppenders) {
+            currentAppenders.add(appender);
+        }
+    }
+
+    static void removeAppender(LogAppender appender) {
+        synchronized (currentAppenders) {
+            currentAppenders.remove(appender);
+        }
     }
 
-    // TODO: profile
     private static void log(String message, LogLevel level, LogGroup group, String clazz) {
-        for (var a : currentAppenders) {
-            var shouldColor = a instanceof ConsoleLogAppender;
-            var formattedMessage = format(message, level, group, clazz, shouldColor);
-            a.log(formattedMessage, level);
+        if (!queue.offer(new LogRecord(System.currentTimeMillis(), message, level, group, clazz))) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            try {
+                // Sleep until there's something to write, then write whatever else came with it
+                drain(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+    }
+
+    private static void drainAll() {
+        while (drain(null)) {}
+    }
+
+    /**
+     * @param first A record already taken from the queue, or null.
+     * @return Whether there was anything to write.
+     */
+    private static synchronized boolean drain(LogRecord first) {
+        int written = 0;
+        if (first != null) {
+            write(first);
+            written++;
+        }
+        LogRecord record;
+        while (written < 512 && (record = queue.poll()) != null) {
+            write(record);
+            written++;
+        }
+
+        long drops = droppedCount.get();
+        if (drops != lastReportedDrops) {
+            write(
+                    new LogRecord(
+                            System.currentTimeMillis(),
+                            (drops - lastReportedDrops) + " log messages dropped, writer fell behind",
+                            LogLevel.WARN,
+                            LogGroup.General,
+                            Logger.class.getSimpleName()));
+            lastReportedDrops = drops;
+            written++;
+        }
+
+        if (written == 0) return false;
+        synchronized (currentAppenders) {
+            for (var a : currentAppenders) {
+                a.flush();
+            }
         }
+        return true;
+    }
+
+    private static void write(LogRecord record) {
+        // Records arrive in bursts within the same second, so only format the date when it changes
+        long second = record.timeMillis / 1000;
+        if (second != lastDateSecond) {
+            lastDateSecond = second;
+            lastDate = dateFormatter.format(Instant.ofEpochMilli(record.timeMillis));
+        }
+
+        var plain = format(lastDate, record.message, record.level, record.group, record.clazz, false);
+        synchronized (currentAppenders) {
+            for (var a : currentAppenders) {
+                if (a instanceof ConsoleLogAppender) {
+                    a.log(record.level.colorCode + plain + ANSI_RESET, record.level);
+                } else {
+                    a.log(plain, record.level);
+                }
+            }
+        }
+
         if (!connected) {
             synchronized (uiBacklog) {
-                uiBacklog.add(Pair.of(format(message, level, group, clazz, false), level));
+                if (uiBacklog.size() >= MAX_UI_BACKLOG) {
+                    uiBacklog.removeFirst();
+                    uiBacklogDropped++;
+                }
+                uiBacklog.addLast(Pair.of(plain, record.level));
             }
         }
     }
 
     public static void sendConnectedBacklog() {
+        sendConnectedBacklog(uiLogAppender);
+    }
+
+    static void sendConnectedBacklog(LogAppender ui) {
         connected = true;
         synchronized (uiBacklog) {
+            if (uiBacklogDropped > 0) {
+                ui.log("(" + uiBacklogDropped + " older startup messages not shown)", LogLevel.WARN);
+                uiBacklogDropped = 0;
+            }
             for (var message : uiBacklog) {
-                uiLogAppender.log(message.getLeft(), message.getRight());
+                ui.log(message.getLeft(), message.getRight());
             }
             uiBacklog.clear();
         }
     }
 
     public boolean shouldLog(LogLevel logLevel) {
-        return logLevel.code <= levelMap.get(group).code;
+        return logLevel.code <= levelMap[group.ordinal()].code;
     }
 
     private void log(String message, LogLevel level) {
@@ -241,7 +396,7 @@ public class Logger {
      */
     public void error(String message, Throwable t) {
         log(message, LogLevel.ERROR);
-        log(convertStackTraceToString(t), LogLevel.ERROR, LogLevel.DEBUG);
+        log(() -> convertStackTraceToString(t), LogLevel.ERROR, LogLevel.DEBUG);
     }
 
     public void warn(Supplier<String> messageSupplier) {
@@ -286,14 +441,42 @@ public class Logger {
         }
     }
 
-    private interface LogAppender {
+    private static class LogRecord {
+        final long timeMillis;
+        final String message;
+        final LogLevel level;
+        final LogGroup group;
+        final String clazz;
+
+        LogRecord(long timeMillis, String message, LogLevel level, LogGroup group, String clazz) {
+            this.timeMillis = timeMillis;
+            this.message = message;
+            this.level = level;
+            this.group = group;
+            this.clazz = clazz;
+        }
+    }
+
+    interface LogAppender {
         void log(String message, LogLevel level);
+
+        /** Called after each batch of messages. */
+        default void flush() {}
     }
 
     private static class ConsoleLogAppender implements LogAppender {
+        private final StringBuilder batch = new StringBuilder();
+
         @Override
         public void log(String message, LogLevel level) {
-            System.out.println(message);
+            batch.append(message).append(System.lineSeparator());
+        }
+
+        @Override
+        public void flush() {
+            System.out.print(batch);
+            System.out.flush();
+            batch.setLength(0);
         }
     }
 
@@ -311,24 +494,10 @@ public class Logger {
 
     private static class FileLogAppender implements LogAppender {
         private OutputStream out;
-        private boolean wantsFlush;
 
         public FileLogAppender(Path logFilePath) {
             try {
-                this.out = new FileOutputStream(logFilePath.toFile());
-                TimedTaskManager.getInstance()
-                        .addTask(
-                                "FileLogAppender",
-                                () -> {
-                                    try {
-                                        if (wantsFlush) {
-                                            out.flush();
-                                            wantsFlush = false;
-                                        }
-                                    } catch (IOException ignored) {
-                                    }
-                                },
-                                3000L);
+                this.out = new BufferedOutputStream(new FileOutputStream(logFilePath.toFile()));
             } catch (FileNotFoundException e) {
                 out = null;
                 System.err.println("Unable to log to file " + logFilePath.toString());
@@ -337,14 +506,21 @@ public class Logger {
 
         @Override
         public void log(String message, LogLevel level) {
-            message += "\n";
+            if (out == null) return; // Nothing to do - no stream available for writing
             try {
                 out.write(message.getBytes());
-                wantsFlush = true;
+                out.write('\n');
             } catch (IOException e) {
                 e.printStackTrace();
-            } catch (NullPointerException e) {
-                // Nothing to do - no stream available for writing
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (out == null) return;
+            try {
+                out.flush();
+            } catch (IOException ignored) {
             }
         }
     }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.photonvision.common.util.numbers.DoubleCouple;
+import org.photonvision.common.util.numbers.IntegerCouple;
+
+/**
+ * Getters and setters for every public field of a class, looked up once per class and turned into
+ * method handles. Used to serialize settings for the UI and to apply changes coming back from it,
+ * without searching the class's fields for every slider tick.
+ */
+public final class FieldAccessorTable {
+    private static final ClassValue<FieldAccessorTable> tables =
+            new ClassValue<>() {
+                @Override
+                protected FieldAccessorTable computeValue(Class<?> type) {
+                    return new FieldAccessorTable(type);
+                }
+            };
+
+    public static FieldAccessorTable forClass(Class<?> type) {
+        return tables.get(type);
+    }
+
+    private final Map<String, Accessor> accessors = new LinkedHashMap<>();
+
+    private FieldAccessorTable(Class<?> type) {
+        var lookup = MethodHandles.lookup();
+        for (var field : type.getFields()) {
+            try {
+                field.setAccessible(true);
+                accessors.put(field.getName(), new Accessor(lookup, field));
+            } catch (IllegalAccessException | RuntimeException e) {
+                // Not something we can get at; leave it out, same as if it weren't public
+            }
+        }
+    }
+
+    /** @return The accessor for the named public field, or null if there isn't one. */
+    public Accessor get(String name) {
+        return accessors.get(name);
+    }
+
+    /**
+     * Copy every public field of an object into a map, with enums replaced by their ordinals.
+     *
+     * @param src The object to copy. Must be an instance of this table's class.
+     */
+    public HashMap<String, Object> toHashMap(Object src) {
+        var ret = new HashMap<String, Object>(accessors.size() * 2);
+        for (var accessor : accessors.values()) {
+            var value = accessor.get(src);
+            if (accessor.isEnum && value != null) value = ((Enum<?>) value).ordinal();
+            ret.put(accessor.name, value);
+        }
+        return ret;
+    }
+
+    public static final class Accessor {
+        public final String name;
+        public final Class<?> type;
+        private final boolean isEnum;
+
+        // (Object)Object and (Object, Object)void, whatever the field's type or staticness
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final Function<Object, Object> fromUI;
+
+        private Accessor(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+            name = field.getName();
+            type = field.getType();
+            isEnum = type.isEnum();
+
+            var getterType = MethodType.methodType(Object.class, Object.class);
+            var setterType = MethodType.methodType(void.class, Object.class, Object.class);
+            boolean isStatic = Modifier.isStatic(field.getModifiers());
+
+            var get = lookup.unreflectGetter(field);
+            if (isStatic) get = MethodHandles.dropArguments(get, 0, Object.class);
+            getter = get.asType(getterType);
+
+            if (Modifier.isFinal(field.getModifiers())) {
+                setter = null;
+            } else {
+                var set = lookup.unreflectSetter(field);
+                if (isStatic) set = MethodHandles.dropArguments(set, 0, Object.class);
+                setter = set.asType(setterType);
+            }
+
+            fromUI = uiConverter(type);
+        }
+
+        public Object get(Object target) {
+            try {
+                return getter.invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * Set the field from a value as the UI sends it: enums as ordinals, couples as two-element
+         * lists, and numbers and booleans in whatever boxed type they were decoded as.
+         */
+        public void setFromUI(Object target, Object uiValue) throws IllegalAccessException {
+            if (setter == null) throw new IllegalAccessException(name + " is final");
+            try {
+                setter.invokeExact(target, fromUI.apply(uiValue));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Function<Object, Object> uiConverter(Class<?> type) {
+            if (type.isEnum()) {
+                var constants = type.getEnumConstants();
+                return v -> constants[((Number) v).intValue()];
+            } else if (type.isAssignableFrom(DoubleCouple.class)) {
+                return v -> {
+                    var list = (List<Number>) v;
+                    return new DoubleCouple(list.get(0), list.get(1));
+                };
+            } else if (type.isAssignableFrom(IntegerCouple.class)) {
+                return v -> {
+                    var list = (List<Number>) v;
+                    return new IntegerCouple(list.get(0).intValue(), list.get(1).intValue());
+                };
+            } else if (type == double.class) {
+                return v -> ((Number) v).doubleValue();
+            } else if (type == int.class) {
+                return v -> ((Number) v).intValue();
+            } else if (type == boolean.class) {
+                return v -> v instanceof Number ? ((Number) v).intValue() != 0 : v;
+            }
+            return Function.identity();
+        }
+    }
+}
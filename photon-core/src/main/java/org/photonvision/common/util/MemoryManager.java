@@ -17,68 +17,190 @@
 
 package org.photonvision.common.util;
 
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import org.photonvision.common.hardware.metrics.ProcMetrics;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+import org.photonvision.common.util.math.MathUtils;
+
+/**
+ * Memory and GC telemetry. This used to force System.gc() whenever usage crossed a threshold, which
+ * stopped every vision thread for a full collection. The collector is now left alone (see the GC
+ * flags in scripts/install.sh) and this only reports what it's doing: heap and native usage, a
+ * histogram of GC pauses, and how fast each thread allocates.
+ */
 public class MemoryManager {
-    private static final long MEGABYTE_FACTOR = 1024L * 1024L;
+    private static final Logger logger = new Logger(MemoryManager.class, LogGroup.General);
+    private static final double MEGABYTE_FACTOR = 1024.0 * 1024.0;
 
-    private int collectionThreshold;
-    private long collectionPeriodMillis = -1;
+    // Upper bounds of the pause histogram buckets, in ms. The last bucket holds everything longer.
+    private static final long[] pauseBucketsMillis = {1, 2, 5, 10, 20, 50, 100};
 
-    private double lastUsedMb = 0;
-    private long lastCollectionMillis = 0;
+    // Long enough to drop a frame at 30fps
+    private static final long LONG_PAUSE_MILLIS = 33;
 
-    public MemoryManager(int collectionThreshold) {
-        this.collectionThreshold = collectionThreshold;
-    }
+    private final AtomicLongArray pauseHistogram =
+            new AtomicLongArray(pauseBucketsMillis.length + 1);
+    private final AtomicLong pauseCount = new AtomicLong();
+    private final AtomicLong totalPauseMillis = new AtomicLong();
+    private final AtomicLong maxPauseMillis = new AtomicLong();
 
-    public MemoryManager(int collectionThreshold, long collectionPeriodMillis) {
-        this.collectionThreshold = collectionThreshold;
-        this.collectionPeriodMillis = collectionPeriodMillis;
-    }
+    private final ProcMetrics procMetrics = new ProcMetrics();
 
-    public void setCollectionThreshold(int collectionThreshold) {
-        this.collectionThreshold = collectionThreshold;
-    }
+    // Previous per-thread allocation sample, keyed by thread ID
+    private Map<Long, Long> lastAllocatedBytes = new HashMap<>();
+    private long lastAllocationSampleNanos = -1;
 
-    public void setCollectionPeriodMillis(long collectionPeriodMillis) {
-        this.collectionPeriodMillis = collectionPeriodMillis;
+    public static MemoryManager getInstance() {
+        return Singleton.INSTANCE;
     }
 
-    private static long getUsedMemory() {
-        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    private MemoryManager() {
+        int listening = 0;
+        for (var gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gcBean instanceof NotificationEmitter) {
+                ((NotificationEmitter) gcBean)
+                        .addNotificationListener(this::handleGcNotification, null, null);
+                listening++;
+            }
+        }
+        if (listening == 0) logger.warn("This JVM doesn't report GC events, pauses won't be tracked");
     }
 
-    private static double getUsedMemoryMB() {
-        return ((double) getUsedMemory() / MEGABYTE_FACTOR);
+    private void handleGcNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+                notification.getType())) {
+            return;
+        }
+        var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+
+        // Concurrent collectors report whole cycles separately from their pauses. Cycles run
+        // alongside the application, so they don't belong in a pause histogram.
+        if (info.getGcName().endsWith("Cycles")) return;
+
+        long duration = info.getGcInfo().getDuration();
+        recordPause(duration);
+        if (duration >= LONG_PAUSE_MILLIS) {
+            logger.warn(
+                    info.getGcName()
+                            + " paused for "
+                            + duration
+                            + "ms ("
+                            + info.getGcAction()
+                            + ", "
+                            + info.getGcCause()
+                            + ")");
+        }
     }
 
-    private void collect() {
-        System.gc();
-        System.runFinalization();
+    void recordPause(long durationMillis) {
+        int bucket = 0;
+        while (bucket < pauseBucketsMillis.length && durationMillis >= pauseBucketsMillis[bucket]) {
+            bucket++;
+        }
+        pauseHistogram.incrementAndGet(bucket);
+        pauseCount.incrementAndGet();
+        totalPauseMillis.addAndGet(durationMillis);
+        maxPauseMillis.accumulateAndGet(durationMillis, Math::max);
     }
 
-    public void run() {
-        run(false);
+    /** @return GC pause counts by duration, with keys like "<1ms", "2-5ms" and ">=100ms". */
+    public Map<String, Long> getPauseHistogram() {
+        var histogram = new LinkedHashMap<String, Long>();
+        long lower = 0;
+        for (int i = 0; i < pauseBucketsMillis.length; i++) {
+            var name =
+                    lower == 0
+                            ? "<" + pauseBucketsMillis[i] + "ms"
+                            : lower + "-" + pauseBucketsMillis[i] + "ms";
+            histogram.put(name, pauseHistogram.get(i));
+            lower = pauseBucketsMillis[i];
+        }
+        histogram.put(">=" + lower + "ms", pauseHistogram.get(pauseBucketsMillis.length));
+        return histogram;
     }
 
-    public void run(boolean print) {
-        var usedMem = getUsedMemoryMB();
+    /**
+     * Get the rate each live thread has allocated heap memory at since the previous call. Threads
+     * that didn't allocate in that time are left out.
+     *
+     * @return Thread name to MB/s, empty on the first call or if the JVM can't measure it.
+     */
+    public synchronized Map<String, Double> getAllocationRates() {
+        var rates = new TreeMap<String, Double>();
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return rates;
+        }
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) return rates;
+        if (!threadBean.isThreadAllocatedMemoryEnabled()) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        }
 
-        if (usedMem != lastUsedMb) {
-            lastUsedMb = usedMem;
-            if (print) System.out.printf("Memory usage: %.2fMB\n", usedMem);
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastAllocationSampleNanos) / 1e9;
+        long[] ids = threadBean.getAllThreadIds();
+        long[] allocated = threadBean.getThreadAllocatedBytes(ids);
+        var infos = threadBean.getThreadInfo(ids);
+
+        var allocatedById = new HashMap<Long, Long>();
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] == null || allocated[i] < 0) continue; // Died since we listed IDs
+            allocatedById.put(ids[i], allocated[i]);
+
+            // Threads started since the last sample did all of their allocating within it
+            long last = lastAllocatedBytes.getOrDefault(ids[i], 0L);
+            if (lastAllocationSampleNanos < 0 || allocated[i] <= last) continue;
+            double rate = (allocated[i] - last) / MEGABYTE_FACTOR / elapsedSeconds;
+            rates.merge(infos[i].getThreadName(), MathUtils.roundTo(rate, 2), Double::sum);
         }
 
-        boolean collectionThresholdPassed = usedMem >= collectionThreshold;
-        boolean collectionPeriodPassed =
-                collectionPeriodMillis != -1
-                        && (System.currentTimeMillis() - lastCollectionMillis >= collectionPeriodMillis);
+        lastAllocatedBytes = allocatedById;
+        lastAllocationSampleNanos = now;
+        return rates;
+    }
 
-        if (collectionThresholdPassed || collectionPeriodPassed) {
-            collect();
-            lastCollectionMillis = System.currentTimeMillis();
-            if (print) {
-                System.out.printf("Garbage collected at %.2fMB\n", usedMem);
-            }
+    /** @return Everything this tracks, in MB and ms, for the metrics publisher. */
+    public Map<String, Object> getStats() {
+        var stats = new HashMap<String, Object>();
+
+        var memoryBean = ManagementFactory.getMemoryMXBean();
+        var heap = memoryBean.getHeapMemoryUsage();
+        stats.put("heapUsedMb", toMb(heap.getUsed()));
+        stats.put("heapCommittedMb", toMb(heap.getCommitted()));
+        stats.put("heapMaxMb", heap.getMax() < 0 ? -1 : toMb(heap.getMax()));
+        stats.put("nonHeapUsedMb", toMb(memoryBean.getNonHeapMemoryUsage().getUsed()));
+
+        // Mats live outside the JVM entirely, so resident size is the only way to see them
+        for (var pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) stats.put("directMb", toMb(pool.getMemoryUsed()));
         }
+        procMetrics.getProcessRss().ifPresent(rss -> stats.put("processRssMb", rss));
+
+        stats.put("gcPauseCount", pauseCount.get());
+        stats.put("gcPauseTotalMs", totalPauseMillis.get());
+        stats.put("gcPauseMaxMs", maxPauseMillis.get());
+        stats.put("gcPauseHistogram", getPauseHistogram());
+        stats.put("allocMbPerSec", getAllocationRates());
+        return stats;
+    }
+
+    private static double toMb(long bytes) {
+        return MathUtils.roundTo(bytes / MEGABYTE_FACTOR, 1);
+    }
+
+    private static class Singleton {
+        public static final MemoryManager INSTANCE = new MemoryManager();
     }
 }
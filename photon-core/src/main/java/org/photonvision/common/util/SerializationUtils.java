@@ -25,22 +25,11 @@ public final class SerializationUtils {
     private static final Logger logger = new Logger(SerializationUtils.class, LogGroup.General);
 
     public static HashMap<String, Object> objectToHashMap(Object src) {
-        var ret = new HashMap<String, Object>();
-        for (var field : src.getClass().getFields()) {
-            try {
-                field.setAccessible(true);
-                if (!field
-                        .getType()
-                        .isEnum()) { // if the field is not an enum, get it based on the current pipeline
-                    ret.put(field.getName(), field.get(src));
-                } else {
-                    var ordinal = (Enum) field.get(src);
-                    ret.put(field.getName(), ordinal.ordinal());
-                }
-            } catch (IllegalArgumentException | IllegalAccessException e) {
-                logger.error("Could not serialize " + src.getClass().getSimpleName(), e);
-            }
+        try {
+            return FieldAccessorTable.forClass(src.getClass()).toHashMap(src);
+        } catch (RuntimeException e) {
+            logger.error("Could not serialize " + src.getClass().getSimpleName(), e);
+            return new HashMap<>();
         }
-        return ret;
     }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+
+/** Logs how long after JVM start each stage of startup was reached. */
+public final class StartupTimeline {
+    private static final Logger logger = new Logger(StartupTimeline.class, LogGroup.General);
+
+    private static final Set<String> reached = ConcurrentHashMap.newKeySet();
+
+    private StartupTimeline() {}
+
+    /**
+     * Log that a stage of startup has been reached. Only the first time each milestone is reached is
+     * logged, so this is safe to call from code that runs repeatedly.
+     */
+    public static void mark(String milestone) {
+        if (!reached.add(milestone)) return;
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        logger.info("Startup +" + uptime + "ms: " + milestone);
+    }
+}
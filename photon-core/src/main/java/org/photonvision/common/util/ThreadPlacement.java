@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.photonvision.common.hardware.Platform;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+
+/**
+ * CPU affinity and niceness for one thread. Java has no API for either, so on Linux they're applied
+ * to the native thread with taskset and renice. That needs the kernel's ID for the thread, which
+ * only the thread itself can look up, so the owning thread has to call {@link #applyIfChanged()}.
+ *
+ * <p>One placement can be shared by several threads; each applies it to itself. {@link
+ * #background()} is shared this way by the threads that serve the UI and dispatch data changes, so
+ * they can be kept off the vision threads' CPUs.
+ */
+public class ThreadPlacement {
+    private static final Logger logger = new Logger(ThreadPlacement.class, LogGroup.General);
+
+    // Same syntax as taskset -c, ex "2", "2-3" or "0,2-3"
+    private static final Pattern cpuListPattern = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+
+    private static class BackgroundHolder {
+        public static final ThreadPlacement INSTANCE = new ThreadPlacement("background threads");
+    }
+
+    /**
+     * @return The placement shared by the data change dispatch threads, the timed task pool and the
+     *     web server's threads.
+     */
+    public static ThreadPlacement background() {
+        return BackgroundHolder.INSTANCE;
+    }
+
+    private static class AppliedState {
+        int generation = 0;
+        boolean pinned = false;
+        boolean reniced = false;
+    }
+
+    private final String threadDescription;
+    private final AtomicInteger generation = new AtomicInteger(0);
+    private volatile String cpuList = "";
+    private volatile int niceness = 0;
+
+    // What each thread sharing this placement last applied to itself
+    private final ThreadLocal<AppliedState> applied = ThreadLocal.withInitial(AppliedState::new);
+
+    public ThreadPlacement(String threadDescription) {
+        this.threadDescription = threadDescription;
+    }
+
+    /**
+     * Request a new placement. Takes effect the next time each owning thread calls {@link
+     * #applyIfChanged()}.
+     *
+     * @param cpuList CPUs to pin to, in taskset -c syntax. Empty to run on any CPU.
+     * @param niceness Scheduling niceness, from -20 (highest priority) to 19. Negative values need
+     *     root.
+     */
+    public void set(String cpuList, int niceness) {
+        this.cpuList = cpuList == null ? "" : cpuList.replace(" ", "");
+        this.niceness = Math.max(-20, Math.min(19, niceness));
+        generation.incrementAndGet();
+    }
+
+    /** Apply the requested placement to the calling thread, if it changed. Cheap to call per loop. */
+    public void applyIfChanged() {
+        var state = applied.get();
+        int requested = generation.get();
+        if (state.generation == requested) return;
+        state.generation = requested;
+        // Nothing requested and nothing to undo
+        if (cpuList.isEmpty() && niceness == 0 && !state.pinned && !state.reniced) return;
+        if (!Platform.isLinux()) {
+            logger.debug("Thread placement is only supported on Linux, ignoring");
+            return;
+        }
+
+        int tid = getNativeThreadId();
+        if (tid < 0) {
+            logger.warn("Couldn't find the native ID of " + threadDescription + ", not placing it");
+            return;
+        }
+
+        var cpus = cpuList;
+        if (!isValidCpuList(cpus)) {
+            logger.error("Ignoring invalid CPU list \"" + cpus + "\" for " + threadDescription);
+            cpus = "";
+        }
+
+        // Leave threads that were never placed alone, so we don't override whatever the process was
+        // started with
+        if (!cpus.isEmpty() || state.pinned) {
+            var affinity =
+                    cpus.isEmpty() ? "0-" + (Runtime.getRuntime().availableProcessors() - 1) : cpus;
+            state.pinned = run("taskset -p -c " + affinity + " " + tid) && !cpus.isEmpty();
+        }
+        int nice = niceness;
+        if (nice != 0 || state.reniced) {
+            state.reniced = run("renice -n " + nice + " -p " + tid) && nice != 0;
+        }
+
+        logger.info(
+                "Placed "
+                        + threadDescription
+                        + " ("
+                        + Thread.currentThread().getName()
+                        + ", thread "
+                        + tid
+                        + ") on CPUs "
+                        + (cpus.isEmpty() ? "any" : cpus)
+                        + " with niceness "
+                        + nice);
+    }
+
+    public static boolean isValidCpuList(String cpuList) {
+        return cpuList.isEmpty() || cpuListPattern.matcher(cpuList).matches();
+    }
+
+    /** @return The kernel's ID for the calling thread, or -1 if it can't be found. */
+    public static int getNativeThreadId() {
+        try {
+            // Links to <pid>/task/<tid>
+            var target = Files.readSymbolicLink(Paths.get("/proc/thread-self")).toString();
+            return Integer.parseInt(target.substring(target.lastIndexOf('/') + 1));
+        } catch (IOException | UnsupportedOperationException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean run(String command) {
+        var shell = new ShellExec(true, true);
+        try {
+            if (shell.executeBashCommand(command) == 0) return true;
+            logger.warn("\"" + command + "\" failed: " + shell.getError());
+        } catch (IOException e) {
+            logger.error("Couldn't run \"" + command + "\"", e);
+        }
+        return false;
+    }
+}
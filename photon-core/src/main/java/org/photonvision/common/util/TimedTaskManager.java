@@ -55,7 +55,7 @@ public class TimedTaskManager {
         if (!activeTasks.containsKey(identifier)) {
             var future =
                     timedTaskExecutorPool.scheduleAtFixedRate(
-                            runnable, 0, millisInterval, TimeUnit.MILLISECONDS);
+                            placed(runnable), 0, millisInterval, TimeUnit.MILLISECONDS);
             activeTasks.put(identifier, future);
         }
     }
@@ -65,13 +65,21 @@ public class TimedTaskManager {
         if (!activeTasks.containsKey(identifier)) {
             var future =
                     timedTaskExecutorPool.scheduleAtFixedRate(
-                            runnable, millisStartDelay, millisInterval, TimeUnit.MILLISECONDS);
+                            placed(runnable), millisStartDelay, millisInterval, TimeUnit.MILLISECONDS);
             activeTasks.put(identifier, future);
         }
     }
 
     public void addOneShotTask(Runnable runnable, long millisStartDelay) {
-        timedTaskExecutorPool.schedule(runnable, millisStartDelay, TimeUnit.MILLISECONDS);
+        timedTaskExecutorPool.schedule(placed(runnable), millisStartDelay, TimeUnit.MILLISECONDS);
+    }
+
+    // Pool threads aren't ours to run code on between tasks, so each task places its thread first
+    private static Runnable placed(Runnable runnable) {
+        return () -> {
+            ThreadPlacement.background().applyIfChanged();
+            runnable.run();
+        };
     }
 
     public void cancelTask(String identifier) {
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+
+/**
+ * Writes images to disk on a background thread, so a slow SD card never stalls a vision or stream
+ * thread. Callers hand over a copy of the image and return immediately. If the disk falls so far
+ * behind that the queue fills up, new images are dropped (and counted) rather than blocking the
+ * caller or growing memory without bound.
+ */
+public class ImageWriter {
+    private static final Logger logger = new Logger(ImageWriter.class, LogGroup.General);
+
+    public static final int DEFAULT_JPEG_QUALITY = 95;
+    // Favour speed over size, PNG is only used for lossless debug images
+    private static final int PNG_COMPRESSION = 1;
+    private static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    /** Does the actual encode and write; swapped out in tests. */
+    interface Encoder {
+        boolean write(String path, Mat image, MatOfInt params);
+    }
+
+    private static class Request {
+        final Path path;
+        final Mat image;
+        final int quality;
+        final long queuedNanos = System.nanoTime();
+
+        Request(Path path, Mat image, int quality) {
+            this.path = path;
+            this.image = image;
+            this.quality = quality;
+        }
+    }
+
+    private static class Singleton {
+        public static final ImageWriter INSTANCE = new ImageWriter();
+    }
+
+    public static ImageWriter getInstance() {
+        return Singleton.INSTANCE;
+    }
+
+    private final BlockingQueue<Request> queue;
+    private final Encoder encoder;
+    private final Object idleLock = new Object();
+    private int inFlight = 0; // Guarded by idleLock
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong totalWriteNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+    private ImageWriter() {
+        this(DEFAULT_QUEUE_CAPACITY, Imgcodecs::imwrite);
+    }
+
+    ImageWriter(int queueCapacity, Encoder encoder) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.encoder = encoder;
+
+        var thread = new Thread(this::run, "ImageWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Queue an image to be written, with the format picked from the file extension. */
+    public boolean write(Path path, Mat image) {
+        return write(path, image, DEFAULT_JPEG_QUALITY);
+    }
+
+    /**
+     * Queue an image to be written. The image is copied, so the caller may reuse or release it as
+     * soon as this returns.
+     *
+     * @param path Where to write. The extension picks the format, as with Imgcodecs.imwrite.
+     * @param quality JPEG quality, 0-100. Ignored for other formats.
+     * @return false if the queue was full and the image was dropped.
+     */
+    public boolean write(Path path, Mat image, int quality) {
+        return enqueue(path, image, quality, 0);
+    }
+
+    /**
+     * Like {@link #write(Path, Mat)}, but if the queue is full, wait up to the timeout for room
+     * rather than dropping the image straight away. For images that are worth stalling the caller
+     * for, such as calibration snapshots.
+     *
+     * @return false if there was still no room after the timeout and the image was dropped.
+     */
+    public boolean writeBlocking(Path path, Mat image, long timeoutMillis) {
+        return enqueue(path, image, DEFAULT_JPEG_QUALITY, timeoutMillis);
+    }
+
+    private boolean enqueue(Path path, Mat image, int quality, long timeoutMillis) {
+        synchronized (idleLock) {
+            // Counted before the copy so waitForIdle can't miss it
+            inFlight++;
+        }
+        var request = new Request(path, image.clone(), quality);
+        boolean queued;
+        try {
+            queued = queue.offer(request, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            request.image.release();
+            finished();
+            long dropped = droppedCount.incrementAndGet();
+            logger.warn("Image write queue full, dropped " + path + " (" + dropped + " dropped total)");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Block until everything queued so far has been written.
+     *
+     * @return false if that didn't happen within the timeout.
+     */
+    public boolean waitForIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (idleLock) {
+            while (inFlight > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                idleLock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        var stats = new HashMap<String, Object>();
+        long written = writtenCount.get();
+        stats.put("queued", queue.size());
+        stats.put("written", written);
+        stats.put("failed", failedCount.get());
+        stats.put("dropped", droppedCount.get());
+        stats.put("avgWriteMs", written > 0 ? toMillis(totalWriteNanos.get() / written) : 0.0);
+        stats.put("maxWriteMs", toMillis(maxWriteNanos.get()));
+        stats.put("avgLatencyMs", written > 0 ? toMillis(totalLatencyNanos.get() / written) : 0.0);
+        return stats;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1e5) / 10.0;
+    }
+
+    private void run() {
+        while (true) {
+            Request request;
+            try {
+                request = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (request == null) continue;
+
+            try {
+                writeNow(request);
+            } catch (Exception e) {
+                // Never die
+                failedCount.incrementAndGet();
+                logger.error("Exception writing image " + request.path, e);
+            } finally {
+                request.image.release();
+                finished();
+            }
+        }
+    }
+
+    private void writeNow(Request request) throws IOException {
+        var fileName = request.path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        var extension = dot < 0 ? "" : fileName.substring(dot).toLowerCase();
+
+        MatOfInt params;
+        if (extension.equals(".jpg") || extension.equals(".jpeg")) {
+            params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, request.quality);
+        } else if (extension.equals(".png")) {
+            params = new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, PNG_COMPRESSION);
+        } else {
+            params = new MatOfInt();
+        }
+
+        // Write next to the destination and rename, so nobody ever sees a half-written image
+        var baseName = fileName.substring(0, fileName.length() - extension.length());
+        var tempPath = request.path.resolveSibling("." + baseName + ".tmp" + extension);
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            ok = encoder.write(tempPath.toString(), request.image, params);
+        } finally {
+            params.release();
+        }
+        if (!ok) {
+            Files.deleteIfExists(tempPath);
+            failedCount.incrementAndGet();
+            logger.error("Could not write image " + request.path);
+            return;
+        }
+        Files.move(
+                tempPath,
+                request.path,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        long end = System.nanoTime();
+        long writeNanos = end - start;
+        writtenCount.incrementAndGet();
+        totalWriteNanos.addAndGet(writeNanos);
+        totalLatencyNanos.addAndGet(end - request.queuedNanos);
+        maxWriteNanos.accumulateAndGet(writeNanos, Math::max);
+        logger.debug("Wrote " + request.path + " in " + toMillis(writeNanos) + "ms");
+    }
+
+    private void finished() {
+        synchronized (idleLock) {
+            inFlight--;
+            if (inFlight == 0) idleLock.notifyAll();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.photonvision.common.util.file;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -30,40 +31,71 @@ import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 public class JacksonUtils {
+    // Building a mapper, and the type introspection each one caches, dominates the cost of reading
+    // a small config file, so keep one per type. Mappers are thread safe once configured.
+    private static final ClassValue<ObjectMapper> serializers =
+            new ClassValue<>() {
+                @Override
+                protected ObjectMapper computeValue(Class<?> type) {
+                    PolymorphicTypeValidator ptv =
+                            BasicPolymorphicTypeValidator.builder().allowIfBaseType(type).build();
+                    return JsonMapper.builder()
+                            .activateDefaultTyping(ptv, ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT)
+                            .build();
+                }
+            };
+
+    private static final ClassValue<ObjectMapper> deserializers =
+            new ClassValue<>() {
+                @Override
+                protected ObjectMapper computeValue(Class<?> type) {
+                    PolymorphicTypeValidator ptv =
+                            BasicPolymorphicTypeValidator.builder().allowIfBaseType(type).build();
+                    return JsonMapper.builder()
+                            .configure(JsonReadFeature.ALLOW_JAVA_COMMENTS, true)
+                            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                            .activateDefaultTyping(ptv, ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT)
+                            .build();
+                }
+            };
+
     public static <T> void serialize(Path path, T object) throws IOException {
         serialize(path, object, false);
     }
 
     public static <T> void serialize(Path path, T object, boolean forceSync) throws IOException {
-        PolymorphicTypeValidator ptv =
-                BasicPolymorphicTypeValidator.builder().allowIfBaseType(object.getClass()).build();
-        ObjectMapper objectMapper =
-                JsonMapper.builder()
-                        .activateDefaultTyping(ptv, ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT)
-                        .build();
-        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(object);
-        saveJsonString(json, path, forceSync);
+        saveJsonString(serializeToString(object), path, forceSync);
+    }
+
+    public static <T> String serializeToString(T object) throws JsonProcessingException {
+        return serializers
+                .get(object.getClass())
+                .writerWithDefaultPrettyPrinter()
+                .writeValueAsString(object);
     }
 
     public static <T> T deserialize(Path path, Class<T> ref) throws IOException {
-        PolymorphicTypeValidator ptv =
-                BasicPolymorphicTypeValidator.builder().allowIfBaseType(ref).build();
-        ObjectMapper objectMapper =
-                JsonMapper.builder()
-                        .configure(JsonReadFeature.ALLOW_JAVA_COMMENTS, true)
-                        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                        .activateDefaultTyping(ptv, ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT)
-                        .build();
         File jsonFile = new File(path.toString());
         if (jsonFile.exists() && jsonFile.length() > 0) {
-            return objectMapper.readValue(jsonFile, ref);
+            return deserializers.get(ref).readValue(jsonFile, ref);
         }
         return null;
     }
 
+    /** @return The deserialized object, or null if the string is null or empty. */
+    public static <T> T deserializeFromString(String json, Class<T> ref) throws IOException {
+        if (json == null || json.isEmpty()) return null;
+        return deserializers.get(ref).readValue(json, ref);
+    }
+
     public static <T> T deserialize(Path path, Class<T> ref, StdDeserializer<T> deserializer)
             throws IOException {
         ObjectMapper objectMapper = new ObjectMapper();
@@ -94,24 +126,42 @@ public class JacksonUtils {
         saveJsonString(json, path, forceSync);
     }
 
-    private static void saveJsonString(String json, Path path, boolean forceSync) throws IOException {
+    /**
+     * Write a string to a file by way of a temporary file in the same folder, which is renamed over
+     * the destination once complete. A crash part way through leaves the old file untouched.
+     *
+     * @param forceSync Whether to wait for the data to reach the disk before renaming.
+     */
+    public static void saveJsonString(String json, Path path, boolean forceSync)
+            throws IOException {
         var file = path.toFile();
         if (file.getParentFile() != null && !file.getParentFile().exists()) {
             file.getParentFile().mkdirs();
         }
-        if (!file.exists()) {
-            if (!file.canWrite()) {
-                file.setWritable(true);
+
+        var tempPath = path.resolveSibling("." + path.getFileName() + ".tmp");
+        try (var fileOutputStream = new FileOutputStream(tempPath.toFile())) {
+            fileOutputStream.write(json.getBytes());
+            fileOutputStream.flush();
+            if (forceSync) {
+                FileDescriptor fileDescriptor = fileOutputStream.getFD();
+                fileDescriptor.sync();
             }
-            file.createNewFile();
         }
-        FileOutputStream fileOutputStream = new FileOutputStream(file);
-        fileOutputStream.write(json.getBytes());
-        fileOutputStream.flush();
-        if (forceSync) {
-            FileDescriptor fileDescriptor = fileOutputStream.getFD();
-            fileDescriptor.sync();
+
+        try {
+            Files.move(
+                    tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (forceSync && path.getParent() != null) {
+            // Make the rename itself durable. Not every platform lets us open a folder for this.
+            try (var dir = FileChannel.open(path.getParent(), StandardOpenOption.READ)) {
+                dir.force(true);
+            } catch (IOException ignored) {
+            }
         }
-        fileOutputStream.close();
     }
 }
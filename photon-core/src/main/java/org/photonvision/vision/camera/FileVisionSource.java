@@ -25,11 +25,12 @@ import org.photonvision.common.configuration.CameraConfiguration;
 import org.photonvision.vision.frame.FrameProvider;
 import org.photonvision.vision.frame.FrameStaticProperties;
 import org.photonvision.vision.frame.provider.FileFrameProvider;
+import org.photonvision.vision.frame.provider.RecordingFrameProvider;
 import org.photonvision.vision.processes.VisionSource;
 import org.photonvision.vision.processes.VisionSourceSettables;
 
 public class FileVisionSource extends VisionSource {
-    private final FileFrameProvider frameProvider;
+    private final FrameProvider frameProvider;
     private final FileSourceSettables settables;
 
     public FileVisionSource(CameraConfiguration cameraConfiguration) {
@@ -56,6 +57,14 @@ public class FileVisionSource extends VisionSource {
                 new FileSourceSettables(cameraConfiguration, frameProvider.get().frameStaticProperties);
     }
 
+    /** Plays back a match recording in place of a camera. */
+    public FileVisionSource(
+            CameraConfiguration cameraConfiguration, RecordingFrameProvider recording) {
+        super(cameraConfiguration);
+        frameProvider = recording;
+        settables = new FileSourceSettables(cameraConfiguration, recording.getFrameStaticProperties());
+    }
+
     @Override
     public FrameProvider getFrameProvider() {
         return frameProvider;
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+/**
+ * Finds where a decoder can start in an H.264 Annex-B byte stream that arrives in arbitrary chunks.
+ * x264 emits an SPS before every IDR frame, so the first byte of an SPS NAL unit is a point a new
+ * or lagging client can join from. Start codes split across chunks are handled.
+ */
+class AnnexBScanner {
+    static final int NAL_TYPE_SPS = 7;
+
+    private int zeroRun = 0;
+    private boolean expectHeader = false;
+
+    /**
+     * Scan the next chunk of the stream.
+     *
+     * @return Index in {@code chunk} of the NAL header byte of the first SPS in it, or -1 if there
+     *     isn't one. Data from that index on, prefixed with a start code, is decodable by itself.
+     */
+    int findJoinPoint(byte[] chunk, int length) {
+        int found = -1;
+        for (int i = 0; i < length; i++) {
+            int b = chunk[i] & 0xff;
+            if (expectHeader) {
+                expectHeader = false;
+                if (found < 0 && (b & 0x1f) == NAL_TYPE_SPS) found = i;
+            }
+
+            if (b == 0) {
+                zeroRun++;
+            } else {
+                if (b == 1 && zeroRun >= 2) expectHeader = true;
+                zeroRun = 0;
+            }
+        }
+        return found;
+    }
+
+    void reset() {
+        zeroRun = 0;
+        expectHeader = false;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.List;
+import org.opencv.core.Mat;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+
+/**
+ * Software H.264 encoding with libx264 through an ffmpeg child process. Raw BGR frames go in on
+ * stdin and an Annex-B stream comes out on stdout. The OpenCV build we ship can only write video to
+ * files, so this is the simplest way to get a live low-latency stream out of it.
+ */
+public class FFmpegH264Encoder implements H264Encoder {
+    private static final Logger logger = new Logger(FFmpegH264Encoder.class, LogGroup.VisionModule);
+    private static final String FFMPEG = "ffmpeg";
+    private static final long STOP_TIMEOUT_MS = 1000;
+
+    private Process process;
+    private OutputStream stdin;
+    private Thread reader;
+    private byte[] frameBytes = new byte[0];
+
+    @Override
+    public synchronized void start(
+            int width,
+            int height,
+            int fps,
+            int bitrateKbps,
+            int keyframeInterval,
+            OutputListener output)
+            throws IOException {
+        stop();
+
+        var command =
+                List.of(
+                        FFMPEG,
+                        "-hide_banner",
+                        "-loglevel",
+                        "error",
+                        "-f",
+                        "rawvideo",
+                        "-pix_fmt",
+                        "bgr24",
+                        "-s",
+                        width + "x" + height,
+                        "-r",
+                        Integer.toString(fps),
+                        "-i",
+                        "-",
+                        "-an",
+                        "-c:v",
+                        "libx264",
+                        "-preset",
+                        "ultrafast",
+                        "-tune",
+                        "zerolatency",
+                        "-profile:v",
+                        "baseline",
+                        "-pix_fmt",
+                        "yuv420p",
+                        "-b:v",
+                        bitrateKbps + "k",
+                        "-maxrate",
+                        bitrateKbps + "k",
+                        "-bufsize",
+                        (bitrateKbps / 2) + "k",
+                        "-g",
+                        Integer.toString(keyframeInterval),
+                        "-x264-params",
+                        "repeat-headers=1",
+                        "-f",
+                        "h264",
+                        "-");
+        process = new ProcessBuilder(command).start();
+        stdin = process.getOutputStream();
+        frameBytes = new byte[width * height * 3];
+
+        var stdout = process.getInputStream();
+        reader = new Thread(() -> pump(stdout, output), "H264Reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        var stderr = process.getErrorStream();
+        var errorReader = new Thread(() -> logErrors(stderr), "H264ErrorReader");
+        errorReader.setDaemon(true);
+        errorReader.start();
+
+        logger.info(
+                "Started H.264 encoder at "
+                        + width
+                        + "x"
+                        + height
+                        + ", "
+                        + bitrateKbps
+                        + " kbps, keyframe every "
+                        + keyframeInterval
+                        + " frames");
+    }
+
+    @Override
+    public synchronized void encode(Mat frame) throws IOException {
+        if (stdin == null) return;
+        // The encode thread hands us continuous BGR mats
+        frame.get(0, 0, frameBytes);
+        stdin.write(frameBytes);
+        stdin.flush();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (process == null) return;
+        try {
+            stdin.close();
+        } catch (IOException ignored) {
+            // ffmpeg already exited
+        }
+        process.destroy();
+
+        // Output from the old process must not reach the listener once a new one starts
+        try {
+            reader.join(STOP_TIMEOUT_MS);
+            if (reader.isAlive()) {
+                process.destroyForcibly();
+                reader.join(STOP_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (reader.isAlive()) logger.warn("H.264 output reader didn't stop");
+
+        process = null;
+        stdin = null;
+        reader = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return process != null && process.isAlive();
+    }
+
+    private static void pump(InputStream stdout, OutputListener output) {
+        var buffer = new byte[64 * 1024];
+        try (stdout) {
+            int read;
+            while ((read = stdout.read(buffer)) >= 0) {
+                if (read > 0) output.onOutput(buffer, read);
+            }
+        } catch (IOException e) {
+            // Process was stopped
+        }
+    }
+
+    private static void logErrors(InputStream stderr) {
+        try (var lines = new BufferedReader(new InputStreamReader(stderr))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                logger.error("ffmpeg: " + line);
+            }
+        } catch (IOException e) {
+            // Process was stopped
+        }
+    }
+}
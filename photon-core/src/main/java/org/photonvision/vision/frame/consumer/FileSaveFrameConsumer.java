@@ -20,17 +20,18 @@ package org.photonvision.vision.frame.consumer;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import java.io.File;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.photonvision.common.configuration.ConfigManager;
 import org.photonvision.common.dataflow.networktables.NetworkTablesManager;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.common.util.TimedTaskManager;
+import org.photonvision.common.util.file.ImageWriter;
 import org.photonvision.vision.frame.Frame;
 
 public class FileSaveFrameConsumer implements Consumer<Frame> {
@@ -64,39 +65,53 @@ public class FileSaveFrameConsumer implements Consumer<Frame> {
     }
 
     public void accept(Frame frame) {
-        if (frame != null && !frame.image.getMat().empty()) {
-            if (lock.tryLock()) {
-                boolean curCommand = entry.getBoolean(false);
-                if (curCommand && !prevCommand) {
-                    Date now = new Date();
-                    String savefile =
-                            FILE_PATH
-                                    + File.separator
-                                    + fnamePrefix
-                                    + "_"
-                                    + df.format(now)
-                                    + "T"
-                                    + tf.format(now)
-                                    + FILE_EXTENSION;
-
-                    Imgcodecs.imwrite(savefile, frame.image.getMat());
+        if (lock.tryLock()) {
+            boolean curCommand = entry.getBoolean(false);
+            boolean hasFrame = frame != null && !frame.image.getMat().empty();
+            if (curCommand && !prevCommand) {
+                if (!hasFrame) {
+                    // Nothing was rendered for us this time; leave the command pending for the next frame
+                    lock.unlock();
+                    return;
+                }
 
-                    // Help the user a bit - set the NT entry back to false after 500ms
-                    TimedTaskManager.getInstance().addOneShotTask(this::resetCommand, CMD_RESET_TIME_MS);
+                Date now = new Date();
+                String savefile =
+                        FILE_PATH
+                                + File.separator
+                                + fnamePrefix
+                                + "_"
+                                + df.format(now)
+                                + "T"
+                                + tf.format(now)
+                                + FILE_EXTENSION;
 
-                    logger.info("Saved new image at " + savefile);
-                } else if (!curCommand) {
-                    // If the entry is currently false, set it again. This will make sure it shows up on the
-                    // dashboard.
-                    entry.forceSetBoolean(false);
+                // Encoding and disk I/O happen on the image writer's thread, not ours
+                if (ImageWriter.getInstance().write(Path.of(savefile), frame.image.getMat())) {
+                    logger.info("Saving new image at " + savefile);
                 }
 
-                prevCommand = curCommand;
-                lock.unlock();
+                // Help the user a bit - set the NT entry back to false after 500ms
+                TimedTaskManager.getInstance().addOneShotTask(this::resetCommand, CMD_RESET_TIME_MS);
+            } else if (!curCommand) {
+                // If the entry is currently false, set it again. This will make sure it shows up on the
+                // dashboard.
+                entry.forceSetBoolean(false);
             }
+
+            prevCommand = curCommand;
+            lock.unlock();
         }
     }
 
+    /**
+     * Whether a save has been requested but not yet done, so callers can skip rendering frames
+     * nobody is going to look at.
+     */
+    public boolean isSaveRequested() {
+        return entry.getBoolean(false) && !prevCommand;
+    }
+
     private void resetCommand() {
         lock.lock();
         this.subTable.getEntry(ntEntryName).setBoolean(false);
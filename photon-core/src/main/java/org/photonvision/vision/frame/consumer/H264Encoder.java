@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import java.io.IOException;
+import org.opencv.core.Mat;
+
+/**
+ * Something that turns BGR frames into an H.264 Annex-B byte stream. Implementations must repeat
+ * the SPS and PPS before every IDR frame so clients can join mid-stream.
+ */
+public interface H264Encoder {
+    interface OutputListener {
+        /** Called with encoded bytes, in order, from whatever thread the encoder produces them on. */
+        void onOutput(byte[] data, int length);
+    }
+
+    /** Start a new stream. Any previous one is stopped first. */
+    void start(
+            int width,
+            int height,
+            int fps,
+            int bitrateKbps,
+            int keyframeInterval,
+            OutputListener output)
+            throws IOException;
+
+    /** Encode a frame. Its size must match the size passed to {@link #start}. */
+    void encode(Mat frame) throws IOException;
+
+    void stop();
+
+    boolean isRunning();
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opencv.core.Mat;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+import org.photonvision.vision.frame.Frame;
+
+/**
+ * A low-bitrate H.264 alternative to {@link MJPGFrameConsumer}, meant for driver camera feeds that
+ * have to fit under the field bandwidth cap. Frames are encoded once, on a dedicated thread and
+ * only while someone is watching, and the Annex-B output is fanned out to every client.
+ *
+ * <p>Clients are attached by the web server, which looks streams up by name with {@link
+ * #getStream}. New clients, and clients that fall too far behind, are fed from the next keyframe.
+ */
+public class H264FrameConsumer {
+    public static final int DEFAULT_BITRATE_KBPS = 1500;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 30;
+
+    private static final int STREAM_FPS = 30;
+    /** A client with more than this many bytes still unsent is skipped to the next keyframe. */
+    private static final long MAX_CLIENT_BACKLOG_BYTES = 512 * 1024;
+    /** How long to wait before trying again after the encoder failed. */
+    private static final long RESTART_BACKOFF_MS = 10_000;
+
+    private static final byte[] START_CODE = {0, 0, 0, 1};
+    private static final Map<String, H264FrameConsumer> activeStreams = new ConcurrentHashMap<>();
+
+    /** Where encoded bytes go; implemented by the web server for each connected viewer. */
+    public interface Client {
+        /** Queue bytes for sending without blocking. The buffer must not be modified. */
+        void send(ByteBuffer data);
+
+        /** Bytes handed to {@link #send} that haven't gone out yet. */
+        long getQueuedBytes();
+
+        /** Disconnect the viewer. Called when the stream is closed. */
+        void close();
+    }
+
+    private static class ClientState {
+        final Client client;
+        // Set by the encode thread on restart, read by the encoder's output thread
+        volatile boolean waitingForKeyframe = true;
+
+        ClientState(Client client) {
+            this.client = client;
+        }
+    }
+
+    private final Logger logger;
+    private final String streamName;
+    private final H264Encoder encoder;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final List<ClientState> clients = new CopyOnWriteArrayList<>();
+
+    // Frames from the stream thread land in pendingMat; the encode thread swaps it for workingMat
+    private final Object pendingLock = new Object();
+    private Mat pendingMat = new Mat();
+    private Mat workingMat = new Mat();
+    private boolean hasPending = false;
+
+    // Encode thread only
+    private final AnnexBScanner scanner = new AnnexBScanner();
+    private int encoderWidth = 0;
+    private int encoderHeight = 0;
+    private long lastFailureMillis = 0;
+
+    private volatile int bitrateKbps;
+    private volatile int keyframeInterval;
+    private volatile boolean settingsChanged = false;
+
+    private final AtomicLong bytesEncoded = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong framesEncoded = new AtomicLong();
+    private final AtomicLong keyframeSkips = new AtomicLong();
+
+    // Counters at the last getStats() call, for rates
+    private long lastStatsNanos = System.nanoTime();
+    private long lastBytesEncoded = 0;
+    private long lastBytesSent = 0;
+    private long lastFramesEncoded = 0;
+
+    public H264FrameConsumer(String streamName, int bitrateKbps, int keyframeInterval) {
+        this(streamName, bitrateKbps, keyframeInterval, new FFmpegH264Encoder());
+    }
+
+    public H264FrameConsumer(
+            String streamName, int bitrateKbps, int keyframeInterval, H264Encoder encoder) {
+        this.logger = new Logger(H264FrameConsumer.class, streamName, LogGroup.VisionModule);
+        this.streamName = streamName;
+        this.encoder = encoder;
+        this.bitrateKbps = bitrateKbps;
+        this.keyframeInterval = keyframeInterval;
+
+        thread = new Thread(this::run, "H264Encoder - " + streamName);
+        thread.setDaemon(true);
+        thread.start();
+
+        activeStreams.put(streamName, this);
+    }
+
+    /** The open stream with the given name, or null. */
+    public static H264FrameConsumer getStream(String streamName) {
+        return activeStreams.get(streamName);
+    }
+
+    /** Statistics for every open H.264 stream, keyed by stream name. */
+    public static Map<String, Map<String, Object>> getAllStats() {
+        var all = new TreeMap<String, Map<String, Object>>();
+        for (var entry : activeStreams.entrySet()) {
+            all.put(entry.getKey(), entry.getValue().getStats());
+        }
+        return all;
+    }
+
+    /**
+     * Accept a new frame. The frame is copied, so the caller keeps ownership of it. Does nothing
+     * while no clients are connected.
+     */
+    public void accept(Frame frame) {
+        if (clients.isEmpty() || frame == null) return;
+
+        var mat = frame.image.getMat();
+        if (mat.empty()) return;
+
+        synchronized (pendingLock) {
+            // x264 needs even dimensions, so drop an odd last row or column
+            int rows = mat.rows() & ~1;
+            int cols = mat.cols() & ~1;
+            if (rows != mat.rows() || cols != mat.cols()) {
+                var evenMat = mat.submat(0, rows, 0, cols);
+                evenMat.copyTo(pendingMat);
+                evenMat.release();
+            } else {
+                mat.copyTo(pendingMat);
+            }
+            hasPending = true;
+            pendingLock.notifyAll();
+        }
+    }
+
+    public boolean anyClientConnections() {
+        return !clients.isEmpty();
+    }
+
+    public void addClient(Client client) {
+        clients.add(new ClientState(client));
+        logger.info(streamName + " - H.264 client connected, " + clients.size() + " total");
+    }
+
+    public void removeClient(Client client) {
+        clients.removeIf(c -> c.client == client);
+        logger.info(streamName + " - H.264 client disconnected, " + clients.size() + " left");
+    }
+
+    /** Change the target bitrate and keyframe interval. Takes effect from the next frame. */
+    public void setEncoderSettings(int bitrateKbps, int keyframeInterval) {
+        this.bitrateKbps = bitrateKbps;
+        this.keyframeInterval = keyframeInterval;
+        settingsChanged = true;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        long encoded = bytesEncoded.get();
+        long sent = bytesSent.get();
+        long frames = framesEncoded.get();
+        double seconds = Math.max((now - lastStatsNanos) / 1e9, 1e-3);
+
+        var stats = new HashMap<String, Object>();
+        stats.put("clients", clients.size());
+        stats.put("targetKbps", bitrateKbps);
+        stats.put("encodedKbps", Math.round((encoded - lastBytesEncoded) * 8 / 1000.0 / seconds));
+        stats.put("bytesPerSec", Math.round((sent - lastBytesSent) / seconds));
+        stats.put("encodeFps", Math.round((frames - lastFramesEncoded) / seconds * 10) / 10.0);
+        stats.put("keyframeSkips", keyframeSkips.get());
+
+        lastStatsNanos = now;
+        lastBytesEncoded = encoded;
+        lastBytesSent = sent;
+        lastFramesEncoded = frames;
+        return stats;
+    }
+
+    public void close() {
+        running = false;
+        activeStreams.remove(streamName, this);
+        synchronized (pendingLock) {
+            pendingLock.notifyAll();
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        encoder.stop();
+        // Viewers would otherwise sit on a stream that never sends again
+        clients.forEach(c -> c.client.close());
+        clients.clear();
+
+        synchronized (pendingLock) {
+            pendingMat.release();
+            workingMat.release();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            synchronized (pendingLock) {
+                while (running && !hasPending) {
+                    try {
+                        pendingLock.wait(500);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    // Nobody is watching any more; don't keep an idle encoder around
+                    if (clients.isEmpty() && encoder.isRunning()) encoder.stop();
+                }
+                if (!running) return;
+
+                var tmp = workingMat;
+                workingMat = pendingMat;
+                pendingMat = tmp;
+                hasPending = false;
+            }
+
+            try {
+                encode(workingMat);
+            } catch (Exception e) {
+                // Never die. Try a fresh encoder in a little while instead.
+                logger.error("Exception while encoding H.264 stream!", e);
+                encoder.stop();
+                lastFailureMillis = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void encode(Mat frame) throws Exception {
+        if (clients.isEmpty()) {
+            encoder.stop();
+            return;
+        }
+
+        if (!encoder.isRunning()
+                && System.currentTimeMillis() - lastFailureMillis < RESTART_BACKOFF_MS) {
+            return;
+        }
+
+        if (!encoder.isRunning()
+                || settingsChanged
+                || frame.cols() != encoderWidth
+                || frame.rows() != encoderHeight) {
+            settingsChanged = false;
+            encoderWidth = frame.cols();
+            encoderHeight = frame.rows();
+            scanner.reset();
+            // The new stream starts with fresh parameter sets, so everyone has to resync
+            clients.forEach(c -> c.waitingForKeyframe = true);
+            encoder.start(
+                    encoderWidth, encoderHeight, STREAM_FPS, bitrateKbps, keyframeInterval, this::onOutput);
+        }
+
+        encoder.encode(frame);
+        framesEncoded.incrementAndGet();
+    }
+
+    /** Fan a chunk of encoder output out to clients. Called on the encoder's output thread. */
+    private void onOutput(byte[] data, int length) {
+        bytesEncoded.addAndGet(length);
+        int joinPoint = scanner.findJoinPoint(data, length);
+
+        // Copied once; every client gets a read-only view of the same bytes
+        var chunk = Arrays.copyOf(data, length);
+        ByteBuffer joinBuffer = null;
+        if (joinPoint >= 0) {
+            var joined = new byte[START_CODE.length + length - joinPoint];
+            System.arraycopy(START_CODE, 0, joined, 0, START_CODE.length);
+            System.arraycopy(data, joinPoint, joined, START_CODE.length, length - joinPoint);
+            joinBuffer = ByteBuffer.wrap(joined);
+        }
+
+        for (var state : clients) {
+            if (!state.waitingForKeyframe
+                    && state.client.getQueuedBytes() > MAX_CLIENT_BACKLOG_BYTES) {
+                // Too far behind to catch up; drop everything until the next keyframe
+                state.waitingForKeyframe = true;
+                keyframeSkips.incrementAndGet();
+            }
+
+            ByteBuffer toSend;
+            if (!state.waitingForKeyframe) {
+                toSend = ByteBuffer.wrap(chunk).asReadOnlyBuffer();
+            } else if (joinBuffer != null
+                    && state.client.getQueuedBytes() <= MAX_CLIENT_BACKLOG_BYTES) {
+                state.waitingForKeyframe = false;
+                toSend = joinBuffer.asReadOnlyBuffer();
+            } else {
+                continue;
+            }
+            bytesSent.addAndGet(toSend.remaining());
+            state.client.send(toSend);
+        }
+    }
+}
@@ -17,11 +17,22 @@
 
 package org.photonvision.vision.frame.consumer;
 
-import edu.wpi.first.cscore.*;
+import edu.wpi.first.cscore.CameraServerJNI;
+import edu.wpi.first.cscore.VideoEvent;
+import edu.wpi.first.cscore.VideoListener;
+import edu.wpi.first.cscore.VideoMode;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
@@ -109,8 +120,10 @@ public class MJPGFrameConsumer {
                 EMPTY_MAT, "Disabled", new Point(14, 45), 0, 0.6, ColorHelper.colorToScalar(Color.RED), 1);
     }
 
-    private CvSource cvSource;
-    private MjpegServer mjpegServer;
+    private static final Map<String, MJPGFrameConsumer> activeStreams = new ConcurrentHashMap<>();
+
+    private MJPGStreamEncoder encoder;
+    private MJPGStreamServer server;
 
     @SuppressWarnings("FieldCanBeLocal")
     private VideoListener listener;
@@ -120,6 +133,10 @@ public class MJPGFrameConsumer {
 
     private String privSourceName;
 
+    // --------the camera's video modes, published to CameraPublisher
+    private volatile Supplier<VideoMode> currentModeSupplier = () -> null;
+    private volatile Supplier<Collection<VideoMode>> modesSupplier = List::of;
+
     private Logger logger = new Logger(MJPGFrameConsumer.class, LogGroup.VisionModule);
 
     // --------are any streaming clients connected
@@ -128,19 +145,27 @@ public class MJPGFrameConsumer {
     // --------  1 = clients connected
     private int privClientsConnected = -1;
 
+    // --------counters at the last getStats() call, for rates
+    private long lastStatsNanos = System.nanoTime();
+    private long lastEncodeCount = 0;
+    private long lastEncodeNanos = 0;
+    private long lastBytesSent = 0;
+
     // ------------------------------------------------------------------------------------
     //  constructor
     //
+    //  Frames are JPEG encoded on a dedicated thread, once per distinct resolution/quality
+    //  that connected clients asked for, and served by our own MJPEG server on the given port.
+    //
     public MJPGFrameConsumer(String sourceName, int width, int height, int port) {
         // --------save source name for logging
         privSourceName = sourceName;
 
-        this.cvSource = new CvSource(sourceName, VideoMode.PixelFormat.kMJPEG, width, height, 30);
         this.table =
                 NetworkTableInstance.getDefault().getTable("/CameraPublisher").getSubTable(sourceName);
 
-        this.mjpegServer = new MjpegServer("serve_" + cvSource.getName(), port);
-        mjpegServer.setSource(cvSource);
+        this.encoder = new MJPGStreamEncoder(sourceName);
+        this.server = new MJPGStreamServer(sourceName, port, encoder);
 
         listener =
                 new VideoListener(
@@ -149,8 +174,7 @@ public class MJPGFrameConsumer {
                                 table.getEntry("source").setString("cv:");
                                 table.getEntry("streams");
                                 table.getEntry("connected").setBoolean(true);
-                                table.getEntry("mode").setString(videoModeToString(cvSource.getVideoMode()));
-                                table.getEntry("modes").setStringArray(getSourceModeValues(cvSource.getHandle()));
+                                publishVideoModes();
                                 updateStreamValues();
                                 logger.info(privSourceName + " - Received event - kNetworkInterfacesChanged");
                             }
@@ -158,6 +182,7 @@ public class MJPGFrameConsumer {
                         0x4fff,
                         true);
 
+        activeStreams.put(sourceName, this);
         logger.info(privSourceName + " - server created.");
     }
 
@@ -167,30 +192,48 @@ public class MJPGFrameConsumer {
     //
     private synchronized void updateStreamValues() {
         // Get port
-        int port = mjpegServer.getPort();
+        int port = server.getPort();
 
-        // Generate values
+        // Generate values for hostname and all interface addresses
         var addresses = CameraServerJNI.getNetworkInterfaces();
         ArrayList<String> values = new ArrayList<>(addresses.length + 1);
-        String listenAddress = CameraServerJNI.getMjpegServerListenAddress(mjpegServer.getHandle());
-        if (!listenAddress.isEmpty()) {
-            // If a listen address is specified, only use that
-            values.add(makeStreamValue(listenAddress, port));
-        } else {
-            // Otherwise generate for hostname and all interface addresses
-            values.add(makeStreamValue(CameraServerJNI.getHostname() + ".local", port));
-            for (String addr : addresses) {
-                if ("127.0.0.1".equals(addr)) {
-                    continue; // ignore localhost
-                }
-                values.add(makeStreamValue(addr, port));
+        values.add(makeStreamValue(CameraServerJNI.getHostname() + ".local", port));
+        for (String addr : addresses) {
+            if ("127.0.0.1".equals(addr)) {
+                continue; // ignore localhost
             }
+            values.add(makeStreamValue(addr, port));
         }
 
         String[] streamAddresses = values.toArray(new String[0]);
         table.getEntry("streams").setStringArray(streamAddresses);
     }
 
+    // ------------------------------------------------------------------------------------
+    //
+    //  Set where the camera's video modes come from, and publish them. We have no cscore
+    //  source of our own, so dashboards are shown the camera's modes instead.
+    //
+    public void setVideoModes(
+            Supplier<VideoMode> currentModeSupplier, Supplier<Collection<VideoMode>> modesSupplier) {
+        this.currentModeSupplier = currentModeSupplier;
+        this.modesSupplier = modesSupplier;
+        publishVideoModes();
+    }
+
+    private void publishVideoModes() {
+        var currentMode = currentModeSupplier.get();
+        if (currentMode != null) {
+            table.getEntry("mode").setString(videoModeToString(currentMode));
+        }
+        table
+                .getEntry("modes")
+                .setStringArray(
+                        modesSupplier.get().stream()
+                                .map(MJPGFrameConsumer::videoModeToString)
+                                .toArray(String[]::new));
+    }
+
     // ------------------------------------------------------------------------------------
     //
     //  alternate constructor, with hardcoded resolution.
@@ -201,11 +244,12 @@ public class MJPGFrameConsumer {
 
     // ------------------------------------------------------------------------------------
     //
-    //  accept a new video frame and update the stream source.
+    //  accept a new video frame and update the stream source. The frame is copied, so the
+    //  caller keeps ownership of it.
     //
     public void accept(Frame frame) {
         if (frame != null && !frame.image.getMat().empty()) {
-            cvSource.putFrame(frame.image.getMat());
+            encoder.putFrame(frame.image.getMat(), frame.timestampNanos);
 
             // Make sure our disabled framerate limiting doesn't get confused
             isDisabled = false;
@@ -221,44 +265,80 @@ public class MJPGFrameConsumer {
     //  when there are no active stream clients (dashboards).
     //
     public void disabledTick() {
-        if (!isDisabled) {
-            cvSource.setVideoMode(VideoMode.PixelFormat.kMJPEG, EMPTY_MAT.width(), EMPTY_MAT.height(), 0);
-            isDisabled = true;
-        }
+        isDisabled = true;
 
         if (System.currentTimeMillis() - lastEmptyTime > 1000.0 / EMPTY_FRAMERATE) {
-            cvSource.putFrame(EMPTY_MAT);
+            encoder.putFrame(EMPTY_MAT, 0);
             lastEmptyTime = System.currentTimeMillis();
         }
     }
 
+    // ------------------------------------------------------------------------------------
+    //
+    //  Whether any client needs target overlays drawn into its frames. Clients that asked
+    //  for overlay=client draw their own from the web socket overlay messages instead.
+    //
+    public boolean anyClientNeedsDrawnOverlay() {
+        return encoder.anyClientNeedsDrawnOverlay();
+    }
+
+    public boolean anyClientDrawsOwnOverlay() {
+        return encoder.anyClientDrawsOwnOverlay();
+    }
+
     // ------------------------------------------------------------------------------------
     //
     //  Return the TCP port number for this object.
     //
     public int getCurrentStreamPort() {
-        return mjpegServer.getPort();
+        return server.getPort();
     }
 
     // ------------------------------------------------------------------------------------
     //
-    //  Create the stream URL string.
+    //  Encoder and client statistics since the previous call, for the metrics publisher.
     //
-    private static String makeStreamValue(String address, int port) {
-        return "mjpg:http://" + address + ":" + port + "/?action=stream";
+    public synchronized Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        long encodes = encoder.getEncodeCount();
+        long encodeNanos = encoder.getEncodeNanos();
+        long bytes = encoder.getBytesSent();
+        double seconds = Math.max((now - lastStatsNanos) / 1e9, 1e-3);
+
+        var stats = new HashMap<String, Object>();
+        stats.put("clients", encoder.getClientCount());
+        stats.put(
+                "profiles",
+                encoder.getClients().stream()
+                        .map(c -> c.profile.toString())
+                        .distinct()
+                        .collect(Collectors.toList()));
+        stats.put("encodeFps", Math.round((encodes - lastEncodeCount) / seconds * 10) / 10.0);
+        stats.put(
+                "encodeMs",
+                encodes > lastEncodeCount
+                        ? Math.round((encodeNanos - lastEncodeNanos) / 1e5 / (encodes - lastEncodeCount))
+                                / 10.0
+                        : 0.0);
+        stats.put("bytesPerSec", Math.round((bytes - lastBytesSent) / seconds));
+
+        lastStatsNanos = now;
+        lastEncodeCount = encodes;
+        lastEncodeNanos = encodeNanos;
+        lastBytesSent = bytes;
+        return stats;
     }
 
     // ------------------------------------------------------------------------------------
     //
-    //  Get video source modes
+    //  Statistics for every open stream, keyed by stream name.
     //
-    private static String[] getSourceModeValues(int sourceHandle) {
-        VideoMode[] modes = CameraServerJNI.enumerateSourceVideoModes(sourceHandle);
-        String[] modeStrings = new String[modes.length];
-        for (int i = 0; i < modes.length; i++) {
-            modeStrings[i] = videoModeToString(modes[i]);
+    public static Map<String, Map<String, Object>> getAllStats() {
+        var all = new TreeMap<String, Map<String, Object>>();
+        for (var entry : activeStreams.entrySet()) {
+            all.put(entry.getKey(), entry.getValue().getStats());
         }
-        return modeStrings;
+        return all;
     }
 
     // ------------------------------------------------------------------------------------
@@ -297,17 +377,26 @@ public class MJPGFrameConsumer {
         }
     }
 
+    // ------------------------------------------------------------------------------------
+    //
+    //  Create the stream URL string.
+    //
+    private static String makeStreamValue(String address, int port) {
+        return "mjpg:http://" + address + ":" + port + "/?action=stream";
+    }
+
     // ------------------------------------------------------------------------------------
     //
     //  shutdown this object
     //
     public void close() {
         table.getEntry("connected").setBoolean(false);
-        mjpegServer.close();
-        cvSource.close();
+        activeStreams.remove(privSourceName, this);
+        server.close();
+        encoder.close();
         listener.close();
-        mjpegServer = null;
-        cvSource = null;
+        server = null;
+        encoder = null;
         listener = null;
         logger = null;
     }
@@ -318,8 +407,8 @@ public class MJPGFrameConsumer {
     //
     //
     public boolean anyClientConnections() {
-        // --------query the cscore stream server to see if there are connected clients
-        boolean locBoolClientsConnected = this.mjpegServer.getSource().isEnabled();
+        // --------ask our stream server if there are connected clients
+        boolean locBoolClientsConnected = encoder.getClientCount() > 0;
 
         // --------if the value changed, log it.
         int locIntClientsConnected = (locBoolClientsConnected ? 1 : 0);
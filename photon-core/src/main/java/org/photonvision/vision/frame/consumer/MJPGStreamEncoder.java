@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+
+/**
+ * Turns the frames handed to a {@link MJPGFrameConsumer} into JPEGs on a dedicated thread, so
+ * compression never runs on the vision or stream threads.
+ *
+ * <p>Each incoming frame is encoded once per distinct {@link StreamProfile} among the connected
+ * clients, and only for profiles that have a client wanting a new frame yet. The most recent JPEG
+ * for each profile is cached so every client of that profile is sent the same bytes, and a client
+ * that falls behind simply picks up whatever is newest when it is ready again.
+ */
+class MJPGStreamEncoder {
+    /** How early a frame may be encoded relative to the fastest client's interval. */
+    private static final long FPS_SLACK_NANOS = 2_000_000;
+
+    /**
+     * A compressed frame, already wrapped as a multipart/x-mixed-replace part. It is built once and
+     * written read-only to every client of its profile.
+     */
+    static class EncodedFrame {
+        final byte[] part;
+        final long sequence;
+
+        EncodedFrame(byte[] part, long sequence) {
+            this.part = part;
+            this.sequence = sequence;
+        }
+    }
+
+    private final Logger logger;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Frames from the stream thread land in pendingMat; the encoder swaps it for workingMat
+    private final Object pendingLock = new Object();
+    private Mat pendingMat = new Mat();
+    private Mat workingMat = new Mat();
+    private long pendingTimestampNanos;
+    private long workingTimestampNanos;
+    private boolean hasPending = false;
+
+    // Encoder thread only
+    private final Mat resizedMat = new Mat();
+    private final MatOfByte encodeBuffer = new MatOfByte();
+    private final Map<Integer, MatOfInt> encodeParams = new HashMap<>();
+    private final Map<StreamProfile, Long> lastEncodeNanos = new HashMap<>();
+    private long sequence = 0;
+
+    private final Object encodedLock = new Object();
+    private final Map<StreamProfile, EncodedFrame> latestFrames = new HashMap<>();
+
+    private final List<StreamClient> clients = new CopyOnWriteArrayList<>();
+    private volatile Runnable frameListener = () -> {};
+
+    private final AtomicLong encodeCount = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private volatile int sourceWidth = 0;
+    private volatile int sourceHeight = 0;
+
+    MJPGStreamEncoder(String streamName) {
+        logger = new Logger(MJPGStreamEncoder.class, streamName, LogGroup.VisionModule);
+        thread = new Thread(this::run, "MJPGEncoder - " + streamName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hand the encoder a new frame. The mat is copied, so the caller may release it as soon as this
+     * returns. Frames arriving faster than they can be encoded replace each other.
+     */
+    void putFrame(Mat mat, long timestampNanos) {
+        if (clients.isEmpty()) return;
+
+        synchronized (pendingLock) {
+            mat.copyTo(pendingMat);
+            pendingTimestampNanos = timestampNanos;
+            hasPending = true;
+            pendingLock.notifyAll();
+        }
+        sourceWidth = mat.cols();
+        sourceHeight = mat.rows();
+    }
+
+    void addClient(StreamClient client) {
+        clients.add(client);
+    }
+
+    void removeClient(StreamClient client) {
+        clients.remove(client);
+        synchronized (encodedLock) {
+            // Drop cached frames nobody can ask for any more
+            latestFrames.keySet().removeIf(p -> clients.stream().noneMatch(c -> c.profile.equals(p)));
+        }
+    }
+
+    /** Whether any client needs overlays drawn into its frames rather than drawing its own. */
+    boolean anyClientNeedsDrawnOverlay() {
+        return clients.stream().anyMatch(c -> !c.drawsOwnOverlay);
+    }
+
+    /** Whether any client draws its own overlays. */
+    boolean anyClientDrawsOwnOverlay() {
+        return clients.stream().anyMatch(c -> c.drawsOwnOverlay);
+    }
+
+    int getClientCount() {
+        return clients.size();
+    }
+
+    List<StreamClient> getClients() {
+        return clients;
+    }
+
+    /** The most recent frame encoded for a profile, or null if there isn't one yet. */
+    EncodedFrame getLatestFrame(StreamProfile profile) {
+        synchronized (encodedLock) {
+            return latestFrames.get(profile);
+        }
+    }
+
+    /** Run (on the encoder thread) every time new frames have been encoded. */
+    void setFrameListener(Runnable listener) {
+        frameListener = listener;
+    }
+
+    void addBytesSent(long bytes) {
+        bytesSent.addAndGet(bytes);
+    }
+
+    long getEncodeCount() {
+        return encodeCount.get();
+    }
+
+    long getEncodeNanos() {
+        return encodeNanos.get();
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    void close() {
+        running = false;
+        synchronized (pendingLock) {
+            pendingLock.notifyAll();
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        clients.clear();
+
+        synchronized (pendingLock) {
+            pendingMat.release();
+            workingMat.release();
+        }
+        resizedMat.release();
+        encodeBuffer.release();
+        encodeParams.values().forEach(Mat::release);
+        encodeParams.clear();
+    }
+
+    private void run() {
+        while (running) {
+            synchronized (pendingLock) {
+                while (running && !hasPending) {
+                    try {
+                        pendingLock.wait(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) return;
+
+                var tmp = workingMat;
+                workingMat = pendingMat;
+                pendingMat = tmp;
+                workingTimestampNanos = pendingTimestampNanos;
+                hasPending = false;
+            }
+
+            try {
+                encodeForClients(workingMat, workingTimestampNanos);
+            } catch (Exception e) {
+                // Never die
+                logger.error("Exception while encoding stream frame!", e);
+            }
+        }
+    }
+
+    private void encodeForClients(Mat source, long timestampNanos) {
+        if (source.empty()) return;
+
+        // Work out which profiles have at least one client due for a new frame. The fastest
+        // client of a profile sets its encode rate; slower ones skip frames when sending. Requests
+        // that come out the same for this source share one encode.
+        long now = System.nanoTime();
+        var dueProfiles = new HashSet<StreamProfile>();
+        var requestedProfiles = new HashMap<StreamProfile, Set<StreamProfile>>();
+        for (var client : clients) {
+            var profile = client.profile.forSource(source.cols(), source.rows());
+            requestedProfiles.computeIfAbsent(profile, p -> new HashSet<>()).add(client.profile);
+            var last = lastEncodeNanos.get(profile);
+            if (last == null || now - last + FPS_SLACK_NANOS >= client.minIntervalNanos) {
+                dueProfiles.add(profile);
+            }
+        }
+        lastEncodeNanos.keySet().retainAll(requestedProfiles.keySet());
+
+        for (var profile : dueProfiles) {
+            long start = System.nanoTime();
+
+            var size = profile.getOutputSize(source.cols(), source.rows());
+            Mat toEncode = source;
+            if (size.width != source.cols() || size.height != source.rows()) {
+                Imgproc.resize(source, resizedMat, size, 0, 0, Imgproc.INTER_AREA);
+                toEncode = resizedMat;
+            }
+
+            var params =
+                    encodeParams.computeIfAbsent(
+                            profile.quality, q -> new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, q));
+            Imgcodecs.imencode(".jpg", toEncode, encodeBuffer, params);
+            var part = MJPGStreamServer.toMultipartPart(encodeBuffer.toArray(), timestampNanos);
+            var frame = new EncodedFrame(part, ++sequence);
+
+            encodeNanos.addAndGet(System.nanoTime() - start);
+            encodeCount.incrementAndGet();
+            lastEncodeNanos.put(profile, now);
+
+            synchronized (encodedLock) {
+                for (var requested : requestedProfiles.get(profile)) {
+                    latestFrames.put(requested, frame);
+                }
+            }
+        }
+
+        if (!dueProfiles.isEmpty()) frameListener.run();
+    }
+}
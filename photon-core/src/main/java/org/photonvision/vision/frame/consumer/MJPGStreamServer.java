@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+
+/**
+ * A minimal MJPEG-over-HTTP server that serves JPEGs from a {@link MJPGStreamEncoder}. Stream URLs
+ * are the same as cscore's ({@code /stream.mjpg}, {@code /?action=stream}), and clients may add
+ * {@code resolution}, {@code compression} and {@code fps} query parameters.
+ *
+ * <p>All clients of a stream are served by one thread using non-blocking writes. Every client reads
+ * from the same cached part buffer, and a client whose socket can't keep up finishes the frame it
+ * is on and then jumps to the newest one, so slow viewers drop frames instead of holding up the
+ * encoder or each other.
+ */
+class MJPGStreamServer {
+    private static final String BOUNDARY = "photonvisionframe";
+    private static final int MAX_REQUEST_BYTES = 8192;
+    private static final long REQUEST_TIMEOUT_NANOS = 5_000_000_000L;
+    private static final long STALL_TIMEOUT_NANOS = 10_000_000_000L;
+    private static final long IDLE_SELECT_MS = 500;
+
+    /** Per-socket state, only touched by the selector thread. */
+    private static class Connection {
+        final SocketChannel channel;
+        final long connectedNanos = System.nanoTime();
+        ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        StreamClient client;
+
+        ByteBuffer pending;
+        boolean closeAfterWrite = false;
+        long lastSequence = 0;
+        long lastSentNanos = 0;
+        long lastProgressNanos = System.nanoTime();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Logger logger;
+    private final int port;
+    private final MJPGStreamEncoder encoder;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running = true;
+
+    MJPGStreamServer(String streamName, int port, MJPGStreamEncoder encoder) {
+        this.logger = new Logger(MJPGStreamServer.class, streamName, LogGroup.VisionModule);
+        this.port = port;
+        this.encoder = encoder;
+
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            logger.error("Could not start stream server on port " + port, e);
+            running = false;
+            return;
+        }
+
+        encoder.setFrameListener(selector::wakeup);
+
+        thread = new Thread(this::run, "MJPGServer - " + streamName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * Stop serving and wait for the server thread to close the listening socket, so a new server
+     * can bind the same port as soon as this returns.
+     */
+    void close() {
+        running = false;
+        encoder.setFrameListener(() -> {});
+        if (thread == null) return;
+
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) logger.warn("Stream server on port " + port + " didn't stop in time");
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(IDLE_SELECT_MS);
+                if (!running) break;
+
+                for (var key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            var connection = (Connection) key.attachment();
+                            if (key.isReadable()) read(key, connection);
+                            if (key.isValid() && key.isWritable()) pump(key, connection);
+                        }
+                    } catch (IOException e) {
+                        // Client went away
+                        closeConnection(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                // New frames don't come with a readiness event, so look at everyone each time round
+                long now = System.nanoTime();
+                for (var key : selector.keys()) {
+                    if (!key.isValid() || !(key.attachment() instanceof Connection)) continue;
+                    var connection = (Connection) key.attachment();
+                    try {
+                        if (isTimedOut(connection, now)) {
+                            closeConnection(key);
+                        } else if (connection.client != null && connection.pending == null) {
+                            pump(key, connection);
+                        }
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) logger.error("Stream server died!", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        }
+    }
+
+    private void read(SelectionKey key, Connection connection) throws IOException {
+        if (connection.request == null) {
+            // Already streaming; anything the client sends now is ignored, we only care about EOF
+            var discard = ByteBuffer.allocate(256);
+            if (connection.channel.read(discard) < 0) closeConnection(key);
+            return;
+        }
+
+        if (connection.channel.read(connection.request) < 0) {
+            closeConnection(key);
+            return;
+        }
+
+        var request = connection.request;
+        var text = new String(request.array(), 0, request.position(), StandardCharsets.ISO_8859_1);
+        int headerEnd = text.indexOf("\r\n\r\n");
+        if (headerEnd < 0) {
+            if (!request.hasRemaining()) {
+                respondWithError(key, connection, "431 Request Header Fields Too Large");
+            }
+            return;
+        }
+        connection.request = null;
+
+        var parts = text.substring(0, text.indexOf("\r\n")).split(" ");
+        if (parts.length < 2 || !"GET".equals(parts[0])) {
+            respondWithError(key, connection, "405 Method Not Allowed");
+            return;
+        }
+
+        var target = parts[1];
+        int queryStart = target.indexOf('?');
+        var path = queryStart < 0 ? target : target.substring(0, queryStart);
+        var params = parseQuery(queryStart < 0 ? "" : target.substring(queryStart + 1));
+
+        if (!isStreamRequest(path, params)) {
+            respondWithError(key, connection, "404 Not Found");
+            return;
+        }
+
+        double maxFps = 0;
+        try {
+            maxFps = Double.parseDouble(params.getOrDefault("fps", "0"));
+        } catch (NumberFormatException ignored) {
+            // No limit
+        }
+        connection.client =
+                new StreamClient(
+                        connection.channel.socket().getInetAddress().getHostAddress(),
+                        StreamProfile.fromQuery(params),
+                        maxFps,
+                        "client".equals(params.get("overlay")));
+        connection.pending = ByteBuffer.wrap(streamHeader().getBytes(StandardCharsets.ISO_8859_1));
+
+        encoder.addClient(connection.client);
+        logger.debug("Client connected: " + connection.client);
+        pump(key, connection);
+    }
+
+    /**
+     * Write as much as the socket will take without blocking: first whatever is left of the current
+     * part, then the newest frame for this client's profile if it has one it hasn't seen and its FPS
+     * limit allows it.
+     */
+    private void pump(SelectionKey key, Connection connection) throws IOException {
+        while (true) {
+            if (connection.pending == null) {
+                if (connection.closeAfterWrite) {
+                    closeConnection(key);
+                    return;
+                }
+                if (connection.client == null) break;
+
+                var frame = encoder.getLatestFrame(connection.client.profile);
+                if (frame == null || frame.sequence <= connection.lastSequence) break;
+
+                long now = System.nanoTime();
+                if (now - connection.lastSentNanos < connection.client.minIntervalNanos) break;
+
+                connection.pending = ByteBuffer.wrap(frame.part).asReadOnlyBuffer();
+                connection.lastSequence = frame.sequence;
+                connection.lastSentNanos = now;
+            }
+
+            int written = connection.channel.write(connection.pending);
+            if (written > 0) {
+                encoder.addBytesSent(written);
+                connection.lastProgressNanos = System.nanoTime();
+            }
+            if (connection.pending.hasRemaining()) {
+                // Socket buffer is full; wait until the client drains it
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.pending = null;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void respondWithError(SelectionKey key, Connection connection, String status)
+            throws IOException {
+        connection.request = null;
+        connection.closeAfterWrite = true;
+        connection.pending =
+                ByteBuffer.wrap(
+                        ("HTTP/1.0 " + status + "\r\nConnection: close\r\nContent-Length: 0\r\n\r\n")
+                                .getBytes(StandardCharsets.ISO_8859_1));
+        pump(key, connection);
+    }
+
+    private static boolean isTimedOut(Connection connection, long now) {
+        if (connection.request != null) {
+            return now - connection.connectedNanos > REQUEST_TIMEOUT_NANOS;
+        }
+        return connection.pending != null && now - connection.lastProgressNanos > STALL_TIMEOUT_NANOS;
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        var connection = (Connection) key.attachment();
+        if (connection.client != null) {
+            encoder.removeClient(connection.client);
+            logger.debug("Client disconnected: " + connection.client);
+            connection.client = null;
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    private void shutdown() {
+        if (selector.isOpen()) {
+            for (var key : selector.keys()) {
+                if (key.attachment() instanceof Connection) closeConnection(key);
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Exception closing stream server", e);
+        }
+    }
+
+    private static boolean isStreamRequest(String path, Map<String, String> params) {
+        if ("/stream.mjpg".equals(path)) return true;
+        if ("/".equals(path)) {
+            var action = params.get("action");
+            return action == null || "stream".equals(action);
+        }
+        return false;
+    }
+
+    static Map<String, String> parseQuery(String query) {
+        var params = new HashMap<String, String>();
+        for (var pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            var key = eq < 0 ? pair : pair.substring(0, eq);
+            var value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(
+                    URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Wrap a JPEG as one part of a multipart/x-mixed-replace response. A positive timestamp is sent
+     * as an X-Timestamp header in seconds.microseconds, like mjpg-streamer does, so clients can
+     * match frames to other data captured at the same time.
+     */
+    static byte[] toMultipartPart(byte[] jpeg, long timestampNanos) {
+        var timestamp =
+                timestampNanos > 0
+                        ? String.format(
+                                "X-Timestamp: %d.%06d\r\n",
+                                timestampNanos / 1_000_000_000L, timestampNanos / 1000 % 1_000_000)
+                        : "";
+        var header =
+                ("--"
+                                + BOUNDARY
+                                + "\r\nContent-Type: image/jpeg\r\nContent-Length: "
+                                + jpeg.length
+                                + "\r\n"
+                                + timestamp
+                                + "\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1);
+        var part = new byte[header.length + jpeg.length + 2];
+        System.arraycopy(header, 0, part, 0, header.length);
+        System.arraycopy(jpeg, 0, part, header.length, jpeg.length);
+        part[part.length - 2] = '\r';
+        part[part.length - 1] = '\n';
+        return part;
+    }
+
+    private static String streamHeader() {
+        return "HTTP/1.0 200 OK\r\n"
+                + "Connection: close\r\n"
+                + "Server: PhotonVision\r\n"
+                + "Cache-Control: no-store, no-cache, must-revalidate, pre-check=0, post-check=0, "
+                + "max-age=0\r\n"
+                + "Pragma: no-cache\r\n"
+                + "Access-Control-Allow-Origin: *\r\n"
+                + "Content-Type: multipart/x-mixed-replace;boundary="
+                + BOUNDARY
+                + "\r\n\r\n";
+    }
+}
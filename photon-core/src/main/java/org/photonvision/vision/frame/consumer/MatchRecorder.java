@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+import org.photonvision.vision.frame.Frame;
+import org.photonvision.vision.pipeline.result.CVPipelineResult;
+
+/**
+ * Continuously records a camera's frames and pipeline results to a size-capped ring of segment
+ * files, for replaying a match afterwards. See {@link RecordingFormat} for the layout.
+ *
+ * <p>The vision thread only copies the frame into a small queue. JPEG encoding and disk I/O happen
+ * on the recorder's own thread, and records are gathered into large buffers before being appended,
+ * so the SD card sees a few big sequential writes instead of many small ones. When the total size
+ * goes over the cap, the oldest segments are deleted.
+ */
+public class MatchRecorder {
+    public static final int DEFAULT_MAX_MEGABYTES = 1024;
+    public static final int RECORDING_FPS = 15;
+
+    private static final int JPEG_QUALITY = 75;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int WRITE_BUFFER_BYTES = 1024 * 1024;
+    private static final long SEGMENT_BYTES = 32L * 1024 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 2000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Map<String, MatchRecorder> activeRecorders = new ConcurrentHashMap<>();
+
+    static {
+        // Cameras are never torn down, so this is where the last buffered frames get written out
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> activeRecorders.values().forEach(MatchRecorder::close),
+                                "MatchRecorderShutdown"));
+    }
+
+    private static final Capture STOP = new Capture(null, 0, null);
+
+    private static class Capture {
+        final Mat image;
+        final long timestampNanos;
+        final long wallTimeMillis = System.currentTimeMillis();
+        final Map<String, Object> metadata;
+
+        Capture(Mat image, long timestampNanos, Map<String, Object> metadata) {
+            this.image = image;
+            this.timestampNanos = timestampNanos;
+            this.metadata = metadata;
+        }
+    }
+
+    private final Logger logger;
+    private final String cameraName;
+    private final Path directory;
+    private final BlockingQueue<Capture> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private volatile boolean enabled;
+    private volatile long maxBytes;
+    private final long maxSegmentBytes;
+    private long lastCaptureMillis = 0;
+
+    // Recorder thread only
+    private final String sessionName = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    private final MatOfByte encodeBuffer = new MatOfByte();
+    private final MatOfInt encodeParams = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, JPEG_QUALITY);
+    private FileChannel segment;
+    private long segmentBytes = 0;
+    private long lastFlushMillis = 0;
+
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public MatchRecorder(String cameraName, Path directory, boolean enabled, int maxMegabytes) {
+        this(cameraName, directory, enabled, maxMegabytes * 1024L * 1024L, SEGMENT_BYTES);
+    }
+
+    MatchRecorder(
+            String cameraName, Path directory, boolean enabled, long maxBytes, long maxSegmentBytes) {
+        this.logger = new Logger(MatchRecorder.class, cameraName, LogGroup.VisionModule);
+        this.cameraName = cameraName;
+        this.directory = directory;
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.maxSegmentBytes = maxSegmentBytes;
+
+        thread = new Thread(this::run, "MatchRecorder - " + cameraName);
+        thread.setDaemon(true);
+        thread.start();
+        activeRecorders.put(cameraName, this);
+    }
+
+    /** Statistics for every open recorder, keyed by camera name. */
+    public static Map<String, Map<String, Object>> getAllStats() {
+        var all = new TreeMap<String, Map<String, Object>>();
+        for (var entry : activeRecorders.entrySet()) {
+            all.put(entry.getKey(), entry.getValue().getStats());
+        }
+        return all;
+    }
+
+    public void setEnabled(boolean enabled, int maxMegabytes) {
+        this.maxBytes = maxMegabytes * 1024L * 1024L;
+        if (this.enabled != enabled) {
+            logger.info((enabled ? "Started" : "Stopped") + " match recording to " + directory);
+        }
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Record a pipeline result, if recording is on and it's time for another frame. Records the
+     * input frame, or the output frame for pipelines (like driver mode) that have no input frame.
+     * The frame is copied, so the caller keeps ownership of it.
+     */
+    public void accept(CVPipelineResult result, int pipelineIndex) {
+        if (!enabled || !running) return;
+
+        long now = System.currentTimeMillis();
+        if (now - lastCaptureMillis < 1000 / RECORDING_FPS) return;
+
+        Frame frame = result.inputFrame != null ? result.inputFrame : result.outputFrame;
+        if (frame == null || frame.image.getMat().empty()) return;
+        lastCaptureMillis = now;
+
+        record(frame.image.getMat(), frame.timestampNanos, metadataOf(result, pipelineIndex));
+    }
+
+    /** Queue a frame for recording, whatever the rate. The image is copied. */
+    void record(Mat image, long timestampNanos, Map<String, Object> metadata) {
+        var capture = new Capture(image.clone(), timestampNanos, metadata);
+        if (!queue.offer(capture)) {
+            // The disk can't keep up; losing a frame beats stalling the vision thread
+            capture.image.release();
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        var stats = new HashMap<String, Object>();
+        stats.put("enabled", enabled);
+        stats.put("recorded", recordedCount.get());
+        stats.put("dropped", droppedCount.get());
+        return stats;
+    }
+
+    /** Stop recording, and wait for what's already queued to be written out. */
+    public void close() {
+        activeRecorders.remove(cameraName, this);
+        running = false;
+        // Interrupting would close the segment's channel mid-write, so wake the thread with a
+        // marker instead. If the queue is full the thread is busy and will see running soon.
+        try {
+            queue.offer(STOP, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) logger.warn("Recorder didn't finish writing in time");
+    }
+
+    private static Map<String, Object> metadataOf(CVPipelineResult result, int pipelineIndex) {
+        var metadata = new HashMap<String, Object>();
+        metadata.put("pipelineIndex", pipelineIndex);
+        metadata.put("latencyMillis", result.getLatencyMillis());
+        metadata.put("processingMillis", result.getProcessingMillis());
+        metadata.put("fps", result.fps);
+
+        var targets = new ArrayList<Map<String, Double>>();
+        for (var target : result.targets) {
+            var t = new HashMap<String, Double>();
+            t.put("yaw", target.getYaw());
+            t.put("pitch", target.getPitch());
+            t.put("area", target.getArea());
+            t.put("skew", target.getSkew());
+            targets.add(t);
+        }
+        metadata.put("targets", targets);
+        return metadata;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Capture capture;
+                try {
+                    capture = queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                // Everything queued before close() is written first
+                if (capture == STOP || (capture == null && !running)) break;
+
+                try {
+                    if (capture != null) {
+                        try {
+                            write(capture);
+                        } finally {
+                            capture.image.release();
+                        }
+                    }
+
+                    if (!enabled && segment != null) {
+                        closeSegment();
+                    } else if (System.currentTimeMillis() - lastFlushMillis > FLUSH_INTERVAL_MILLIS) {
+                        // Bound how much a power loss can cost us
+                        flush();
+                    }
+                } catch (Exception e) {
+                    // Never die. Start a fresh segment with the next frame instead.
+                    logger.error("Exception while recording!", e);
+                    abandonSegment();
+                }
+            }
+        } finally {
+            Capture leftover;
+            while ((leftover = queue.poll()) != null) {
+                if (leftover != STOP) leftover.image.release();
+            }
+            try {
+                closeSegment();
+            } catch (IOException e) {
+                logger.error("Exception closing recording segment", e);
+            }
+            encodeBuffer.release();
+            encodeParams.release();
+        }
+    }
+
+    private void write(Capture capture) throws IOException {
+        Imgcodecs.imencode(".jpg", capture.image, encodeBuffer, encodeParams);
+        var record =
+                new RecordingFormat.Record(
+                        capture.timestampNanos,
+                        capture.wallTimeMillis,
+                        capture.image.cols(),
+                        capture.image.rows(),
+                        objectMapper.writeValueAsBytes(capture.metadata),
+                        encodeBuffer.toArray());
+
+        if (segment == null || segmentBytes + record.sizeBytes() > maxSegmentBytes) {
+            closeSegment();
+            openSegment();
+        }
+
+        int size = record.sizeBytes();
+        if (size > writeBuffer.remaining()) flush();
+        if (size > writeBuffer.capacity()) {
+            // Bigger than our whole buffer; write it straight out
+            var large = ByteBuffer.allocate(size);
+            record.writeTo(large);
+            large.flip();
+            writeFully(large);
+        } else {
+            record.writeTo(writeBuffer);
+        }
+        segmentBytes += size;
+        recordedCount.incrementAndGet();
+    }
+
+    private void openSegment() throws IOException {
+        Files.createDirectories(directory);
+        var path =
+                directory.resolve(
+                        RecordingFormat.segmentName(RecordingFormat.nextSequence(directory), sessionName));
+        segment =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        writeBuffer.clear();
+        writeBuffer.put(RecordingFormat.SEGMENT_MAGIC);
+        segmentBytes = RecordingFormat.SEGMENT_MAGIC.length;
+        logger.debug("Recording to " + path);
+
+        enforceSizeCap(path);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) return;
+        flush();
+        // Only sync once per segment; syncing every flush would wear the card for little gain
+        segment.force(false);
+        segment.close();
+        segment = null;
+    }
+
+    private void abandonSegment() {
+        writeBuffer.clear();
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException ignored) {
+                // Already broken
+            }
+            segment = null;
+        }
+    }
+
+    private void flush() throws IOException {
+        lastFlushMillis = System.currentTimeMillis();
+        if (segment == null || writeBuffer.position() == 0) return;
+        writeBuffer.flip();
+        writeFully(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) segment.write(buffer);
+    }
+
+    /** Delete the oldest segments until everything, including the one just started, fits. */
+    private void enforceSizeCap(Path current) throws IOException {
+        List<Path> segments = RecordingFormat.listSegments(directory);
+        long total = maxSegmentBytes; // Leave room for the segment being written
+        for (var s : segments) {
+            if (!s.equals(current)) total += Files.size(s);
+        }
+        for (var s : segments) {
+            if (total <= maxBytes) break;
+            if (s.equals(current)) continue;
+            total -= Files.size(s);
+            Files.deleteIfExists(s);
+            logger.debug("Deleted old recording segment " + s.getFileName());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * On-disk layout of match recordings, shared by {@link MatchRecorder} and the replay frame
+ * provider.
+ *
+ * <p>A recording is a directory of segment files named {@code <sequence>-<session start>.pvrec}.
+ * The sequence number carries on from the highest one already in the directory, so recording order
+ * survives restarts even on a coprocessor whose clock resets at boot. Each segment is {@link
+ * #SEGMENT_MAGIC} followed by back-to-back records of:
+ *
+ * <pre>
+ * int   RECORD_MAGIC
+ * long  frame timestamp (wpi nanos)
+ * long  wall clock time (epoch millis)
+ * int   width, height
+ * int   metadata length, image length
+ * bytes metadata (UTF-8 JSON)
+ * bytes image (JPEG)
+ * </pre>
+ *
+ * All integers are big-endian. A segment cut short by a power loss just ends at its last complete
+ * record.
+ */
+public final class RecordingFormat {
+    private RecordingFormat() {}
+
+    public static final String SEGMENT_EXTENSION = ".pvrec";
+    static final byte[] SEGMENT_MAGIC = "PVREC001".getBytes(StandardCharsets.US_ASCII);
+    static final int RECORD_MAGIC = 0x50565246; // "PVRF"
+    static final int RECORD_HEADER_BYTES = 4 + 8 + 8 + 4 + 4 + 4 + 4;
+    // Anything claiming to be bigger than this is corruption, not a frame
+    static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    /** One recorded frame, with its image still compressed. */
+    public static class Record {
+        public final long timestampNanos;
+        public final long wallTimeMillis;
+        public final int width;
+        public final int height;
+        public final byte[] metadataJson;
+        public final byte[] jpeg;
+
+        public Record(
+                long timestampNanos,
+                long wallTimeMillis,
+                int width,
+                int height,
+                byte[] metadataJson,
+                byte[] jpeg) {
+            this.timestampNanos = timestampNanos;
+            this.wallTimeMillis = wallTimeMillis;
+            this.width = width;
+            this.height = height;
+            this.metadataJson = metadataJson;
+            this.jpeg = jpeg;
+        }
+
+        int sizeBytes() {
+            return RECORD_HEADER_BYTES + metadataJson.length + jpeg.length;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.putInt(RECORD_MAGIC);
+            buffer.putLong(timestampNanos);
+            buffer.putLong(wallTimeMillis);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            buffer.putInt(metadataJson.length);
+            buffer.putInt(jpeg.length);
+            buffer.put(metadataJson);
+            buffer.put(jpeg);
+        }
+    }
+
+    /** The file name for a segment. */
+    static String segmentName(long sequence, String sessionName) {
+        return String.format("%010d-%s%s", sequence, sessionName, SEGMENT_EXTENSION);
+    }
+
+    /** A segment's sequence number, or -1 if its name doesn't start with one. */
+    static long sequenceOf(Path segment) {
+        var name = segment.getFileName().toString();
+        int dash = name.indexOf('-');
+        try {
+            return Long.parseLong(dash < 0 ? name : name.substring(0, dash));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** The sequence number for the next segment written to a recording directory. */
+    static long nextSequence(Path directory) throws IOException {
+        long highest = -1;
+        for (var segment : listSegments(directory)) {
+            highest = Math.max(highest, sequenceOf(segment));
+        }
+        return highest + 1;
+    }
+
+    /** All segments in a recording directory, oldest first. */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return new ArrayList<>();
+        try (var files = Files.list(directory)) {
+            return files
+                    .filter(p -> p.getFileName().toString().endsWith(SEGMENT_EXTENSION))
+                    .sorted(
+                            Comparator.comparingLong(RecordingFormat::sequenceOf)
+                                    .thenComparing(p -> p.getFileName().toString()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /** Reads the records of one segment in order, with large sequential reads. */
+    public static class SegmentReader implements AutoCloseable {
+        private static final int READ_BUFFER_BYTES = 1024 * 1024;
+
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        private boolean valid;
+
+        public SegmentReader(Path segment) throws IOException {
+            channel = FileChannel.open(segment);
+            buffer.limit(0);
+            var magic = new byte[SEGMENT_MAGIC.length];
+            valid = fill(magic.length);
+            if (valid) {
+                buffer.get(magic);
+                valid = Arrays.equals(magic, SEGMENT_MAGIC);
+            }
+        }
+
+        /** The next record, or null at the end of the segment (or at a torn or corrupt record). */
+        public Record next() throws IOException {
+            if (!valid || !fill(RECORD_HEADER_BYTES)) return null;
+            if (buffer.getInt() != RECORD_MAGIC) {
+                valid = false;
+                return null;
+            }
+            long timestampNanos = buffer.getLong();
+            long wallTimeMillis = buffer.getLong();
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int metadataLength = buffer.getInt();
+            int imageLength = buffer.getInt();
+            if (metadataLength < 0
+                    || imageLength < 0
+                    || (long) metadataLength + imageLength > MAX_RECORD_BYTES
+                    || !fill(metadataLength + imageLength)) {
+                valid = false;
+                return null;
+            }
+
+            var metadata = new byte[metadataLength];
+            var jpeg = new byte[imageLength];
+            buffer.get(metadata);
+            buffer.get(jpeg);
+            return new Record(timestampNanos, wallTimeMillis, width, height, metadata, jpeg);
+        }
+
+        /** Make sure at least {@code bytes} are buffered, reading more from disk as needed. */
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return true;
+            if (bytes > buffer.capacity()) {
+                var bigger = ByteBuffer.allocateDirect(bytes);
+                bigger.put(buffer);
+                bigger.flip();
+                buffer = bigger;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+/** One connected stream viewer and what it negotiated. */
+class StreamClient {
+    final String address;
+    final StreamProfile profile;
+
+    /** Minimum time between frames sent to this client, or 0 for no limit. */
+    final long minIntervalNanos;
+
+    /** Whether this client draws target overlays itself, from the web socket overlay messages. */
+    final boolean drawsOwnOverlay;
+
+    StreamClient(String address, StreamProfile profile, double maxFps, boolean drawsOwnOverlay) {
+        this.address = address;
+        this.profile = profile;
+        this.minIntervalNanos = maxFps > 0 ? (long) (1e9 / maxFps) : 0;
+        this.drawsOwnOverlay = drawsOwnOverlay;
+    }
+
+    @Override
+    public String toString() {
+        return address + " (" + profile + ")";
+    }
+}
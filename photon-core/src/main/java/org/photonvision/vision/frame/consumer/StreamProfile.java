@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import java.util.Map;
+import java.util.Objects;
+import org.opencv.core.Size;
+
+/**
+ * The output size and JPEG quality a stream client asked for. Clients that ask for the same
+ * profile share a single encode of each frame.
+ *
+ * <p>Profiles are parsed from the same URL parameters cscore's MjpegServer understands ({@code
+ * resolution=640x480}, {@code compression=50}), so existing dashboards such as Shuffleboard keep
+ * working unchanged.
+ */
+public final class StreamProfile {
+    public static final int DEFAULT_QUALITY = 80;
+    public static final StreamProfile DEFAULT = new StreamProfile(0, 0, DEFAULT_QUALITY);
+
+    /** Requested width and height, or 0 to stream at whatever size the pipeline produced. */
+    public final int width;
+
+    public final int height;
+
+    /** JPEG quality, 1-100. */
+    public final int quality;
+
+    public StreamProfile(int width, int height, int quality) {
+        this.width = Math.max(width, 0);
+        this.height = Math.max(height, 0);
+        this.quality = Math.min(Math.max(quality, 1), 100);
+    }
+
+    /**
+     * Build a profile from stream URL query parameters. Missing or malformed parameters fall back
+     * to the defaults rather than rejecting the client.
+     */
+    public static StreamProfile fromQuery(Map<String, String> params) {
+        int width = 0;
+        int height = 0;
+        int quality = DEFAULT_QUALITY;
+
+        var resolution = params.get("resolution");
+        if (resolution != null) {
+            var parts = resolution.toLowerCase().split("x");
+            if (parts.length == 2) {
+                try {
+                    width = Integer.parseInt(parts[0].trim());
+                    height = Integer.parseInt(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    width = 0;
+                    height = 0;
+                }
+            }
+        }
+
+        var compression = params.get("compression");
+        if (compression != null) {
+            try {
+                int parsed = Integer.parseInt(compression.trim());
+                // cscore uses -1 for "server default"
+                if (parsed >= 0) quality = parsed;
+            } catch (NumberFormatException ignored) {
+                // Keep the default
+            }
+        }
+
+        return new StreamProfile(width, height, quality);
+    }
+
+    /**
+     * The size frames for this profile are encoded at. We never upscale, so requests larger than
+     * the source (or with no size at all) get the source size.
+     */
+    public Size getOutputSize(int sourceWidth, int sourceHeight) {
+        if (isSourceSize(sourceWidth, sourceHeight)) {
+            return new Size(sourceWidth, sourceHeight);
+        }
+        return new Size(width, height);
+    }
+
+    /**
+     * The profile frames for this one are actually encoded as. A request that gets clamped to the
+     * source size is the same encode as asking for no size at all, so it shares that profile.
+     */
+    public StreamProfile forSource(int sourceWidth, int sourceHeight) {
+        if (width == 0 && height == 0 || !isSourceSize(sourceWidth, sourceHeight)) return this;
+        return quality == DEFAULT_QUALITY ? DEFAULT : new StreamProfile(0, 0, quality);
+    }
+
+    private boolean isSourceSize(int sourceWidth, int sourceHeight) {
+        return width == 0 || height == 0 || width >= sourceWidth || height >= sourceHeight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StreamProfile that = (StreamProfile) o;
+        return width == that.width && height == that.height && quality == that.quality;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(width, height, quality);
+    }
+
+    @Override
+    public String toString() {
+        return (width == 0 ? "source" : width + "x" + height) + "@q" + quality;
+    }
+}
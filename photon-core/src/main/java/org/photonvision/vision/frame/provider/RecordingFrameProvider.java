@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.provider;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+import org.photonvision.vision.frame.Frame;
+import org.photonvision.vision.frame.FrameProvider;
+import org.photonvision.vision.frame.FrameStaticProperties;
+import org.photonvision.vision.frame.consumer.MatchRecorder;
+import org.photonvision.vision.frame.consumer.RecordingFormat;
+import org.photonvision.vision.opencv.CVMat;
+
+/**
+ * A {@link FrameProvider} that plays back a recording made by {@link MatchRecorder}, oldest
+ * segment first. Frames keep the timestamps they were captured with, and can be paced to the
+ * rate they were recorded at. Once the recording runs out, {@link #get()} returns empty frames.
+ */
+public class RecordingFrameProvider implements FrameProvider {
+    private static final Logger logger =
+            new Logger(RecordingFrameProvider.class, LogGroup.VisionModule);
+
+    private final Path directory;
+    private final double fov;
+    private final boolean realTime;
+    private final List<Path> segments;
+
+    private int segmentIndex = 0;
+    private RecordingFormat.SegmentReader reader;
+    private RecordingFormat.Record peeked;
+    private FrameStaticProperties properties;
+    private String lastMetadata = "{}";
+
+    // For pacing playback
+    private long firstRecordedNanos = -1;
+    private long firstPlayedNanos;
+
+    /**
+     * Instantiates a new RecordingFrameProvider.
+     *
+     * @param directory The directory the recording's segments are in.
+     * @param fov The fov of the recorded camera.
+     * @param realTime Whether to wait between frames as long as the recording did.
+     */
+    public RecordingFrameProvider(Path directory, double fov, boolean realTime) throws IOException {
+        this.directory = directory;
+        this.fov = fov;
+        this.realTime = realTime;
+        this.segments = RecordingFormat.listSegments(directory);
+    }
+
+    @Override
+    public Frame get() {
+        RecordingFormat.Record record = peeked != null ? peeked : nextRecord();
+        peeked = null;
+        if (record == null) return new Frame();
+
+        if (realTime) pace(record.timestampNanos);
+
+        var jpeg = new MatOfByte(record.jpeg);
+        Mat image = Imgcodecs.imdecode(jpeg, Imgcodecs.IMREAD_COLOR);
+        jpeg.release();
+        updateProperties(record);
+        lastMetadata = new String(record.metadataJson, StandardCharsets.UTF_8);
+        return new Frame(new CVMat(image), record.timestampNanos, properties);
+    }
+
+    /**
+     * The static properties of the next frame, without using it up. Zero sized once the recording
+     * has run out.
+     */
+    public FrameStaticProperties getFrameStaticProperties() {
+        if (peeked == null) peeked = nextRecord();
+        if (peeked == null) return new FrameStaticProperties(0, 0, fov, new Rotation2d(), null);
+        updateProperties(peeked);
+        return properties;
+    }
+
+    private void updateProperties(RecordingFormat.Record record) {
+        if (properties == null
+                || properties.imageWidth != record.width
+                || properties.imageHeight != record.height) {
+            properties =
+                    new FrameStaticProperties(record.width, record.height, fov, new Rotation2d(), null);
+        }
+    }
+
+    /** The pipeline result recorded with the last frame returned, as JSON. */
+    public String getLastMetadata() {
+        return lastMetadata;
+    }
+
+    @Override
+    public String getName() {
+        return "RecordingFrameProvider - " + directory.getFileName();
+    }
+
+    private RecordingFormat.Record nextRecord() {
+        while (true) {
+            try {
+                if (reader == null) {
+                    if (segmentIndex >= segments.size()) return null;
+                    reader = new RecordingFormat.SegmentReader(segments.get(segmentIndex++));
+                }
+                var record = reader.next();
+                if (record != null) return record;
+            } catch (IOException e) {
+                // The rest of this segment is unreadable; carry on with the next one
+                logger.error("Exception reading recording segment", e);
+            }
+            closeReader();
+        }
+    }
+
+    private void closeReader() {
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+            // Only reading
+        }
+        reader = null;
+    }
+
+    private void pace(long recordedNanos) {
+        long now = System.nanoTime();
+        if (firstRecordedNanos < 0) {
+            firstRecordedNanos = recordedNanos;
+            firstPlayedNanos = now;
+            return;
+        }
+        long waitNanos = (recordedNanos - firstRecordedNanos) - (now - firstPlayedNanos);
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.MatOfPoint3f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.photonvision.common.util.math.MathUtils;
+import org.photonvision.vision.frame.Frame;
+import org.photonvision.vision.frame.FrameProvider;
+import org.photonvision.vision.frame.FrameStaticProperties;
+import org.photonvision.vision.opencv.CVMat;
+import org.photonvision.vision.opencv.Releasable;
+import org.photonvision.vision.target.TargetModel;
+
+/**
+ * A {@link FrameProvider} that renders synthetic camera frames, so that real pipelines can be run
+ * and measured against known ground truth without a camera.
+ *
+ * <p>Each {@link SimulatedTarget} is a {@link TargetModel} placed in front of the camera, which is
+ * projected through the camera's calibration (or, if it has none, an ideal pinhole camera built
+ * from the {@link FrameStaticProperties}) and filled with a solid color. Blur, sensor noise and
+ * exposure can then be applied to the whole frame.
+ */
+public class SimulatedFrameProvider implements FrameProvider, Releasable {
+    private static int count = 0;
+
+    private final int thisIndex = count++;
+    private final FrameStaticProperties properties;
+    private final List<SimulatedTarget> targets = new ArrayList<>();
+
+    private final Mat cameraMatrix;
+    private final MatOfDouble distortionCoefficients;
+
+    private Scalar backgroundColor = new Scalar(0, 0, 0);
+    private int blurKernelSize = 0;
+    private double noiseStdDev = 0;
+    private double exposureGain = 1;
+    private final Random random = new Random(0);
+
+    // Scratch space reused between frames
+    private final MatOfPoint2f projectedPoints = new MatOfPoint2f();
+    private final MatOfPoint polygon = new MatOfPoint();
+    private final Mat noise = new Mat();
+    private short[] noiseValues = new short[0];
+
+    /** A target to render, given by its model and its pose relative to the camera. */
+    public static class SimulatedTarget {
+        public final TargetModel model;
+        public final Scalar color;
+
+        /** Translation from the camera to the target, in meters, in OpenCV camera coordinates. */
+        public final Mat tvec;
+
+        /** Rotation of the target relative to the camera, as a Rodrigues vector. */
+        public final Mat rvec;
+
+        // The image-space centroid of the target in the last rendered frame.
+        private Point lastCentroid;
+
+        /**
+         * Creates a target.
+         *
+         * @param model The shape of the target.
+         * @param color The BGR color to fill the target with.
+         * @param x Meters to the right of the camera's optical axis.
+         * @param y Meters below the camera's optical axis.
+         * @param z Meters along the camera's optical axis.
+         * @param rotationRadians Rotation of the target about the camera's vertical axis.
+         */
+        public SimulatedTarget(
+                TargetModel model, Scalar color, double x, double y, double z, double rotationRadians) {
+            this.model = model;
+            this.color = color;
+            this.tvec = new Mat(3, 1, CvType.CV_64FC1);
+            this.tvec.put(0, 0, x, y, z);
+            this.rvec = new Mat(3, 1, CvType.CV_64FC1);
+            this.rvec.put(0, 0, 0, rotationRadians, 0);
+        }
+
+        /**
+         * Returns the centroid of this target's projected outline in the most recently rendered
+         * frame, or null if it has not been rendered.
+         *
+         * @return The ground-truth image-space centroid.
+         */
+        public Point getLastCentroid() {
+            return lastCentroid;
+        }
+    }
+
+    /**
+     * Instantiates a new SimulatedFrameProvider. If the properties include a calibration, targets
+     * are projected through it, including its distortion.
+     *
+     * @param properties The resolution, FOV and (optionally) calibration of the simulated camera.
+     */
+    public SimulatedFrameProvider(FrameStaticProperties properties) {
+        this.properties = properties;
+
+        var calibration = properties.cameraCalibration;
+        if (calibration != null) {
+            cameraMatrix = calibration.getCameraIntrinsicsMat();
+            distortionCoefficients = calibration.getCameraExtrinsicsMat();
+        } else {
+            cameraMatrix = new Mat(3, 3, CvType.CV_64FC1);
+            cameraMatrix.put(
+                    0,
+                    0,
+                    properties.horizontalFocalLength,
+                    0,
+                    properties.centerX,
+                    0,
+                    properties.verticalFocalLength,
+                    properties.centerY,
+                    0,
+                    0,
+                    1);
+            distortionCoefficients = new MatOfDouble(0, 0, 0, 0, 0);
+        }
+    }
+
+    public void addTarget(SimulatedTarget target) {
+        targets.add(target);
+    }
+
+    public List<SimulatedTarget> getTargets() {
+        return targets;
+    }
+
+    public void setBackgroundColor(Scalar backgroundColor) {
+        this.backgroundColor = backgroundColor;
+    }
+
+    /**
+     * Sets the size of the Gaussian blur applied to each frame, approximating defocus and motion.
+     *
+     * @param blurKernelSize The kernel size in pixels. Must be odd, or 0 to disable blurring.
+     */
+    public void setBlurKernelSize(int blurKernelSize) {
+        this.blurKernelSize = blurKernelSize;
+    }
+
+    /**
+     * Sets the standard deviation of the Gaussian noise added to every channel of every pixel.
+     *
+     * @param noiseStdDev The standard deviation, in 8-bit intensity units. 0 disables noise.
+     */
+    public void setNoiseStdDev(double noiseStdDev) {
+        this.noiseStdDev = noiseStdDev;
+    }
+
+    /**
+     * Sets the gain applied to the frame to simulate exposure. Values above 1 brighten the image
+     * and saturate, values below 1 darken it.
+     *
+     * @param exposureGain The gain.
+     */
+    public void setExposureGain(double exposureGain) {
+        this.exposureGain = exposureGain;
+    }
+
+    @Override
+    public Frame get() {
+        long timestamp = MathUtils.wpiNanoTime();
+        var mat =
+                new Mat(
+                        properties.imageHeight, properties.imageWidth, CvType.CV_8UC3, backgroundColor);
+
+        for (var target : targets) {
+            Calib3d.projectPoints(
+                    target.model.getRealWorldTargetCoordinates(),
+                    target.rvec,
+                    target.tvec,
+                    cameraMatrix,
+                    distortionCoefficients,
+                    projectedPoints);
+
+            var points = projectedPoints.toArray();
+            double cx = 0;
+            double cy = 0;
+            for (var point : points) {
+                cx += point.x;
+                cy += point.y;
+            }
+            target.lastCentroid = new Point(cx / points.length, cy / points.length);
+
+            projectedPoints.convertTo(polygon, CvType.CV_32S);
+            Imgproc.fillConvexPoly(mat, polygon, target.color, Imgproc.LINE_AA);
+        }
+
+        if (blurKernelSize > 1) {
+            Imgproc.GaussianBlur(mat, mat, new Size(blurKernelSize, blurKernelSize), 0);
+        }
+        if (exposureGain != 1) {
+            mat.convertTo(mat, -1, exposureGain, 0);
+        }
+        if (noiseStdDev > 0) {
+            // Noise is drawn as signed values and added with saturation. It comes from our own Random
+            // rather than Core.randn, whose RNG is shared by everything else in the process
+            noise.create(mat.size(), CvType.CV_16SC3);
+            int samples = (int) noise.total() * noise.channels();
+            if (noiseValues.length != samples) noiseValues = new short[samples];
+            for (int i = 0; i < samples; i++) {
+                long value = Math.round(random.nextGaussian() * noiseStdDev);
+                noiseValues[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            }
+            noise.put(0, 0, noiseValues);
+            mat.convertTo(mat, CvType.CV_16SC3);
+            Core.add(mat, noise, mat);
+            mat.convertTo(mat, CvType.CV_8UC3);
+        }
+
+        return new Frame(new CVMat(mat), timestamp, properties);
+    }
+
+    @Override
+    public String getName() {
+        return "SimulatedFrameProvider" + thisIndex;
+    }
+
+    @Override
+    public void release() {
+        projectedPoints.release();
+        polygon.release();
+        noise.release();
+        if (properties.cameraCalibration == null) {
+            cameraMatrix.release();
+            distortionCoefficients.release();
+        }
+        for (var target : targets) {
+            target.tvec.release();
+            target.rvec.release();
+        }
+    }
+}
@@ -69,12 +69,11 @@ public class CVMat implements Releasable {
 
     @Override
     public void release() {
-        // If this mat is empty, all we can do is return
-        if (mat.empty()) return;
+        // Stop tracking the mat even if it's empty, or getMatCount would count it forever
+        Integer matNo = allMats.remove(mat);
 
-        // If the mat isn't in the hashmap, we can't remove it
-        Integer matNo = allMats.get(mat);
-        if (matNo != null) allMats.remove(mat);
+        // If this mat is empty, there's nothing to release
+        if (mat.empty()) return;
         mat.release();
 
         if (shouldPrint) {
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.opencv;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Shapes to draw over a stream frame, built once per frame and then drawn onto as many frames as
+ * need it. Lines and polygons of the same colour and thickness are drawn with a single call, and
+ * all storage is reused between frames, so steady-state drawing doesn't allocate.
+ *
+ * <p>Coordinates are in the pixels of the frame the overlay is drawn on. Methods that take whole
+ * contours also take a scale, for contours found on a full-size image.
+ *
+ * <p>{@link #encode()} packs the shapes into a compact big-endian form for clients that draw the
+ * overlay themselves:
+ *
+ * <pre>
+ * u16 width, u16 height
+ * u8 colour count, then per colour: u8 r, u8 g, u8 b
+ * u16 polyline group count, then per group:
+ *     u8 colour, u8 thickness, u8 closed, u16 polyline count, then per polyline:
+ *         u16 point count, then per point: i16 x, i16 y
+ * u16 circle count, then per circle: i16 x, i16 y, u16 radius, u8 colour, i8 thickness
+ * u16 text count, then per text:
+ *     i16 x, i16 y, u16 scale in thousandths, u8 colour, u8 thickness, u8 length, UTF-8 bytes
+ * </pre>
+ */
+public class Overlay implements Releasable {
+    /** All the polylines sharing one style. */
+    private static class Batch {
+        final int colorIndex;
+        final int thickness;
+        final boolean closed;
+        final List<MatOfPoint> pool = new ArrayList<>();
+        final List<MatOfPoint> active = new ArrayList<>();
+
+        Batch(int colorIndex, int thickness, boolean closed) {
+            this.colorIndex = colorIndex;
+            this.thickness = thickness;
+            this.closed = closed;
+        }
+
+        MatOfPoint next() {
+            int used = active.size();
+            if (used == pool.size()) pool.add(new MatOfPoint());
+            var contour = pool.get(used);
+            active.add(contour);
+            return contour;
+        }
+    }
+
+    private int width;
+    private int height;
+
+    private final List<Batch> batches = new ArrayList<>();
+
+    // Colours seen so far, and their BGR scalars
+    private int[] paletteRgb = new int[8];
+    private Scalar[] paletteScalars = new Scalar[8];
+    private int paletteSize = 0;
+
+    // Circles: x, y, radius, colour, thickness
+    private double[] circles = new double[5 * 16];
+    private int circleCount = 0;
+
+    // Text: x, y, scale, colour, thickness, plus the string
+    private double[] texts = new double[5 * 8];
+    private String[] textStrings = new String[8];
+    private int textCount = 0;
+
+    // Scratch space for copying points around
+    private int[] intPoints = new int[64];
+    private float[] floatPoints = new float[64];
+    private final Point scratchPoint = new Point();
+
+    /** Forget all shapes and start a new overlay for a frame of the given size. */
+    public void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        for (var batch : batches) batch.active.clear();
+        circleCount = 0;
+        textCount = 0;
+        Arrays.fill(textStrings, null);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isEmpty() {
+        if (circleCount > 0 || textCount > 0) return false;
+        for (var batch : batches) {
+            if (!batch.active.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    public void line(double x1, double y1, double x2, double y2, Color color, int thickness) {
+        ensureIntPoints(4);
+        intPoints[0] = (int) Math.round(x1);
+        intPoints[1] = (int) Math.round(y1);
+        intPoints[2] = (int) Math.round(x2);
+        intPoints[3] = (int) Math.round(y2);
+        addPolyline(2, false, color, thickness);
+    }
+
+    public void rectangle(double x1, double y1, double x2, double y2, Color color, int thickness) {
+        ensureIntPoints(8);
+        int left = (int) Math.round(x1);
+        int top = (int) Math.round(y1);
+        int right = (int) Math.round(x2);
+        int bottom = (int) Math.round(y2);
+        intPoints[0] = left;
+        intPoints[1] = top;
+        intPoints[2] = right;
+        intPoints[3] = top;
+        intPoints[4] = right;
+        intPoints[5] = bottom;
+        intPoints[6] = left;
+        intPoints[7] = bottom;
+        addPolyline(4, true, color, thickness);
+    }
+
+    public void polygon(Point[] points, double scale, Color color, int thickness) {
+        ensureIntPoints(points.length * 2);
+        for (int i = 0; i < points.length; i++) {
+            intPoints[2 * i] = (int) Math.round(points[i].x * scale);
+            intPoints[2 * i + 1] = (int) Math.round(points[i].y * scale);
+        }
+        addPolyline(points.length, true, color, thickness);
+    }
+
+    public void polygon(MatOfPoint contour, double scale, Color color, int thickness) {
+        int count = (int) contour.total();
+        if (count == 0) return;
+        ensureIntPoints(count * 2);
+        contour.get(0, 0, intPoints);
+        for (int i = 0; i < count * 2; i++) {
+            intPoints[i] = (int) Math.round(intPoints[i] * scale);
+        }
+        addPolyline(count, true, color, thickness);
+    }
+
+    public void polygon(MatOfPoint2f contour, double scale, Color color, int thickness) {
+        int count = (int) contour.total();
+        if (count == 0) return;
+        ensureIntPoints(count * 2);
+        if (floatPoints.length < count * 2) floatPoints = new float[count * 4];
+        contour.get(0, 0, floatPoints);
+        for (int i = 0; i < count * 2; i++) {
+            intPoints[i] = (int) Math.round(floatPoints[i] * scale);
+        }
+        addPolyline(count, true, color, thickness);
+    }
+
+    public void circle(double x, double y, int radius, Color color, int thickness) {
+        if ((circleCount + 1) * 5 > circles.length) {
+            circles = Arrays.copyOf(circles, circles.length * 2);
+        }
+        int i = circleCount++ * 5;
+        circles[i] = x;
+        circles[i + 1] = y;
+        circles[i + 2] = radius;
+        circles[i + 3] = colorIndex(color);
+        circles[i + 4] = thickness;
+    }
+
+    public void text(String text, double x, double y, double scale, Color color, int thickness) {
+        if (textCount == textStrings.length) {
+            texts = Arrays.copyOf(texts, texts.length * 2);
+            textStrings = Arrays.copyOf(textStrings, textStrings.length * 2);
+        }
+        int i = textCount * 5;
+        texts[i] = x;
+        texts[i + 1] = y;
+        texts[i + 2] = scale;
+        texts[i + 3] = colorIndex(color);
+        texts[i + 4] = thickness;
+        textStrings[textCount++] = text;
+    }
+
+    /** Draw every shape onto an image. The image should be the size given to {@link #reset}. */
+    public void drawOn(Mat image) {
+        for (var batch : batches) {
+            if (batch.active.isEmpty()) continue;
+            Imgproc.polylines(
+                    image,
+                    batch.active,
+                    batch.closed,
+                    paletteScalars[batch.colorIndex],
+                    batch.thickness);
+        }
+
+        for (int i = 0; i < circleCount * 5; i += 5) {
+            scratchPoint.x = circles[i];
+            scratchPoint.y = circles[i + 1];
+            Imgproc.circle(
+                    image,
+                    scratchPoint,
+                    (int) circles[i + 2],
+                    paletteScalars[(int) circles[i + 3]],
+                    (int) circles[i + 4]);
+        }
+
+        for (int t = 0; t < textCount; t++) {
+            int i = t * 5;
+            scratchPoint.x = texts[i];
+            scratchPoint.y = texts[i + 1];
+            Imgproc.putText(
+                    image,
+                    textStrings[t],
+                    scratchPoint,
+                    Imgproc.FONT_HERSHEY_SIMPLEX,
+                    texts[i + 2],
+                    paletteScalars[(int) texts[i + 3]],
+                    (int) texts[i + 4]);
+        }
+    }
+
+    /** The shapes in the binary form described above. */
+    public byte[] encode() {
+        int size = 2 + 2 + 1 + paletteSize * 3 + 2;
+        for (var batch : batches) {
+            if (batch.active.isEmpty()) continue;
+            size += 5;
+            for (var contour : batch.active) size += 2 + 4 * (int) contour.total();
+        }
+        size += 2 + circleCount * 8;
+        var textBytes = new byte[textCount][];
+        size += 2;
+        for (int t = 0; t < textCount; t++) {
+            var bytes = textStrings[t].getBytes(StandardCharsets.UTF_8);
+            textBytes[t] = bytes.length > 255 ? Arrays.copyOf(bytes, 255) : bytes;
+            size += 9 + textBytes[t].length;
+        }
+
+        var out = ByteBuffer.allocate(size);
+        out.putShort((short) width);
+        out.putShort((short) height);
+
+        out.put((byte) paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            out.put((byte) (paletteRgb[i] >> 16));
+            out.put((byte) (paletteRgb[i] >> 8));
+            out.put((byte) paletteRgb[i]);
+        }
+
+        int groups = 0;
+        for (var batch : batches) {
+            if (!batch.active.isEmpty()) groups++;
+        }
+        out.putShort((short) groups);
+        for (var batch : batches) {
+            if (batch.active.isEmpty()) continue;
+            out.put((byte) batch.colorIndex);
+            out.put((byte) Math.min(batch.thickness, 255));
+            out.put((byte) (batch.closed ? 1 : 0));
+            out.putShort((short) batch.active.size());
+            for (var contour : batch.active) {
+                int count = (int) contour.total();
+                ensureIntPoints(count * 2);
+                contour.get(0, 0, intPoints);
+                out.putShort((short) count);
+                for (int i = 0; i < count * 2; i++) out.putShort(toShort(intPoints[i]));
+            }
+        }
+
+        out.putShort((short) circleCount);
+        for (int i = 0; i < circleCount * 5; i += 5) {
+            out.putShort(toShort(circles[i]));
+            out.putShort(toShort(circles[i + 1]));
+            out.putShort((short) circles[i + 2]);
+            out.put((byte) circles[i + 3]);
+            out.put((byte) circles[i + 4]);
+        }
+
+        out.putShort((short) textCount);
+        for (int t = 0; t < textCount; t++) {
+            int i = t * 5;
+            out.putShort(toShort(texts[i]));
+            out.putShort(toShort(texts[i + 1]));
+            out.putShort((short) Math.round(texts[i + 2] * 1000));
+            out.put((byte) texts[i + 3]);
+            out.put((byte) texts[i + 4]);
+            out.put((byte) textBytes[t].length);
+            out.put(textBytes[t]);
+        }
+        return out.array();
+    }
+
+    @Override
+    public void release() {
+        for (var batch : batches) {
+            for (var contour : batch.pool) contour.release();
+        }
+        batches.clear();
+    }
+
+    private void addPolyline(int count, boolean closed, Color color, int thickness) {
+        var contour = batchFor(colorIndex(color), Math.max(thickness, 1), closed).next();
+        contour.alloc(count);
+        // Only the first count points fit, so the rest of the scratch array is ignored
+        contour.put(0, 0, intPoints);
+    }
+
+    private Batch batchFor(int colorIndex, int thickness, boolean closed) {
+        for (var batch : batches) {
+            if (batch.colorIndex == colorIndex
+                    && batch.thickness == thickness
+                    && batch.closed == closed) {
+                return batch;
+            }
+        }
+        var batch = new Batch(colorIndex, thickness, closed);
+        batches.add(batch);
+        return batch;
+    }
+
+    private int colorIndex(Color color) {
+        int rgb = color.getRGB();
+        for (int i = 0; i < paletteSize; i++) {
+            if (paletteRgb[i] == rgb) return i;
+        }
+        if (paletteSize == paletteRgb.length) {
+            paletteRgb = Arrays.copyOf(paletteRgb, paletteSize * 2);
+            paletteScalars = Arrays.copyOf(paletteScalars, paletteSize * 2);
+        }
+        paletteRgb[paletteSize] = rgb;
+        paletteScalars[paletteSize] = new Scalar(color.getBlue(), color.getGreen(), color.getRed());
+        return paletteSize++;
+    }
+
+    private static short toShort(double value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+    }
+
+    private void ensureIntPoints(int length) {
+        if (intPoints.length < length) intPoints = new int[length * 2];
+    }
+}
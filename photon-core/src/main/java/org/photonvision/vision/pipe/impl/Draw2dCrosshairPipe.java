@@ -20,13 +20,11 @@ package org.photonvision.vision.pipe.impl;
 import java.awt.Color;
 import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
-import org.opencv.core.Mat;
 import org.opencv.core.Point;
-import org.opencv.imgproc.Imgproc;
-import org.photonvision.common.util.ColorHelper;
 import org.photonvision.vision.frame.FrameDivisor;
 import org.photonvision.vision.frame.FrameStaticProperties;
 import org.photonvision.vision.opencv.DualOffsetValues;
+import org.photonvision.vision.opencv.Overlay;
 import org.photonvision.vision.pipe.MutatingPipe;
 import org.photonvision.vision.target.RobotOffsetPointMode;
 import org.photonvision.vision.target.TargetCalculations;
@@ -34,12 +32,12 @@ import org.photonvision.vision.target.TrackedTarget;
 
 public class Draw2dCrosshairPipe
         extends MutatingPipe<
-                Pair<Mat, List<TrackedTarget>>, Draw2dCrosshairPipe.Draw2dCrosshairParams> {
+                Pair<Overlay, List<TrackedTarget>>, Draw2dCrosshairPipe.Draw2dCrosshairParams> {
     @Override
-    protected Void process(Pair<Mat, List<TrackedTarget>> in) {
+    protected Void process(Pair<Overlay, List<TrackedTarget>> in) {
         if (!params.shouldDraw) return null;
 
-        var image = in.getLeft();
+        var overlay = in.getLeft();
 
         if (params.showCrosshair) {
             double x = params.frameStaticProperties.centerX;
@@ -70,13 +68,8 @@ public class Draw2dCrosshairPipe
             x /= (double) params.divisor.value;
             y /= (double) params.divisor.value;
 
-            Point xMax = new Point(x + scale, y);
-            Point xMin = new Point(x - scale, y);
-            Point yMax = new Point(x, y + scale);
-            Point yMin = new Point(x, y - scale);
-
-            Imgproc.line(image, xMax, xMin, ColorHelper.colorToScalar(params.crosshairColor));
-            Imgproc.line(image, yMax, yMin, ColorHelper.colorToScalar(params.crosshairColor));
+            overlay.line(x + scale, y, x - scale, y, params.crosshairColor, 1);
+            overlay.line(x, y + scale, x, y - scale, params.crosshairColor, 1);
         }
         return null;
     }
@@ -20,30 +20,28 @@ package org.photonvision.vision.pipe.impl;
 import java.awt.*;
 import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
-import org.opencv.core.*;
 import org.opencv.core.Point;
-import org.opencv.imgproc.Imgproc;
-import org.photonvision.common.logging.LogGroup;
-import org.photonvision.common.logging.Logger;
-import org.photonvision.common.util.ColorHelper;
+import org.opencv.core.RotatedRect;
 import org.photonvision.vision.frame.FrameDivisor;
 import org.photonvision.vision.opencv.CVShape;
 import org.photonvision.vision.opencv.ContourShape;
+import org.photonvision.vision.opencv.Overlay;
 import org.photonvision.vision.pipe.MutatingPipe;
 import org.photonvision.vision.target.TrackedTarget;
 
 public class Draw2dTargetsPipe
-        extends MutatingPipe<Pair<Mat, List<TrackedTarget>>, Draw2dTargetsPipe.Draw2dTargetsParams> {
-    MatOfPoint tempMat = new MatOfPoint();
-    private static final Logger logger = new Logger(Draw2dTargetsPipe.class, LogGroup.General);
+        extends MutatingPipe<
+                Pair<Overlay, List<TrackedTarget>>, Draw2dTargetsPipe.Draw2dTargetsParams> {
+    private final Point[] vertices = {new Point(), new Point(), new Point(), new Point()};
 
     @Override
-    protected Void process(Pair<Mat, List<TrackedTarget>> in) {
-        var imRows = in.getLeft().rows();
-        var imCols = in.getLeft().cols();
-        var imageSize = Math.sqrt(imRows * imCols);
+    protected Void process(Pair<Overlay, List<TrackedTarget>> in) {
+        var overlay = in.getLeft();
+        var imageSize = Math.sqrt(overlay.getWidth() * overlay.getHeight());
         var textSize = params.kPixelsToText * imageSize;
-        var thickness = params.kPixelsToThickness * imageSize;
+        var thickness = (int) (params.kPixelsToThickness * imageSize);
+        var boxThickness = (int) Math.ceil(imageSize * params.kPixelsToBoxThickness);
+        var scale = 1.0 / params.divisor.value;
 
         if (!params.shouldDraw) return null;
 
@@ -52,43 +50,23 @@ public class Draw2dTargetsPipe
                         || params.showMaximumBox
                         || params.showRotatedBox
                         || params.showShape)) {
-            var centroidColour = ColorHelper.colorToScalar(params.centroidColor);
-            var maximumBoxColour = ColorHelper.colorToScalar(params.maximumBoxColor);
-            var rotatedBoxColour = ColorHelper.colorToScalar(params.rotatedBoxColor);
-            var circleColor = ColorHelper.colorToScalar(params.circleColor);
-            var shapeColour = ColorHelper.colorToScalar(params.shapeOutlineColour);
-
             for (int i = 0; i < (params.showMultipleTargets ? in.getRight().size() : 1); i++) {
-                Point[] vertices = new Point[4];
-                MatOfPoint contour = new MatOfPoint();
-
-                if (i != 0 && !params.showMultipleTargets) {
-                    break;
-                }
-
                 TrackedTarget target = in.getRight().get(i);
                 RotatedRect r = target.getMinAreaRect();
 
                 if (r == null) continue;
 
-                r.points(vertices);
-                dividePointArray(vertices);
-                contour.fromArray(vertices);
+                getVertices(r, scale);
 
                 if (params.shouldShowRotatedBox(target.getShape())) {
-                    Imgproc.drawContours(
-                            in.getLeft(),
-                            List.of(contour),
-                            0,
-                            rotatedBoxColour,
-                            (int) Math.ceil(imageSize * params.kPixelsToBoxThickness));
+                    overlay.polygon(vertices, 1, params.rotatedBoxColor, boxThickness);
                 } else if (params.shouldShowCircle(target.getShape())) {
-                    Imgproc.circle(
-                            in.getLeft(),
-                            target.getShape().center,
-                            (int) target.getShape().radius,
-                            circleColor,
-                            (int) Math.ceil(imageSize * params.kPixelsToBoxThickness));
+                    overlay.circle(
+                            target.getShape().center.x * scale,
+                            target.getShape().center.y * scale,
+                            (int) (target.getShape().radius * scale),
+                            params.circleColor,
+                            boxThickness);
                 } else {
                     // draw approximate polygon
                     var poly = target.getApproximateBoundingPolygon();
@@ -96,77 +74,59 @@ public class Draw2dTargetsPipe
                     // fall back on the shape's approx poly dp
                     if (poly == null && target.getShape() != null)
                         poly = target.getShape().getContour().getApproxPolyDp();
-                    if (poly != null) {
-                        //                        divideMat2f(poly, pointMat);
-                        var mat = new MatOfPoint();
-                        mat.fromArray(poly.toArray());
-                        Imgproc.drawContours(
-                                in.getLeft(), List.of(mat), -1, ColorHelper.colorToScalar(Color.blue), 2);
-                        mat.release();
-                    }
+                    if (poly != null) overlay.polygon(poly, scale, Color.blue, 2);
                 }
 
                 if (params.showMaximumBox) {
-                    Rect box = Imgproc.boundingRect(contour);
-                    Imgproc.rectangle(
-                            in.getLeft(),
-                            new Point(box.x, box.y),
-                            new Point(box.x + box.width, box.y + box.height),
-                            maximumBoxColour,
-                            (int) Math.ceil(imageSize * params.kPixelsToBoxThickness));
+                    double minX = vertices[0].x;
+                    double maxX = minX;
+                    double minY = vertices[0].y;
+                    double maxY = minY;
+                    for (var v : vertices) {
+                        minX = Math.min(minX, v.x);
+                        maxX = Math.max(maxX, v.x);
+                        minY = Math.min(minY, v.y);
+                        maxY = Math.max(maxY, v.y);
+                    }
+                    overlay.rectangle(minX, minY, maxX, maxY, params.maximumBoxColor, boxThickness);
                 }
 
                 if (params.showShape) {
-                    divideMat(target.m_mainContour.mat, tempMat);
-                    Imgproc.drawContours(
-                            in.getLeft(),
-                            List.of(tempMat),
-                            -1,
-                            shapeColour,
-                            (int) Math.ceil(imageSize * params.kPixelsToBoxThickness));
+                    overlay.polygon(
+                            target.m_mainContour.mat, scale, params.shapeOutlineColour, boxThickness);
                 }
 
                 if (params.showContourNumber) {
                     var center = target.m_mainContour.getCenterPoint();
-                    var textPos =
-                            new Point(
-                                    center.x + params.kPixelsToOffset * imageSize,
-                                    center.y - params.kPixelsToOffset * imageSize);
-                    dividePoint(textPos);
-
-                    Imgproc.putText(
-                            in.getLeft(),
+                    overlay.text(
                             String.valueOf(i),
-                            textPos,
-                            0,
+                            (center.x + params.kPixelsToOffset * imageSize) * scale,
+                            (center.y - params.kPixelsToOffset * imageSize) * scale,
                             textSize,
-                            ColorHelper.colorToScalar(params.textColor),
-                            (int) thickness);
+                            params.textColor,
+                            thickness);
                 }
 
                 if (params.showCentroid) {
-                    Point centroid = target.getTargetOffsetPoint().clone();
-                    dividePoint(centroid);
+                    Point centroid = target.getTargetOffsetPoint();
                     var crosshairRadius = (int) (imageSize * params.kPixelsToCentroidRadius);
-                    var x = centroid.x;
-                    var y = centroid.y;
-                    Point xMax = new Point(x + crosshairRadius, y);
-                    Point xMin = new Point(x - crosshairRadius, y);
-                    Point yMax = new Point(x, y + crosshairRadius);
-                    Point yMin = new Point(x, y - crosshairRadius);
-
-                    Imgproc.line(
-                            in.getLeft(),
-                            xMax,
-                            xMin,
-                            centroidColour,
-                            (int) Math.ceil(imageSize * params.kPixelsToBoxThickness));
-                    Imgproc.line(
-                            in.getLeft(),
-                            yMax,
-                            yMin,
-                            centroidColour,
-                            (int) Math.ceil(imageSize * params.kPixelsToBoxThickness));
+                    var x = centroid.x * scale;
+                    var y = centroid.y * scale;
+
+                    overlay.line(
+                            x + crosshairRadius,
+                            y,
+                            x - crosshairRadius,
+                            y,
+                            params.centroidColor,
+                            boxThickness);
+                    overlay.line(
+                            x,
+                            y + crosshairRadius,
+                            x,
+                            y - crosshairRadius,
+                            params.centroidColor,
+                            boxThickness);
                 }
             }
         }
@@ -174,33 +134,27 @@ public class Draw2dTargetsPipe
         return null;
     }
 
-    private void divideMat(MatOfPoint src, MatOfPoint dst) {
-        var hull = src.toArray();
-        for (Point point : hull) {
-            dividePoint(point);
-        }
-        dst.fromArray(hull);
-    }
-
-    /** Scale a given point list by the current frame divisor. the point list is mutated! */
-    private void dividePointList(List<Point> points) {
-        for (var p : points) {
-            dividePoint(p);
+    /** Fill {@link #vertices} with the scaled corners of a rect, like RotatedRect.points(). */
+    private void getVertices(RotatedRect r, double scale) {
+        double angle = Math.toRadians(r.angle);
+        double b = Math.cos(angle) * 0.5;
+        double a = Math.sin(angle) * 0.5;
+
+        vertices[0].x = r.center.x - a * r.size.height - b * r.size.width;
+        vertices[0].y = r.center.y + b * r.size.height - a * r.size.width;
+        vertices[1].x = r.center.x + a * r.size.height - b * r.size.width;
+        vertices[1].y = r.center.y - b * r.size.height - a * r.size.width;
+        vertices[2].x = 2 * r.center.x - vertices[0].x;
+        vertices[2].y = 2 * r.center.y - vertices[0].y;
+        vertices[3].x = 2 * r.center.x - vertices[1].x;
+        vertices[3].y = 2 * r.center.y - vertices[1].y;
+
+        for (var v : vertices) {
+            v.x *= scale;
+            v.y *= scale;
         }
     }
 
-    /** Scale a given point array by the current frame divisor. the point list is mutated! */
-    private void dividePointArray(Point[] points) {
-        for (var p : points) {
-            dividePoint(p);
-        }
-    }
-
-    private void dividePoint(Point p) {
-        p.x = p.x / (double) params.divisor.value;
-        p.y = p.y / (double) params.divisor.value;
-    }
-
     public static class Draw2dTargetsParams {
         public double kPixelsToText = 0.0025;
         public double kPixelsToThickness = 0.008;
@@ -22,119 +22,93 @@ import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
 import org.opencv.calib3d.Calib3d;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
-import org.opencv.core.Point;
-import org.opencv.imgproc.Imgproc;
+import org.opencv.core.MatOfPoint3f;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
-import org.photonvision.common.util.ColorHelper;
 import org.photonvision.vision.calibration.CameraCalibrationCoefficients;
 import org.photonvision.vision.frame.FrameDivisor;
+import org.photonvision.vision.opencv.Overlay;
 import org.photonvision.vision.pipe.MutatingPipe;
 import org.photonvision.vision.target.TargetModel;
 import org.photonvision.vision.target.TrackedTarget;
 
 public class Draw3dTargetsPipe
-        extends MutatingPipe<Pair<Mat, List<TrackedTarget>>, Draw3dTargetsPipe.Draw3dContoursParams> {
+        extends MutatingPipe<
+                Pair<Overlay, List<TrackedTarget>>, Draw3dTargetsPipe.Draw3dContoursParams> {
     Logger logger = new Logger(Draw3dTargetsPipe.class, LogGroup.VisionModule);
 
+    private final MatOfPoint2f projectedPoints = new MatOfPoint2f();
+    private final Mat jacobian = new Mat();
+    private float[] bottomPoints = new float[16];
+    private float[] topPoints = new float[16];
+
     @Override
-    protected Void process(Pair<Mat, List<TrackedTarget>> in) {
+    protected Void process(Pair<Overlay, List<TrackedTarget>> in) {
         if (!params.shouldDraw) return null;
 
+        var overlay = in.getLeft();
+        var scale = 1.0 / params.divisor.value;
+
         for (var target : in.getRight()) {
             // draw convex hull
-            var pointMat = new MatOfPoint();
-            divideMat2f(target.m_mainContour.getConvexHull(), pointMat);
-            if (pointMat.size().empty()) {
+            var hull = target.m_mainContour.getConvexHull();
+            if (hull.empty()) {
                 logger.error("Convex hull is empty?");
-                logger.debug(
-                        "Orig. Convex Hull: " + target.m_mainContour.getConvexHull().size().toString());
+                logger.debug("Orig. Convex Hull: " + hull.size().toString());
                 continue;
             }
-            Imgproc.drawContours(
-                    in.getLeft(), List.of(pointMat), -1, ColorHelper.colorToScalar(Color.green), 1);
+            overlay.polygon(hull, scale, Color.green, 1);
 
             // draw approximate polygon
             var poly = target.getApproximateBoundingPolygon();
-            if (poly != null) {
-                divideMat2f(poly, pointMat);
-                Imgproc.drawContours(
-                        in.getLeft(), List.of(pointMat), -1, ColorHelper.colorToScalar(Color.blue), 2);
-            }
+            if (poly != null) overlay.polygon(poly, scale, Color.blue, 2);
 
             // Draw floor and top
             if (target.getCameraRelativeRvec() != null && target.getCameraRelativeTvec() != null) {
-                var tempMat = new MatOfPoint2f();
-                var jac = new Mat();
-                var bottomModel = params.targetModel.getVisualizationBoxBottom();
-                var topModel = params.targetModel.getVisualizationBoxTop();
-                Calib3d.projectPoints(
-                        bottomModel,
-                        target.getCameraRelativeRvec(),
-                        target.getCameraRelativeTvec(),
-                        params.cameraCalibrationCoefficients.getCameraIntrinsicsMat(),
-                        params.cameraCalibrationCoefficients.getCameraExtrinsicsMat(),
-                        tempMat,
-                        jac);
-                var bottomPoints = tempMat.toList();
-                Calib3d.projectPoints(
-                        topModel,
-                        target.getCameraRelativeRvec(),
-                        target.getCameraRelativeTvec(),
-                        params.cameraCalibrationCoefficients.getCameraIntrinsicsMat(),
-                        params.cameraCalibrationCoefficients.getCameraExtrinsicsMat(),
-                        tempMat,
-                        jac);
-                var topPoints = tempMat.toList();
-
-                dividePointList(bottomPoints);
-                dividePointList(topPoints);
+                bottomPoints =
+                        project(params.targetModel.getVisualizationBoxBottom(), target, bottomPoints);
+                int count = (int) projectedPoints.total();
+                topPoints = project(params.targetModel.getVisualizationBoxTop(), target, topPoints);
 
                 // floor, then pillers, then top
-                for (int i = 0; i < bottomPoints.size(); i++) {
-                    Imgproc.line(
-                            in.getLeft(),
-                            bottomPoints.get(i),
-                            bottomPoints.get((i + 1) % (bottomPoints.size())),
-                            ColorHelper.colorToScalar(Color.green),
+                for (int i = 0; i < count; i++) {
+                    int next = (i + 1) % count;
+                    overlay.line(
+                            bottomPoints[2 * i] * scale,
+                            bottomPoints[2 * i + 1] * scale,
+                            bottomPoints[2 * next] * scale,
+                            bottomPoints[2 * next + 1] * scale,
+                            Color.green,
                             3);
                 }
-                for (int i = 0; i < bottomPoints.size(); i++) {
-                    Imgproc.line(
-                            in.getLeft(),
-                            bottomPoints.get(i),
-                            topPoints.get(i),
-                            ColorHelper.colorToScalar(Color.blue),
+                for (int i = 0; i < count; i++) {
+                    overlay.line(
+                            bottomPoints[2 * i] * scale,
+                            bottomPoints[2 * i + 1] * scale,
+                            topPoints[2 * i] * scale,
+                            topPoints[2 * i + 1] * scale,
+                            Color.blue,
                             3);
                 }
-                for (int i = 0; i < topPoints.size(); i++) {
-                    Imgproc.line(
-                            in.getLeft(),
-                            topPoints.get(i),
-                            topPoints.get((i + 1) % (bottomPoints.size())),
-                            ColorHelper.colorToScalar(Color.orange),
+                for (int i = 0; i < count; i++) {
+                    int next = (i + 1) % count;
+                    overlay.line(
+                            topPoints[2 * i] * scale,
+                            topPoints[2 * i + 1] * scale,
+                            topPoints[2 * next] * scale,
+                            topPoints[2 * next + 1] * scale,
+                            Color.orange,
                             3);
                 }
-                tempMat.release();
-                jac.release();
             }
-            pointMat.release();
 
             // draw corners
             var corners = target.getTargetCorners();
             if (corners != null && !corners.isEmpty()) {
                 for (var corner : corners) {
-                    var x = corner.x / (double) params.divisor.value;
-                    var y = corner.y / (double) params.divisor.value;
-
-                    Imgproc.circle(
-                            in.getLeft(),
-                            new Point(x, y),
-                            params.radius,
-                            ColorHelper.colorToScalar(params.color),
-                            params.radius);
+                    overlay.circle(
+                            corner.x * scale, corner.y * scale, params.radius, params.color, params.radius);
                 }
             }
         }
@@ -142,24 +116,20 @@ public class Draw3dTargetsPipe
         return null;
     }
 
-    private void divideMat2f(MatOfPoint2f src, MatOfPoint dst) {
-        var hull = src.toArray();
-        var pointArray = new Point[hull.length];
-        for (int i = 0; i < hull.length; i++) {
-            var hullAtI = hull[i];
-            pointArray[i] =
-                    new Point(
-                            hullAtI.x / (double) params.divisor.value, hullAtI.y / (double) params.divisor.value);
-        }
-        dst.fromArray(pointArray);
-    }
-
-    /** Scale a given point list by the current frame divisor. the point list is mutated! */
-    private void dividePointList(List<Point> points) {
-        for (var p : points) {
-            p.x = p.x / (double) params.divisor.value;
-            p.y = p.y / (double) params.divisor.value;
-        }
+    /** Project a model into the image, returning its points as x, y pairs in {@code into}. */
+    private float[] project(MatOfPoint3f model, TrackedTarget target, float[] into) {
+        Calib3d.projectPoints(
+                model,
+                target.getCameraRelativeRvec(),
+                target.getCameraRelativeTvec(),
+                params.cameraCalibrationCoefficients.getCameraIntrinsicsMat(),
+                params.cameraCalibrationCoefficients.getCameraExtrinsicsMat(),
+                projectedPoints,
+                jacobian);
+        int length = (int) projectedPoints.total() * 2;
+        if (into.length < length) into = new float[length];
+        projectedPoints.get(0, 0, into);
+        return into;
     }
 
     public static class Draw3dContoursParams {
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.pipe.impl;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.opencv.core.Mat;
+import org.photonvision.vision.opencv.Overlay;
+import org.photonvision.vision.pipe.MutatingPipe;
+
+/** Pipe that draws an {@link Overlay} built by the other draw pipes onto an image. */
+public class DrawOverlayPipe extends MutatingPipe<Pair<Mat, Overlay>, Void> {
+    @Override
+    protected Void process(Pair<Mat, Overlay> in) {
+        in.getRight().drawOn(in.getLeft());
+        return null;
+    }
+}
@@ -23,27 +23,44 @@ import org.opencv.imgproc.Imgproc;
 import org.photonvision.vision.pipe.MutatingPipe;
 
 public class ErodeDilatePipe extends MutatingPipe<Mat, ErodeDilatePipe.ErodeDilateParams> {
+    // Kept across params, so changing settings doesn't allocate a new native Mat each time
+    private Mat kernel;
+    private int kernelSize = -1;
+    private int kernelBuildCount = 0;
+
     @Override
     protected Void process(Mat in) {
+        if (!params.shouldErode() && !params.shouldDilate()) return null;
+
+        if (kernelSize != params.getKernelSize()) {
+            if (kernel != null) kernel.release();
+            kernelSize = params.getKernelSize();
+            kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(kernelSize, kernelSize));
+            kernelBuildCount++;
+        }
         if (params.shouldErode()) {
-            Imgproc.erode(in, in, params.getKernel());
+            Imgproc.erode(in, in, kernel);
         }
         if (params.shouldDilate()) {
-            Imgproc.dilate(in, in, params.getKernel());
+            Imgproc.dilate(in, in, kernel);
         }
         return null;
     }
 
+    /** @return How many native structuring elements this pipe has allocated. */
+    public int getKernelBuildCount() {
+        return kernelBuildCount;
+    }
+
     public static class ErodeDilateParams {
         private final boolean m_erode;
         private final boolean m_dilate;
-        private final Mat m_kernel;
+        private final int m_kernelSize;
 
         public ErodeDilateParams(boolean erode, boolean dilate, int kernelSize) {
             m_erode = erode;
             m_dilate = dilate;
-            m_kernel =
-                    Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(kernelSize, kernelSize));
+            m_kernelSize = kernelSize;
         }
 
         public boolean shouldErode() {
@@ -54,8 +71,8 @@ public class ErodeDilatePipe extends MutatingPipe<Mat, ErodeDilatePipe.ErodeDila
             return m_dilate;
         }
 
-        public Mat getKernel() {
-            return m_kernel;
+        public int getKernelSize() {
+            return m_kernelSize;
         }
     }
 }
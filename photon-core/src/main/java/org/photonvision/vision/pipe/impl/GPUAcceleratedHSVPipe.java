@@ -33,6 +33,7 @@ import org.opencv.core.Mat;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.vision.pipe.CVPipe;
+import org.photonvision.vision.pipeline.PipelineProfiler;
 
 public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
     private static final String k_vertexShader =
@@ -90,34 +91,73 @@ public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
     };
     private static final int k_positionVertexAttribute =
             0; // ID for the vertex shader position variable
+    // GL_TIME_ELAPSED (desktop GL 3.3) and GL_TIME_ELAPSED_EXT (EXT_disjoint_timer_query) share a
+    // value, but neither is part of the GL4ES3 interface
+    private static final int k_timeElapsed = 0x88BF, k_gpuDisjoint = 0x8FBB;
+    // Indices into the GPU stage timings, see PipelineProfiler
+    private static final int k_uploadStage = 0, k_thresholdStage = 1, k_readbackStage = 2;
 
     public enum PBOMode {
         NONE,
         SINGLE_BUFFERED,
-        DOUBLE_BUFFERED
+        DOUBLE_BUFFERED,
+        /**
+         * Like DOUBLE_BUFFERED, but the mask read back for frame N is returned when frame N+1 is
+         * processed so the CPU never waits on the GPU. Every output lags its input by one frame,
+         * except the first one after a resolution change. {@link #getOutputFrameLag()} says which
+         * frame the last mask belongs to.
+         */
+        ASYNC_READBACK
     }
 
     private final IntBuffer vertexVBOIds = GLBuffers.newDirectIntBuffer(1),
+            vertexArrayIds = GLBuffers.newDirectIntBuffer(1),
             unpackPBOIds = GLBuffers.newDirectIntBuffer(2),
-            packPBOIds = GLBuffers.newDirectIntBuffer(2);
+            packPBOIds = GLBuffers.newDirectIntBuffer(2),
+            // Two sets of stage queries, so we can read one set back while the other is in flight
+            timerQueryIds = GLBuffers.newDirectIntBuffer(2 * PipelineProfiler.GPUHSVStageCount),
+            timerQueryResult = GLBuffers.newDirectIntBuffer(1);
 
     private final GL2ES2 gl;
+    // The same context as gl, when we have one new enough for PBOs
+    private final GL4ES3 gl3;
     private final GLProfile profile;
+    private final int programId;
     private final int outputFormat;
     private final PBOMode pboMode;
+    private final boolean hasTimerQueries, hasDisjointQuery;
     private final GLOffscreenAutoDrawableImpl.FBOImpl drawable;
     private final Texture texture;
     // The texture uniform holds the image that's being processed
     // The resolution uniform holds the current image resolution
     // The lower and upper uniforms hold the lower and upper HSV limits for thresholding
     private final int textureUniformId, resolutionUniformId, lowerUniformId, upperUniformId;
+    private int colorBufferId;
 
     private final Logger logger = new Logger(GPUAcceleratedHSVPipe.class, LogGroup.General);
 
-    private byte[] inputBytes, outputBytes;
-    private Mat outputMat = new Mat(k_startingHeight, k_startingWidth, CvType.CV_8UC1);
+    // Without PBOs we stage through direct buffers, which are wrapped as Mats so that the copies in
+    // and out of them happen in native code
+    private ByteBuffer uploadBuffer, readbackBuffer;
+    private Mat uploadMat, readbackMat;
+    private TextureData uploadTextureData;
+
+    // Masks are handed out from a small ring, so a consumer can hold on to one for a couple of
+    // frames without us allocating a new Mat every frame. They're ours, so consumers shouldn't
+    // release them (if one does, OpenCV just reallocates it the next time around)
+    private static final int k_outputRingSize = 3;
+    private final Mat[] outputMats = new Mat[k_outputRingSize];
+    private int outputIndex = 0;
+    private int outputFrameLag = 0;
+
+    private final long[] gpuStageNanos = new long[PipelineProfiler.GPUHSVStageCount];
+    private final boolean[] timerQueriesIssued = new boolean[2];
+    private int timerQuerySet = 0;
+
     private int previousWidth = -1, previousHeight = -1;
-    private int unpackIndex = 0, unpackNextIndex = 0, packIndex = 0, packNextIndex = 0;
+    private int unpackIndex = 0, packIndex = 0;
+    // Whether the pack PBO not at packIndex holds the previous frame, unread (ASYNC_READBACK only)
+    private boolean hasPendingReadback = false;
 
     public GPUAcceleratedHSVPipe(PBOMode pboMode) {
         this.pboMode = pboMode;
@@ -151,7 +191,7 @@ public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
         // care about but not compatible with PBOs. Open GL ES 3.0 and OpenGL 4.0 are compatible with
         // select coprocs *and* PBOs
         gl = pboMode == PBOMode.NONE ? drawable.getGL().getGLES2() : drawable.getGL().getGL4ES3();
-        final int programId = gl.glCreateProgram();
+        programId = gl.glCreateProgram();
 
         if (pboMode == PBOMode.NONE && !gl.glGetString(GL_EXTENSIONS).contains("GL_EXT_texture_rg")) {
             logger.warn(
@@ -172,7 +212,8 @@ public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
             // Create a color attachment texture to hold our rendered output
             var colorBufferIds = GLBuffers.newDirectIntBuffer(1);
             gl.glGenTextures(1, colorBufferIds);
-            gl.glBindTexture(GL_TEXTURE_2D, colorBufferIds.get(0));
+            colorBufferId = colorBufferIds.get(0);
+            gl.glBindTexture(GL_TEXTURE_2D, colorBufferId);
             gl.glTexImage2D(
                     GL_TEXTURE_2D,
                     0,
@@ -188,7 +229,7 @@ public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
             // Attach the texture to the framebuffer
             gl.glBindTexture(GL_TEXTURE_2D, 0);
             gl.glFramebufferTexture2D(
-                    GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorBufferIds.get(0), 0);
+                    GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorBufferId, 0);
             // Cleanup
             gl.glBindTexture(GL_TEXTURE_2D, 0);
         } else {
@@ -300,47 +341,42 @@ public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
         gl.glBufferData(
                 GL_ARRAY_BUFFER, vertexBuffer.capacity() * Float.BYTES, vertexBuffer, GL_STATIC_DRAW);
 
-        // Set up pixel unpack buffer (a PBO to transfer image data to the GPU)
-        if (pboMode != PBOMode.NONE) {
-            gl.glGenBuffers(2, unpackPBOIds);
-
-            gl.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, unpackPBOIds.get(0));
-            gl.glBufferData(
-                    GLES3.GL_PIXEL_UNPACK_BUFFER,
-                    k_startingHeight * k_startingWidth * 3,
-                    null,
-                    GLES3.GL_STREAM_DRAW);
-            if (pboMode == PBOMode.DOUBLE_BUFFERED) {
-                gl.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, unpackPBOIds.get(1));
-                gl.glBufferData(
-                        GLES3.GL_PIXEL_UNPACK_BUFFER,
-                        k_startingHeight * k_startingWidth * 3,
-                        null,
-                        GLES3.GL_STREAM_DRAW);
-            }
-            gl.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, 0);
-        }
+        // Frame rows aren't necessarily 4-byte aligned (e.g. 3 * 1366 bytes), so tell GL they're packed
+        gl.glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        gl.glPixelStorei(GL_PACK_ALIGNMENT, 1);
 
-        // Set up pixel pack buffer (a PBO to transfer the processed image back from the GPU)
         if (pboMode != PBOMode.NONE) {
-            gl.glGenBuffers(2, packPBOIds);
-
-            gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(0));
-            gl.glBufferData(
-                    GLES3.GL_PIXEL_PACK_BUFFER,
-                    k_startingHeight * k_startingWidth,
-                    null,
-                    GLES3.GL_STREAM_READ);
-            if (pboMode == PBOMode.DOUBLE_BUFFERED) {
-                gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(1));
-                gl.glBufferData(
-                        GLES3.GL_PIXEL_PACK_BUFFER,
-                        k_startingHeight * k_startingWidth,
-                        null,
-                        GLES3.GL_STREAM_READ);
+            gl3 = (GL4ES3) gl;
+
+            // Desktop core profiles won't draw without a vertex array object bound, and ES 3 is fine
+            // with one, so just always make one
+            gl3.glGenVertexArrays(1, vertexArrayIds);
+            gl3.glBindVertexArray(vertexArrayIds.get(0));
+
+            // Pixel unpack buffers (PBOs to transfer image data to the GPU) and pixel pack buffers (PBOs
+            // to transfer the processed image back from the GPU). They get sized in resize()
+            gl3.glGenBuffers(2, unpackPBOIds);
+            gl3.glGenBuffers(2, packPBOIds);
+
+            // Timer queries are optional on both ES and desktop GL, but Mesa (including llvmpipe)
+            // and most desktop drivers have them
+            hasDisjointQuery = gl3.isExtensionAvailable("GL_EXT_disjoint_timer_query");
+            hasTimerQueries =
+                    hasDisjointQuery
+                            || (!gl3.isGLES() && gl3.isExtensionAvailable("GL_ARB_timer_query"));
+            if (hasTimerQueries) {
+                gl3.glGenQueries(timerQueryIds.capacity(), timerQueryIds);
+            } else {
+                logger.info("GL implementation has no timer queries, GPU stage timings won't be available");
             }
-            gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, 0);
+        } else {
+            gl3 = null;
+            hasTimerQueries = false;
+            hasDisjointQuery = false;
         }
+
+        // We get made on whatever thread builds the pipeline, but run on the vision thread
+        drawable.getContext().release();
     }
 
     private static int createShader(GL2ES2 gl, int programId, String glslCode, int shaderType) {
@@ -370,40 +406,43 @@ public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
         return shaderId;
     }
 
-    @Override
-    protected Mat process(Mat in) {
-        if (in.width() != previousWidth && in.height() != previousHeight) {
-            logger.debug("Resizing OpenGL viewport, byte buffers, and PBOs");
-
-            drawable.setSurfaceSize(in.width(), in.height());
-            gl.glViewport(0, 0, in.width(), in.height());
-
-            previousWidth = in.width();
-            previousHeight = in.height();
-
-            inputBytes = new byte[in.width() * in.height() * 3];
+    /**
+     * Returns the GPU time spent uploading, thresholding and reading back the most recent frame with
+     * finished timer queries, indexed like {@link PipelineProfiler}'s GPU HSV stages. These trail the
+     * frame being processed by a frame or two, and are all zero if the GL implementation has no timer
+     * queries or the pipe isn't using PBOs.
+     */
+    public long[] getGPUStageNanos() {
+        return gpuStageNanos;
+    }
 
-            outputBytes = new byte[in.width() * in.height()];
-            outputMat = new Mat(k_startingHeight, k_startingWidth, CvType.CV_8UC1);
+    /**
+     * Returns how many frames the mask returned by the last {@link #run} trails the frame passed to
+     * it: 1 for {@link PBOMode#ASYNC_READBACK} once it's under way, else 0.
+     */
+    public int getOutputFrameLag() {
+        return outputFrameLag;
+    }
 
-            if (pboMode != PBOMode.NONE) {
-                gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(0));
-                gl.glBufferData(
-                        GLES3.GL_PIXEL_PACK_BUFFER, in.width() * in.height(), null, GLES3.GL_STREAM_READ);
+    private Mat nextOutputMat() {
+        if (outputMats[outputIndex] == null) outputMats[outputIndex] = new Mat();
+        var outputMat = outputMats[outputIndex];
+        outputIndex = (outputIndex + 1) % k_outputRingSize;
+        return outputMat;
+    }
 
-                if (pboMode == PBOMode.DOUBLE_BUFFERED) {
-                    gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(1));
-                    gl.glBufferData(
-                            GLES3.GL_PIXEL_PACK_BUFFER, in.width() * in.height(), null, GLES3.GL_STREAM_READ);
-                }
-            }
+    @Override
+    protected Mat process(Mat in) {
+        if (!drawable.getContext().isCurrent()) {
+            drawable.getContext().makeCurrent();
         }
 
-        if (pboMode == PBOMode.DOUBLE_BUFFERED) {
-            unpackIndex = (unpackIndex + 1) % 2;
-            unpackNextIndex = (unpackIndex + 1) % 2;
+        if (in.width() != previousWidth || in.height() != previousHeight) {
+            resize(in.width(), in.height());
         }
 
+        gl.glUseProgram(programId);
+
         // Reset the fullscreen quad
         gl.glBindBuffer(GL_ARRAY_BUFFER, vertexVBOIds.get(0));
         gl.glEnableVertexAttribArray(k_positionVertexAttribute);
@@ -416,123 +455,257 @@ public class GPUAcceleratedHSVPipe extends CVPipe<Mat, Mat, HSVPipe.HSVParams> {
         texture.bind(gl);
 
         // Load our image into the texture
-        in.get(0, 0, inputBytes);
         if (pboMode == PBOMode.NONE) {
-            ByteBuffer buf = ByteBuffer.wrap(inputBytes);
-            // (We're actually taking in BGR even though this says RGB; it's much easier and faster to
-            // switch it around in the fragment shader)
-            texture.updateImage(
-                    gl,
-                    new TextureData(
-                            profile,
-                            GL_RGB8,
-                            in.width(),
-                            in.height(),
-                            0,
-                            GL_RGB,
-                            GL_UNSIGNED_BYTE,
-                            false,
-                            false,
-                            false,
-                            buf,
-                            null));
+            in.copyTo(uploadMat);
+            texture.updateImage(gl, uploadTextureData);
         } else {
-            // Bind the PBO to the texture
-            gl.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, unpackPBOIds.get(unpackIndex));
-
-            // Copy pixels from the PBO to the texture object
-            gl.glTexSubImage2D(
-                    GLES3.GL_TEXTURE_2D,
-                    0,
-                    0,
-                    0,
-                    in.width(),
-                    in.height(),
-                    GLES3.GL_RGB8,
-                    GLES3.GL_UNSIGNED_BYTE,
-                    0);
-
-            // Bind (potentially) another PBO to update the texture source
-            gl.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, unpackPBOIds.get(unpackNextIndex));
-
-            // This call with a nullptr for the data arg tells OpenGL *not* to wait to be in sync with the
-            // GPU
-            // This causes the previous data in the PBO to be discarded
-            gl.glBufferData(
-                    GLES3.GL_PIXEL_UNPACK_BUFFER, in.width() * in.height() * 3, null, GLES3.GL_STREAM_DRAW);
-
-            // Map the a buffer of GPU memory into a place that's accessible by us
-            var buf =
-                    gl.glMapBufferRange(
-                            GLES3.GL_PIXEL_UNPACK_BUFFER,
-                            0,
-                            in.width() * in.height() * 3,
-                            GLES3.GL_MAP_WRITE_BIT);
-            buf.put(inputBytes);
-
-            gl.glUnmapBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER);
-            gl.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, 0);
+            uploadPBO(in);
         }
 
         // Put values in a uniform holding the image resolution
         gl.glUniform2f(resolutionUniformId, in.width(), in.height());
 
-        // Put values in threshold uniforms
+        // Put values in threshold uniforms. The shader works in [0, 1], but the params are in OpenCV's
+        // ranges (hue in [0, 180], saturation and value in [0, 255])
         var lowr = params.getHsvLower().val;
         var upr = params.getHsvUpper().val;
-        gl.glUniform3f(lowerUniformId, (float) lowr[0], (float) lowr[1], (float) lowr[2]);
-        gl.glUniform3f(upperUniformId, (float) upr[0], (float) upr[1], (float) upr[2]);
+        gl.glUniform3f(
+                lowerUniformId, (float) (lowr[0] / 180), (float) (lowr[1] / 255), (float) (lowr[2] / 255));
+        gl.glUniform3f(
+                upperUniformId, (float) (upr[0] / 180), (float) (upr[1] / 255), (float) (upr[2] / 255));
 
         // Draw the fullscreen quad
+        beginStage(k_thresholdStage);
         gl.glDrawArrays(GL_TRIANGLE_STRIP, 0, k_vertexPositions.length);
+        endStage();
 
         // Cleanup
         texture.disable(gl);
         gl.glDisableVertexAttribArray(k_positionVertexAttribute);
         gl.glUseProgram(0);
 
+        Mat outputMat;
         if (pboMode == PBOMode.NONE) {
-            return saveMatNoPBO(gl, in.width(), in.height());
+            outputMat = readbackNoPBO(in.width(), in.height());
         } else {
-            return saveMatPBO((GLES3) gl, in.width(), in.height(), pboMode == PBOMode.DOUBLE_BUFFERED);
+            outputMat = readbackPBO(in.width(), in.height());
         }
+        collectStageTimings();
+        return outputMat;
     }
 
-    private Mat saveMatNoPBO(GL2ES2 gl, int width, int height) {
-        ByteBuffer buffer = GLBuffers.newDirectByteBuffer(width * height);
+    private void resize(int width, int height) {
+        logger.debug("Resizing OpenGL viewport, staging buffers, and PBOs to " + width + "x" + height);
+
+        drawable.setSurfaceSize(width, height);
+        gl.glViewport(0, 0, width, height);
+
+        // JOGL only resizes the attachments it knows about, so resize our color attachment ourselves
+        // and make sure it's still the one we render to
+        gl.glBindTexture(GL_TEXTURE_2D, colorBufferId);
+        gl.glTexImage2D(
+                GL_TEXTURE_2D,
+                0,
+                outputFormat == GL_RED ? GL_R8 : GL_ALPHA8,
+                width,
+                height,
+                0,
+                outputFormat,
+                GL_UNSIGNED_BYTE,
+                null);
+        gl.glBindTexture(GL_TEXTURE_2D, 0);
+        drawable.getFBObject(GL_FRONT).bind(gl);
+        gl.glFramebufferTexture2D(
+                GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorBufferId, 0);
+        drawable.getFBObject(GL_FRONT).unbind(gl);
+
+        if (pboMode == PBOMode.NONE) {
+            if (uploadMat != null) uploadMat.release();
+            if (readbackMat != null) readbackMat.release();
+
+            uploadBuffer = GLBuffers.newDirectByteBuffer(width * height * 3);
+            uploadMat = new Mat(height, width, CvType.CV_8UC3, uploadBuffer);
+            // (We're actually taking in BGR even though this says RGB; it's much easier and faster to
+            // switch it around in the fragment shader)
+            uploadTextureData =
+                    new TextureData(
+                            profile,
+                            GL_RGB8,
+                            width,
+                            height,
+                            0,
+                            GL_RGB,
+                            GL_UNSIGNED_BYTE,
+                            false,
+                            false,
+                            false,
+                            uploadBuffer,
+                            null);
+
+            readbackBuffer = GLBuffers.newDirectByteBuffer(width * height);
+            readbackMat = new Mat(height, width, CvType.CV_8UC1, readbackBuffer);
+        } else {
+            // Give the input texture storage up front, as we only ever update it from a PBO after this
+            texture.bind(gl3);
+            gl3.glTexImage2D(
+                    GL_TEXTURE_2D, 0, GL_RGB8, width, height, 0, GL_RGB, GL_UNSIGNED_BYTE, null);
+            gl3.glBindTexture(GL_TEXTURE_2D, 0);
+
+            for (int i = 0; i < 2; i++) {
+                gl3.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, unpackPBOIds.get(i));
+                gl3.glBufferData(
+                        GLES3.GL_PIXEL_UNPACK_BUFFER, width * height * 3, null, GLES3.GL_STREAM_DRAW);
+                gl3.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(i));
+                gl3.glBufferData(GLES3.GL_PIXEL_PACK_BUFFER, width * height, null, GLES3.GL_STREAM_READ);
+            }
+            gl3.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, 0);
+            gl3.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, 0);
+
+            // Whatever was in flight was the old size
+            hasPendingReadback = false;
+        }
+
+        previousWidth = width;
+        previousHeight = height;
+    }
+
+    private void uploadPBO(Mat in) {
+        int width = in.width(), height = in.height();
+        int size = width * height * 3;
+
+        // With two PBOs, mapping this frame's doesn't have to wait on the GPU finishing its upload of
+        // the previous frame's
+        if (pboMode != PBOMode.SINGLE_BUFFERED) {
+            unpackIndex = (unpackIndex + 1) % 2;
+        }
+        gl3.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, unpackPBOIds.get(unpackIndex));
+
+        // This call with a nullptr for the data arg tells OpenGL *not* to wait to be in sync with the
+        // GPU
+        // This causes the previous data in the PBO to be discarded
+        gl3.glBufferData(GLES3.GL_PIXEL_UNPACK_BUFFER, size, null, GLES3.GL_STREAM_DRAW);
+
+        // Map the buffer of GPU memory into a place that's accessible by us, and wrap it in a Mat so
+        // the frame gets copied straight into it by OpenCV rather than through the Java heap
+        var buf =
+                gl3.glMapBufferRange(
+                        GLES3.GL_PIXEL_UNPACK_BUFFER,
+                        0,
+                        size,
+                        GLES3.GL_MAP_WRITE_BIT | GLES3.GL_MAP_INVALIDATE_BUFFER_BIT);
+        var mapped = new Mat(height, width, CvType.CV_8UC3, buf);
+        in.copyTo(mapped);
+        mapped.release();
+        gl3.glUnmapBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER);
+
+        // Copy pixels from the PBO to the texture object
+        beginStage(k_uploadStage);
+        gl3.glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, width, height, GL_RGB, GL_UNSIGNED_BYTE, 0);
+        endStage();
+
+        gl3.glBindBuffer(GLES3.GL_PIXEL_UNPACK_BUFFER, 0);
+    }
+
+    private Mat readbackNoPBO(int width, int height) {
         // We use GL_RED/GL_ALPHA to get things in a single-channel format
         // Note that which pixel format you use is *very* important to performance
         // E.g. GL_ALPHA is super slow in this case
-        gl.glReadPixels(0, 0, width, height, outputFormat, GL_UNSIGNED_BYTE, buffer);
+        readbackBuffer.rewind();
+        gl.glReadPixels(0, 0, width, height, outputFormat, GL_UNSIGNED_BYTE, readbackBuffer);
 
-        return new Mat(height, width, CvType.CV_8UC1, buffer);
+        // The staging buffer gets reused next frame, but whoever gets our output may still hold it then
+        var outputMat = nextOutputMat();
+        readbackMat.copyTo(outputMat);
+        outputFrameLag = 0;
+        return outputMat;
     }
 
-    private Mat saveMatPBO(GLES3 gl, int width, int height, boolean doubleBuffered) {
-        if (doubleBuffered) {
-            packIndex = (packIndex + 1) % 2;
-            packNextIndex = (packIndex + 1) % 2;
-        }
-
+    private Mat readbackPBO(int width, int height) {
         // Set the target framebuffer attachment to read
-        gl.glReadBuffer(GLES3.GL_COLOR_ATTACHMENT0);
+        gl3.glReadBuffer(GL_COLOR_ATTACHMENT0);
 
         // Read pixels from the framebuffer to the PBO
-        gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(packIndex));
+        gl3.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(packIndex));
         // We use GL_RED (which is always supported in GLES3) to get things in a single-channel format
         // Note that which pixel format you use is *very* important to performance
         // E.g. GL_ALPHA is super slow in this case
-        gl.glReadPixels(0, 0, width, height, GLES3.GL_RED, GLES3.GL_UNSIGNED_BYTE, 0);
+        beginStage(k_readbackStage);
+        gl3.glReadPixels(0, 0, width, height, GL_RED, GL_UNSIGNED_BYTE, 0);
+        endStage();
+
+        int readIndex = packIndex;
+        outputFrameLag = 0;
+        if (pboMode == PBOMode.ASYNC_READBACK) {
+            // Get this frame's readback going, and pick up the previous frame's, which should be done by
+            // now. The first frame has nothing before it, so it gets read back right away
+            gl3.glFlush();
+            int otherIndex = (packIndex + 1) % 2;
+            if (hasPendingReadback) {
+                readIndex = otherIndex;
+                outputFrameLag = 1;
+            }
+            hasPendingReadback = true;
+            packIndex = otherIndex;
+        }
 
-        // Map the PBO into the CPU's memory
-        gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(packNextIndex));
+        // Map the PBO into the CPU's memory, and copy it out natively. It has to be unmapped before
+        // GL can use it again, so it can't be handed out as is
+        gl3.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, packPBOIds.get(readIndex));
         var buf =
-                gl.glMapBufferRange(GLES3.GL_PIXEL_PACK_BUFFER, 0, width * height, GLES3.GL_MAP_READ_BIT);
-        buf.get(outputBytes);
-        outputMat.put(0, 0, outputBytes);
-        gl.glUnmapBuffer(GLES3.GL_PIXEL_PACK_BUFFER);
-        gl.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, 0);
+                gl3.glMapBufferRange(GLES3.GL_PIXEL_PACK_BUFFER, 0, width * height, GLES3.GL_MAP_READ_BIT);
+        var mapped = new Mat(height, width, CvType.CV_8UC1, buf);
+        var outputMat = nextOutputMat();
+        mapped.copyTo(outputMat);
+        mapped.release();
+        gl3.glUnmapBuffer(GLES3.GL_PIXEL_PACK_BUFFER);
+        gl3.glBindBuffer(GLES3.GL_PIXEL_PACK_BUFFER, 0);
 
         return outputMat;
     }
+
+    private void beginStage(int stage) {
+        if (hasTimerQueries) {
+            gl3.glBeginQuery(
+                    k_timeElapsed,
+                    timerQueryIds.get(timerQuerySet * PipelineProfiler.GPUHSVStageCount + stage));
+        }
+    }
+
+    private void endStage() {
+        if (hasTimerQueries) {
+            gl3.glEndQuery(k_timeElapsed);
+        }
+    }
+
+    private void collectStageTimings() {
+        if (!hasTimerQueries) return;
+
+        timerQueriesIssued[timerQuerySet] = true;
+        timerQuerySet = (timerQuerySet + 1) % 2;
+
+        // The other set of queries was issued last frame. Only read it if the GPU has finished with it,
+        // as waiting on it would stall us like a synchronous readback would
+        if (!timerQueriesIssued[timerQuerySet]) return;
+        int firstQuery = timerQuerySet * PipelineProfiler.GPUHSVStageCount;
+        // Queries finish in order, so if the last stage's is done they all are
+        gl3.glGetQueryObjectuiv(
+                timerQueryIds.get(firstQuery + PipelineProfiler.GPUHSVStageCount - 1),
+                GLES3.GL_QUERY_RESULT_AVAILABLE,
+                timerQueryResult);
+        if (timerQueryResult.get(0) == GL_FALSE) return;
+        timerQueriesIssued[timerQuerySet] = false;
+
+        // A disjoint event (e.g. the GPU changing clocks) makes the results meaningless
+        if (hasDisjointQuery) {
+            gl3.glGetIntegerv(k_gpuDisjoint, timerQueryResult);
+            if (timerQueryResult.get(0) != 0) return;
+        }
+
+        for (int i = 0; i < PipelineProfiler.GPUHSVStageCount; i++) {
+            gl3.glGetQueryObjectuiv(
+                    timerQueryIds.get(firstQuery + i), GLES3.GL_QUERY_RESULT, timerQueryResult);
+            gpuStageNanos[i] = Integer.toUnsignedLong(timerQueryResult.get(0));
+        }
+        PipelineProfiler.recordGPUHSVProfile(gpuStageNanos);
+    }
 }
@@ -28,15 +28,45 @@ public abstract class CVPipeline<R extends CVPipelineResult, S extends CVPipelin
     protected FrameStaticProperties frameStaticProperties;
     protected QuirkyCamera cameraQuirks;
 
+    // What the pipe params were last built from. Cleared from other threads by invalidatePipeParams
+    private volatile S builtSettings;
+    private int builtRevision;
+    private int pipeParamsBuildCount;
+
     protected void setPipeParams(
             FrameStaticProperties frameStaticProperties, S settings, QuirkyCamera cameraQuirks) {
+        // Properties are replaced rather than modified, so comparing references is enough
+        if (settings == builtSettings
+                && settings.getRevision() == builtRevision
+                && frameStaticProperties == this.frameStaticProperties
+                && cameraQuirks == this.cameraQuirks) {
+            return;
+        }
+
         this.settings = settings;
         this.frameStaticProperties = frameStaticProperties;
         this.cameraQuirks = cameraQuirks;
 
+        // Read before building, so a change made while we build triggers another rebuild
+        builtSettings = settings;
+        builtRevision = settings.getRevision();
+        pipeParamsBuildCount++;
         setPipeParamsImpl();
     }
 
+    /**
+     * Rebuild the pipe params on the next frame even if nothing changed. Params also push state into
+     * the Picam driver, which other pipelines change, so a pipeline that's reused has to rebuild
+     * when it's switched back to.
+     */
+    public void invalidatePipeParams() {
+        builtSettings = null;
+    }
+
+    int getPipeParamsBuildCount() {
+        return pipeParamsBuildCount;
+    }
+
     protected abstract void setPipeParamsImpl();
 
     protected abstract R process(Frame frame, S settings);
@@ -53,12 +83,13 @@ public abstract class CVPipeline<R extends CVPipelineResult, S extends CVPipelin
         if (settings == null) {
             throw new RuntimeException("No settings provided for pipeline!");
         }
-        setPipeParams(frame.frameStaticProperties, settings, cameraQuirks);
-
         if (frame.image.getMat().empty()) {
             //noinspection unchecked
             return (R) new CVPipelineResult(0, 0, List.of(), frame);
         }
+
+        // Empty frames each get new static properties, so only set params for real ones
+        setPipeParams(frame.frameStaticProperties, settings, cameraQuirks);
         R result = process(frame, settings);
 
         result.setImageCaptureTimestampNanos(frame.timestampNanos);
@@ -17,9 +17,11 @@
 
 package org.photonvision.vision.pipeline;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.photonvision.vision.frame.FrameDivisor;
 import org.photonvision.vision.opencv.ImageFlipMode;
 import org.photonvision.vision.opencv.ImageRotationMode;
@@ -48,6 +50,25 @@ public class CVPipelineSettings implements Cloneable {
     public boolean inputShouldShow = false;
     public boolean outputShouldShow = true;
 
+    private static final AtomicIntegerFieldUpdater<CVPipelineSettings> revisionUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(CVPipelineSettings.class, "revision");
+
+    // Not a setting itself, so it's private to keep it out of the UI and the saved JSON
+    private volatile int revision = 0;
+
+    /**
+     * Pipelines only rebuild their pipe params when this changes, so anything that changes a setting
+     * on a settings object that's already in use must call {@link #markChanged()}.
+     */
+    @JsonIgnore
+    public int getRevision() {
+        return revision;
+    }
+
+    public void markChanged() {
+        revisionUpdater.incrementAndGet(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -89,7 +110,9 @@ public class CVPipelineSettings implements Cloneable {
     @Override
     public CVPipelineSettings clone() {
         try {
-            return (CVPipelineSettings) super.clone();
+            var clone = (CVPipelineSettings) super.clone();
+            clone.revision = 0;
+            return clone;
         } catch (CloneNotSupportedException e) {
             e.printStackTrace();
             return null;
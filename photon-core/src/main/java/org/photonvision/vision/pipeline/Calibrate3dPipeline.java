@@ -26,7 +26,6 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.photonvision.common.configuration.ConfigManager;
 import org.photonvision.common.dataflow.DataChangeService;
 import org.photonvision.common.dataflow.events.OutgoingUIEvent;
@@ -34,6 +33,7 @@ import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.common.util.SerializationUtils;
 import org.photonvision.common.util.file.FileUtils;
+import org.photonvision.common.util.file.ImageWriter;
 import org.photonvision.raspi.PicamJNI;
 import org.photonvision.vision.calibration.CameraCalibrationCoefficients;
 import org.photonvision.vision.camera.CameraQuirk;
@@ -50,6 +50,9 @@ public class Calibrate3dPipeline
     // For loggging
     private static final Logger logger = new Logger(Calibrate3dPipeline.class, LogGroup.General);
 
+    // How long a snapshot may wait for room in the image writer's queue
+    private static final long SNAPSHOT_WRITE_TIMEOUT_MS = 2000;
+
     // Only 2 pipes needed, one for finding the board corners and one for actually calibrating
     private final FindBoardCornersPipe findBoardCornersPipe = new FindBoardCornersPipe();
     private final Calibrate3dPipe calibrate3dPipe = new Calibrate3dPipe();
@@ -132,9 +135,13 @@ public class Calibrate3dPipeline
 
             if (findBoardResult != null) {
                 foundCornersList.add(findBoardResult);
-                Imgcodecs.imwrite(
-                        Path.of(imageDir.toString(), "img" + foundCornersList.size() + ".jpg").toString(),
-                        inputColorMat);
+                // Saved in the background so a slow SD card doesn't stall the vision thread, but
+                // snapshots are rare and worth waiting a little for if the writer is backed up
+                var imagePath = Path.of(imageDir.toString(), "img" + foundCornersList.size() + ".jpg");
+                if (!ImageWriter.getInstance()
+                        .writeBlocking(imagePath, inputColorMat, SNAPSHOT_WRITE_TIMEOUT_MS)) {
+                    logger.error("Couldn't save calibration snapshot " + imagePath);
+                }
 
                 // update the UI
                 broadcastState();
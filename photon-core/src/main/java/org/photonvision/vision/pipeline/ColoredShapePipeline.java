@@ -64,6 +64,10 @@ public class ColoredShapePipeline
         this.settings = settings;
     }
 
+    HSVPipe getHsvPipe() {
+        return hsvPipe;
+    }
+
     @Override
     protected void setPipeParamsImpl() {
         DualOffsetValues dualOffsetValues =
@@ -77,6 +81,11 @@ public class ColoredShapePipeline
                 new RotateImagePipe.RotateImageParams(settings.inputImageRotationMode);
         rotateImagePipe.setParams(rotateImageParams);
 
+        // Color frames still go through the HSV pipe even with the GPU driver available
+        var hsvParams =
+                new HSVPipe.HSVParams(settings.hsvHue, settings.hsvSaturation, settings.hsvValue);
+        hsvPipe.setParams(hsvParams);
+
         if (cameraQuirks.hasQuirk(CameraQuirk.PiCam) && PicamJNI.isSupported()) {
             PicamJNI.setThresholds(
                     settings.hsvHue.getFirst() / 180d,
@@ -88,10 +97,6 @@ public class ColoredShapePipeline
 
             PicamJNI.setRotation(settings.inputImageRotationMode.value);
             PicamJNI.setShouldCopyColor(settings.inputShouldShow);
-        } else {
-            var hsvParams =
-                    new HSVPipe.HSVParams(settings.hsvHue, settings.hsvSaturation, settings.hsvValue);
-            hsvPipe.setParams(hsvParams);
         }
 
         ErodeDilatePipe.ErodeDilateParams erodeDilateParams =
@@ -99,10 +104,6 @@ public class ColoredShapePipeline
         // TODO: add kernel size to pipeline settings
         erodeDilatePipe.setParams(erodeDilateParams);
 
-        HSVPipe.HSVParams hsvParams =
-                new HSVPipe.HSVParams(settings.hsvHue, settings.hsvSaturation, settings.hsvValue);
-        hsvPipe.setParams(hsvParams);
-
         SpeckleRejectPipe.SpeckleRejectParams speckleRejectParams =
                 new SpeckleRejectPipe.SpeckleRejectParams(settings.contourSpecklePercentage);
         speckleRejectPipe.setParams(speckleRejectParams);
@@ -25,8 +25,10 @@ import org.photonvision.raspi.PicamJNI;
 import org.photonvision.vision.camera.CameraQuirk;
 import org.photonvision.vision.frame.Frame;
 import org.photonvision.vision.opencv.CVMat;
+import org.photonvision.vision.opencv.Overlay;
 import org.photonvision.vision.pipe.impl.CalculateFPSPipe;
 import org.photonvision.vision.pipe.impl.Draw2dCrosshairPipe;
+import org.photonvision.vision.pipe.impl.DrawOverlayPipe;
 import org.photonvision.vision.pipe.impl.ResizeImagePipe;
 import org.photonvision.vision.pipe.impl.RotateImagePipe;
 import org.photonvision.vision.pipeline.result.DriverModePipelineResult;
@@ -35,9 +37,12 @@ public class DriverModePipeline
         extends CVPipeline<DriverModePipelineResult, DriverModePipelineSettings> {
     private final RotateImagePipe rotateImagePipe = new RotateImagePipe();
     private final Draw2dCrosshairPipe draw2dCrosshairPipe = new Draw2dCrosshairPipe();
+    private final DrawOverlayPipe drawOverlayPipe = new DrawOverlayPipe();
     private final CalculateFPSPipe calculateFPSPipe = new CalculateFPSPipe();
     private final ResizeImagePipe resizeImagePipe = new ResizeImagePipe();
 
+    private final Overlay overlay = new Overlay();
+
     public DriverModePipeline() {
         settings = new DriverModePipelineSettings();
     }
@@ -83,10 +88,13 @@ public class DriverModePipeline
             totalNanos += rotateImageResult.nanosElapsed;
         }
 
-        var draw2dCrosshairResult = draw2dCrosshairPipe.run(Pair.of(inputMat, List.of()));
+        overlay.reset(inputMat.cols(), inputMat.rows());
+        var draw2dCrosshairResult = draw2dCrosshairPipe.run(Pair.of(overlay, List.of()));
+        var drawOverlayResult = drawOverlayPipe.run(Pair.of(inputMat, overlay));
 
         // calculate elapsed nanoseconds
         totalNanos += draw2dCrosshairResult.nanosElapsed;
+        totalNanos += drawOverlayResult.nanosElapsed;
 
         var fpsResult = calculateFPSPipe.run(null);
         var fps = fpsResult.output;
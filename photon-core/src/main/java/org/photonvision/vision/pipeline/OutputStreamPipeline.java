@@ -17,6 +17,7 @@
 
 package org.photonvision.vision.pipeline;
 
+import java.util.Arrays;
 import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
 import org.photonvision.vision.frame.Frame;
@@ -24,6 +25,7 @@ import org.photonvision.vision.frame.FrameStaticProperties;
 import org.photonvision.vision.opencv.CVMat;
 import org.photonvision.vision.opencv.ContourShape;
 import org.photonvision.vision.opencv.DualOffsetValues;
+import org.photonvision.vision.opencv.Overlay;
 import org.photonvision.vision.pipe.impl.*;
 import org.photonvision.vision.pipeline.result.CVPipelineResult;
 import org.photonvision.vision.target.TrackedTarget;
@@ -37,13 +39,30 @@ public class OutputStreamPipeline {
     private final Draw2dCrosshairPipe draw2dCrosshairPipe = new Draw2dCrosshairPipe();
     private final Draw2dTargetsPipe draw2dTargetsPipe = new Draw2dTargetsPipe();
     private final Draw3dTargetsPipe draw3dTargetsPipe = new Draw3dTargetsPipe();
+    private final DrawOverlayPipe drawOverlayPipe = new DrawOverlayPipe();
     private final CalculateFPSPipe calculateFPSPipe = new CalculateFPSPipe();
     private final ResizeImagePipe resizeImagePipe = new ResizeImagePipe();
 
     private final long[] pipeProfileNanos = new long[12];
 
+    private final Overlay overlay = new Overlay();
+
+    // What the pipe params were last built from, see CVPipeline
+    private AdvancedPipelineSettings builtSettings;
+    private int builtRevision;
+    private FrameStaticProperties builtFrameStaticProperties;
+
     protected void setPipeParams(
             FrameStaticProperties frameStaticProperties, AdvancedPipelineSettings settings) {
+        if (settings == builtSettings
+                && settings.getRevision() == builtRevision
+                && frameStaticProperties == builtFrameStaticProperties) {
+            return;
+        }
+        builtSettings = settings;
+        builtRevision = settings.getRevision();
+        builtFrameStaticProperties = frameStaticProperties;
+
         var dualOffsetValues =
                 new DualOffsetValues(
                         settings.offsetDualPointA,
@@ -80,53 +99,82 @@ public class OutputStreamPipeline {
                 new ResizeImagePipe.ResizeImageParams(settings.streamingFrameDivisor));
     }
 
+    /**
+     * Resize, convert and draw on the frames that are going to be streamed. Work for a stream nobody
+     * is consuming is skipped entirely, and its frame is left null in the result.
+     *
+     * @param drawInput Whether the input frame is going to be streamed or saved
+     * @param drawOutput Whether the output frame is going to be streamed or saved
+     * @param drawOverlay Whether to draw targets onto the frames. When nothing needs them drawn
+     *     in, the overlay is still built, for {@link #getOverlay()}.
+     */
     public CVPipelineResult process(
             Frame inputFrame,
             Frame outputFrame,
             AdvancedPipelineSettings settings,
-            List<TrackedTarget> targetsToDraw) {
+            List<TrackedTarget> targetsToDraw,
+            boolean drawInput,
+            boolean drawOutput,
+            boolean drawOverlay) {
         setPipeParams(inputFrame.frameStaticProperties, settings);
         var inMat = inputFrame.image.getMat();
         var outMat = outputFrame.image.getMat();
 
         long sumPipeNanosElapsed = 0L;
+        Arrays.fill(pipeProfileNanos, 0);
+
+        boolean draw3d =
+                settings.solvePNPEnabled
+                        || (settings.solvePNPEnabled
+                                && settings instanceof ColoredShapePipelineSettings
+                                && ((ColoredShapePipelineSettings) settings).contourShape
+                                        == ContourShape.Circle);
+
+        if (drawInput || drawOutput) {
+            // Work out what to draw once, at the size the frames are about to be shrunk to, then
+            // draw it onto each frame that's going out
+            int divisor = settings.streamingFrameDivisor.value;
+            overlay.reset(inMat.cols() / divisor, inMat.rows() / divisor);
+            var overlayAndTargets = Pair.of(overlay, targetsToDraw);
+
+            // Draw 2D Crosshair
+            var draw2dCrosshairResult = draw2dCrosshairPipe.run(overlayAndTargets);
+            sumPipeNanosElapsed += pipeProfileNanos[3] = draw2dCrosshairResult.nanosElapsed;
+
+            // Draw 3D Targets if necessary
+            if (draw3d) {
+                var drawResult = draw3dTargetsPipe.run(overlayAndTargets);
+                sumPipeNanosElapsed += pipeProfileNanos[7] = drawResult.nanosElapsed;
+            }
+
+            // Draw 2D contours
+            var draw2dTargetsResult = draw2dTargetsPipe.run(overlayAndTargets);
+            sumPipeNanosElapsed += pipeProfileNanos[5] = draw2dTargetsResult.nanosElapsed;
+        }
 
-        // Resize both in place before doing any conversion
-        sumPipeNanosElapsed += pipeProfileNanos[0] = resizeImagePipe.run(inMat).nanosElapsed;
-        sumPipeNanosElapsed += pipeProfileNanos[1] = resizeImagePipe.run(outMat).nanosElapsed;
-
-        // Convert single-channel HSV output mat to 3-channel BGR in preparation for streaming
-        var outputMatPipeResult = outputMatPipe.run(outMat);
-        sumPipeNanosElapsed += pipeProfileNanos[2] = outputMatPipeResult.nanosElapsed;
-
-        // Draw 2D Crosshair on input and output
-        var draw2dCrosshairResultOnInput = draw2dCrosshairPipe.run(Pair.of(inMat, targetsToDraw));
-        sumPipeNanosElapsed += pipeProfileNanos[3] = draw2dCrosshairResultOnInput.nanosElapsed;
-
-        var draw2dCrosshairResultOnOutput = draw2dCrosshairPipe.run(Pair.of(outMat, targetsToDraw));
-        sumPipeNanosElapsed += pipeProfileNanos[4] = draw2dCrosshairResultOnOutput.nanosElapsed;
-
-        // Draw 3D Targets on input and output if necessary
-        if (settings.solvePNPEnabled
-                || (settings.solvePNPEnabled
-                        && settings instanceof ColoredShapePipelineSettings
-                        && ((ColoredShapePipelineSettings) settings).contourShape == ContourShape.Circle)) {
-            var drawOnInputResult = draw3dTargetsPipe.run(Pair.of(inMat, targetsToDraw));
-            sumPipeNanosElapsed += pipeProfileNanos[7] = drawOnInputResult.nanosElapsed;
-
-            var drawOnOutputResult = draw3dTargetsPipe.run(Pair.of(outMat, targetsToDraw));
-            sumPipeNanosElapsed += pipeProfileNanos[8] = drawOnOutputResult.nanosElapsed;
-        } else {
-            pipeProfileNanos[7] = 0;
-            pipeProfileNanos[8] = 0;
+        if (drawInput) {
+            // Resize in place before drawing
+            sumPipeNanosElapsed += pipeProfileNanos[0] = resizeImagePipe.run(inMat).nanosElapsed;
+
+            if (drawOverlay) {
+                var drawOverlayResult = drawOverlayPipe.run(Pair.of(inMat, overlay));
+                sumPipeNanosElapsed += pipeProfileNanos[4] = drawOverlayResult.nanosElapsed;
+            }
         }
 
-        // Draw 2D contours on input and output
-        var draw2dTargetsOnInput = draw2dTargetsPipe.run(Pair.of(inMat, targetsToDraw));
-        sumPipeNanosElapsed += pipeProfileNanos[5] = draw2dTargetsOnInput.nanosElapsed;
+        if (drawOutput) {
+            // Resize in place before doing any conversion
+            sumPipeNanosElapsed += pipeProfileNanos[1] = resizeImagePipe.run(outMat).nanosElapsed;
+
+            // Convert single-channel HSV output mat to 3-channel BGR in preparation for streaming
+            var outputMatPipeResult = outputMatPipe.run(outMat);
+            sumPipeNanosElapsed += pipeProfileNanos[2] = outputMatPipeResult.nanosElapsed;
 
-        var draw2dTargetsOnOutput = draw2dTargetsPipe.run(Pair.of(outMat, targetsToDraw));
-        sumPipeNanosElapsed += pipeProfileNanos[6] = draw2dTargetsOnOutput.nanosElapsed;
+            if (drawOverlay) {
+                var drawOverlayResult = drawOverlayPipe.run(Pair.of(outMat, overlay));
+                sumPipeNanosElapsed += pipeProfileNanos[6] = drawOverlayResult.nanosElapsed;
+            }
+        }
 
         var fpsResult = calculateFPSPipe.run(null);
         var fps = fpsResult.output;
@@ -135,7 +183,23 @@ public class OutputStreamPipeline {
                 sumPipeNanosElapsed,
                 fps, // Unused but here just in case
                 targetsToDraw,
-                new Frame(new CVMat(outMat), outputFrame.frameStaticProperties),
-                new Frame(new CVMat(inMat), inputFrame.frameStaticProperties));
+                drawOutput
+                        ? new Frame(
+                                new CVMat(outMat),
+                                inputFrame.timestampNanos,
+                                outputFrame.frameStaticProperties)
+                        : null,
+                drawInput
+                        ? new Frame(
+                                new CVMat(inMat), inputFrame.timestampNanos, inputFrame.frameStaticProperties)
+                        : null);
+    }
+
+    /**
+     * The overlay built by the last call to {@link #process}, in the pixels of the (shrunk) stream
+     * frames. Only valid until the next call.
+     */
+    public Overlay getOverlay() {
+        return overlay;
     }
 }
@@ -17,9 +17,12 @@
 
 package org.photonvision.vision.pipeline;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.common.util.math.MathUtils;
+import org.photonvision.vision.pipe.impl.GPUAcceleratedHSVPipe;
 
 public class PipelineProfiler {
     private static boolean shouldLog;
@@ -28,6 +31,8 @@ public class PipelineProfiler {
             new Logger(ReflectivePipeline.class, LogGroup.VisionModule);
     private static final Logger coloredShapeLogger =
             new Logger(ColoredShapePipeline.class, LogGroup.VisionModule);
+    private static final Logger gpuHSVLogger =
+            new Logger(GPUAcceleratedHSVPipe.class, LogGroup.VisionModule);
 
     /**
      * Indices for Reflective profiling 0 - rotateImagePipe 1 - inputCopy (not a pipe) 2 - hsvPipe 3 -
@@ -53,6 +58,16 @@ public class PipelineProfiler {
 
     public static final int ReflectivePipeCount = ReflectivePipeNames.length;
 
+    /**
+     * Indices for GPU HSV profiling, as measured by GL timer queries 0 - upload (PBO to texture) 1 -
+     * threshold (drawing the HSV shader) 2 - readback (framebuffer to PBO)
+     */
+    private static final String[] GPUHSVStageNames = new String[] {"Upload", "Threshold", "Readback"};
+
+    public static final int GPUHSVStageCount = GPUHSVStageNames.length;
+
+    private static final long[] latestGPUHSVNanos = new long[GPUHSVStageCount];
+
     protected static String getReflectiveProfileString(long[] nanos) {
         if (nanos.length != ReflectivePipeCount) {
             return "Invalid data";
@@ -86,12 +101,65 @@ public class PipelineProfiler {
         return sb.toString();
     }
 
+    protected static String getGPUHSVProfileString(long[] nanos) {
+        if (nanos.length != GPUHSVStageCount) {
+            return "Invalid data";
+        }
+
+        var sb = new StringBuilder("GPU profiling - ");
+        double totalMs = 0;
+        for (int i = 0; i < nanos.length; i++) {
+            sb.append(GPUHSVStageNames[i]);
+            sb.append(": ");
+            var ms = MathUtils.roundTo(nanos[i] / 1e+6, 3);
+            totalMs += ms;
+            sb.append(ms);
+            sb.append("ms, ");
+        }
+
+        sb.append("Total: ");
+        sb.append(MathUtils.roundTo(totalMs, 3));
+        sb.append("ms");
+
+        return sb.toString();
+    }
+
     public static void printReflectiveProfile(long[] nanos) {
         if (shouldLog) {
             reflectiveLogger.trace(() -> getReflectiveProfileString(nanos));
         }
     }
 
+    public static void printGPUHSVProfile(long[] nanos) {
+        if (shouldLog) {
+            gpuHSVLogger.trace(() -> getGPUHSVProfileString(nanos));
+        }
+    }
+
+    /**
+     * Stores the GPU HSV stage timings of the latest frame to have them, so they can be read back
+     * with {@link #getGPUHSVProfile()}, and logs them if printing is enabled.
+     */
+    public static void recordGPUHSVProfile(long[] nanos) {
+        if (nanos.length != GPUHSVStageCount) return;
+
+        synchronized (latestGPUHSVNanos) {
+            System.arraycopy(nanos, 0, latestGPUHSVNanos, 0, GPUHSVStageCount);
+        }
+        printGPUHSVProfile(nanos);
+    }
+
+    /** Returns the latest recorded GPU HSV stage timings in milliseconds, keyed by stage name. */
+    public static Map<String, Double> getGPUHSVProfile() {
+        var profile = new LinkedHashMap<String, Double>();
+        synchronized (latestGPUHSVNanos) {
+            for (int i = 0; i < GPUHSVStageCount; i++) {
+                profile.put(GPUHSVStageNames[i], latestGPUHSVNanos[i] / 1e+6);
+            }
+        }
+        return profile;
+    }
+
     public static void enablePrint(boolean enable) {
         shouldLog = enable;
     }
@@ -189,6 +189,10 @@ public class PipelineManager {
                             new ColoredShapePipeline((ColoredShapePipelineSettings) desiredPipelineSettings);
                     break;
             }
+        } else {
+            // Driver mode and calibration reuse their pipelines, so rebuild what they pushed to the
+            // Picam driver while another pipeline was running
+            getCurrentUserPipeline().invalidatePipeParams();
         }
     }
 
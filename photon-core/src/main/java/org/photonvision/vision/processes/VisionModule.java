@@ -29,10 +29,13 @@ import org.photonvision.common.dataflow.DataChangeService;
 import org.photonvision.common.dataflow.events.OutgoingUIEvent;
 import org.photonvision.common.dataflow.networktables.NTDataPublisher;
 import org.photonvision.common.dataflow.websocket.UIDataPublisher;
+import org.photonvision.common.dataflow.websocket.UIOverlayPublisher;
+import org.photonvision.common.dataflow.websocket.UISettingsPublisher;
 import org.photonvision.common.hardware.HardwareManager;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.common.util.SerializationUtils;
+import org.photonvision.common.util.StartupTimeline;
 import org.photonvision.common.util.java.TriConsumer;
 import org.photonvision.vision.calibration.CameraCalibrationCoefficients;
 import org.photonvision.vision.camera.CameraQuirk;
@@ -41,7 +44,9 @@ import org.photonvision.vision.camera.USBCameraSource;
 import org.photonvision.vision.camera.ZeroCopyPicamSource;
 import org.photonvision.vision.frame.Frame;
 import org.photonvision.vision.frame.consumer.FileSaveFrameConsumer;
+import org.photonvision.vision.frame.consumer.H264FrameConsumer;
 import org.photonvision.vision.frame.consumer.MJPGFrameConsumer;
+import org.photonvision.vision.frame.consumer.MatchRecorder;
 import org.photonvision.vision.pipeline.AdvancedPipelineSettings;
 import org.photonvision.vision.pipeline.OutputStreamPipeline;
 import org.photonvision.vision.pipeline.ReflectivePipelineSettings;
@@ -72,18 +77,23 @@ public class VisionModule {
             new LinkedList<>();
     private final NTDataPublisher ntConsumer;
     private final UIDataPublisher uiDataConsumer;
+    private final UIOverlayPublisher uiOverlayPublisher;
     protected final int moduleIndex;
     protected final QuirkyCamera cameraQuirks;
+    private boolean publishedFirstResult = false;
 
     private long lastFrameConsumeMillis;
     protected TrackedTarget lastPipelineResultBestTarget;
 
     MJPGFrameConsumer dashboardInputStreamer;
     MJPGFrameConsumer dashboardOutputStreamer;
+    H264FrameConsumer h264OutputStreamer;
 
     FileSaveFrameConsumer inputFrameSaver;
     FileSaveFrameConsumer outputFrameSaver;
 
+    MatchRecorder matchRecorder;
+
     public VisionModule(PipelineManager pipelineManager, VisionSource visionSource, int index) {
         logger =
                 new Logger(
@@ -120,10 +130,20 @@ public class VisionModule {
         this.streamRunnable = new StreamRunnable(new OutputStreamPipeline());
         this.moduleIndex = index;
 
+        var config = visionSource.getSettables().getConfiguration();
+        visionRunner.setThreadPlacement(config.visionCpuAffinity, config.visionThreadNiceness);
+
         DataChangeService.getInstance().addSubscriber(new VisionModuleChangeSubscriber(this));
 
         createStreams();
 
+        matchRecorder =
+                new MatchRecorder(
+                        config.uniqueName,
+                        ConfigManager.getInstance().getRecordingsDir().resolve(config.uniqueName),
+                        config.recordingEnabled,
+                        config.recordingMaxMegabytes);
+
         recreateFpsLimitedResultConsumers();
 
         ntConsumer =
@@ -134,6 +154,7 @@ public class VisionModule {
                         pipelineManager::getDriverMode,
                         this::setDriverMode);
         uiDataConsumer = new UIDataPublisher(index);
+        uiOverlayPublisher = new UIOverlayPublisher(index);
         addResultConsumer(ntConsumer);
         addResultConsumer(uiDataConsumer);
         addResultConsumer(
@@ -163,6 +184,7 @@ public class VisionModule {
     private void destroyStreams() {
         dashboardInputStreamer.close();
         dashboardOutputStreamer.close();
+        h264OutputStreamer.close();
     }
 
     private void createStreams() {
@@ -178,6 +200,18 @@ public class VisionModule {
                 new MJPGFrameConsumer(
                         visionSource.getSettables().getConfiguration().uniqueName + "-input", inputStreamPort);
 
+        // Served by the web server at /websocket_h264/<camera index>
+        var config = visionSource.getSettables().getConfiguration();
+        h264OutputStreamer =
+                new H264FrameConsumer(
+                        Integer.toString(moduleIndex), config.h264BitrateKbps, config.h264KeyframeInterval);
+
+        var settables = visionSource.getSettables();
+        dashboardOutputStreamer.setVideoModes(
+                settables::getCurrentVideoMode, () -> settables.getAllVideoModes().values());
+        dashboardInputStreamer.setVideoModes(
+                settables::getCurrentVideoMode, () -> settables.getAllVideoModes().values());
+
         inputFrameSaver =
                 new FileSaveFrameConsumer(visionSource.getSettables().getConfiguration().nickname, "input");
         outputFrameSaver =
@@ -209,6 +243,7 @@ public class VisionModule {
                         dashboardOutputStreamer.accept(result.outputFrame);
                     else dashboardOutputStreamer.disabledTick();
                 });
+        fpsLimitedResultConsumers.add(result -> h264OutputStreamer.accept(result.outputFrame));
     }
 
     private class StreamRunnable extends Thread {
@@ -222,6 +257,7 @@ public class VisionModule {
         private boolean shouldRun = false;
 
         public StreamRunnable(OutputStreamPipeline outputStreamPipeline) {
+            super("StreamRunnable - " + visionSource.getSettables().getConfiguration().nickname);
             this.outputStreamPipeline = outputStreamPipeline;
         }
 
@@ -272,8 +308,39 @@ public class VisionModule {
                 if (shouldRun) {
                     consumeRawResults(inputFrame, outputFrame, targets);
                     try {
-                        var osr = outputStreamPipeline.process(inputFrame, outputFrame, settings, targets);
-                        consumeFpsLimitedResult(osr);
+                        // Only resize, convert and draw what's actually going to be looked at
+                        if (isStreamFrameDue()) {
+                            boolean drawInput = dashboardInputStreamer.anyClientConnections();
+                            boolean drawOutput =
+                                    dashboardOutputStreamer.anyClientConnections()
+                                            || h264OutputStreamer.anyClientConnections()
+                                            || outputFrameSaver.isSaveRequested();
+                            // Web UI viewers can ask to draw target overlays themselves
+                            boolean drawOverlay =
+                                    dashboardInputStreamer.anyClientNeedsDrawnOverlay()
+                                            || dashboardOutputStreamer.anyClientNeedsDrawnOverlay()
+                                            || h264OutputStreamer.anyClientConnections()
+                                            || outputFrameSaver.isSaveRequested();
+                            boolean publishOverlay =
+                                    dashboardInputStreamer.anyClientDrawsOwnOverlay()
+                                            || dashboardOutputStreamer.anyClientDrawsOwnOverlay();
+                            var osr =
+                                    outputStreamPipeline.process(
+                                            inputFrame,
+                                            outputFrame,
+                                            settings,
+                                            targets,
+                                            drawInput,
+                                            drawOutput,
+                                            drawOverlay);
+                            if (publishOverlay) {
+                                uiOverlayPublisher.accept(
+                                        outputStreamPipeline.getOverlay(),
+                                        inputFrame.timestampNanos,
+                                        drawOverlay);
+                            }
+                            consumeFpsLimitedResult(osr);
+                        }
                     } catch (Exception e) {
                         // Never die
                         logger.error("Exception while running stream runnable!", e);
@@ -328,6 +395,34 @@ public class VisionModule {
         }
     }
 
+    public void setVisionThreadPlacement(String cpuList, int niceness) {
+        logger.info("Placing vision thread on CPUs \"" + cpuList + "\" with niceness " + niceness);
+        var config = visionSource.getSettables().getConfiguration();
+        config.visionCpuAffinity = cpuList;
+        config.visionThreadNiceness = niceness;
+        visionRunner.setThreadPlacement(cpuList, niceness);
+    }
+
+    public void setH264StreamSettings(int bitrateKbps, int keyframeInterval) {
+        logger.info(
+                "Setting H.264 stream to "
+                        + bitrateKbps
+                        + " kbps with a keyframe every "
+                        + keyframeInterval
+                        + " frames");
+        var config = visionSource.getSettables().getConfiguration();
+        config.h264BitrateKbps = bitrateKbps;
+        config.h264KeyframeInterval = keyframeInterval;
+        h264OutputStreamer.setEncoderSettings(bitrateKbps, keyframeInterval);
+    }
+
+    public void setMatchRecording(boolean enabled, int maxMegabytes) {
+        var config = visionSource.getSettables().getConfiguration();
+        config.recordingEnabled = enabled;
+        config.recordingMaxMegabytes = maxMegabytes;
+        matchRecorder.setEnabled(enabled, maxMegabytes);
+    }
+
     private boolean isVendorCamera() {
         return visionSource.isVendorCamera();
     }
@@ -351,6 +446,7 @@ public class VisionModule {
         if (!cameraQuirks.hasQuirk(CameraQuirk.Gain)) {
             settings.cameraGain = -1;
         }
+        settings.markChanged();
 
         setPipeline(PipelineManager.CAL_3D_INDEX);
     }
@@ -424,10 +520,7 @@ public class VisionModule {
 
     void saveAndBroadcastAll() {
         saveModule();
-        DataChangeService.getInstance()
-                .publishEvent(
-                        new OutgoingUIEvent<>(
-                                "fullsettings", ConfigManager.getInstance().getConfig().toHashMap()));
+        UISettingsPublisher.getInstance().publishCameraSettings(moduleIndex, toUICameraConfig());
     }
 
     void saveAndBroadcastSelective(WsContext originContext, String propertyName, Object value) {
@@ -464,6 +557,14 @@ public class VisionModule {
         ret.fov = visionSource.getSettables().getFOV();
         ret.tiltDegrees = this.visionSource.getSettables().getCameraPitch().getDegrees();
         ret.nickname = visionSource.getSettables().getConfiguration().nickname;
+        ret.visionCpuAffinity = visionSource.getSettables().getConfiguration().visionCpuAffinity;
+        ret.visionThreadNiceness =
+                visionSource.getSettables().getConfiguration().visionThreadNiceness;
+        ret.h264BitrateKbps = visionSource.getSettables().getConfiguration().h264BitrateKbps;
+        ret.h264KeyframeInterval = visionSource.getSettables().getConfiguration().h264KeyframeInterval;
+        ret.recordingEnabled = visionSource.getSettables().getConfiguration().recordingEnabled;
+        ret.recordingMaxMegabytes =
+                visionSource.getSettables().getConfiguration().recordingMaxMegabytes;
         ret.currentPipelineSettings =
                 SerializationUtils.objectToHashMap(pipelineManager.getCurrentPipelineSettings());
         ret.currentPipelineIndex = pipelineManager.getCurrentPipelineIndex();
@@ -529,6 +630,15 @@ public class VisionModule {
     private void consumeResult(CVPipelineResult result) {
         consumePipelineResult(result);
 
+        // Record before the frames are handed off, as whoever takes them will release them
+        matchRecorder.accept(result, pipelineManager.getCurrentPipelineIndex());
+
+        if (!publishedFirstResult) {
+            publishedFirstResult = true;
+            StartupTimeline.mark(
+                    "First result from " + visionSource.getSettables().getConfiguration().nickname);
+        }
+
         // Pipelines like DriverMode and Calibrate3dPipeline have null output frames
         if (result.inputFrame != null
                 && (pipelineManager.getCurrentPipelineSettings() instanceof AdvancedPipelineSettings)) {
@@ -552,9 +662,12 @@ public class VisionModule {
         }
     }
 
+    private boolean isStreamFrameDue() {
+        return System.currentTimeMillis() - lastFrameConsumeMillis > 1000 / streamFPSCap;
+    }
+
     private void consumeFpsLimitedResult(CVPipelineResult result) {
-        long dt = System.currentTimeMillis() - lastFrameConsumeMillis;
-        if (dt > 1000 / streamFPSCap) {
+        if (isStreamFrameDue()) {
             for (var c : fpsLimitedResultConsumers) {
                 c.accept(result);
             }
@@ -21,6 +21,7 @@ import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
+import org.photonvision.common.util.ThreadPlacement;
 import org.photonvision.vision.camera.QuirkyCamera;
 import org.photonvision.vision.frame.Frame;
 import org.photonvision.vision.frame.FrameProvider;
@@ -36,6 +37,7 @@ public class VisionRunner {
     private final Supplier<CVPipeline> pipelineSupplier;
     private final Consumer<CVPipelineResult> pipelineResultConsumer;
     private final QuirkyCamera cameraQuirks;
+    private final ThreadPlacement threadPlacement;
 
     private long loopCount;
 
@@ -59,6 +61,7 @@ public class VisionRunner {
 
         visionProcessThread = new Thread(this::update);
         visionProcessThread.setName("VisionRunner - " + frameSupplier.getName());
+        threadPlacement = new ThreadPlacement(visionProcessThread.getName());
         logger = new Logger(VisionRunner.class, frameSupplier.getName(), LogGroup.VisionModule);
     }
 
@@ -66,8 +69,18 @@ public class VisionRunner {
         visionProcessThread.start();
     }
 
+    /**
+     * Pin the vision thread to a set of CPUs and set its niceness, so other work can't take cycles
+     * from it. See {@link ThreadPlacement#set(String, int)}.
+     */
+    public void setThreadPlacement(String cpuList, int niceness) {
+        threadPlacement.set(cpuList, niceness);
+    }
+
     private void update() {
         while (!Thread.interrupted()) {
+            threadPlacement.applyIfChanged();
+
             var pipeline = pipelineSupplier.get();
             var frame = frameSupplier.get();
 
@@ -25,10 +25,10 @@ import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.photonvision.common.configuration.CameraConfiguration;
 import org.photonvision.common.configuration.ConfigManager;
-import org.photonvision.common.dataflow.DataChangeService;
-import org.photonvision.common.dataflow.events.OutgoingUIEvent;
+import org.photonvision.common.dataflow.websocket.UISettingsPublisher;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
+import org.photonvision.common.util.StartupTimeline;
 import org.photonvision.common.util.TimedTaskManager;
 import org.photonvision.raspi.PicamJNI;
 import org.photonvision.vision.camera.CameraType;
@@ -82,10 +82,8 @@ public class VisionSourceManager {
         ConfigManager.getInstance().addCameraConfigurations(visionSourceList);
         var addedSources = VisionModuleManager.getInstance().addSources(visionSourceList);
         addedSources.forEach(VisionModule::start);
-        DataChangeService.getInstance()
-                .publishEvent(
-                        new OutgoingUIEvent<>(
-                                "fullsettings", ConfigManager.getInstance().getConfig().toHashMap()));
+        StartupTimeline.mark("Cameras matched and vision modules started");
+        UISettingsPublisher.getInstance().publishFullSettings();
     }
 
     protected List<VisionSource> tryMatchUSBCamImpl() {
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.*;
 import org.photonvision.common.logging.LogGroup;
@@ -127,4 +128,80 @@ public class ConfigTest {
 
         new File("test.json").delete();
     }
+
+    @Test
+    public void onlyChangedFilesAreRewritten() throws IOException {
+        var dir = Path.of("testconfigdir-incremental");
+        var mgr = new ConfigManager(dir);
+        mgr.load();
+
+        var camera = new CameraConfiguration("IncrementalCamera", "/dev/video421");
+        var tape = new ReflectivePipelineSettings();
+        tape.pipelineNickname = "Tape";
+        var cargo = new ColoredShapePipelineSettings();
+        cargo.pipelineNickname = "Cargo";
+        cargo.pipelineIndex = 1;
+        camera.addPipelineSetting(tape);
+        camera.addPipelineSetting(cargo);
+        mgr.getConfig().addCameraConfig(camera);
+        mgr.saveToDisk();
+
+        var pipelines = Path.of(dir.toString(), "cameras", "IncrementalCamera", "pipelines");
+        var tapeFile = Path.of(pipelines.toString(), "Tape.json");
+        var cargoFile = Path.of(pipelines.toString(), "Cargo.json");
+        var tapeWritten = Files.getLastModifiedTime(tapeFile);
+
+        // Changing and renaming one pipeline leaves the other's file alone
+        cargo.hsvHue.set(1, 2);
+        cargo.pipelineNickname = "Ball";
+        mgr.saveToDisk();
+
+        Assertions.assertEquals(tapeWritten, Files.getLastModifiedTime(tapeFile));
+        Assertions.assertFalse(Files.exists(cargoFile), "Renamed pipeline's old file not removed!");
+        Assertions.assertTrue(Files.exists(Path.of(pipelines.toString(), "Ball.json")));
+
+        // And nothing is left behind by the atomic writes
+        try (var files = Files.list(pipelines)) {
+            Assertions.assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Test
+    public void snapshotMatchesJsonAndYieldsToEdits() throws IOException {
+        var dir = Path.of("testconfigdir-snapshot");
+        var mgr = new ConfigManager(dir);
+        mgr.load();
+
+        var camera = new CameraConfiguration("SnapshotCamera", "/dev/video422");
+        var tape = new ReflectivePipelineSettings();
+        tape.pipelineNickname = "Tape";
+        camera.addPipelineSetting(tape);
+        mgr.getConfig().addCameraConfig(camera);
+        mgr.saveToDisk();
+        Assertions.assertTrue(Files.exists(Path.of(dir.toString(), ConfigSnapshot.SNAPSHOT_FNAME)));
+
+        // A fresh load comes from the snapshot, and matches what was saved
+        var fromSnapshot = new ConfigManager(dir);
+        fromSnapshot.load();
+        var loaded = fromSnapshot.getConfig().getCameraConfigurations().get("SnapshotCamera");
+        Assertions.assertEquals(tape, loaded.pipelineSettings.get(0));
+
+        // Editing the JSON by hand makes the snapshot stale, so the edit is what gets loaded
+        var tapeFile =
+                Path.of(dir.toString(), "cameras", "SnapshotCamera", "pipelines", "Tape.json");
+        tape.cameraExposure = 12;
+        Files.writeString(tapeFile, JacksonUtils.serializeToString(tape));
+        Files.setLastModifiedTime(
+                tapeFile,
+                FileTime.fromMillis(Files.getLastModifiedTime(tapeFile).toMillis() + 5000));
+
+        var fromJson = new ConfigManager(dir);
+        fromJson.load();
+        var reloaded = fromJson.getConfig().getCameraConfigurations().get("SnapshotCamera");
+        Assertions.assertEquals(12, reloaded.pipelineSettings.get(0).cameraExposure);
+
+        FileUtils.deleteDirectory(dir.toFile());
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.dataflow;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.photonvision.common.dataflow.events.DataChangeEvent;
+import org.photonvision.common.dataflow.events.OutgoingUIEvent;
+
+public class DataChangeServiceTest {
+    private static class RecordingSubscriber extends DataChangeSubscriber {
+        final List<Object> received = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+        final CountDownLatch receivedLatch;
+
+        RecordingSubscriber(
+                List<DataChangeDestination> dests, CountDownLatch release, int expected) {
+            super(DataChangeSource.AllSources, dests);
+            this.release = release;
+            this.receivedLatch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onDataChangeEvent(DataChangeEvent<?> event) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            received.add(event.data);
+            receivedLatch.countDown();
+        }
+    }
+
+    @Test
+    public void slowSubscriberDoesNotBlockOthers() throws InterruptedException {
+        var service = new DataChangeService();
+
+        var stalled = new CountDownLatch(1);
+        var ui = new RecordingSubscriber(List.of(DataChangeDestination.DCD_UI), stalled, 1);
+        var control =
+                new RecordingSubscriber(
+                        List.of(DataChangeDestination.DCD_ACTIVEMODULE), new CountDownLatch(0), 1);
+        service.addSubscribers(ui, control);
+
+        service.publishEvent(new OutgoingUIEvent<>("log", "hello"));
+        service.publishEvent(
+                new DataChangeEvent<>(
+                        DataChangeSource.DCS_WEBSOCKET,
+                        DataChangeDestination.DCD_ACTIVEMODULE,
+                        "changePipeline",
+                        2));
+
+        // The UI subscriber is stuck, but the control event still goes through
+        Assertions.assertTrue(control.receivedLatch.await(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(2), control.received);
+        Assertions.assertTrue(ui.received.isEmpty());
+
+        stalled.countDown();
+        Assertions.assertTrue(ui.receivedLatch.await(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of("hello"), ui.received);
+    }
+
+    @Test
+    public void supersededEventsAreCoalesced() throws InterruptedException {
+        var service = new DataChangeService();
+
+        var stalled = new CountDownLatch(1);
+        var ui = new RecordingSubscriber(List.of(DataChangeDestination.DCD_UI), stalled, 4);
+        service.addSubscriber(ui);
+
+        // The first result is taken straight away and stalls the subscriber; the rest queue up
+        service.publishEvent(new OutgoingUIEvent<>("result", 0, null, "result0"));
+        Assertions.assertTrue(ui.entered.await(1, TimeUnit.SECONDS));
+        service.publishEvent(new OutgoingUIEvent<>("log", "first"));
+        for (int i = 1; i <= 10; i++) {
+            service.publishEvent(new OutgoingUIEvent<>("result", i, null, "result0"));
+        }
+
+        stalled.countDown();
+        // Events are counted as delivered before they're handed over, so once this one arrives the
+        // counts are settled
+        service.publishEvent(new OutgoingUIEvent<>("log", "last"));
+        Assertions.assertTrue(ui.receivedLatch.await(1, TimeUnit.SECONDS));
+
+        // Only the newest result is delivered after the stall
+        Assertions.assertEquals(List.of(0, "first", 10, "last"), ui.received);
+
+        var stats = service.getSubscriberStats().get(0);
+        Assertions.assertEquals(4, stats.delivered);
+        Assertions.assertEquals(9, stats.coalesced);
+        Assertions.assertEquals(0, stats.dropped);
+    }
+
+    @Test
+    public void controlEventsWaitForRoom() throws InterruptedException {
+        var service = new DataChangeService();
+
+        var stalled = new CountDownLatch(1);
+        int count = DataChangeService.kSubscriberQueueCapacity + 2;
+        var module =
+                new RecordingSubscriber(List.of(DataChangeDestination.DCD_ACTIVEMODULE), stalled, count);
+        service.addSubscriber(module);
+
+        // One event is taken and stalls the subscriber, the rest fill its queue exactly
+        for (int i = 0; i < count - 1; i++) {
+            service.publishEvent(
+                    new DataChangeEvent<>(
+                            DataChangeSource.DCS_WEBSOCKET,
+                            DataChangeDestination.DCD_ACTIVEMODULE,
+                            "changePipeline",
+                            i));
+            if (i == 0) Assertions.assertTrue(module.entered.await(1, TimeUnit.SECONDS));
+        }
+
+        // With the queue full, the next one waits for room rather than being dropped
+        var publisher =
+                new Thread(
+                        () ->
+                                service.publishEvent(
+                                        new DataChangeEvent<>(
+                                                DataChangeSource.DCS_WEBSOCKET,
+                                                DataChangeDestination.DCD_ACTIVEMODULE,
+                                                "changePipeline",
+                                                count - 1)));
+        publisher.start();
+        stalled.countDown();
+        publisher.join();
+
+        Assertions.assertTrue(module.receivedLatch.await(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(count, module.received.size());
+        Assertions.assertEquals(count - 1, module.received.get(count - 1));
+        Assertions.assertEquals(0, service.getSubscriberStats().get(0).dropped);
+    }
+
+    @Test
+    public void uiEventsDoNotBlockPublisher() throws InterruptedException {
+        var service = new DataChangeService();
+
+        var stalled = new CountDownLatch(1);
+        var ui = new RecordingSubscriber(List.of(DataChangeDestination.DCD_UI), stalled, 1);
+        service.addSubscriber(ui);
+
+        // One event is taken and stalls the subscriber, the rest fill its queue and then some
+        service.publishEvent(new OutgoingUIEvent<>("log", "first"));
+        Assertions.assertTrue(ui.entered.await(1, TimeUnit.SECONDS));
+
+        // Like the log writer, which mustn't wait on a slow UI client
+        var publisher =
+                new Thread(
+                        () -> {
+                            for (int i = 0; i < DataChangeService.kSubscriberQueueCapacity + 5; i++) {
+                                service.publishEvent(new OutgoingUIEvent<>("log", i));
+                            }
+                        });
+        publisher.start();
+        publisher.join(DataChangeService.kControlEventTimeoutMillis);
+        Assertions.assertFalse(publisher.isAlive());
+        Assertions.assertEquals(5, service.getSubscriberStats().get(0).dropped);
+
+        stalled.countDown();
+    }
+
+    @Test
+    public void allStatsAreKeyedBySubscriber() {
+        var service = new DataChangeService();
+        var release = new CountDownLatch(0);
+        service.addSubscribers(
+                new RecordingSubscriber(List.of(DataChangeDestination.DCD_UI), release, 0),
+                new RecordingSubscriber(List.of(DataChangeDestination.DCD_OTHER), release, 0));
+
+        var stats = service.getAllStats();
+        Assertions.assertEquals(2, stats.size());
+        Assertions.assertEquals(0L, stats.get("RecordingSubscriber").get("dropped"));
+        Assertions.assertEquals(0, stats.get("RecordingSubscriber #2").get("queueDepth"));
+
+        // Dispatch threads mustn't keep the JVM alive on their own
+        for (var thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("DataChangeDispatch-")) {
+                Assertions.assertTrue(thread.isDaemon());
+            }
+        }
+    }
+}
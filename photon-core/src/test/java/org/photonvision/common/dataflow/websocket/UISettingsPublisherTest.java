@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.dataflow.websocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class UISettingsPublisherTest {
+    @Test
+    public void onlyChangedFieldsArePatched() {
+        var publisher = new UISettingsPublisher();
+
+        var pipelineSettings = new HashMap<String, Object>();
+        pipelineSettings.put("exposure", 10.0);
+        List<String> nicknames = new ArrayList<>(List.of("Reflective"));
+
+        var camera = new HashMap<String, Object>();
+        camera.put("nickname", "front");
+        camera.put("currentPipelineSettings", pipelineSettings);
+        camera.put("pipelineNicknames", nicknames);
+
+        // Everything is new the first time around
+        Assertions.assertEquals(3, publisher.computeChanges(0, camera).size());
+        Assertions.assertTrue(publisher.computeChanges(0, camera).isEmpty());
+
+        // Changes made in place to the same objects are still picked up
+        pipelineSettings.put("exposure", 20.0);
+        nicknames.add("Colored");
+        var changes = publisher.computeChanges(0, camera);
+        Assertions.assertEquals(2, changes.size());
+        Assertions.assertTrue(changes.containsKey("currentPipelineSettings"));
+        Assertions.assertTrue(changes.containsKey("pipelineNicknames"));
+
+        // Cameras are tracked independently
+        Assertions.assertEquals(3, publisher.computeChanges(1, camera).size());
+        camera.put("nickname", "rear");
+        Assertions.assertEquals(1, publisher.computeChanges(1, camera).size());
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LoggerTest {
+    private static final Logger logger = new Logger(LoggerTest.class, LogGroup.General);
+
+    /** Collects what the writer thread writes, and notices when a batch is done. */
+    private static class CapturingAppender implements Logger.LogAppender {
+        private final List<String> messages = new ArrayList<>();
+        private int flushed = 0;
+
+        @Override
+        public synchronized void log(String message, LogLevel level) {
+            messages.add(message);
+        }
+
+        @Override
+        public synchronized void flush() {
+            flushed = messages.size();
+            notifyAll();
+        }
+
+        /** Waits for a batch containing a message ending with the given text to be written. */
+        synchronized void awaitFlushed(String suffix) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (messages.subList(0, flushed).stream().noneMatch(m -> m.endsWith(suffix))) {
+                long remaining = deadline - System.currentTimeMillis();
+                Assertions.assertTrue(remaining > 0, "Never wrote \"" + suffix + "\"");
+                wait(remaining);
+            }
+        }
+
+        /** @return The written messages starting with the prefix, with everything up to it removed. */
+        synchronized List<String> withPrefix(String prefix) {
+            return messages.stream()
+                    .filter(m -> m.contains("] " + prefix))
+                    .map(m -> m.substring(m.indexOf("] " + prefix) + 2))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void awaitEmptyQueue() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((int) Logger.getStats().get("queued") > 0) {
+            if (System.currentTimeMillis() > deadline) return;
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void recordsAreDroppedAndCountedWhenQueueIsFull() throws InterruptedException {
+        var stalled = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var appender =
+                new CapturingAppender() {
+                    @Override
+                    public void log(String message, LogLevel level) {
+                        super.log(message, level);
+                        if (message.endsWith("stall the writer")) {
+                            stalled.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException ignored) {
+                            }
+                        }
+                    }
+                };
+        Logger.addAppender(appender);
+        try {
+            logger.info("stall the writer");
+            Assertions.assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+            long droppedBefore = Logger.getDroppedCount();
+            int sent = Logger.MAX_QUEUED_RECORDS + 100;
+            for (int i = 0; i < sent; i++) {
+                logger.info("flood " + i);
+            }
+            long dropped = Logger.getDroppedCount() - droppedBefore;
+            Assertions.assertEquals(dropped, (long) Logger.getStats().get("dropped") - droppedBefore);
+
+            // Anything else logged meanwhile takes up room too, so at least this many
+            Assertions.assertTrue(dropped >= 100, "Only dropped " + dropped);
+
+            // The queue is still full, so wait for the writer's warning rather than logging more
+            release.countDown();
+            appender.awaitFlushed("writer fell behind");
+
+            // Logging never waited, and the writer says how much it missed
+            var flood = appender.withPrefix("flood ");
+            Assertions.assertTrue(flood.size() <= Logger.MAX_QUEUED_RECORDS);
+            Assertions.assertEquals("flood 0", flood.get(0));
+            Assertions.assertEquals(1, appender.withPrefix(dropped + " log messages dropped").size());
+        } finally {
+            release.countDown();
+            Logger.removeAppender(appender);
+            // Don't leave a full queue for whatever runs next
+            awaitEmptyQueue();
+        }
+    }
+
+    @Test
+    public void uiBacklogKeepsNewestMessages() throws InterruptedException {
+        int sent = Logger.MAX_UI_BACKLOG + 50;
+        var appender = new CapturingAppender();
+        Logger.addAppender(appender);
+        try {
+            for (int i = 0; i < sent; i++) {
+                logger.info("startup " + i);
+            }
+            appender.awaitFlushed("startup " + (sent - 1));
+        } finally {
+            Logger.removeAppender(appender);
+        }
+
+        var ui = new CapturingAppender();
+        Logger.sendConnectedBacklog(ui);
+
+        // The oldest messages are gone, and the UI is told so
+        Assertions.assertEquals(Logger.MAX_UI_BACKLOG + 1, ui.messages.size());
+        Assertions.assertTrue(
+                ui.messages.get(0).matches("\\(\\d+ older startup messages not shown\\)"),
+                ui.messages.get(0));
+        var startup = ui.withPrefix("startup ");
+        Assertions.assertEquals(
+                IntStream.range(sent - startup.size(), sent)
+                        .mapToObj(i -> "startup " + i)
+                        .collect(Collectors.toList()),
+                startup);
+        Assertions.assertTrue(startup.size() > Logger.MAX_UI_BACKLOG - 10);
+    }
+
+    @Test
+    public void belowLevelMessagesAreNotFormatted() {
+        var dataLogger = new Logger(LoggerTest.class, LogGroup.Data);
+        Logger.setLevel(LogGroup.Data, LogLevel.INFO);
+        var appender = new CapturingAppender();
+        Logger.addAppender(appender);
+        try {
+            Supplier<String> failing =
+                    () -> {
+                        throw new AssertionError("Formatted a message below the log level");
+                    };
+            Supplier<String> constant = () -> "not logged";
+
+            // Warm up, so the JIT isn't allocating while we measure
+            for (int i = 0; i < 100_000; i++) {
+                dataLogger.trace(failing);
+                dataLogger.debug(failing);
+                dataLogger.trace("not logged");
+                dataLogger.debug(constant);
+            }
+
+            var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 1_000_000; i++) {
+                dataLogger.trace(failing);
+                dataLogger.debug(failing);
+                dataLogger.trace("not logged");
+                dataLogger.debug(constant);
+            }
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+            // A record is a few dozen bytes, so this is far less than one per call
+            Assertions.assertTrue(allocated < 100_000, "Allocated " + allocated + " bytes");
+            Assertions.assertTrue(appender.withPrefix("not logged").isEmpty());
+        } finally {
+            Logger.removeAppender(appender);
+        }
+    }
+
+    @Test
+    public void messagesKeepTheirOrder() throws InterruptedException {
+        var appender = new CapturingAppender();
+        Logger.addAppender(appender);
+        try {
+            int threads = 4;
+            int perThread = 1000;
+            var loggers = new ArrayList<Thread>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                loggers.add(
+                        new Thread(
+                                () -> {
+                                    for (int i = 0; i < perThread; i++) {
+                                        logger.info("order " + thread + " " + i);
+                                    }
+                                }));
+            }
+            loggers.forEach(Thread::start);
+            for (var thread : loggers) thread.join();
+            logger.info("order done");
+            appender.awaitFlushed("order done");
+
+            // Each thread's messages are written in the order it logged them
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Assertions.assertEquals(
+                        IntStream.range(0, perThread)
+                                .mapToObj(i -> "order " + thread + " " + i)
+                                .collect(Collectors.toList()),
+                        appender.withPrefix("order " + thread + " "));
+            }
+        } finally {
+            Logger.removeAppender(appender);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util;
+
+import org.junit.jupiter.api.Test;
+import org.photonvision.vision.pipeline.ReflectivePipelineSettings;
+
+/** Compares the accessor table against the reflection it replaced. Not run by testHeadless. */
+public class FieldAccessorTableBenchmarkTest {
+    @Test
+    public void setAgainstReflection() throws Exception {
+        var settings = new ReflectivePipelineSettings();
+        var table = FieldAccessorTable.forClass(ReflectivePipelineSettings.class);
+        int iterations = 20000;
+
+        // Warm both paths up before timing them
+        for (int i = 0; i < iterations; i++) {
+            setReflectively(settings, "cameraExposure", i);
+            table.get("cameraExposure").setFromUI(settings, i);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            setReflectively(settings, "cameraExposure", i);
+        }
+        long reflectiveNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            table.get("cameraExposure").setFromUI(settings, i);
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        System.out.printf(
+                "Setting a field %d times: reflection %.2fms, accessor table %.2fms%n",
+                iterations, reflectiveNanos / 1e6, tableNanos / 1e6);
+    }
+
+    // The path VisionModuleChangeSubscriber used to take for every change
+    private static void setReflectively(Object settings, String name, Object value)
+            throws ReflectiveOperationException {
+        var field = settings.getClass().getField(name);
+        if (field.getType().equals(Double.TYPE)) {
+            field.setDouble(settings, ((Number) value).doubleValue());
+        } else {
+            field.set(settings, value);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.photonvision.common.util.numbers.DoubleCouple;
+import org.photonvision.common.util.numbers.IntegerCouple;
+import org.photonvision.vision.opencv.ContourGroupingMode;
+import org.photonvision.vision.pipeline.ReflectivePipelineSettings;
+
+public class FieldAccessorTableTest {
+    @Test
+    public void serializesLikeReflection() {
+        var settings = new ReflectivePipelineSettings();
+        settings.contourGroupingMode = ContourGroupingMode.Dual;
+
+        var expected = new HashMap<String, Object>();
+        for (var field : settings.getClass().getFields()) {
+            try {
+                var value = field.get(settings);
+                if (field.getType().isEnum()) value = ((Enum<?>) value).ordinal();
+                expected.put(field.getName(), value);
+            } catch (IllegalAccessException e) {
+                Assertions.fail(e);
+            }
+        }
+
+        Assertions.assertEquals(expected, SerializationUtils.objectToHashMap(settings));
+    }
+
+    @Test
+    public void appliesUIValues() throws IllegalAccessException {
+        var settings = new ReflectivePipelineSettings();
+        var table = FieldAccessorTable.forClass(ReflectivePipelineSettings.class);
+
+        table.get("contourGroupingMode").setFromUI(settings, ContourGroupingMode.Dual.ordinal());
+        table.get("hsvHue").setFromUI(settings, new ArrayList<>(List.of(10, 20)));
+        table.get("contourArea").setFromUI(settings, new ArrayList<>(List.of(0.5, 80)));
+        table.get("cameraExposure").setFromUI(settings, 42);
+        table.get("outputShouldDraw").setFromUI(settings, 0);
+        table.get("outputShowMultipleTargets").setFromUI(settings, true);
+
+        Assertions.assertEquals(ContourGroupingMode.Dual, settings.contourGroupingMode);
+        Assertions.assertEquals(new IntegerCouple(10, 20), settings.hsvHue);
+        Assertions.assertEquals(new DoubleCouple(0.5, 80), settings.contourArea);
+        Assertions.assertEquals(42.0, settings.cameraExposure);
+        Assertions.assertFalse(settings.outputShouldDraw);
+        Assertions.assertTrue(settings.outputShowMultipleTargets);
+        Assertions.assertNull(table.get("notAField"));
+    }
+
+    @Test
+    public void readsAndWritesLikeReflection() throws Exception {
+        var settings = new ReflectivePipelineSettings();
+        var table = FieldAccessorTable.forClass(ReflectivePipelineSettings.class);
+
+        for (var field : ReflectivePipelineSettings.class.getFields()) {
+            var accessor = table.get(field.getName());
+            Assertions.assertNotNull(accessor, field.getName());
+            Assertions.assertEquals(field.getType(), accessor.type);
+            Assertions.assertEquals(field.get(settings), accessor.get(settings), field.getName());
+        }
+
+        // Each write lands on the field it was made through, and only that one
+        for (int i = 0; i < 1000; i++) {
+            table.get("cameraExposure").setFromUI(settings, i);
+            Assertions.assertEquals((double) i, settings.cameraExposure);
+        }
+        table.get("cameraBrightness").setFromUI(settings, 7);
+        Assertions.assertEquals(7, settings.cameraBrightness);
+        Assertions.assertEquals(999.0, settings.cameraExposure);
+    }
+}
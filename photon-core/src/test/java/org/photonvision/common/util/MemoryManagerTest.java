@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+public class MemoryManagerTest {
+    @Test
+    public void testPauseHistogramBuckets() {
+        var manager = MemoryManager.getInstance();
+        var before = manager.getPauseHistogram();
+
+        manager.recordPause(0);
+        manager.recordPause(3);
+        manager.recordPause(5);
+        manager.recordPause(250);
+
+        var after = manager.getPauseHistogram();
+        assertEquals(1, after.get("<1ms") - before.get("<1ms"));
+        assertEquals(1, after.get("2-5ms") - before.get("2-5ms"));
+        assertEquals(1, after.get("5-10ms") - before.get("5-10ms"));
+        assertEquals(1, after.get(">=100ms") - before.get(">=100ms"));
+        assertTrue((long) manager.getStats().get("gcPauseMaxMs") >= 250);
+    }
+
+    @Test
+    public void testAllocationRateIsPerThread() throws InterruptedException {
+        var manager = MemoryManager.getInstance();
+        manager.getAllocationRates();
+
+        // Threads are only sampled while alive, so keep this one around until we have
+        var allocated = new CountDownLatch(1);
+        var sampled = new CountDownLatch(1);
+        var allocator =
+                new Thread(
+                        () -> {
+                            var garbage = new ArrayList<byte[]>();
+                            for (int i = 0; i < 64; i++) {
+                                garbage.add(new byte[1024 * 1024]);
+                            }
+                            allocated.countDown();
+                            try {
+                                sampled.await();
+                            } catch (InterruptedException ignored) {
+                            }
+                        },
+                        "MemoryManagerTestAllocator");
+        allocator.start();
+        allocated.await();
+
+        Map<String, Double> rates = manager.getAllocationRates();
+        sampled.countDown();
+        allocator.join();
+
+        assertTrue(rates.containsKey("MemoryManagerTestAllocator"), rates.toString());
+        assertTrue(rates.get("MemoryManagerTestAllocator") > 0);
+    }
+}
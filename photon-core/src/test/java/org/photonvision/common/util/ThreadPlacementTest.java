@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.photonvision.common.hardware.Platform;
+
+public class ThreadPlacementTest {
+    @Test
+    public void testCpuListValidation() {
+        assertTrue(ThreadPlacement.isValidCpuList(""));
+        assertTrue(ThreadPlacement.isValidCpuList("2"));
+        assertTrue(ThreadPlacement.isValidCpuList("2-3"));
+        assertTrue(ThreadPlacement.isValidCpuList("0,2-3"));
+
+        assertFalse(ThreadPlacement.isValidCpuList("2-"));
+        assertFalse(ThreadPlacement.isValidCpuList("a"));
+        assertFalse(ThreadPlacement.isValidCpuList("1;reboot"));
+    }
+
+    @Test
+    public void testNativeThreadIdsDiffer() throws InterruptedException {
+        if (!Platform.isLinux()) return;
+
+        int mainId = ThreadPlacement.getNativeThreadId();
+        int[] otherId = new int[1];
+        var other = new Thread(() -> otherId[0] = ThreadPlacement.getNativeThreadId());
+        other.start();
+        other.join();
+
+        assertTrue(mainId > 0);
+        assertTrue(otherId[0] > 0);
+        assertNotEquals(mainId, otherId[0]);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.common.util.file;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.photonvision.common.util.TestUtils;
+
+public class ImageWriterTest {
+    @BeforeAll
+    public static void init() {
+        TestUtils.loadLibraries();
+    }
+
+    @Test
+    public void testWritesInBackgroundAndRenames() throws Exception {
+        var dir = Files.createTempDirectory("imagewriter");
+        var lastQuality = new AtomicInteger();
+        var writer =
+                new ImageWriter(
+                        4,
+                        (path, image, params) -> {
+                            lastQuality.set(params.toArray()[1]);
+                            try {
+                                Files.write(Path.of(path), new byte[] {1, 2, 3});
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            return true;
+                        });
+
+        var mat = new Mat(10, 10, CvType.CV_8UC3);
+        assertTrue(writer.write(dir.resolve("a.jpg"), mat, 50));
+        // The caller owns its mat again as soon as write returns
+        mat.release();
+
+        assertTrue(writer.waitForIdle(5000));
+        assertTrue(Files.exists(dir.resolve("a.jpg")));
+        assertFalse(Files.exists(dir.resolve(".a.tmp.jpg")));
+        assertEquals(50, lastQuality.get());
+        assertEquals(1L, writer.getStats().get("written"));
+    }
+
+    @Test
+    public void testDropsWhenQueueIsFull() throws Exception {
+        var dir = Files.createTempDirectory("imagewriter");
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var writer =
+                new ImageWriter(
+                        1,
+                        (path, image, params) -> {
+                            started.countDown();
+                            try {
+                                release.await();
+                                Files.write(Path.of(path), new byte[] {1});
+                            } catch (Exception e) {
+                                return false;
+                            }
+                            return true;
+                        });
+
+        var mat = new Mat(10, 10, CvType.CV_8UC3);
+        assertTrue(writer.write(dir.resolve("0.png"), mat));
+        started.await();
+        // One queued behind the stuck write, then the queue is full
+        assertTrue(writer.write(dir.resolve("1.png"), mat));
+        assertFalse(writer.write(dir.resolve("2.png"), mat));
+        assertEquals(1L, writer.getStats().get("dropped"));
+
+        release.countDown();
+        assertTrue(writer.waitForIdle(5000));
+        assertEquals(2L, writer.getStats().get("written"));
+        assertFalse(Files.exists(dir.resolve("2.png")));
+        mat.release();
+    }
+
+    @Test
+    public void testBlockingWriteWaitsForRoom() throws Exception {
+        var dir = Files.createTempDirectory("imagewriter");
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var writer =
+                new ImageWriter(
+                        1,
+                        (path, image, params) -> {
+                            started.countDown();
+                            try {
+                                release.await();
+                                Files.write(Path.of(path), new byte[] {1});
+                            } catch (Exception e) {
+                                return false;
+                            }
+                            return true;
+                        });
+
+        var mat = new Mat(10, 10, CvType.CV_8UC3);
+        assertTrue(writer.write(dir.resolve("0.png"), mat));
+        started.await();
+        assertTrue(writer.write(dir.resolve("1.png"), mat));
+
+        // Still full when the timeout runs out
+        assertFalse(writer.writeBlocking(dir.resolve("2.png"), mat, 10));
+        assertEquals(1L, writer.getStats().get("dropped"));
+
+        // Room frees up while we wait
+        release.countDown();
+        assertTrue(writer.writeBlocking(dir.resolve("3.png"), mat, 5000));
+        assertTrue(writer.waitForIdle(5000));
+        assertEquals(3L, writer.getStats().get("written"));
+        assertTrue(Files.exists(dir.resolve("3.png")));
+        mat.release();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.hardware;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.photonvision.common.hardware.metrics.ProcMetrics;
+
+public class ProcMetricsTest {
+    @Test
+    public void testReadsFakeProcfs() throws IOException {
+        Path root = Files.createTempDirectory("procmetrics");
+        Path proc = Files.createDirectories(root.resolve("proc"));
+        Path sys = root.resolve("sys");
+        Files.createDirectories(sys.resolve("class/thermal/thermal_zone0"));
+
+        Files.writeString(sys.resolve("class/thermal/thermal_zone0/temp"), "48312\n");
+        Files.writeString(
+                proc.resolve("meminfo"),
+                "MemTotal:        3906250 kB\nMemFree:          100000 kB\n"
+                        + "MemAvailable:    1953125 kB\n");
+        // 400 jiffies total, 100 of them idle or iowait
+        Files.writeString(proc.resolve("stat"), "cpu  200 0 100 80 20 0 0 0 0 0\ncpu0 1 2 3 4\n");
+
+        var metrics = new ProcMetrics(proc, sys, root);
+        assertEquals(48.312, metrics.getCpuTemperature().getAsDouble(), 1e-9);
+        assertEquals(4000, metrics.getTotalRam().getAsLong());
+        assertEquals(2000, metrics.getUsedRam().getAsLong());
+        assertEquals(75.0, metrics.getCpuUtilization().getAsDouble(), 1e-9);
+
+        // The next sample only counts the 100 jiffies since, 90 of which were idle
+        Files.writeString(proc.resolve("stat"), "cpu  210 0 100 170 20 0 0 0 0 0\n");
+        assertEquals(10.0, metrics.getCpuUtilization().getAsDouble(), 1e-9);
+
+        // Nothing new since the last sample, so report the previous value
+        assertEquals(10.0, metrics.getCpuUtilization().getAsDouble(), 1e-9);
+
+        var disk = metrics.getDiskUsedPct();
+        assertTrue(disk.isPresent());
+        assertTrue(disk.getAsDouble() >= 0 && disk.getAsDouble() <= 100);
+    }
+
+    @Test
+    public void testMissingSourcesAreEmpty() throws IOException {
+        Path root = Files.createTempDirectory("procmetrics");
+        var metrics = new ProcMetrics(root.resolve("proc"), root.resolve("sys"), root);
+        assertTrue(metrics.getCpuUtilization().isEmpty());
+        assertTrue(metrics.getCpuTemperature().isEmpty());
+        assertTrue(metrics.getTotalRam().isEmpty());
+        assertTrue(metrics.getUsedRam().isEmpty());
+    }
+
+    @Test
+    public void testThreadCpu() {
+        var metrics = new ProcMetrics();
+        var names = Map.of(1L, "VisionRunner", 2L, "Idle", 3L, "Pool", 4L, "Pool");
+
+        // Nothing to compare against yet
+        var first = Map.of(1L, 5_000_000L, 2L, 1_000_000L, 3L, 0L, 4L, 0L);
+        assertTrue(metrics.getThreadCpuUtilization(names, first, 1_000_000_000L).isEmpty());
+
+        // 100ms later: 50ms on one thread, nothing on another, and 10ms each on two with one name
+        var second = Map.of(1L, 55_000_000L, 2L, 1_000_000L, 3L, 10_000_000L, 4L, 10_000_000L);
+        var usage = metrics.getThreadCpuUtilization(names, second, 1_100_000_000L);
+        assertEquals(Set.of("VisionRunner", "Pool"), usage.keySet());
+        assertEquals(50.0, usage.get("VisionRunner"), 1e-9);
+        assertEquals(20.0, usage.get("Pool"), 1e-9);
+
+        // A thread that appears between samples counts all of its time
+        var third = Map.of(1L, 55_000_000L, 5L, 25_000_000L);
+        usage =
+                metrics.getThreadCpuUtilization(
+                        Map.of(1L, "VisionRunner", 5L, "New"), third, 1_200_000_000L);
+        assertEquals(Map.of("New", 25.0), usage);
+    }
+}
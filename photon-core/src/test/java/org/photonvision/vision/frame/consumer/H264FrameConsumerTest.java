@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.photonvision.common.util.TestUtils;
+import org.photonvision.vision.frame.Frame;
+import org.photonvision.vision.frame.FrameStaticProperties;
+import org.photonvision.vision.opencv.CVMat;
+
+public class H264FrameConsumerTest {
+    private static final byte[] KEYFRAME = {
+        0, 0, 0, 1, 0x67, 1, 2, 0, 0, 1, 0x68, 3, 0, 0, 1, 0x65, 4
+    };
+    private static final byte[] DELTA_FRAME = {0, 0, 0, 1, 0x41, 5, 6};
+
+    /** Emits a keyframe every third frame, synchronously on the encode thread. */
+    private static class FakeEncoder implements H264Encoder {
+        final AtomicInteger starts = new AtomicInteger();
+        final AtomicInteger frames = new AtomicInteger();
+        volatile boolean running = false;
+        private OutputListener output;
+
+        @Override
+        public void start(
+                int width,
+                int height,
+                int fps,
+                int bitrateKbps,
+                int keyframeInterval,
+                OutputListener output) {
+            this.output = output;
+            starts.incrementAndGet();
+            running = true;
+        }
+
+        @Override
+        public void encode(Mat frame) {
+            var data = frames.getAndIncrement() % 3 == 0 ? KEYFRAME : DELTA_FRAME;
+            output.onOutput(data.clone(), data.length);
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+    }
+
+    private static class FakeClient implements H264FrameConsumer.Client {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        volatile long queuedBytes = 0;
+        volatile boolean closed = false;
+
+        @Override
+        public synchronized void send(ByteBuffer data) {
+            var bytes = new byte[data.remaining()];
+            data.get(bytes);
+            received.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public long getQueuedBytes() {
+            return queuedBytes;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        synchronized byte[] getReceived() {
+            return received.toByteArray();
+        }
+    }
+
+    @BeforeAll
+    public static void init() {
+        TestUtils.loadLibraries();
+    }
+
+    private static Frame testFrame() {
+        return new Frame(
+                new CVMat(new Mat(240, 320, CvType.CV_8UC3)),
+                new FrameStaticProperties(320, 240, 70, new Rotation2d(), null));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /** Push frames one at a time, waiting for each to be encoded so none get coalesced. */
+    private static void pushFrames(H264FrameConsumer consumer, FakeEncoder encoder, int count)
+            throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            int before = encoder.frames.get();
+            var frame = testFrame();
+            consumer.accept(frame);
+            frame.release();
+            waitFor(() -> encoder.frames.get() > before);
+        }
+    }
+
+    @Test
+    public void testScannerFindsSplitStartCode() {
+        var scanner = new AnnexBScanner();
+        assertEquals(-1, scanner.findJoinPoint(new byte[] {0x41, 9, 0, 0}, 4));
+        // Start code straddles the chunk boundary; the SPS header is the first byte here
+        assertEquals(1, scanner.findJoinPoint(new byte[] {1, 0x67, 1, 2}, 4));
+        assertEquals(-1, scanner.findJoinPoint(DELTA_FRAME, DELTA_FRAME.length));
+        assertEquals(4, scanner.findJoinPoint(KEYFRAME, KEYFRAME.length));
+    }
+
+    @Test
+    public void testNoEncodingWithoutClients() throws InterruptedException {
+        var encoder = new FakeEncoder();
+        var consumer = new H264FrameConsumer("test-idle", 1000, 3, encoder);
+        assertFalse(consumer.anyClientConnections());
+
+        var frame = testFrame();
+        consumer.accept(frame);
+        frame.release();
+        Thread.sleep(50);
+        assertEquals(0, encoder.starts.get());
+        consumer.close();
+    }
+
+    @Test
+    public void testClientsJoinOnKeyframe() throws InterruptedException {
+        var encoder = new FakeEncoder();
+        var consumer = new H264FrameConsumer("test-join", 1000, 3, encoder);
+        assertSame(consumer, H264FrameConsumer.getStream("test-join"));
+
+        var first = new FakeClient();
+        consumer.addClient(first);
+        pushFrames(consumer, encoder, 2); // key, delta
+
+        // Joins mid-GOP, so it gets nothing until the next keyframe
+        var late = new FakeClient();
+        consumer.addClient(late);
+        pushFrames(consumer, encoder, 1); // delta
+        assertEquals(0, late.getReceived().length);
+        pushFrames(consumer, encoder, 2); // key, delta
+
+        assertEquals(KEYFRAME.length + DELTA_FRAME.length, late.getReceived().length);
+        assertEquals(0x67, late.getReceived()[4]);
+        assertEquals(2 * KEYFRAME.length + 3 * DELTA_FRAME.length, first.getReceived().length);
+        assertEquals(1, encoder.starts.get());
+
+        consumer.close();
+        assertNull(H264FrameConsumer.getStream("test-join"));
+        assertTrue(first.closed);
+        assertTrue(late.closed);
+    }
+
+    @Test
+    public void testBackedUpClientSkipsToNextKeyframe() throws InterruptedException {
+        var encoder = new FakeEncoder();
+        var consumer = new H264FrameConsumer("test-slow", 1000, 3, encoder);
+        var client = new FakeClient();
+        consumer.addClient(client);
+        pushFrames(consumer, encoder, 1); // key
+        int receivedBefore = client.getReceived().length;
+
+        client.queuedBytes = Long.MAX_VALUE;
+        pushFrames(consumer, encoder, 1); // delta, dropped
+        client.queuedBytes = 0;
+        pushFrames(consumer, encoder, 1); // delta, still waiting for a keyframe
+        assertEquals(receivedBefore, client.getReceived().length);
+        assertEquals(1L, consumer.getStats().get("keyframeSkips"));
+
+        pushFrames(consumer, encoder, 1); // key
+        assertEquals(receivedBefore + KEYFRAME.length, client.getReceived().length);
+
+        consumer.removeClient(client);
+        waitFor(() -> !encoder.running);
+        consumer.close();
+    }
+}
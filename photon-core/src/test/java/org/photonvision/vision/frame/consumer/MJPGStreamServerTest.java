@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.photonvision.common.util.TestUtils;
+
+public class MJPGStreamServerTest {
+    @BeforeAll
+    public static void init() {
+        TestUtils.loadLibraries();
+    }
+
+    private static int getFreePort() throws IOException {
+        try (var probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for " + what);
+            Thread.sleep(1);
+        }
+    }
+
+    /** A blocking HTTP client that reads the stream one multipart part at a time. */
+    private static class StreamReader implements AutoCloseable {
+        final Socket socket;
+        final DataInputStream in;
+        final OutputStream out;
+
+        StreamReader(int port, int receiveBufferSize) throws IOException {
+            socket = new Socket();
+            // Has to be set before connecting to limit the TCP window
+            if (receiveBufferSize > 0) socket.setReceiveBufferSize(receiveBufferSize);
+            socket.connect(new InetSocketAddress("127.0.0.1", port));
+            socket.setSoTimeout(5000);
+            in = new DataInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+
+        void send(String request) throws IOException {
+            out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+
+        String readLine() throws IOException {
+            var line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) throw new IOException("Stream ended mid-line");
+                line.write(b);
+            }
+            var text = line.toString(StandardCharsets.ISO_8859_1);
+            assertTrue(text.endsWith("\r"), "Line not terminated by CRLF: " + text);
+            return text.substring(0, text.length() - 1);
+        }
+
+        /** Reads a status line or part header block, up to and including the blank line. */
+        List<String> readHeaders() throws IOException {
+            var lines = new ArrayList<String>();
+            String line;
+            while (!(line = readLine()).isEmpty()) lines.add(line);
+            return lines;
+        }
+
+        /** Reads one multipart part, checks it is well formed, and returns the JPEG in it. */
+        byte[] readPart() throws IOException {
+            var headers = readHeaders();
+            assertEquals("--photonvisionframe", headers.get(0));
+            assertTrue(headers.contains("Content-Type: image/jpeg"), headers.toString());
+            int length = -1;
+            for (var header : headers) {
+                if (header.startsWith("Content-Length: ")) {
+                    length = Integer.parseInt(header.substring("Content-Length: ".length()));
+                }
+            }
+            assertTrue(length > 0, headers.toString());
+
+            var jpeg = new byte[length];
+            in.readFully(jpeg);
+            assertEquals('\r', in.read());
+            assertEquals('\n', in.read());
+
+            // Start and end of image markers, so the length was right
+            assertEquals((byte) 0xFF, jpeg[0]);
+            assertEquals((byte) 0xD8, jpeg[1]);
+            assertEquals((byte) 0xFF, jpeg[length - 2]);
+            assertEquals((byte) 0xD9, jpeg[length - 1]);
+            return jpeg;
+        }
+
+        void readStreamHeader() throws IOException {
+            var headers = readHeaders();
+            assertEquals("HTTP/1.0 200 OK", headers.get(0));
+            assertTrue(
+                    headers.contains("Content-Type: multipart/x-mixed-replace;boundary=photonvisionframe"),
+                    headers.toString());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testPortIsFreeAfterClose() throws IOException {
+        int port = getFreePort();
+
+        // Renaming a camera closes its streams and immediately reopens them on the same ports
+        var encoder = new MJPGStreamEncoder("test");
+        var server = new MJPGStreamServer("test", port, encoder);
+        server.close();
+        try (var rebound = new ServerSocket(port)) {
+            assertEquals(port, rebound.getLocalPort());
+        } finally {
+            encoder.close();
+        }
+    }
+
+    @Test
+    public void testStalledClientDoesNotBlockOthers() throws IOException, InterruptedException {
+        int port = getFreePort();
+        var encoder = new MJPGStreamEncoder("test");
+        var server = new MJPGStreamServer("test", port, encoder);
+        var frame = new Mat(480, 640, CvType.CV_8UC3);
+
+        try (var reading = new StreamReader(port, 0);
+                var stalled = new StreamReader(port, 4096)) {
+            reading.send("GET /stream.mjpg HTTP/1.1\r\n\r\n");
+            stalled.send("GET /?action=stream HTTP/1.1\r\n\r\n");
+            waitFor(() -> encoder.getClientCount() == 2, "clients to connect");
+            reading.readStreamHeader();
+
+            int frames = 40;
+            long bytesRead = 0;
+            byte[] lastJpeg = null;
+            for (int i = 0; i < frames; i++) {
+                // Noise barely compresses, so a few frames are enough to fill the stalled socket
+                Core.randu(frame, 0, 256);
+                encoder.putFrame(frame, 0);
+                long expected = i + 1;
+                waitFor(() -> encoder.getEncodeCount() >= expected, "frame " + i + " to be encoded");
+
+                // Every frame reaches the reading client, however far behind the other one is
+                lastJpeg = reading.readPart();
+                bytesRead += lastJpeg.length;
+            }
+
+            // Both clients want the same profile, so each frame was only encoded once
+            assertEquals(frames, encoder.getEncodeCount());
+            // And the stalled client really was held up, getting less than the reading one
+            assertTrue(encoder.getBytesSent() < 2 * bytesRead);
+
+            // Once it reads again it gets whole parts, skipping frames until it has the newest
+            stalled.readStreamHeader();
+            stalled.socket.setSoTimeout(1000);
+            var received = new ArrayList<byte[]>();
+            try {
+                while (true) received.add(stalled.readPart());
+            } catch (SocketTimeoutException e) {
+                // Caught up
+            }
+            assertTrue(received.size() < frames, "Stalled client got " + received.size() + " frames");
+            assertArrayEquals(lastJpeg, received.get(received.size() - 1));
+        } finally {
+            server.close();
+            encoder.close();
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testFpsLimit() throws IOException, InterruptedException {
+        int port = getFreePort();
+        var encoder = new MJPGStreamEncoder("test");
+        var server = new MJPGStreamServer("test", port, encoder);
+        var frame = new Mat(48, 64, CvType.CV_8UC3, new Scalar(0, 0, 255));
+
+        try (var client = new StreamReader(port, 0)) {
+            client.send("GET /stream.mjpg?fps=5 HTTP/1.1\r\n\r\n");
+            waitFor(() -> encoder.getClientCount() == 1, "client to connect");
+            client.readStreamHeader();
+
+            // Frames come in at about 100 FPS for a second
+            int put = 0;
+            long end = System.currentTimeMillis() + 1000;
+            while (System.currentTimeMillis() < end) {
+                encoder.putFrame(frame, 0);
+                put++;
+                Thread.sleep(10);
+            }
+
+            client.socket.setSoTimeout(500);
+            int received = 0;
+            try {
+                while (true) {
+                    client.readPart();
+                    received++;
+                }
+            } catch (SocketTimeoutException e) {
+                // All sent
+            }
+
+            // One right away and one every 200ms after, give or take scheduling. Frames nobody is
+            // due for aren't even encoded
+            assertTrue(received >= 2 && received <= 7, "Received " + received + " frames");
+            assertTrue(encoder.getEncodeCount() <= 7, "Encoded " + encoder.getEncodeCount() + " frames");
+            assertTrue(put > 2 * encoder.getEncodeCount());
+        } finally {
+            server.close();
+            encoder.close();
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testBadRequests() throws IOException, InterruptedException {
+        int port = getFreePort();
+        var encoder = new MJPGStreamEncoder("test");
+        var server = new MJPGStreamServer("test", port, encoder);
+
+        var tooLong = new char[8192 - "GET /stream.mjpg HTTP/1.1\r\nX-Padding: ".length()];
+        Arrays.fill(tooLong, 'a');
+        var requests =
+                List.of(
+                        "GET /nothing.html HTTP/1.1\r\n\r\n",
+                        "POST /stream.mjpg HTTP/1.1\r\n\r\n",
+                        "GET /stream.mjpg HTTP/1.1\r\nX-Padding: " + new String(tooLong));
+        var statuses =
+                List.of(
+                        "HTTP/1.0 404 Not Found",
+                        "HTTP/1.0 405 Method Not Allowed",
+                        "HTTP/1.0 431 Request Header Fields Too Large");
+
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                try (var client = new StreamReader(port, 0)) {
+                    client.send(requests.get(i));
+                    var headers = client.readHeaders();
+                    assertEquals(statuses.get(i), headers.get(0));
+                    assertTrue(headers.contains("Content-Length: 0"), headers.toString());
+                    // And then the server hangs up
+                    assertEquals(-1, client.in.read());
+                }
+            }
+            assertEquals(0, encoder.getClientCount());
+        } finally {
+            server.close();
+            encoder.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.photonvision.common.util.TestUtils;
+import org.photonvision.vision.frame.provider.RecordingFrameProvider;
+
+public class MatchRecorderTest {
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void init() {
+        TestUtils.loadLibraries();
+    }
+
+    /** Noise barely compresses, so every frame is a sizeable chunk of a segment. */
+    private static Mat noise(int seed) {
+        var bytes = new byte[WIDTH * HEIGHT * 3];
+        new Random(seed).nextBytes(bytes);
+        var mat = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3);
+        mat.put(0, 0, bytes);
+        return mat;
+    }
+
+    private static long recorded(MatchRecorder recorder) {
+        return (long) recorder.getStats().get("recorded");
+    }
+
+    /** Record frames one at a time, waiting for each so the small queue never drops one. */
+    private static void recordFrames(MatchRecorder recorder, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            long before = recorded(recorder);
+            var image = noise(i);
+            recorder.record(image, i, Map.of("frame", i));
+            image.release();
+            for (int wait = 0; wait < 500 && recorded(recorder) == before; wait++) {
+                Thread.sleep(2);
+            }
+            assertEquals(before + 1, recorded(recorder));
+        }
+    }
+
+    private static long totalSize(Iterable<Path> segments) throws IOException {
+        long total = 0;
+        for (var segment : segments) total += Files.size(segment);
+        return total;
+    }
+
+    @Test
+    public void testRotatesSegmentsAndDeletesOldest() throws Exception {
+        var dir = Files.createTempDirectory("recorder");
+        long segmentBytes = 200 * 1024;
+        long maxBytes = 3 * segmentBytes;
+        var recorder = new MatchRecorder("test-rotate", dir, true, maxBytes, segmentBytes);
+        recordFrames(recorder, 60);
+        recorder.close();
+
+        var segments = RecordingFormat.listSegments(dir);
+        assertTrue(segments.size() > 1, "Recording never moved on to a new segment");
+        assertTrue(totalSize(segments) <= maxBytes, "Recording is over its size cap");
+
+        // Only the newest segments are left, with no gaps between them
+        long first = RecordingFormat.sequenceOf(segments.get(0));
+        assertTrue(first > 0, "Oldest segment wasn't deleted");
+        for (int i = 0; i < segments.size(); i++) {
+            assertEquals(first + i, RecordingFormat.sequenceOf(segments.get(i)));
+            assertTrue(Files.size(segments.get(i)) <= segmentBytes);
+        }
+
+        // And they hold the end of the recording, in order
+        long last = -1;
+        for (var segment : segments) {
+            try (var reader = new RecordingFormat.SegmentReader(segment)) {
+                RecordingFormat.Record record;
+                while ((record = reader.next()) != null) {
+                    assertTrue(record.timestampNanos > last);
+                    last = record.timestampNanos;
+                }
+            }
+        }
+        assertEquals(59, last);
+    }
+
+    @Test
+    public void testNewSessionCarriesOnSequence() throws Exception {
+        var dir = Files.createTempDirectory("recorder");
+        // Left by an earlier run whose clock was ahead of ours
+        Files.write(
+                dir.resolve(RecordingFormat.segmentName(7, "29991231-235959")),
+                RecordingFormat.SEGMENT_MAGIC);
+
+        var recorder = new MatchRecorder("test-session", dir, true, 1L << 30, 1L << 20);
+        recordFrames(recorder, 1);
+        recorder.close();
+
+        var segments = RecordingFormat.listSegments(dir);
+        assertEquals(2, segments.size());
+        assertEquals(8, RecordingFormat.sequenceOf(segments.get(1)));
+    }
+
+    @Test
+    public void testReplaysWhatWasRecorded() throws Exception {
+        var dir = Files.createTempDirectory("recorder");
+        var recorder = new MatchRecorder("test-replay", dir, true, 1L << 30, 1L << 20);
+        recordFrames(recorder, 3);
+        // Closing writes out whatever is still buffered
+        recorder.close();
+
+        var provider = new RecordingFrameProvider(dir, 70, false);
+        assertEquals(WIDTH, provider.getFrameStaticProperties().imageWidth);
+        for (int i = 0; i < 3; i++) {
+            var frame = provider.get();
+            assertEquals(i, frame.timestampNanos);
+            assertEquals(WIDTH, frame.image.getMat().cols());
+            assertEquals(HEIGHT, frame.image.getMat().rows());
+            assertTrue(provider.getLastMetadata().contains("\"frame\":" + i));
+            frame.release();
+        }
+        assertTrue(provider.get().image.getMat().empty());
+    }
+}
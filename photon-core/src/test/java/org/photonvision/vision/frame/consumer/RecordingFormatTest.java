@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class RecordingFormatTest {
+    private static RecordingFormat.Record record(long timestamp, int imageBytes) {
+        var jpeg = new byte[imageBytes];
+        for (int i = 0; i < jpeg.length; i++) jpeg[i] = (byte) (i + timestamp);
+        var metadata = ("{\"frame\":" + timestamp + "}").getBytes(StandardCharsets.UTF_8);
+        return new RecordingFormat.Record(timestamp, 1000 + timestamp, 320, 240, metadata, jpeg);
+    }
+
+    private static void writeSegment(Path path, List<RecordingFormat.Record> records)
+            throws IOException {
+        int size = RecordingFormat.SEGMENT_MAGIC.length;
+        for (var r : records) size += r.sizeBytes();
+        var buffer = ByteBuffer.allocate(size);
+        buffer.put(RecordingFormat.SEGMENT_MAGIC);
+        for (var r : records) r.writeTo(buffer);
+        buffer.flip();
+        try (var channel =
+                FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        var dir = Files.createTempDirectory("recording");
+        var path = dir.resolve("a" + RecordingFormat.SEGMENT_EXTENSION);
+        // The middle record is bigger than the reader's buffer
+        var written = List.of(record(1, 5000), record(2, 3 * 1024 * 1024), record(3, 10));
+        writeSegment(path, written);
+
+        try (var reader = new RecordingFormat.SegmentReader(path)) {
+            for (var expected : written) {
+                var actual = reader.next();
+                assertNotNull(actual);
+                assertEquals(expected.timestampNanos, actual.timestampNanos);
+                assertEquals(expected.wallTimeMillis, actual.wallTimeMillis);
+                assertEquals(320, actual.width);
+                assertEquals(240, actual.height);
+                assertArrayEquals(expected.metadataJson, actual.metadataJson);
+                assertArrayEquals(expected.jpeg, actual.jpeg);
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testStopsAtTornRecord() throws IOException {
+        var dir = Files.createTempDirectory("recording");
+        var path = dir.resolve("a" + RecordingFormat.SEGMENT_EXTENSION);
+        writeSegment(path, List.of(record(1, 100), record(2, 100)));
+
+        // Lose the end of the last record, like a power cut mid-write would
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        try (var reader = new RecordingFormat.SegmentReader(path)) {
+            assertEquals(1, reader.next().timestampNanos);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testRejectsForeignFiles() throws IOException {
+        var dir = Files.createTempDirectory("recording");
+        var path = dir.resolve("a" + RecordingFormat.SEGMENT_EXTENSION);
+        Files.write(path, "not a recording at all".getBytes(StandardCharsets.US_ASCII));
+
+        try (var reader = new RecordingFormat.SegmentReader(path)) {
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testListsSegmentsOldestFirst() throws IOException {
+        var dir = Files.createTempDirectory("recording");
+        // The clock went backwards between sessions, so only the sequence numbers are in order
+        var older = dir.resolve(RecordingFormat.segmentName(9, "20240102-000000"));
+        var newer = dir.resolve(RecordingFormat.segmentName(10, "20240101-000000"));
+        Files.createFile(newer);
+        Files.createFile(older);
+        Files.createFile(dir.resolve("notes.txt"));
+
+        assertEquals(List.of(older, newer), RecordingFormat.listSegments(dir));
+        assertEquals(11, RecordingFormat.nextSequence(dir));
+        assertTrue(RecordingFormat.listSegments(dir.resolve("missing")).isEmpty());
+        assertEquals(0, RecordingFormat.nextSequence(dir.resolve("missing")));
+    }
+}
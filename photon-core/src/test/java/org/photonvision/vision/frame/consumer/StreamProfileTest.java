@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class StreamProfileTest {
+    @Test
+    public void testParsesCscoreParameters() {
+        var params =
+                MJPGStreamServer.parseQuery("action=stream&resolution=320x240&compression=30&fps=15");
+        assertEquals("stream", params.get("action"));
+        assertEquals("15", params.get("fps"));
+
+        var profile = StreamProfile.fromQuery(params);
+        assertEquals(320, profile.width);
+        assertEquals(240, profile.height);
+        assertEquals(30, profile.quality);
+    }
+
+    @Test
+    public void testMalformedParametersFallBackToDefaults() {
+        var profile =
+                StreamProfile.fromQuery(MJPGStreamServer.parseQuery("resolution=big&compression=-1"));
+        assertEquals(StreamProfile.DEFAULT, profile);
+
+        profile = StreamProfile.fromQuery(MJPGStreamServer.parseQuery("compression=500"));
+        assertEquals(100, profile.quality);
+    }
+
+    @Test
+    public void testSameRequestSharesProfile() {
+        var a = StreamProfile.fromQuery(MJPGStreamServer.parseQuery("resolution=640x480"));
+        var b = StreamProfile.fromQuery(MJPGStreamServer.parseQuery("resolution=640X480&fps=5"));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, StreamProfile.fromQuery(MJPGStreamServer.parseQuery("resolution=320x240")));
+    }
+
+    @Test
+    public void testNeverUpscales() {
+        var profile = new StreamProfile(640, 480, 80);
+        var size = profile.getOutputSize(320, 240);
+        assertEquals(320, size.width);
+        assertEquals(240, size.height);
+
+        size = profile.getOutputSize(1280, 960);
+        assertEquals(640, size.width);
+        assertEquals(480, size.height);
+
+        size = StreamProfile.DEFAULT.getOutputSize(1280, 960);
+        assertEquals(1280, size.width);
+    }
+
+    @Test
+    public void testClampedRequestsShareSourceProfile() {
+        var big = new StreamProfile(640, 480, StreamProfile.DEFAULT_QUALITY);
+        assertEquals(StreamProfile.DEFAULT, big.forSource(320, 240));
+        assertSame(big, big.forSource(1280, 960));
+
+        // Quality still tells clamped requests apart
+        var bigLowQuality = new StreamProfile(640, 480, 30);
+        assertEquals(new StreamProfile(0, 0, 30), bigLowQuality.forSource(320, 240));
+        assertNotEquals(big.forSource(320, 240), bigLowQuality.forSource(320, 240));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.provider;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.util.ArrayList;
+import java.util.Collections;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Scalar;
+import org.photonvision.common.util.TestUtils;
+import org.photonvision.common.util.numbers.NumberListUtils;
+import org.photonvision.vision.camera.QuirkyCamera;
+import org.photonvision.vision.frame.FrameStaticProperties;
+import org.photonvision.vision.pipeline.ReflectivePipeline;
+import org.photonvision.vision.target.TargetModel;
+
+/** Times the reflective pipeline on simulated frames, which need no test images or camera. */
+public class SimulatedFrameProviderBenchmarkTest {
+    @BeforeAll
+    public static void init() {
+        TestUtils.loadLibraries();
+    }
+
+    @Test
+    public void reflective240p() {
+        benchmarkReflective(320, 240);
+    }
+
+    @Test
+    public void reflective480p() {
+        benchmarkReflective(640, 480);
+    }
+
+    private static void benchmarkReflective(int width, int height) {
+        var properties = new FrameStaticProperties(width, height, 68.5, new Rotation2d(), null);
+        var frameProvider = new SimulatedFrameProvider(properties);
+        frameProvider.addTarget(
+                new SimulatedFrameProvider.SimulatedTarget(
+                        TargetModel.k2016HighGoal, new Scalar(0, 255, 0), 0.4, -0.2, 3, 0));
+        frameProvider.setBlurKernelSize(3);
+        frameProvider.setNoiseStdDev(4);
+        frameProvider.setExposureGain(0.9);
+
+        var pipeline = new ReflectivePipeline();
+        pipeline.getSettings().hsvHue.set(50, 70);
+        pipeline.getSettings().hsvSaturation.set(100, 255);
+        pipeline.getSettings().hsvValue.set(100, 255);
+        pipeline.getSettings().outputShouldDraw = false;
+
+        // Warm up before timing anything
+        for (int i = 0; i < 50; i++) {
+            pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        }
+
+        var latencies = new ArrayList<Double>();
+        for (int i = 0; i < 200; i++) {
+            var result = pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera);
+            latencies.add(result.getLatencyMillis());
+            result.release();
+        }
+        frameProvider.release();
+
+        System.out.println(
+                "Simulated "
+                        + width
+                        + "x"
+                        + height
+                        + " frames processed in mean "
+                        + NumberListUtils.mean(latencies)
+                        + "ms, max "
+                        + Collections.max(latencies)
+                        + "ms");
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.frame.provider;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Scalar;
+import org.photonvision.common.util.TestUtils;
+import org.photonvision.vision.camera.QuirkyCamera;
+import org.photonvision.vision.frame.FrameStaticProperties;
+import org.photonvision.vision.opencv.ContourShape;
+import org.photonvision.vision.pipeline.CVPipeline;
+import org.photonvision.vision.pipeline.ColoredShapePipeline;
+import org.photonvision.vision.pipeline.ReflectivePipeline;
+import org.photonvision.vision.target.TargetCalculations;
+import org.photonvision.vision.target.TargetModel;
+
+public class SimulatedFrameProviderTest {
+    private static final FrameStaticProperties properties =
+            new FrameStaticProperties(320, 240, 68.5, new Rotation2d(), null);
+
+    @BeforeAll
+    public static void init() {
+        TestUtils.loadLibraries();
+    }
+
+    @Test
+    public void reflectivePipelineMatchesGroundTruth() {
+        var pipeline = new ReflectivePipeline();
+        pipeline.getSettings().hsvHue.set(50, 70);
+        pipeline.getSettings().hsvSaturation.set(100, 255);
+        pipeline.getSettings().hsvValue.set(100, 255);
+        pipeline.getSettings().outputShouldDraw = false;
+
+        assertMatchesGroundTruth(pipeline, new Scalar(0, 255, 0));
+    }
+
+    @Test
+    public void coloredShapePipelineMatchesGroundTruth() {
+        var pipeline = new ColoredShapePipeline();
+        pipeline.getSettings().hsvHue.set(5, 25);
+        pipeline.getSettings().hsvSaturation.set(100, 255);
+        pipeline.getSettings().hsvValue.set(100, 255);
+        pipeline.getSettings().contourShape = ContourShape.Quadrilateral;
+        // The approximation tolerance is (100 - accuracy)% of the perimeter, so keep it to a few pixels
+        pipeline.getSettings().accuracyPercentage = 95;
+        pipeline.getSettings().outputShouldDraw = false;
+
+        assertMatchesGroundTruth(pipeline, new Scalar(0, 128, 255));
+    }
+
+    /** Runs the pipeline on a blurred, noisy, slightly dark rectangle of the given BGR color. */
+    private static void assertMatchesGroundTruth(CVPipeline<?, ?> pipeline, Scalar color) {
+        var frameProvider = new SimulatedFrameProvider(properties);
+        var target =
+                new SimulatedFrameProvider.SimulatedTarget(
+                        TargetModel.k2016HighGoal, color, 0.4, -0.2, 3, 0);
+        frameProvider.addTarget(target);
+        frameProvider.setBlurKernelSize(3);
+        frameProvider.setNoiseStdDev(4);
+        frameProvider.setExposureGain(0.9);
+
+        for (int i = 0; i < 20; i++) {
+            var result = pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera);
+
+            assertEquals(1, result.targets.size());
+            var centroid = target.getLastCentroid();
+            double expectedYaw =
+                    TargetCalculations.calculateYaw(
+                            centroid.x, properties.centerX, properties.horizontalFocalLength);
+            double expectedPitch =
+                    TargetCalculations.calculatePitch(
+                            centroid.y, properties.centerY, properties.verticalFocalLength);
+            assertEquals(expectedYaw, result.targets.get(0).getYaw(), 0.5);
+            assertEquals(expectedPitch, result.targets.get(0).getPitch(), 0.5);
+
+            result.release();
+        }
+
+        frameProvider.release();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.opencv;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.photonvision.common.util.TestUtils;
+
+public class OverlayTest {
+    @BeforeEach
+    public void Init() {
+        TestUtils.loadLibraries();
+    }
+
+    private static double[] pixel(Mat image, int x, int y) {
+        return image.get(y, x);
+    }
+
+    @Test
+    public void drawsSameShapesOnEveryImage() {
+        var overlay = new Overlay();
+        overlay.reset(100, 100);
+        overlay.line(10, 50, 90, 50, Color.GREEN, 1);
+        overlay.circle(50, 20, 5, Color.RED, -1);
+
+        var first = new Mat(100, 100, CvType.CV_8UC3, new Scalar(0, 0, 0));
+        var second = new Mat(100, 100, CvType.CV_8UC3, new Scalar(0, 0, 0));
+        overlay.drawOn(first);
+        overlay.drawOn(second);
+
+        for (var image : List.of(first, second)) {
+            // BGR
+            assertArrayEquals(new double[] {0, 255, 0}, pixel(image, 50, 50));
+            assertArrayEquals(new double[] {0, 0, 255}, pixel(image, 50, 20));
+            assertArrayEquals(new double[] {0, 0, 0}, pixel(image, 50, 80));
+        }
+
+        first.release();
+        second.release();
+        overlay.release();
+    }
+
+    @Test
+    public void scalesContours() {
+        var contour = new MatOfPoint();
+        contour.fromList(
+                List.of(new Point(20, 20), new Point(180, 20), new Point(180, 180), new Point(20, 180)));
+
+        var overlay = new Overlay();
+        overlay.reset(100, 100);
+        overlay.polygon(contour, 0.5, Color.BLUE, 1);
+
+        var image = new Mat(100, 100, CvType.CV_8UC3, new Scalar(0, 0, 0));
+        overlay.drawOn(image);
+
+        // Drawn at half size, so the square's edge is at 10 and 90 instead of 20 and 180
+        assertArrayEquals(new double[] {255, 0, 0}, pixel(image, 50, 10));
+        assertArrayEquals(new double[] {255, 0, 0}, pixel(image, 90, 50));
+        assertArrayEquals(new double[] {0, 0, 0}, pixel(image, 50, 20));
+
+        image.release();
+        contour.release();
+        overlay.release();
+    }
+
+    @Test
+    public void resetForgetsShapes() {
+        var overlay = new Overlay();
+        overlay.reset(100, 100);
+        assertTrue(overlay.isEmpty());
+
+        overlay.line(0, 0, 10, 10, Color.GREEN, 1);
+        overlay.text("0", 5, 5, 0.5, Color.GREEN, 1);
+        assertFalse(overlay.isEmpty());
+
+        overlay.reset(50, 50);
+        assertTrue(overlay.isEmpty());
+        assertEquals(50, overlay.getWidth());
+
+        var image = new Mat(50, 50, CvType.CV_8UC3, new Scalar(0, 0, 0));
+        overlay.drawOn(image);
+        assertArrayEquals(new double[] {0, 0, 0}, pixel(image, 5, 5));
+
+        image.release();
+        overlay.release();
+    }
+
+    @Test
+    public void encodesShapes() {
+        var overlay = new Overlay();
+        overlay.reset(320, 240);
+        overlay.line(10, 20, 30, 40, Color.GREEN, 2);
+        overlay.circle(50, 60, 5, Color.RED, -1);
+        overlay.text("7", 1, 2, 0.5, Color.GREEN, 1);
+
+        var data = ByteBuffer.wrap(overlay.encode());
+        assertEquals(320, data.getShort());
+        assertEquals(240, data.getShort());
+
+        assertEquals(2, data.get());
+        // Green, then red
+        assertEquals(0, data.get());
+        assertEquals((byte) 255, data.get());
+        assertEquals(0, data.get());
+        assertEquals((byte) 255, data.get());
+        assertEquals(0, data.get());
+        assertEquals(0, data.get());
+
+        // One group holding the line
+        assertEquals(1, data.getShort());
+        assertEquals(0, data.get()); // Colour
+        assertEquals(2, data.get()); // Thickness
+        assertEquals(0, data.get()); // Open
+        assertEquals(1, data.getShort());
+        assertEquals(2, data.getShort());
+        assertArrayEquals(
+                new short[] {10, 20, 30, 40},
+                new short[] {data.getShort(), data.getShort(), data.getShort(), data.getShort()});
+
+        assertEquals(1, data.getShort());
+        assertEquals(50, data.getShort());
+        assertEquals(60, data.getShort());
+        assertEquals(5, data.getShort());
+        assertEquals(1, data.get());
+        assertEquals(-1, data.get());
+
+        assertEquals(1, data.getShort());
+        assertEquals(1, data.getShort());
+        assertEquals(2, data.getShort());
+        assertEquals(500, data.getShort());
+        assertEquals(0, data.get());
+        assertEquals(1, data.get());
+        assertEquals(1, data.get());
+        assertEquals('7', data.get());
+        assertFalse(data.hasRemaining());
+
+        overlay.release();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.pipe.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.jogamp.opengl.GLProfile;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.photonvision.common.util.TestUtils;
+import org.photonvision.common.util.numbers.IntegerCouple;
+
+/**
+ * These need a working GL implementation, so they're skipped without one. On a GPU-less Linux box
+ * Mesa's llvmpipe is enough, e.g. run them under xvfb-run or with LIBGL_ALWAYS_SOFTWARE=1 and EGL.
+ */
+public class GPUAcceleratedHSVPipeTest {
+    // Red (hue 0 in OpenCV) only, so pure red passes and pure green doesn't
+    private static final HSVPipe.HSVParams k_params =
+            new HSVPipe.HSVParams(
+                    new IntegerCouple(0, 10), new IntegerCouple(100, 255), new IntegerCouple(100, 255));
+
+    @BeforeEach
+    public void Init() {
+        TestUtils.loadLibraries();
+    }
+
+    private static void assumeGL(GPUAcceleratedHSVPipe.PBOMode pboMode) {
+        boolean available;
+        try {
+            available =
+                    GLProfile.isAvailable(
+                            pboMode == GPUAcceleratedHSVPipe.PBOMode.NONE
+                                    ? GLProfile.GLES2
+                                    : GLProfile.GL4ES3);
+        } catch (Throwable t) {
+            // No JOGL natives for this platform, or no display/EGL to get a context from
+            available = false;
+        }
+        Assumptions.assumeTrue(available, "No OpenGL implementation available");
+    }
+
+    /** A BGR frame with the left half red and the right half green, or the other way around. */
+    private static Mat splitFrame(int width, int height, boolean redOnLeft) {
+        var red = new Scalar(0, 0, 255);
+        var green = new Scalar(0, 255, 0);
+        var frame = new Mat(height, width, CvType.CV_8UC3, redOnLeft ? green : red);
+        frame.submat(new Rect(0, 0, width / 2, height)).setTo(redOnLeft ? red : green);
+        return frame;
+    }
+
+    private static Mat cpuMask(Mat frame) {
+        var hsvPipe = new HSVPipe();
+        hsvPipe.setParams(k_params);
+        return hsvPipe.run(frame).output;
+    }
+
+    private static void assertSameMask(Mat expected, Mat actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(CvType.CV_8UC1, actual.type());
+        var diff = new Mat();
+        Core.absdiff(expected, actual, diff);
+        assertEquals(0, Core.countNonZero(diff));
+        diff.release();
+    }
+
+    private static void matchesCPU(GPUAcceleratedHSVPipe.PBOMode pboMode) {
+        assumeGL(pboMode);
+        var pipe = new GPUAcceleratedHSVPipe(pboMode);
+        pipe.setParams(k_params);
+
+        // The odd width makes for rows that aren't 4-byte aligned, and the second size checks that
+        // resizing reallocates everything
+        for (var size : new int[][] {{322, 240}, {640, 480}, {640, 480}}) {
+            var frame = splitFrame(size[0], size[1], true);
+            assertSameMask(cpuMask(frame), pipe.run(frame).output);
+        }
+    }
+
+    @Test
+    public void noPBOMatchesCPU() {
+        matchesCPU(GPUAcceleratedHSVPipe.PBOMode.NONE);
+    }
+
+    @Test
+    public void singleBufferedMatchesCPU() {
+        matchesCPU(GPUAcceleratedHSVPipe.PBOMode.SINGLE_BUFFERED);
+    }
+
+    @Test
+    public void doubleBufferedMatchesCPU() {
+        matchesCPU(GPUAcceleratedHSVPipe.PBOMode.DOUBLE_BUFFERED);
+    }
+
+    @Test
+    public void asyncReadbackLagsOneFrame() {
+        assumeGL(GPUAcceleratedHSVPipe.PBOMode.ASYNC_READBACK);
+        var pipe = new GPUAcceleratedHSVPipe(GPUAcceleratedHSVPipe.PBOMode.ASYNC_READBACK);
+        pipe.setParams(k_params);
+
+        var redLeft = splitFrame(320, 240, true);
+        var redRight = splitFrame(320, 240, false);
+
+        // Nothing's in flight for the first frame, so it comes straight back
+        assertSameMask(cpuMask(redLeft), pipe.run(redLeft).output);
+        assertEquals(0, pipe.getOutputFrameLag());
+        // After that we get the previous frame's mask
+        assertSameMask(cpuMask(redLeft), pipe.run(redRight).output);
+        assertEquals(1, pipe.getOutputFrameLag());
+        assertSameMask(cpuMask(redRight), pipe.run(redLeft).output);
+        assertSameMask(cpuMask(redLeft), pipe.run(redLeft).output);
+        assertEquals(1, pipe.getOutputFrameLag());
+    }
+
+    @Test
+    public void outputMatsAreReused() {
+        assumeGL(GPUAcceleratedHSVPipe.PBOMode.DOUBLE_BUFFERED);
+        var pipe = new GPUAcceleratedHSVPipe(GPUAcceleratedHSVPipe.PBOMode.DOUBLE_BUFFERED);
+        pipe.setParams(k_params);
+
+        var frame = splitFrame(320, 240, true);
+        var first = pipe.run(frame).output;
+        // The next couple of masks mustn't overwrite one a consumer may still be holding
+        assertNotSame(first, pipe.run(frame).output);
+        assertNotSame(first, pipe.run(frame).output);
+        // But after that the ring comes back around
+        assertSame(first, pipe.run(frame).output);
+        assertSameMask(cpuMask(frame), first);
+    }
+}
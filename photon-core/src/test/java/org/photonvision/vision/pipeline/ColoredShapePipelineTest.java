@@ -40,6 +40,7 @@ public class ColoredShapePipelineTest {
     public static void testQuadrilateralDetection(
             ColoredShapePipeline pipeline, ColoredShapePipelineSettings settings, Frame frame) {
         settings.contourShape = ContourShape.Quadrilateral;
+        settings.markChanged();
         pipeline.settings = settings;
         CVPipelineResult colouredShapePipelineResult = pipeline.run(frame, QuirkyCamera.DefaultCamera);
         TestUtils.showImage(
@@ -50,6 +51,7 @@ public class ColoredShapePipelineTest {
     public static void testCustomShapeDetection(
             ColoredShapePipeline pipeline, ColoredShapePipelineSettings settings, Frame frame) {
         settings.contourShape = ContourShape.Custom;
+        settings.markChanged();
         pipeline.settings = settings;
         CVPipelineResult colouredShapePipelineResult = pipeline.run(frame, QuirkyCamera.DefaultCamera);
         TestUtils.showImage(
@@ -61,6 +63,7 @@ public class ColoredShapePipelineTest {
     public static void testCircleShapeDetection(
             ColoredShapePipeline pipeline, ColoredShapePipelineSettings settings, Frame frame) {
         settings.contourShape = ContourShape.Circle;
+        settings.markChanged();
         pipeline.settings = settings;
         CVPipelineResult colouredShapePipelineResult = pipeline.run(frame, QuirkyCamera.DefaultCamera);
         TestUtils.showImage(
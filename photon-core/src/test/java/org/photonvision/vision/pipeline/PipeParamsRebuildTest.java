@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.vision.pipeline;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.photonvision.common.util.TestUtils;
+import org.photonvision.vision.camera.QuirkyCamera;
+import org.photonvision.vision.frame.provider.FileFrameProvider;
+import org.photonvision.vision.opencv.CVMat;
+import org.photonvision.vision.pipe.impl.ErodeDilatePipe;
+
+public class PipeParamsRebuildTest {
+    @BeforeAll
+    public static void init() {
+        TestUtils.loadLibraries();
+    }
+
+    @Test
+    public void testSteadyStateDoesNotRebuild() {
+        var pipeline = new ColoredShapePipeline();
+        pipeline.getSettings().hsvHue.set(0, 100);
+        pipeline.getSettings().erode = true;
+        pipeline.getSettings().dilate = true;
+
+        var frameProvider =
+                new FileFrameProvider(
+                        TestUtils.getWPIImagePath(TestUtils.WPI2019Image.kCargoStraightDark72in_HighRes, false),
+                        TestUtils.WPI2019Image.FOV);
+
+        // Only the first frame should build params
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        assertEquals(1, pipeline.getPipeParamsBuildCount());
+        var hsvParams = pipeline.getHsvPipe().getParams();
+        // Each result is released before the next frame, so any Mat still tracked afterwards was
+        // allocated by the pipeline and never given back
+        int matCount = CVMat.getMatCount();
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        }
+        assertEquals(1, pipeline.getPipeParamsBuildCount());
+        assertSame(hsvParams, pipeline.getHsvPipe().getParams());
+        assertEquals(matCount, CVMat.getMatCount(), "Mats leaked in steady state");
+
+        // A change rebuilds once, on the next frame
+        pipeline.getSettings().hsvHue.set(10, 100);
+        pipeline.getSettings().markChanged();
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        assertEquals(2, pipeline.getPipeParamsBuildCount());
+        assertNotSame(hsvParams, pipeline.getHsvPipe().getParams());
+    }
+
+    @Test
+    public void testErodeDilateKernelBuiltOnce() {
+        // Params used to carry their own structuring element, a native Mat allocated every time
+        // they were built. Rebuilding them with the same size mustn't allocate another.
+        var pipe = new ErodeDilatePipe();
+        var frameProvider =
+                new FileFrameProvider(
+                        TestUtils.getWPIImagePath(TestUtils.WPI2019Image.kCargoStraightDark72in_HighRes, false),
+                        TestUtils.WPI2019Image.FOV);
+
+        for (int i = 0; i < 10; i++) {
+            pipe.setParams(new ErodeDilatePipe.ErodeDilateParams(true, true, 5));
+            var frame = frameProvider.get();
+            pipe.run(frame.image.getMat());
+            frame.release();
+        }
+        assertEquals(1, pipe.getKernelBuildCount());
+
+        pipe.setParams(new ErodeDilatePipe.ErodeDilateParams(true, true, 7));
+        var frame = frameProvider.get();
+        pipe.run(frame.image.getMat());
+        frame.release();
+        assertEquals(2, pipe.getKernelBuildCount());
+    }
+
+    @Test
+    public void testInvalidateRebuilds() {
+        // Driver mode is reused across pipeline switches, which invalidate its params
+        var pipeline = new DriverModePipeline();
+        var frameProvider =
+                new FileFrameProvider(
+                        TestUtils.getWPIImagePath(TestUtils.WPI2019Image.kCargoStraightDark72in_HighRes, false),
+                        TestUtils.WPI2019Image.FOV);
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        assertEquals(1, pipeline.getPipeParamsBuildCount());
+
+        pipeline.invalidatePipeParams();
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        assertEquals(2, pipeline.getPipeParamsBuildCount());
+    }
+
+    @Test
+    public void testNewSettingsOrPropertiesRebuild() {
+        var pipeline = new ReflectivePipeline();
+        var frameProvider =
+                new FileFrameProvider(
+                        TestUtils.getWPIImagePath(TestUtils.WPI2019Image.kCargoStraightDark72in_HighRes, false),
+                        TestUtils.WPI2019Image.FOV);
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        assertEquals(1, pipeline.getPipeParamsBuildCount());
+
+        // Switching settings objects, like changing pipelines does
+        var newSettings = pipeline.getSettings().clone();
+        pipeline.setSettings((ReflectivePipelineSettings) newSettings);
+        pipeline.run(frameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        assertEquals(2, pipeline.getPipeParamsBuildCount());
+
+        // A camera with a different FOV gives frames different static properties
+        var otherFrameProvider =
+                new FileFrameProvider(
+                        TestUtils.getWPIImagePath(TestUtils.WPI2019Image.kCargoStraightDark72in_HighRes, false),
+                        TestUtils.WPI2019Image.FOV + 10,
+                        new Rotation2d(),
+                        null);
+        pipeline.run(otherFrameProvider.get(), QuirkyCamera.DefaultCamera).release();
+        assertEquals(3, pipeline.getPipeParamsBuildCount());
+    }
+}
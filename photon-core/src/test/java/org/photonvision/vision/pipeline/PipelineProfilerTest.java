@@ -38,4 +38,31 @@ public class PipelineProfilerTest {
         Assertions.assertEquals("Invalid data", invalidResult);
         Assertions.assertTrue(validResult.contains("Total: 45.0ms"));
     }
+
+    @Test
+    public void gpuHSVProfile() {
+        long[] invalidNanos = new long[PipelineProfiler.GPUHSVStageCount + 1];
+        long[] validNanos = {500_000, 1_250_000, 2_000_000};
+
+        var invalidResult = PipelineProfiler.getGPUHSVProfileString(invalidNanos);
+        var validResult = PipelineProfiler.getGPUHSVProfileString(validNanos);
+
+        Assertions.assertEquals("Invalid data", invalidResult);
+        Assertions.assertEquals(
+                "GPU profiling - Upload: 0.5ms, Threshold: 1.25ms, Readback: 2.0ms, Total: 3.75ms",
+                validResult);
+    }
+
+    @Test
+    public void gpuHSVProfileIsRecorded() {
+        PipelineProfiler.recordGPUHSVProfile(new long[] {500_000, 1_250_000, 2_000_000});
+        // Wrongly sized timings are ignored
+        PipelineProfiler.recordGPUHSVProfile(new long[PipelineProfiler.GPUHSVStageCount + 1]);
+
+        var profile = PipelineProfiler.getGPUHSVProfile();
+        Assertions.assertEquals(PipelineProfiler.GPUHSVStageCount, profile.size());
+        Assertions.assertEquals(0.5, (double) profile.get("Upload"));
+        Assertions.assertEquals(1.25, (double) profile.get("Threshold"));
+        Assertions.assertEquals(2.0, (double) profile.get("Readback"));
+    }
 }
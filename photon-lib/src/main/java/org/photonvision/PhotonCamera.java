@@ -28,9 +28,12 @@ import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.DriverStation;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import org.photonvision.common.dataflow.structures.Packet;
 import org.photonvision.common.hardware.VisionLEDMode;
 import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonPipelineResultView;
 
 /** Represents a camera that is connected to PhotonVision. */
 public class PhotonCamera {
@@ -45,8 +48,16 @@ public class PhotonCamera {
 
     private final String path;
 
+    private static final byte[] kEmptyRaw = new byte[0];
+
     Packet packet = new Packet(1);
 
+    // State for the reusable decode paths; see getLatestResult(PhotonPipelineResult).
+    private PhotonPipelineResult lastDecodedResult;
+    private long lastDecodedChange = -1;
+    private final PhotonPipelineResultView resultView = new PhotonPipelineResultView();
+    private long lastViewChange = -1;
+
     /**
      * Constructs a PhotonCamera from a root table.
      *
@@ -85,14 +96,11 @@ public class PhotonCamera {
     public PhotonPipelineResult getLatestResult() {
         verifyVersion();
 
-        // Clear the packet.
-        packet.clear();
-
         // Create latest result.
         var ret = new PhotonPipelineResult();
 
         // Populate packet and create result.
-        packet.setData(rawBytesEntry.getRaw(new byte[] {}));
+        packet.setData(rawBytesEntry.getRaw(kEmptyRaw));
         if (packet.getSize() < 1) return ret;
         ret.createFromPacket(packet);
 
@@ -100,6 +108,81 @@ public class PhotonCamera {
         return ret;
     }
 
+    /**
+     * Decodes the latest pipeline result into a caller-owned result, reusing its target objects
+     * instead of allocating new ones. If the result passed in is the same one used on the previous
+     * call and NetworkTables has not received new data since, nothing is decoded.
+     *
+     * <p>Intended to be called every loop with the same result instance, e.g. from a subsystem's
+     * periodic method. Targets previously read out of {@code result} are overwritten in place.
+     *
+     * @param result The result to populate.
+     * @return Whether the result was updated with new data.
+     */
+    public boolean getLatestResult(PhotonPipelineResult result) {
+        verifyVersion();
+
+        long lastChange = rawBytesEntry.getLastChange();
+        if (result == lastDecodedResult && lastChange == lastDecodedChange) return false;
+
+        packet.setData(rawBytesEntry.getRaw(kEmptyRaw));
+        if (packet.getSize() < 1) return false;
+        result.createFromPacket(packet);
+
+        lastDecodedResult = result;
+        lastDecodedChange = lastChange;
+        return true;
+    }
+
+    /**
+     * Returns a lazily decoded view over the latest pipeline result. The returned view is owned by
+     * this camera and is repointed at new data on each call, so it should not be retained across
+     * loops. Nothing is decoded until one of the view's getters is called, and the raw bytes are
+     * only fetched from NetworkTables when they have changed.
+     *
+     * @return A view over the latest pipeline result.
+     */
+    public PhotonPipelineResultView getLatestResultView() {
+        verifyVersion();
+
+        long lastChange = rawBytesEntry.getLastChange();
+        if (lastChange != lastViewChange) {
+            resultView.setData(rawBytesEntry.getRaw(kEmptyRaw));
+            lastViewChange = lastChange;
+        }
+        return resultView;
+    }
+
+    /**
+     * Registers a listener that is called with each new pipeline result as soon as it arrives over
+     * NetworkTables, rather than waiting for the next poll of {@link #getLatestResult()}. Each
+     * result is delivered at most once, on the given executor. If the executor is busy when a newer
+     * result arrives, the older undelivered result is dropped.
+     *
+     * <p>Listeners run concurrently with the main robot loop, so any state they share with it must
+     * be synchronized.
+     *
+     * @param listener Called with each new result.
+     * @param executor The executor to run the listener on.
+     * @return A handle that can be used to read delivery statistics and to remove the listener.
+     */
+    public PhotonResultListener addResultListener(
+            Consumer<PhotonPipelineResult> listener, Executor executor) {
+        return new PhotonResultListener(rawBytesEntry, listener, executor);
+    }
+
+    /**
+     * Registers a listener that is called with each new pipeline result directly on the
+     * NetworkTables listener thread. The listener should return quickly, as it delays all other
+     * NetworkTables notifications while running.
+     *
+     * @param listener Called with each new result.
+     * @return A handle that can be used to read delivery statistics and to remove the listener.
+     */
+    public PhotonResultListener addResultListener(Consumer<PhotonPipelineResult> listener) {
+        return addResultListener(listener, Runnable::run);
+    }
+
     /**
      * Returns whether the camera is in driver mode.
      *
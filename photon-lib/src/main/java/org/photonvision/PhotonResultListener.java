@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 PhotonVision
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.photonvision;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.networktables.EntryNotification;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * A subscription to new pipeline results from a {@link PhotonCamera}, created by {@link
+ * PhotonCamera#addResultListener}. Each result published by the coprocessor is decoded and handed
+ * to the listener at most once, on the executor chosen by the caller.
+ *
+ * <p>If the executor falls behind, only the newest undelivered result is kept; superseded results
+ * are dropped and counted by {@link #getDroppedCount()} instead of being queued. Results the
+ * executor refuses to run are counted by {@link #getRejectedCount()}, and exceptions thrown by the
+ * listener are reported to the Driver Station rather than thrown into the executor.
+ */
+public class PhotonResultListener {
+    private final NetworkTableEntry rawBytesEntry;
+    private final Consumer<PhotonPipelineResult> listener;
+    private final Executor executor;
+    private final int listenerID;
+
+    // The newest bytes not yet handed to the executor, or null if nothing is pending.
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    PhotonResultListener(
+            NetworkTableEntry rawBytesEntry,
+            Consumer<PhotonPipelineResult> listener,
+            Executor executor) {
+        this.rawBytesEntry = rawBytesEntry;
+        this.listener = listener;
+        this.executor = executor;
+        // kLocal is needed so that results published by a SimPhotonCamera on the same instance
+        // are seen too.
+        listenerID =
+                rawBytesEntry.addListener(
+                        this::onEntryChanged,
+                        EntryListenerFlags.kNew | EntryListenerFlags.kUpdate | EntryListenerFlags.kLocal);
+    }
+
+    private void onEntryChanged(EntryNotification notification) {
+        byte[] raw = notification.value.getRaw();
+        if (raw == null || raw.length < 1) return;
+
+        // Only schedule a delivery if one isn't already pending; otherwise the pending delivery
+        // picks up these bytes and the ones it replaced are dropped.
+        if (pending.getAndSet(raw) != null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            // Nothing will pick these bytes up, so clear them; otherwise every later result would be
+            // counted as dropped and the listener would never hear anything again.
+            pending.set(null);
+            if (rejectedCount.incrementAndGet() == 1) {
+                DriverStation.reportError(
+                        "PhotonVision result listener's executor rejected a result: " + e, false);
+            }
+        }
+    }
+
+    private void deliver() {
+        byte[] raw = pending.getAndSet(null);
+        if (raw == null) return;
+
+        var result = new PhotonPipelineResult();
+        result.createFromPacket(new Packet(raw));
+        deliveredCount.incrementAndGet();
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            DriverStation.reportError(
+                    "PhotonVision result listener threw an exception: " + e, e.getStackTrace());
+        }
+    }
+
+    /**
+     * Returns the number of results handed to the listener so far.
+     *
+     * @return The number of results delivered.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Returns the number of results that were superseded by a newer result before the executor got
+     * to them, and so were never delivered.
+     *
+     * @return The number of results dropped.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of results that were never delivered because the executor rejected them,
+     * e.g. because it was shut down.
+     *
+     * @return The number of results rejected.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /** Stops listening for new results. Results already handed to the executor may still arrive. */
+    public void remove() {
+        rawBytesEntry.removeListener(listenerID);
+    }
+}
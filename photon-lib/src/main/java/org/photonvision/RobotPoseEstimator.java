@@ -0,0 +1,341 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 PhotonVision
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.photonvision;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+/**
+ * Fuses the targets seen by any number of {@link PhotonCamera}s into a single estimate of the
+ * robot's pose on the field.
+ *
+ * <p>Each target with a camera-to-target transform (i.e. from a pipeline running in 3D mode) is
+ * turned into a robot pose measurement using the camera's mounting transform and the field pose of
+ * a known target. Since targets aren't uniquely identified, each measurement is matched to the
+ * known target that places the robot closest to a reference pose, which defaults to the previous
+ * estimate. Measurements are then averaged, weighted by a confidence computed from the target's
+ * area, the result's latency, and how ambiguous the match was.
+ *
+ * <p>Cameras are polled through {@link PhotonCamera#getLatestResult(PhotonPipelineResult)} into
+ * results owned by the estimator, and all intermediate math is done on primitives, so a call to
+ * {@link #update()} does not allocate once the estimator has seen its largest batch of targets.
+ */
+public class RobotPoseEstimator {
+    private static class CameraEntry {
+        final PhotonCamera camera;
+        final Transform2d cameraToRobot;
+        final PhotonPipelineResult result = new PhotonPipelineResult();
+
+        CameraEntry(PhotonCamera camera, Transform2d cameraToRobot) {
+            this.camera = camera;
+            this.cameraToRobot = cameraToRobot;
+        }
+    }
+
+    private final List<CameraEntry> cameras = new ArrayList<>();
+
+    // Field layout, unpacked into primitives.
+    private final double[] fieldTargetX;
+    private final double[] fieldTargetY;
+    private final double[] fieldTargetRadians;
+
+    // Per-measurement scratch space, grown as needed.
+    private double[] measurementX = new double[8];
+    private double[] measurementY = new double[8];
+    private double[] measurementRadians = new double[8];
+    private double[] measurementTimestamp = new double[8];
+    private double[] measurementConfidence = new double[8];
+    private int measurementCount;
+
+    private double latencyScaleSeconds = 0.1;
+    private double associationScaleMeters = 1.0;
+
+    private double referenceX;
+    private double referenceY;
+    private double estimatedX;
+    private double estimatedY;
+    private double estimatedRadians;
+    private double estimatedTimestamp = -1;
+
+    /**
+     * Constructs a pose estimator.
+     *
+     * @param fieldTargets The poses of all known vision targets on the field.
+     */
+    public RobotPoseEstimator(List<Pose2d> fieldTargets) {
+        if (fieldTargets.isEmpty()) {
+            throw new IllegalArgumentException("At least one field target pose is required");
+        }
+        int count = fieldTargets.size();
+        fieldTargetX = new double[count];
+        fieldTargetY = new double[count];
+        fieldTargetRadians = new double[count];
+        for (int i = 0; i < count; i++) {
+            var pose = fieldTargets.get(i);
+            fieldTargetX[i] = pose.getX();
+            fieldTargetY[i] = pose.getY();
+            fieldTargetRadians[i] = pose.getRotation().getRadians();
+        }
+    }
+
+    /**
+     * Adds a camera to the estimator.
+     *
+     * @param camera The camera.
+     * @param cameraToRobot The position of the robot relative to the camera. If the camera was
+     *     mounted 3 inches behind the "origin" (usually physical center) of the robot, this would be
+     *     Transform2d(3 inches, 0 inches, 0 degrees).
+     */
+    public void addCamera(PhotonCamera camera, Transform2d cameraToRobot) {
+        cameras.add(new CameraEntry(camera, cameraToRobot));
+    }
+
+    /**
+     * Sets the pose used to decide which known target each measurement corresponds to. After each
+     * successful update the new estimate becomes the reference, so this only needs to be called
+     * when the robot's position is known, e.g. at the start of a match.
+     *
+     * @param pose The reference pose.
+     */
+    public void setReferencePose(Pose2d pose) {
+        referenceX = pose.getX();
+        referenceY = pose.getY();
+    }
+
+    /**
+     * Sets how quickly confidence falls off with latency. A measurement whose latency equals this
+     * scale is given half the weight of a zero-latency one. Defaults to 0.1 seconds.
+     *
+     * @param latencyScaleSeconds The latency scale, in seconds.
+     */
+    public void setLatencyScale(double latencyScaleSeconds) {
+        this.latencyScaleSeconds = latencyScaleSeconds;
+    }
+
+    /**
+     * Sets how quickly confidence falls off with distance from the reference pose. A measurement
+     * this far from the reference is given half the weight of one that agrees with it exactly.
+     * Defaults to 1 meter.
+     *
+     * @param associationScaleMeters The distance scale, in meters.
+     */
+    public void setAssociationScale(double associationScaleMeters) {
+        this.associationScaleMeters = associationScaleMeters;
+    }
+
+    /**
+     * Polls every camera and, if any of them has a new result with targets, fuses all their
+     * targets into a new estimate.
+     *
+     * @return Whether a new estimate was produced.
+     */
+    public boolean update() {
+        return update(Timer.getFPGATimestamp());
+    }
+
+    /**
+     * Polls every camera and, if any of them has a new result with targets, fuses all their
+     * targets into a new estimate.
+     *
+     * @param currentTimeSeconds The current time, in the same timebase the estimate's timestamp
+     *     should be reported in.
+     * @return Whether a new estimate was produced.
+     */
+    public boolean update(double currentTimeSeconds) {
+        measurementCount = 0;
+        for (var entry : cameras) {
+            if (!entry.camera.getLatestResult(entry.result)) continue;
+            double timestamp = currentTimeSeconds - entry.result.getLatencyMillis() / 1000.0;
+            for (var target : entry.result.targets) {
+                addMeasurement(target, entry.cameraToRobot, entry.result.getLatencyMillis(), timestamp);
+            }
+        }
+        return fuse();
+    }
+
+    private void addMeasurement(
+            PhotonTrackedTarget target,
+            Transform2d cameraToRobot,
+            double latencyMillis,
+            double timestampSeconds) {
+        double cx = target.getCameraToTargetX();
+        double cy = target.getCameraToTargetY();
+        double cr = Math.toRadians(target.getCameraToTargetDegrees());
+        double rx = cameraToRobot.getX();
+        double ry = cameraToRobot.getY();
+        double rr = cameraToRobot.getRotation().getRadians();
+
+        // Robot pose for each candidate field target; keep the closest two to the reference.
+        double bestDistance = Double.POSITIVE_INFINITY;
+        double secondDistance = Double.POSITIVE_INFINITY;
+        double bestX = 0;
+        double bestY = 0;
+        double bestRadians = 0;
+        for (int i = 0; i < fieldTargetX.length; i++) {
+            // fieldToCamera = fieldToTarget.transformBy(cameraToTarget.inverse())
+            double cameraRadians = fieldTargetRadians[i] - cr;
+            double cos = Math.cos(cameraRadians);
+            double sin = Math.sin(cameraRadians);
+            double cameraX = fieldTargetX[i] - (cos * cx - sin * cy);
+            double cameraY = fieldTargetY[i] - (sin * cx + cos * cy);
+
+            // fieldToRobot = fieldToCamera.transformBy(cameraToRobot)
+            double robotX = cameraX + cos * rx - sin * ry;
+            double robotY = cameraY + sin * rx + cos * ry;
+
+            double distance = Math.hypot(robotX - referenceX, robotY - referenceY);
+            if (distance < bestDistance) {
+                secondDistance = bestDistance;
+                bestDistance = distance;
+                bestX = robotX;
+                bestY = robotY;
+                bestRadians = cameraRadians + rr;
+            } else if (distance < secondDistance) {
+                secondDistance = distance;
+            }
+        }
+
+        // A match is ambiguous when another known target would have placed the robot nearly as
+        // close to the reference.
+        double ambiguity =
+                Double.isInfinite(secondDistance) ? 0 : bestDistance / Math.max(secondDistance, 1e-9);
+        double agreement = bestDistance / associationScaleMeters;
+        double confidence =
+                target.getArea()
+                        * (1 - ambiguity)
+                        / (1 + latencyMillis / 1000.0 / latencyScaleSeconds)
+                        / (1 + agreement * agreement);
+
+        ensureCapacity(measurementCount + 1);
+        measurementX[measurementCount] = bestX;
+        measurementY[measurementCount] = bestY;
+        measurementRadians[measurementCount] = bestRadians;
+        measurementTimestamp[measurementCount] = timestampSeconds;
+        measurementConfidence[measurementCount] = confidence;
+        measurementCount++;
+    }
+
+    private boolean fuse() {
+        double totalWeight = 0;
+        double x = 0;
+        double y = 0;
+        double cos = 0;
+        double sin = 0;
+        double timestamp = 0;
+        for (int i = 0; i < measurementCount; i++) {
+            double w = measurementConfidence[i];
+            totalWeight += w;
+            x += w * measurementX[i];
+            y += w * measurementY[i];
+            cos += w * Math.cos(measurementRadians[i]);
+            sin += w * Math.sin(measurementRadians[i]);
+            timestamp += w * measurementTimestamp[i];
+        }
+        if (totalWeight <= 0) return false;
+
+        estimatedX = x / totalWeight;
+        estimatedY = y / totalWeight;
+        estimatedRadians = Math.atan2(sin, cos);
+        estimatedTimestamp = timestamp / totalWeight;
+        referenceX = estimatedX;
+        referenceY = estimatedY;
+        return true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= measurementX.length) return;
+        int newLength = Math.max(capacity, measurementX.length * 2);
+        measurementX = Arrays.copyOf(measurementX, newLength);
+        measurementY = Arrays.copyOf(measurementY, newLength);
+        measurementRadians = Arrays.copyOf(measurementRadians, newLength);
+        measurementTimestamp = Arrays.copyOf(measurementTimestamp, newLength);
+        measurementConfidence = Arrays.copyOf(measurementConfidence, newLength);
+    }
+
+    /**
+     * Returns the latest fused estimate. This allocates a new Pose2d; {@link #getEstimatedX()},
+     * {@link #getEstimatedY()} and {@link #getEstimatedRotationRadians()} do not.
+     *
+     * @return The latest fused estimate of the robot's pose.
+     */
+    public Pose2d getEstimatedPose() {
+        return new Pose2d(
+                new Translation2d(estimatedX, estimatedY), new Rotation2d(estimatedRadians));
+    }
+
+    public double getEstimatedX() {
+        return estimatedX;
+    }
+
+    public double getEstimatedY() {
+        return estimatedY;
+    }
+
+    public double getEstimatedRotationRadians() {
+        return estimatedRadians;
+    }
+
+    /**
+     * Returns the confidence-weighted capture time of the measurements making up the latest
+     * estimate, or -1 if no estimate has been made.
+     *
+     * @return The timestamp of the latest estimate, in seconds.
+     */
+    public double getEstimatedTimestampSeconds() {
+        return estimatedTimestamp;
+    }
+
+    /**
+     * Returns the number of measurements considered in the last call to {@link #update()}.
+     *
+     * @return The number of measurements.
+     */
+    public int getMeasurementCount() {
+        return measurementCount;
+    }
+
+    /**
+     * Returns the unnormalized confidence given to a measurement in the last call to {@link
+     * #update()}. Measurements are in camera order, then in the order of each result's targets.
+     *
+     * @param index The index of the measurement.
+     * @return The confidence of the measurement.
+     */
+    public double getMeasurementConfidence(int index) {
+        if (index < 0 || index >= measurementCount) {
+            throw new IndexOutOfBoundsException(
+                    "Measurement " + index + " out of range for " + measurementCount + " measurements");
+        }
+        return measurementConfidence[index];
+    }
+}
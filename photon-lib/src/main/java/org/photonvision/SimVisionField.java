@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 PhotonVision
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.photonvision;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of {@link SimVisionTarget}s on the field, indexed by a uniform spatial grid so that a
+ * {@link SimVisionSystem} only has to look at targets near its camera's field of view. A single
+ * field can be shared by any number of simulated cameras.
+ */
+public class SimVisionField {
+    private final double cellSizeMeters;
+    private final List<SimVisionTarget> targets = new ArrayList<>();
+
+    // Grid over the bounding box of all targets, rebuilt lazily after targets are added.
+    private boolean gridDirty = true;
+    private double gridMinX;
+    private double gridMinY;
+    private int gridCols;
+    private int gridRows;
+    private List<List<SimVisionTarget>> cells = new ArrayList<>();
+
+    /** Constructs an empty field with 2 meter grid cells. */
+    public SimVisionField() {
+        this(2.0);
+    }
+
+    /**
+     * Constructs an empty field.
+     *
+     * @param cellSizeMeters The side length of each grid cell. Cells around the size of the
+     *     camera's typical visible range work well.
+     */
+    public SimVisionField(double cellSizeMeters) {
+        this.cellSizeMeters = cellSizeMeters;
+    }
+
+    /**
+     * Add a target to the field.
+     *
+     * @param target Target to add to the simulated field
+     */
+    public void addSimVisionTarget(SimVisionTarget target) {
+        targets.add(target);
+        gridDirty = true;
+    }
+
+    /**
+     * Returns every target on the field.
+     *
+     * @return Every target on the field.
+     */
+    public List<SimVisionTarget> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Collects the targets that may be visible from a camera, culling whole grid cells that are out
+     * of range or outside the camera's horizontal field of view. Targets that are returned still
+     * need an exact visibility check.
+     *
+     * @param cameraPose The pose of the camera on the field.
+     * @param maxRangeMeters The maximum distance along the ground at which a target can be seen.
+     * @param horizFOVDegrees The horizontal field of view of the camera.
+     * @param out The list to fill; it is cleared first.
+     */
+    void collectCandidates(
+            Pose2d cameraPose, double maxRangeMeters, double horizFOVDegrees, List<SimVisionTarget> out) {
+        out.clear();
+        if (targets.isEmpty()) return;
+        if (gridDirty) rebuildGrid();
+
+        double camX = cameraPose.getX();
+        double camY = cameraPose.getY();
+        double camCos = cameraPose.getRotation().getCos();
+        double camSin = cameraPose.getRotation().getSin();
+        double halfFOVRadians = Math.toRadians(horizFOVDegrees) / 2;
+        double cellRadius = cellSizeMeters * Math.sqrt(2) / 2;
+
+        // Only walk the cells overlapping the circle of visible range.
+        int minCol = Math.max(0, cellIndex(camX - maxRangeMeters, gridMinX));
+        int maxCol = Math.min(gridCols - 1, cellIndex(camX + maxRangeMeters, gridMinX));
+        int minRow = Math.max(0, cellIndex(camY - maxRangeMeters, gridMinY));
+        int maxRow = Math.min(gridRows - 1, cellIndex(camY + maxRangeMeters, gridMinY));
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                var cell = cells.get(row * gridCols + col);
+                if (cell.isEmpty()) continue;
+
+                // Bounding circle of the cell, in the camera's frame
+                double dx = gridMinX + (col + 0.5) * cellSizeMeters - camX;
+                double dy = gridMinY + (row + 0.5) * cellSizeMeters - camY;
+                double forward = camCos * dx + camSin * dy;
+                double left = -camSin * dx + camCos * dy;
+                double dist = Math.hypot(forward, left);
+
+                if (dist - cellRadius > maxRangeMeters) continue;
+                if (dist > cellRadius) {
+                    double offAxis = Math.abs(Math.atan2(left, forward));
+                    if (offAxis - Math.asin(cellRadius / dist) > halfFOVRadians) continue;
+                }
+
+                out.addAll(cell);
+            }
+        }
+    }
+
+    private void rebuildGrid() {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (var target : targets) {
+            minX = Math.min(minX, target.targetPos.getX());
+            minY = Math.min(minY, target.targetPos.getY());
+            maxX = Math.max(maxX, target.targetPos.getX());
+            maxY = Math.max(maxY, target.targetPos.getY());
+        }
+
+        gridMinX = minX;
+        gridMinY = minY;
+        gridCols = cellIndex(maxX, minX) + 1;
+        gridRows = cellIndex(maxY, minY) + 1;
+
+        cells = new ArrayList<>(gridCols * gridRows);
+        for (int i = 0; i < gridCols * gridRows; i++) {
+            cells.add(new ArrayList<>());
+        }
+        for (var target : targets) {
+            int col = cellIndex(target.targetPos.getX(), gridMinX);
+            int row = cellIndex(target.targetPos.getY(), gridMinY);
+            cells.get(row * gridCols + col).add(target);
+        }
+
+        gridDirty = false;
+    }
+
+    private int cellIndex(double coordinate, double gridMin) {
+        return (int) Math.floor((coordinate - gridMin) / cellSizeMeters);
+    }
+}
@@ -45,7 +45,10 @@ public class SimVisionSystem {
     double minTargetArea;
     Transform2d cameraToRobot;
 
-    ArrayList<SimVisionTarget> tgtList;
+    final SimVisionField field;
+
+    // Reused across frames to avoid per-frame allocation.
+    private final ArrayList<SimVisionTarget> candidates = new ArrayList<>();
 
     /**
      * Create a simulated vision system involving a camera and coprocessor mounted on a mobile robot
@@ -80,6 +83,54 @@ public class SimVisionSystem {
             int cameraResWidth,
             int cameraResHeight,
             double minTargetArea) {
+        this(
+                camName,
+                camDiagFOVDegrees,
+                camPitchDegrees,
+                cameraToRobot,
+                cameraHeightOffGroundMeters,
+                maxLEDRangeMeters,
+                cameraResWidth,
+                cameraResHeight,
+                minTargetArea,
+                new SimVisionField());
+    }
+
+    /**
+     * Create a simulated vision system that detects targets from a shared {@link SimVisionField}.
+     * Use this to simulate several cameras looking at the same set of targets, without having to
+     * add every target to every camera.
+     *
+     * @param camName Name of the PhotonVision camera to create. Align it with the settings you use in
+     *     the PhotonVision GUI.
+     * @param camDiagFOVDegrees Diagonal Field of View of the camera used. Align it with the
+     *     manufacturer specifications, and/or whatever is configured in the PhotonVision Setting
+     *     page.
+     * @param camPitchDegrees pitch of the camera's view axis back from horizontal. Make this the same
+     *     as whatever is configured in the PhotonVision Setting page.
+     * @param cameraToRobot Pose Transform to move from the camera's mount position to the robot's
+     *     position
+     * @param cameraHeightOffGroundMeters Height of the camera off the ground in meters
+     * @param maxLEDRangeMeters Maximum distance at which your camera can illuminate the target and
+     *     make it visible. Set to 9000 or more if your vision system does not rely on LED's.
+     * @param cameraResWidth Width of your camera's image sensor in pixels
+     * @param cameraResHeight Height of your camera's image sensor in pixels
+     * @param minTargetArea Minimum area that that the target should be before it's recognized as a
+     *     target by the camera. Match this with your contour filtering settings in the PhotonVision
+     *     GUI.
+     * @param field The targets this camera can detect.
+     */
+    public SimVisionSystem(
+            String camName,
+            double camDiagFOVDegrees,
+            double camPitchDegrees,
+            Transform2d cameraToRobot,
+            double cameraHeightOffGroundMeters,
+            double maxLEDRangeMeters,
+            int cameraResWidth,
+            int cameraResHeight,
+            double minTargetArea,
+            SimVisionField field) {
         this.camPitchDegrees = camPitchDegrees;
         this.cameraToRobot = cameraToRobot;
         this.cameraHeightOffGroundMeters = cameraHeightOffGroundMeters;
@@ -94,18 +145,19 @@ public class SimVisionSystem {
         this.camVertFOVDegrees = camDiagFOVDegrees * cameraResHeight / hypotPixels;
 
         cam = new SimPhotonCamera(camName);
-        tgtList = new ArrayList<>();
+        this.field = field;
     }
 
     /**
      * Add a target on the field which your vision system is designed to detect. The PhotonCamera from
      * this system will report the location of the robot relative to the subset of these targets which
-     * are visible from the given robot position.
+     * are visible from the given robot position. If this system's field is shared, the target is
+     * visible to every camera using it.
      *
      * @param target Target to add to the simulated field
      */
     public void addSimVisionTarget(SimVisionTarget target) {
-        tgtList.add(target);
+        field.addSimVisionTarget(target);
     }
 
     /**
@@ -134,50 +186,114 @@ public class SimVisionSystem {
     public void processFrame(Pose2d robotPoseMeters) {
         Pose2d cameraPos = robotPoseMeters.transformBy(cameraToRobot.inverse());
 
-        ArrayList<PhotonTrackedTarget> visibleTgtList = new ArrayList<>(tgtList.size());
-
-        tgtList.forEach(
-                (tgt) -> {
-                    var camToTargetTrans = new Transform2d(cameraPos, tgt.targetPos);
-
-                    double distAlongGroundMeters = camToTargetTrans.getTranslation().getNorm();
-                    double distVerticalMeters =
-                            tgt.targetHeightAboveGroundMeters - this.cameraHeightOffGroundMeters;
-                    double distMeters = Math.hypot(distAlongGroundMeters, distVerticalMeters);
-
-                    double area = tgt.tgtAreaMeters2 / getM2PerPx(distAlongGroundMeters);
-
-                    // 2D yaw mode considers the target as a point, and should ignore target rotation.
-                    // Photon reports it in the correct robot reference frame.
-                    // IE: targets to the left of the image should report negative yaw.
-                    double yawDegrees =
-                            -1.0
-                                    * Units.radiansToDegrees(
-                                            Math.atan2(
-                                                    camToTargetTrans.getTranslation().getY(),
-                                                    camToTargetTrans.getTranslation().getX()));
-                    double pitchDegrees =
-                            Units.radiansToDegrees(Math.atan2(distVerticalMeters, distAlongGroundMeters))
-                                    - this.camPitchDegrees;
-
-                    if (camCanSeeTarget(distMeters, yawDegrees, pitchDegrees, area)) {
-                        // TODO simulate target corners
-                        visibleTgtList.add(
-                                new PhotonTrackedTarget(
-                                        yawDegrees,
-                                        pitchDegrees,
-                                        area,
-                                        0.0,
-                                        camToTargetTrans,
-                                        List.of(
-                                                new TargetCorner(0, 0), new TargetCorner(0, 0),
-                                                new TargetCorner(0, 0), new TargetCorner(0, 0))));
-                    }
-                });
+        // Cheaply throw out targets that can't be in view before doing any real geometry.
+        field.collectCandidates(cameraPos, maxLEDRangeMeters, camHorizFOVDegrees, candidates);
+
+        ArrayList<PhotonTrackedTarget> visibleTgtList = new ArrayList<>();
+
+        double camX = cameraPos.getX();
+        double camY = cameraPos.getY();
+        double camCos = cameraPos.getRotation().getCos();
+        double camSin = cameraPos.getRotation().getSin();
+
+        for (int i = 0; i < candidates.size(); i++) {
+            var tgt = candidates.get(i);
+
+            // Per-target range and horizontal FOV check, done on primitives. The margin keeps this
+            // conservative so that the exact check below always has the final say.
+            double dx = tgt.targetPos.getX() - camX;
+            double dy = tgt.targetPos.getY() - camY;
+            double forward = camCos * dx + camSin * dy;
+            double left = -camSin * dx + camCos * dy;
+            if (Math.hypot(forward, left) > maxLEDRangeMeters + 1e-9) continue;
+            double approxYawDegrees = Math.toDegrees(Math.abs(Math.atan2(left, forward)));
+            if (approxYawDegrees > camHorizFOVDegrees / 2 + 1e-6) continue;
+
+            var camToTargetTrans = new Transform2d(cameraPos, tgt.targetPos);
+
+            double distAlongGroundMeters = camToTargetTrans.getTranslation().getNorm();
+            double distVerticalMeters =
+                    tgt.targetHeightAboveGroundMeters - this.cameraHeightOffGroundMeters;
+            double distMeters = Math.hypot(distAlongGroundMeters, distVerticalMeters);
+
+            double area = tgt.tgtAreaMeters2 / getM2PerPx(distAlongGroundMeters);
+
+            // 2D yaw mode considers the target as a point, and should ignore target rotation.
+            // Photon reports it in the correct robot reference frame.
+            // IE: targets to the left of the image should report negative yaw.
+            double yawDegrees =
+                    -1.0
+                            * Units.radiansToDegrees(
+                                    Math.atan2(
+                                            camToTargetTrans.getTranslation().getY(),
+                                            camToTargetTrans.getTranslation().getX()));
+            double pitchDegrees =
+                    Units.radiansToDegrees(Math.atan2(distVerticalMeters, distAlongGroundMeters))
+                            - this.camPitchDegrees;
+
+            if (camCanSeeTarget(distMeters, yawDegrees, pitchDegrees, area)) {
+                visibleTgtList.add(
+                        new PhotonTrackedTarget(
+                                yawDegrees,
+                                pitchDegrees,
+                                area,
+                                0.0,
+                                camToTargetTrans,
+                                projectCorners(cameraPos, tgt)));
+            }
+        }
 
         cam.submitProcessedFrame(0.0, visibleTgtList);
     }
 
+    /**
+     * Projects the corners of a target's outer bounding box into the image through a pinhole camera
+     * model with this system's resolution and field of view. The target is treated as a vertical
+     * rectangle centered on its pose and height, facing along its pose's rotation.
+     */
+    List<TargetCorner> projectCorners(Pose2d cameraPos, SimVisionTarget tgt) {
+        double focalX = (cameraResWidth / 2.0) / Math.tan(Math.toRadians(camHorizFOVDegrees) / 2);
+        double focalY = (cameraResHeight / 2.0) / Math.tan(Math.toRadians(camVertFOVDegrees) / 2);
+        double camCos = cameraPos.getRotation().getCos();
+        double camSin = cameraPos.getRotation().getSin();
+        double pitchCos = Math.cos(Math.toRadians(camPitchDegrees));
+        double pitchSin = Math.sin(Math.toRadians(camPitchDegrees));
+
+        // Half-extents of the target: sideways along the target's face, and vertically
+        double halfWidth = tgt.targetWidthMeters / 2;
+        double halfHeight = tgt.targetHeightMeters / 2;
+        double sideX = -tgt.targetPos.getRotation().getSin() * halfWidth;
+        double sideY = tgt.targetPos.getRotation().getCos() * halfWidth;
+
+        var corners = new ArrayList<TargetCorner>(4);
+        for (int i = 0; i < 4; i++) {
+            double side = (i == 0 || i == 3) ? 1 : -1;
+            double up = (i < 2) ? 1 : -1;
+
+            double dx = tgt.targetPos.getX() + side * sideX - cameraPos.getX();
+            double dy = tgt.targetPos.getY() + side * sideY - cameraPos.getY();
+            double dz =
+                    tgt.targetHeightAboveGroundMeters + up * halfHeight - cameraHeightOffGroundMeters;
+
+            // Into the camera frame, then pitched back by the camera's pitch
+            double forward = camCos * dx + camSin * dy;
+            double left = -camSin * dx + camCos * dy;
+            double depth = forward * pitchCos + dz * pitchSin;
+            double height = -forward * pitchSin + dz * pitchCos;
+
+            // Points behind the camera have no meaningful projection; pin them to the center.
+            if (depth <= 1e-9) {
+                corners.add(new TargetCorner(cameraResWidth / 2.0, cameraResHeight / 2.0));
+                continue;
+            }
+            corners.add(
+                    new TargetCorner(
+                            cameraResWidth / 2.0 - focalX * left / depth,
+                            cameraResHeight / 2.0 - focalY * height / depth));
+        }
+        return corners;
+    }
+
     double getM2PerPx(double dist) {
         double widthMPerPx =
                 2 * dist * Math.tan(Units.degreesToRadians(this.camHorizFOVDegrees) / 2) / cameraResWidth;
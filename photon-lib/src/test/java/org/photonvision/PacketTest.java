@@ -33,6 +33,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.photonvision.common.dataflow.structures.Packet;
 import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonPipelineResultView;
 import org.photonvision.targeting.PhotonTrackedTarget;
 import org.photonvision.targeting.TargetCorner;
 
@@ -105,4 +106,71 @@ class PacketTest {
 
         Assertions.assertEquals(result2, b2);
     }
+
+    @Test
+    void testResultReuse() {
+        var target =
+                new PhotonTrackedTarget(
+                        3.0,
+                        -4.0,
+                        9.0,
+                        4.0,
+                        new Transform2d(new Translation2d(1, 2), new Rotation2d(1.5)),
+                        List.of(
+                                new TargetCorner(1, 2),
+                                new TargetCorner(3, 4),
+                                new TargetCorner(5, 6),
+                                new TargetCorner(7, 8)));
+        var result = new PhotonPipelineResult(2, List.of(target, target));
+        var p = new Packet(result.getPacketSize());
+        result.populatePacket(p);
+
+        var b = new PhotonPipelineResult();
+        b.createFromPacket(p);
+        var firstTarget = b.targets.get(0);
+        Assertions.assertEquals(result, b);
+
+        // Decoding again into the same result should reuse the same target instances
+        p.setData(p.getData());
+        b.createFromPacket(p);
+        Assertions.assertSame(firstTarget, b.targets.get(0));
+        Assertions.assertEquals(result, b);
+    }
+
+    @Test
+    void testResultView() {
+        var result =
+                new PhotonPipelineResult(
+                        2,
+                        List.of(
+                                new PhotonTrackedTarget(
+                                        3.0,
+                                        -4.0,
+                                        9.0,
+                                        4.0,
+                                        new Transform2d(new Translation2d(1, 2), new Rotation2d(1.5)),
+                                        List.of(
+                                                new TargetCorner(1, 2),
+                                                new TargetCorner(3, 4),
+                                                new TargetCorner(5, 6),
+                                                new TargetCorner(7, 8)))));
+        var p = new Packet(result.getPacketSize());
+        result.populatePacket(p);
+
+        var view = new PhotonPipelineResultView(p.getData());
+        Assertions.assertTrue(view.isValid());
+        Assertions.assertEquals(2, view.getLatencyMillis());
+        Assertions.assertEquals(1, view.getTargetCount());
+        Assertions.assertEquals(3.0, view.getYaw(0));
+        Assertions.assertEquals(-4.0, view.getPitch(0));
+        Assertions.assertEquals(9.0, view.getArea(0));
+        Assertions.assertEquals(4.0, view.getSkew(0));
+        Assertions.assertEquals(2.0, view.getCameraToTargetY(0));
+        Assertions.assertEquals(7.0, view.getCornerX(0, 3));
+        Assertions.assertEquals(8.0, view.getCornerY(0, 3));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> view.getYaw(1));
+
+        view.setData(new byte[0]);
+        Assertions.assertFalse(view.hasTargets());
+    }
 }
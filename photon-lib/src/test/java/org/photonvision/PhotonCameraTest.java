@@ -24,6 +24,14 @@
 
 package org.photonvision;
 
+import edu.wpi.first.networktables.NetworkTableInstance;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.photonvision.common.dataflow.structures.Packet;
@@ -43,4 +51,137 @@ class PhotonCameraTest {
                     ret.createFromPacket(packet);
                 });
     }
+
+    @Test
+    public void testResultListener() throws InterruptedException {
+        var inst = NetworkTableInstance.create();
+        var simCamera = new SimPhotonCamera(inst, "test");
+        var camera = new PhotonCamera(inst, "test");
+
+        var latch = new CountDownLatch(1);
+        var received = new AtomicReference<PhotonPipelineResult>();
+        var listener =
+                camera.addResultListener(
+                        result -> {
+                            received.set(result);
+                            latch.countDown();
+                        });
+
+        simCamera.submitProcessedFrame(12.0);
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(12.0, received.get().getLatencyMillis());
+        Assertions.assertEquals(1, listener.getDeliveredCount());
+        Assertions.assertEquals(0, listener.getDroppedCount());
+
+        listener.remove();
+        inst.close();
+    }
+
+    @Test
+    public void testResultListenerCoalesces() throws InterruptedException {
+        var inst = NetworkTableInstance.create();
+        var simCamera = new SimPhotonCamera(inst, "test");
+        var camera = new PhotonCamera(inst, "test");
+
+        // An executor that doesn't get around to anything until we tell it to
+        var tasks = new ArrayList<Runnable>();
+        var received = new ArrayList<PhotonPipelineResult>();
+        var listener =
+                camera.addResultListener(
+                        received::add,
+                        task -> {
+                            synchronized (tasks) {
+                                tasks.add(task);
+                            }
+                        });
+
+        simCamera.submitProcessedFrame(1.0);
+        simCamera.submitProcessedFrame(2.0);
+        simCamera.submitProcessedFrame(3.0);
+        Assertions.assertTrue(waitFor(() -> listener.getDroppedCount() == 2));
+
+        // Only one delivery was scheduled, and it hands over the newest result
+        synchronized (tasks) {
+            Assertions.assertEquals(1, tasks.size());
+            tasks.get(0).run();
+        }
+        Assertions.assertEquals(1, received.size());
+        Assertions.assertEquals(3.0, received.get(0).getLatencyMillis());
+        Assertions.assertEquals(1, listener.getDeliveredCount());
+
+        listener.remove();
+        inst.close();
+    }
+
+    @Test
+    public void testResultListenerRecoversFromRejection() throws InterruptedException {
+        var inst = NetworkTableInstance.create();
+        var simCamera = new SimPhotonCamera(inst, "test");
+        var camera = new PhotonCamera(inst, "test");
+
+        // Rejects the first result, then runs everything inline
+        var rejectNext = new AtomicBoolean(true);
+        var received = new AtomicReference<PhotonPipelineResult>();
+        var listener =
+                camera.addResultListener(
+                        received::set,
+                        task -> {
+                            if (rejectNext.getAndSet(false)) {
+                                throw new RejectedExecutionException("Shut down");
+                            }
+                            task.run();
+                        });
+
+        simCamera.submitProcessedFrame(1.0);
+        Assertions.assertTrue(waitFor(() -> listener.getRejectedCount() == 1));
+
+        // The rejected result mustn't leave the listener thinking a delivery is still pending
+        simCamera.submitProcessedFrame(2.0);
+        Assertions.assertTrue(waitFor(() -> listener.getDeliveredCount() == 1));
+        Assertions.assertEquals(2.0, received.get().getLatencyMillis());
+        Assertions.assertEquals(0, listener.getDroppedCount());
+
+        listener.remove();
+        inst.close();
+    }
+
+    @Test
+    public void testResultListenerExceptionIsContained() throws InterruptedException {
+        var inst = NetworkTableInstance.create();
+        var simCamera = new SimPhotonCamera(inst, "test");
+        var camera = new PhotonCamera(inst, "test");
+
+        var escaped = new AtomicReference<Throwable>();
+        var listener =
+                camera.addResultListener(
+                        result -> {
+                            throw new IllegalStateException("Listener failed");
+                        },
+                        task -> {
+                            try {
+                                task.run();
+                            } catch (Throwable t) {
+                                escaped.set(t);
+                            }
+                        });
+
+        simCamera.submitProcessedFrame(1.0);
+        simCamera.submitProcessedFrame(2.0);
+        Assertions.assertTrue(waitFor(() -> listener.getDeliveredCount() == 2));
+        Assertions.assertNull(escaped.get());
+
+        listener.remove();
+        inst.close();
+    }
+
+    // Listener notifications arrive on the NetworkTables thread, so give them a moment
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
 }
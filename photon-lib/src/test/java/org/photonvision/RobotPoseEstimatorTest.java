@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 PhotonVision
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.photonvision;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.TargetCorner;
+
+class RobotPoseEstimatorTest {
+    private static PhotonTrackedTarget targetAt(double x, double y, double area) {
+        return new PhotonTrackedTarget(
+                0,
+                0,
+                area,
+                0,
+                new Transform2d(new Translation2d(x, y), new Rotation2d()),
+                List.of(
+                        new TargetCorner(0, 0),
+                        new TargetCorner(0, 0),
+                        new TargetCorner(0, 0),
+                        new TargetCorner(0, 0)));
+    }
+
+    @Test
+    public void testTwoCameraFusion() {
+        var inst = NetworkTableInstance.create();
+        var simLeft = new SimPhotonCamera(inst, "left");
+        var simRight = new SimPhotonCamera(inst, "right");
+
+        var estimator =
+                new RobotPoseEstimator(
+                        List.of(
+                                new Pose2d(10, 0, new Rotation2d()), new Pose2d(10, 5, new Rotation2d())));
+        estimator.addCamera(new PhotonCamera(inst, "left"), new Transform2d());
+        estimator.addCamera(
+                new PhotonCamera(inst, "right"),
+                new Transform2d(new Translation2d(0, -0.5), new Rotation2d()));
+        estimator.setReferencePose(new Pose2d(4, 0, new Rotation2d()));
+
+        Assertions.assertFalse(estimator.update(1.0));
+
+        // Robot at (5, 0) facing +x. The left camera sits at the robot's center, the right camera
+        // 0.5m to its left, and both see the target at (10, 0).
+        simLeft.submitProcessedFrame(20, targetAt(5, 0, 10));
+        simRight.submitProcessedFrame(20, targetAt(5, -0.5, 10));
+
+        Assertions.assertTrue(estimator.update(1.0));
+        Assertions.assertEquals(2, estimator.getMeasurementCount());
+        Assertions.assertEquals(5, estimator.getEstimatedX(), 1e-6);
+        Assertions.assertEquals(0, estimator.getEstimatedY(), 1e-6);
+        Assertions.assertEquals(0, estimator.getEstimatedRotationRadians(), 1e-6);
+        Assertions.assertEquals(0.98, estimator.getEstimatedTimestampSeconds(), 1e-6);
+        Assertions.assertTrue(estimator.getMeasurementConfidence(0) > 0);
+
+        // Nothing new was published, so there's nothing to fuse
+        Assertions.assertFalse(estimator.update(1.02));
+
+        inst.close();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 PhotonVision
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.photonvision;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+/** Times SimVisionSystem against a large field at the 20ms sim step. Not run by testHeadless. */
+public class SimVisionSystemBenchmarkTest {
+    @Test
+    public void manyTargets() {
+        // A 50m x 50m field with 2500 targets, seen by three cameras
+        var field = new SimVisionField();
+        for (int x = 0; x < 50; x++) {
+            for (int y = 0; y < 50; y++) {
+                field.addSimVisionTarget(
+                        new SimVisionTarget(
+                                new Pose2d(new Translation2d(x, y), new Rotation2d()), 1.0, 0.5, 0.5));
+            }
+        }
+
+        var systems = new ArrayList<SimVisionSystem>();
+        for (int i = 0; i < 3; i++) {
+            systems.add(
+                    new SimVisionSystem(
+                            "Bench" + i,
+                            80.0,
+                            0.0,
+                            new Transform2d(new Translation2d(), Rotation2d.fromDegrees(120 * i)),
+                            1.0,
+                            6,
+                            640,
+                            480,
+                            0,
+                            field));
+        }
+
+        int loops = 500;
+        // Warm up before timing, so the JIT has compiled processFrame
+        for (int loop = 0; loop < loops; loop++) {
+            step(systems, loop);
+        }
+
+        long start = System.nanoTime();
+        for (int loop = 0; loop < loops; loop++) {
+            step(systems, loop);
+        }
+        double meanMillis = (System.nanoTime() - start) / 1e6 / loops;
+
+        System.out.printf(
+                "Simulating 3 cameras against %d targets: %.3fms per 20ms sim step%n",
+                field.getTargets().size(), meanMillis);
+    }
+
+    // Drive across the field, spinning
+    private static void step(ArrayList<SimVisionSystem> systems, int loop) {
+        var robotPose =
+                new Pose2d(new Translation2d(10 + (loop % 100) * 0.3, 25), new Rotation2d(loop));
+        for (var system : systems) system.processFrame(robotPose);
+    }
+}
@@ -33,7 +33,10 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.util.Units;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -310,4 +313,210 @@ class SimVisionSystemTest {
         tgtList = res.getTargets();
         assertEquals(tgtList.size(), 11);
     }
+
+    @Test
+    public void testCornersProjected() {
+        final var targetPose = new Pose2d(new Translation2d(35, 0), new Rotation2d());
+        final var robotPose = new Pose2d(new Translation2d(30, 0), new Rotation2d());
+        var sysUnderTest =
+                new SimVisionSystem("Test", 80.0, 0.0, new Transform2d(), 1.0, 99999, 640, 480, 0);
+        sysUnderTest.addSimVisionTarget(new SimVisionTarget(targetPose, 1.0, 1.0, 0.5));
+
+        sysUnderTest.processFrame(robotPose);
+        var corners = sysUnderTest.cam.getLatestResult().getBestTarget().getCorners();
+
+        // Target is dead ahead at camera height, so its box is centered in the image
+        double meanX = corners.stream().mapToDouble(c -> c.x).average().orElseThrow();
+        double meanY = corners.stream().mapToDouble(c -> c.y).average().orElseThrow();
+        assertEquals(320, meanX, 1e-6);
+        assertEquals(240, meanY, 1e-6);
+
+        // ... and twice as wide as it is tall, scaled by the ratio of the focal lengths. Splitting the
+        // diagonal FOV by similar triangles doesn't give square pixels
+        double focalX = 320 / Math.tan(Math.toRadians(sysUnderTest.camHorizFOVDegrees) / 2);
+        double focalY = 240 / Math.tan(Math.toRadians(sysUnderTest.camVertFOVDegrees) / 2);
+        double width = Math.abs(corners.get(0).x - corners.get(1).x);
+        double height = Math.abs(corners.get(0).y - corners.get(3).y);
+        assertTrue(width > 0);
+        assertEquals(2.0 * focalX / focalY, width / height, 1e-6);
+    }
+
+    @Test
+    public void testSharedField() {
+        var field = new SimVisionField();
+        field.addSimVisionTarget(
+                new SimVisionTarget(new Pose2d(new Translation2d(35, 0), new Rotation2d()), 1.0, 1, 1));
+
+        var front =
+                new SimVisionSystem(
+                        "Front", 80.0, 0.0, new Transform2d(), 1.0, 99999, 640, 480, 0, field);
+        var back =
+                new SimVisionSystem(
+                        "Back",
+                        80.0,
+                        0.0,
+                        new Transform2d(new Translation2d(), Rotation2d.fromDegrees(180)),
+                        1.0,
+                        99999,
+                        640,
+                        480,
+                        0,
+                        field);
+
+        var robotPose = new Pose2d(new Translation2d(30, 0), new Rotation2d());
+        front.processFrame(robotPose);
+        back.processFrame(robotPose);
+        assertTrue(front.cam.getLatestResult().hasTargets());
+        assertFalse(back.cam.getLatestResult().hasTargets());
+    }
+
+    @Test
+    public void testManyTargets() {
+        // A 50m x 50m field with 2500 targets, seen by three cameras
+        var field = new SimVisionField();
+        for (int x = 0; x < 50; x++) {
+            for (int y = 0; y < 50; y++) {
+                field.addSimVisionTarget(
+                        new SimVisionTarget(
+                                new Pose2d(new Translation2d(x, y), new Rotation2d()), 1.0, 0.5, 0.5));
+            }
+        }
+
+        var systems = new ArrayList<SimVisionSystem>();
+        for (int i = 0; i < 3; i++) {
+            systems.add(
+                    new SimVisionSystem(
+                            "Bench" + i,
+                            80.0,
+                            0.0,
+                            new Transform2d(new Translation2d(), Rotation2d.fromDegrees(120 * i)),
+                            1.0,
+                            6,
+                            640,
+                            480,
+                            0,
+                            field));
+        }
+
+        for (int loop = 0; loop < 100; loop++) {
+            var robotPose = new Pose2d(new Translation2d(10 + loop * 0.3, 25), new Rotation2d(loop));
+            for (var system : systems) system.processFrame(robotPose);
+        }
+
+        // Every camera faces into the grid, and only targets within 6m can be seen
+        for (var system : systems) {
+            var result = system.cam.getLatestResult();
+            assertTrue(result.hasTargets());
+            assertTrue(result.getTargets().size() < 2500);
+        }
+    }
+
+    @Test
+    public void testCullingMatchesBruteForce() {
+        // Jittered targets at varied heights and headings, on a field with cells smaller than the
+        // cameras' range so that most cells are culled
+        var random = new Random(2022);
+        var field = new SimVisionField(1.5);
+        for (int x = 0; x < 30; x++) {
+            for (int y = 0; y < 30; y++) {
+                var pose =
+                        new Pose2d(
+                                new Translation2d(x + random.nextDouble(), y + random.nextDouble()),
+                                new Rotation2d(random.nextDouble() * 2 * Math.PI));
+                field.addSimVisionTarget(new SimVisionTarget(pose, random.nextDouble() * 3, 0.5, 0.3));
+            }
+        }
+
+        var systems =
+                List.of(
+                        new SimVisionSystem(
+                                "Narrow", 60.0, 0.0, new Transform2d(), 1.0, 4, 640, 480, 0, field),
+                        new SimVisionSystem(
+                                "Pitched",
+                                80.0,
+                                15.0,
+                                new Transform2d(new Translation2d(0.3, -0.2), Rotation2d.fromDegrees(30)),
+                                0.5,
+                                8,
+                                320,
+                                240,
+                                1.0,
+                                field),
+                        new SimVisionSystem(
+                                "Wide",
+                                150.0,
+                                0.0,
+                                new Transform2d(new Translation2d(), Rotation2d.fromDegrees(180)),
+                                1.5,
+                                12,
+                                1280,
+                                720,
+                                0,
+                                field));
+
+        // Poses inside the field, on its edges and outside it, facing every which way
+        for (int i = 0; i < 50; i++) {
+            var robotPose =
+                    new Pose2d(
+                            new Translation2d(random.nextDouble() * 40 - 5, random.nextDouble() * 40 - 5),
+                            new Rotation2d(random.nextDouble() * 2 * Math.PI));
+            for (var system : systems) {
+                system.processFrame(robotPose);
+                var culled = sortedByPosition(system.cam.getLatestResult().getTargets());
+                var expected = sortedByPosition(bruteForceTargets(system, robotPose));
+
+                assertEquals(expected.size(), culled.size());
+                for (int j = 0; j < expected.size(); j++) {
+                    assertEquals(expected.get(j), culled.get(j));
+                    assertEquals(expected.get(j).getCorners(), culled.get(j).getCorners());
+                }
+            }
+        }
+    }
+
+    /** Runs the exact visibility check against every target on the field, with no culling. */
+    private static List<PhotonTrackedTarget> bruteForceTargets(
+            SimVisionSystem system, Pose2d robotPose) {
+        Pose2d cameraPos = robotPose.transformBy(system.cameraToRobot.inverse());
+        var visible = new ArrayList<PhotonTrackedTarget>();
+        for (var tgt : system.field.getTargets()) {
+            var camToTargetTrans = new Transform2d(cameraPos, tgt.targetPos);
+
+            double distAlongGroundMeters = camToTargetTrans.getTranslation().getNorm();
+            double distVerticalMeters =
+                    tgt.targetHeightAboveGroundMeters - system.cameraHeightOffGroundMeters;
+            double distMeters = Math.hypot(distAlongGroundMeters, distVerticalMeters);
+            double area = tgt.tgtAreaMeters2 / system.getM2PerPx(distAlongGroundMeters);
+            double yawDegrees =
+                    -1.0
+                            * Units.radiansToDegrees(
+                                    Math.atan2(
+                                            camToTargetTrans.getTranslation().getY(),
+                                            camToTargetTrans.getTranslation().getX()));
+            double pitchDegrees =
+                    Units.radiansToDegrees(Math.atan2(distVerticalMeters, distAlongGroundMeters))
+                            - system.camPitchDegrees;
+
+            if (system.camCanSeeTarget(distMeters, yawDegrees, pitchDegrees, area)) {
+                visible.add(
+                        new PhotonTrackedTarget(
+                                yawDegrees,
+                                pitchDegrees,
+                                area,
+                                0.0,
+                                camToTargetTrans,
+                                system.projectCorners(cameraPos, tgt)));
+            }
+        }
+        return visible;
+    }
+
+    // The grid hands targets back cell by cell, so put both lists in the same order
+    private static List<PhotonTrackedTarget> sortedByPosition(List<PhotonTrackedTarget> targets) {
+        var sorted = new ArrayList<>(targets);
+        sorted.sort(
+                Comparator.comparingDouble(PhotonTrackedTarget::getCameraToTargetX)
+                        .thenComparingDouble(PhotonTrackedTarget::getCameraToTargetY));
+        return sorted;
+    }
 }
@@ -18,7 +18,10 @@
 package org.photonvision;
 
 import edu.wpi.first.cscore.CameraServerCvJNI;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.cli.*;
 import org.photonvision.common.configuration.CameraConfiguration;
 import org.photonvision.common.configuration.ConfigManager;
@@ -29,11 +32,15 @@ import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.LogLevel;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.common.networking.NetworkManager;
+import org.photonvision.common.util.MemoryManager;
+import org.photonvision.common.util.StartupTimeline;
 import org.photonvision.common.util.TestUtils;
+import org.photonvision.common.util.ThreadPlacement;
 import org.photonvision.common.util.numbers.IntegerCouple;
 import org.photonvision.raspi.PicamJNI;
 import org.photonvision.server.Server;
 import org.photonvision.vision.camera.FileVisionSource;
+import org.photonvision.vision.frame.provider.RecordingFrameProvider;
 import org.photonvision.vision.opencv.CVMat;
 import org.photonvision.vision.opencv.ContourGroupingMode;
 import org.photonvision.vision.opencv.ContourShape;
@@ -54,6 +61,7 @@ public class Main {
     private static final boolean isRelease = PhotonVersion.isRelease;
 
     private static boolean isTestMode;
+    private static Path replayDirectory;
     private static boolean printDebugLogs;
 
     private static boolean handleArgs(String[] args) throws ParseException {
@@ -65,6 +73,12 @@ public class Main {
                 "test-mode",
                 false,
                 "Run in test mode with 2019 and 2020 WPI field images in place of cameras");
+        options.addOption(
+                "r",
+                "replay",
+                true,
+                "Run in test mode, playing back the match recording in the given directory in place of"
+                        + " cameras");
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = parser.parse(options, args);
@@ -83,6 +97,12 @@ public class Main {
                 isTestMode = true;
                 logger.info("Running in test mode - Cameras will not be used");
             }
+
+            if (cmd.hasOption("replay")) {
+                isTestMode = true;
+                replayDirectory = Path.of(cmd.getOptionValue("replay"));
+                logger.info("Replaying " + replayDirectory + " - Cameras will not be used");
+            }
         }
         return true;
     }
@@ -186,6 +206,26 @@ public class Main {
         ConfigManager.getInstance().addCameraConfigurations(collectedSources);
     }
 
+    private static void addReplaySource() {
+        var cameraConfig =
+                ConfigManager.getInstance().getConfig().getCameraConfigurations().get("Replay");
+        if (cameraConfig == null) {
+            cameraConfig = new CameraConfiguration("Replay", replayDirectory.toString());
+        }
+
+        RecordingFrameProvider recording;
+        try {
+            recording = new RecordingFrameProvider(replayDirectory, cameraConfig.FOV, true);
+        } catch (IOException e) {
+            logger.error("Couldn't open recording " + replayDirectory, e);
+            return;
+        }
+
+        List<VisionSource> sources = List.of(new FileVisionSource(cameraConfig, recording));
+        VisionModuleManager.getInstance().addSources(sources).forEach(VisionModule::start);
+        ConfigManager.getInstance().addCameraConfigurations(sources);
+    }
+
     public static void main(String[] args) {
         try {
             if (!handleArgs(args)) return;
@@ -216,30 +256,44 @@ public class Main {
             PicamJNI.forceLoad();
             TestUtils.loadLibraries();
             logger.info("Native libraries loaded.");
+            StartupTimeline.mark("Native libraries loaded");
         } catch (Exception e) {
             logger.error("Failed to load native libraries!", e);
         }
 
+        // Start tracking GC pauses before startup allocates most of what we'll keep
+        MemoryManager.getInstance();
+
         ConfigManager.getInstance().load(); // init config manager
         ConfigManager.getInstance().requestSave();
+        StartupTimeline.mark("Settings loaded");
 
         // Force load the hardware manager
         HardwareManager.getInstance();
 
+        var hardwareConfig = ConfigManager.getInstance().getConfig().getHardwareConfig();
+        ThreadPlacement.background()
+                .set(hardwareConfig.backgroundCpuAffinity, hardwareConfig.backgroundThreadNiceness);
+
         NetworkManager.getInstance().reinitialize();
 
         NetworkTablesManager.getInstance()
                 .setConfig(ConfigManager.getInstance().getConfig().getNetworkConfig());
+        StartupTimeline.mark("Hardware and networking initialized");
 
         if (!isTestMode) {
             VisionSourceManager.getInstance()
                     .registerLoadedConfigs(
                             ConfigManager.getInstance().getConfig().getCameraConfigurations().values());
             VisionSourceManager.getInstance().registerTimedTask();
+        } else if (replayDirectory != null) {
+            addReplaySource();
         } else {
             addTestModeSources();
         }
 
+        StartupTimeline.mark("Vision sources registered");
+
         Server.main(DEFAULT_WEBPORT);
     }
 }
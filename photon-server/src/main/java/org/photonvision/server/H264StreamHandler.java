@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.server;
+
+import io.javalin.websocket.WsCloseContext;
+import io.javalin.websocket.WsConnectContext;
+import io.javalin.websocket.WsContext;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.photonvision.common.logging.LogGroup;
+import org.photonvision.common.logging.Logger;
+import org.photonvision.vision.frame.consumer.H264FrameConsumer;
+
+/**
+ * Serves a camera's H.264 output stream as binary WebSocket messages of raw Annex-B data. Each
+ * connection is attached to the camera's {@link H264FrameConsumer}, which does the encoding.
+ */
+public class H264StreamHandler {
+    private static final Logger logger = new Logger(H264StreamHandler.class, LogGroup.WebServer);
+
+    private final Map<Session, Attachment> clients = new ConcurrentHashMap<>();
+
+    private static class Attachment {
+        final H264FrameConsumer stream;
+        final H264FrameConsumer.Client client;
+
+        Attachment(H264FrameConsumer stream, H264FrameConsumer.Client client) {
+            this.stream = stream;
+            this.client = client;
+        }
+    }
+
+    /** Sends asynchronously and keeps count of what hasn't gone out yet. */
+    private static class WebSocketClient implements H264FrameConsumer.Client {
+        private final WsContext context;
+        private final AtomicLong queuedBytes = new AtomicLong();
+
+        WebSocketClient(WsContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public void send(ByteBuffer data) {
+            int length = data.remaining();
+            queuedBytes.addAndGet(length);
+            context
+                    .session
+                    .getRemote()
+                    .sendBytes(
+                            data,
+                            new WriteCallback() {
+                                @Override
+                                public void writeFailed(Throwable x) {
+                                    queuedBytes.addAndGet(-length);
+                                }
+
+                                @Override
+                                public void writeSuccess() {
+                                    queuedBytes.addAndGet(-length);
+                                }
+                            });
+        }
+
+        @Override
+        public long getQueuedBytes() {
+            return queuedBytes.get();
+        }
+
+        @Override
+        public void close() {
+            context.session.close(StatusCode.SHUTDOWN, "Stream closed");
+        }
+    }
+
+    public void onConnect(WsConnectContext context) {
+        var streamName = context.pathParam("cameraIndex");
+        var stream = H264FrameConsumer.getStream(streamName);
+        if (stream == null) {
+            logger.warn("H.264 stream requested for unknown camera " + streamName);
+            context.session.close(StatusCode.POLICY_VIOLATION, "No such camera");
+            return;
+        }
+
+        var client = new WebSocketClient(context);
+        clients.put(context.session, new Attachment(stream, client));
+        stream.addClient(client);
+    }
+
+    public void onClose(WsCloseContext context) {
+        var attachment = clients.remove(context.session);
+        if (attachment != null) attachment.stream.removeClient(attachment.client);
+    }
+}
@@ -41,8 +41,11 @@ import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.common.networking.NetworkManager;
 import org.photonvision.common.util.ShellExec;
+import org.photonvision.common.util.ThreadPlacement;
 import org.photonvision.common.util.TimedTaskManager;
 import org.photonvision.common.util.file.ProgramDirectoryUtilities;
+import org.photonvision.vision.frame.consumer.H264FrameConsumer;
+import org.photonvision.vision.frame.consumer.MatchRecorder;
 import org.photonvision.vision.processes.VisionModuleManager;
 import org.photonvision.vision.target.TargetModel;
 
@@ -183,6 +186,58 @@ public class RequestHandler {
                             "Setting camera %s's fov to %s w/pitch %s", index, fov, pitch.getDegrees()));
             var module = VisionModuleManager.getInstance().getModule(index);
             module.setFovAndPitch(fov, pitch);
+
+            // Thread placement is optional, older clients don't send it
+            if (settings.containsKey("visionCpuAffinity")) {
+                var rawCpuList = settings.get("visionCpuAffinity");
+                var cpuList = rawCpuList == null ? "" : rawCpuList.toString().replace(" ", "");
+                var niceness =
+                        (int)
+                                Double.parseDouble(
+                                        settings.getOrDefault("visionThreadNiceness", 0).toString());
+                if (ThreadPlacement.isValidCpuList(cpuList)) {
+                    module.setVisionThreadPlacement(cpuList, niceness);
+                } else {
+                    logger.error("Ignoring invalid CPU list \"" + cpuList + "\" for camera " + index);
+                }
+            }
+
+            // So is the H.264 stream setup
+            if (settings.containsKey("h264BitrateKbps")) {
+                var bitrate = (int) Double.parseDouble(settings.get("h264BitrateKbps").toString());
+                var rawKeyframeInterval =
+                        settings.getOrDefault(
+                                "h264KeyframeInterval", H264FrameConsumer.DEFAULT_KEYFRAME_INTERVAL);
+                var keyframeInterval = (int) Double.parseDouble(rawKeyframeInterval.toString());
+                if (bitrate >= 100 && keyframeInterval >= 1) {
+                    module.setH264StreamSettings(bitrate, keyframeInterval);
+                } else {
+                    logger.error(
+                            "Ignoring invalid H.264 settings "
+                                    + bitrate
+                                    + " kbps, keyframe interval "
+                                    + keyframeInterval
+                                    + " for camera "
+                                    + index);
+                }
+            }
+
+            // And match recording
+            if (settings.containsKey("recordingEnabled")) {
+                var enabled = Boolean.parseBoolean(settings.get("recordingEnabled").toString());
+                var rawMaxMegabytes =
+                        settings.getOrDefault("recordingMaxMegabytes", MatchRecorder.DEFAULT_MAX_MEGABYTES);
+                var maxMegabytes = (int) Double.parseDouble(rawMaxMegabytes.toString());
+                if (maxMegabytes >= 64) {
+                    module.setMatchRecording(enabled, maxMegabytes);
+                } else {
+                    logger.error(
+                            "Ignoring invalid recording size "
+                                    + maxMegabytes
+                                    + " MB for camera "
+                                    + index);
+                }
+            }
             module.saveModule();
         } catch (JsonProcessingException e) {
             logger.error("Got invalid camera setting JSON from frontend!");
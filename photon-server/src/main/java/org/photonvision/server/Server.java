@@ -19,17 +19,30 @@ package org.photonvision.server;
 
 import io.javalin.Javalin;
 import io.javalin.http.staticfiles.Location;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
+import org.photonvision.common.util.ThreadPlacement;
 
 public class Server {
     private static final Logger logger = new Logger(Server.class, LogGroup.WebServer);
 
+    // Jetty's threads serve HTTP and the websockets, so they share the background placement
+    private static class PlacedThreadPool extends QueuedThreadPool {
+        @Override
+        protected void runJob(Runnable job) {
+            ThreadPlacement.background().applyIfChanged();
+            super.runJob(job);
+        }
+    }
+
     public static void main(int port) {
         Javalin app =
                 Javalin.create(
                         config -> {
                             config.showJavalinBanner = false;
+                            config.server(
+                                    () -> new org.eclipse.jetty.server.Server(new PlacedThreadPool()));
                             config.addStaticFiles("web", Location.CLASSPATH);
                             config.enableCorsForAllOrigins();
 
@@ -71,6 +84,13 @@ public class Server {
                     ws.onClose(socketHandler::onClose);
                     ws.onBinaryMessage(socketHandler::onBinaryMessage);
                 });
+        var h264StreamHandler = new H264StreamHandler();
+        app.ws(
+                "/websocket_h264/{cameraIndex}",
+                ws -> {
+                    ws.onConnect(h264StreamHandler::onConnect);
+                    ws.onClose(h264StreamHandler::onClose);
+                });
         /*API Events*/
         app.post("/api/settings/import", RequestHandler::onSettingUpload);
         app.post("/api/settings/offlineUpdate", RequestHandler::onOfflineUpdate);
@@ -28,15 +28,23 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang3.tuple.Pair;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.msgpack.jackson.dataformat.MessagePackFactory;
 import org.photonvision.common.dataflow.DataChangeDestination;
 import org.photonvision.common.dataflow.DataChangeService;
 import org.photonvision.common.dataflow.events.IncomingWebSocketEvent;
 import org.photonvision.common.hardware.HardwareManager;
+import org.photonvision.common.hardware.metrics.MetricsPublisher;
 import org.photonvision.common.logging.LogGroup;
 import org.photonvision.common.logging.Logger;
 import org.photonvision.vision.pipeline.PipelineType;
@@ -44,7 +52,7 @@ import org.photonvision.vision.pipeline.PipelineType;
 @SuppressWarnings("rawtypes")
 public class SocketHandler {
     private final Logger logger = new Logger(SocketHandler.class, LogGroup.WebServer);
-    private final List<WsContext> users = new CopyOnWriteArrayList<>();
+    private final Map<Session, ClientConnection> users = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper(new MessagePackFactory());
     private final DataChangeService dcService = DataChangeService.getInstance();
 
@@ -53,18 +61,118 @@ public class SocketHandler {
 
     public static class UIMap extends HashMap<String, Object> {}
 
+    /**
+     * Outgoing state for one connected client. All writes are asynchronous, so a slow client never
+     * blocks the thread broadcasting to it. Messages sent with a coalesce key are "latest only": at
+     * most one per key is in flight, and a newer one replaces any that is still waiting behind it.
+     * Messages without a key can't be dropped, so a client that lets too many of them pile up is
+     * disconnected; the UI reconnects and gets a fresh copy of the settings.
+     */
+    static class ClientConnection {
+        static final int kMaxQueuedMessages = 256;
+        private static final Logger logger = new Logger(SocketHandler.class, LogGroup.WebServer);
+
+        private final Session session;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final AtomicLong droppedCount = new AtomicLong();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+
+        // Guarded by this
+        private final Set<String> inFlightKeys = new HashSet<>();
+        private final Map<String, ByteBuffer> pendingByKey = new HashMap<>();
+
+        ClientConnection(Session session) {
+            this.session = session;
+        }
+
+        int getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        long getDroppedCount() {
+            return droppedCount.get();
+        }
+
+        void send(ByteBuffer message) {
+            if (queueDepth.get() >= kMaxQueuedMessages) {
+                droppedCount.incrementAndGet();
+                if (overflowed.compareAndSet(false, true)) {
+                    logger.warn(
+                            "Disconnecting websocket client "
+                                    + session.getRemoteAddress()
+                                    + " with "
+                                    + queueDepth.get()
+                                    + " unsent messages");
+                    session.close(StatusCode.POLICY_VIOLATION, "Send queue overflowed");
+                }
+                return;
+            }
+            write(message, null);
+        }
+
+        void sendLatest(ByteBuffer message, String coalesceKey) {
+            synchronized (this) {
+                if (inFlightKeys.contains(coalesceKey)) {
+                    if (pendingByKey.put(coalesceKey, message) != null) droppedCount.incrementAndGet();
+                    return;
+                }
+                inFlightKeys.add(coalesceKey);
+            }
+            write(message, coalesceKey);
+        }
+
+        private void onWriteComplete(String coalesceKey) {
+            queueDepth.decrementAndGet();
+            if (coalesceKey == null) return;
+
+            ByteBuffer next;
+            synchronized (this) {
+                next = pendingByKey.remove(coalesceKey);
+                if (next == null) {
+                    inFlightKeys.remove(coalesceKey);
+                    return;
+                }
+            }
+            write(next, coalesceKey);
+        }
+
+        private void write(ByteBuffer message, String coalesceKey) {
+            queueDepth.incrementAndGet();
+            session
+                    .getRemote()
+                    .sendBytes(
+                            message,
+                            new WriteCallback() {
+                                @Override
+                                public void writeFailed(Throwable x) {
+                                    onWriteComplete(coalesceKey);
+                                }
+
+                                @Override
+                                public void writeSuccess() {
+                                    onWriteComplete(coalesceKey);
+                                }
+                            });
+        }
+    }
+
     private static class ThreadSafeSingleton {
-        private static final SocketHandler INSTANCE = new SocketHandler();
+        private static final SocketHandler INSTANCE = new SocketHandler().subscribe();
     }
 
     public static SocketHandler getInstance() {
         return SocketHandler.ThreadSafeSingleton.INSTANCE;
     }
 
-    private SocketHandler() {
+    // Only the singleton is hooked up to anything, so tests can make their own
+    SocketHandler() {}
+
+    private SocketHandler subscribe() {
         dcService.addSubscribers(
                 uiOutboundSubscriber,
                 new UIInboundSubscriber()); // Subscribe outgoing messages to the data change service
+        MetricsPublisher.getInstance().addSource("websocketQueues", this::getSendQueueDepths);
+        return this;
     }
 
     public void onConnect(WsConnectContext context) {
@@ -72,7 +180,7 @@ public class SocketHandler {
         var insa = context.session.getRemote().getInetSocketAddress();
         var host = insa.getAddress().toString() + ":" + insa.getPort();
         logger.info("New websocket connection from " + host);
-        users.add(context);
+        addClient(context.session);
         dcService.publishEvent(
                 new IncomingWebSocketEvent<>(
                         DataChangeDestination.DCD_GENSETTINGS, "userConnected", context));
@@ -83,9 +191,13 @@ public class SocketHandler {
         var host = insa.getAddress().toString() + ":" + insa.getPort();
         var reason = context.reason() != null ? context.reason() : "Connection closed by client";
         logger.info("Closing websocket connection from " + host + " for reason: " + reason);
-        users.remove(context);
+        var client = removeClient(context.session);
+        if (client != null && client.droppedCount.get() > 0) {
+            logger.debug(
+                    "Dropped " + client.droppedCount.get() + " stale messages for slow client " + host);
+        }
 
-        if (users.size() == 0) {
+        if (users.isEmpty()) {
             logger.info("All websocket connections are closed. Setting inputShouldShow to false.");
 
             // cameraIndex -1 means the event is received by all cameras
@@ -99,6 +211,16 @@ public class SocketHandler {
         }
     }
 
+    ClientConnection addClient(Session session) {
+        var client = new ClientConnection(session);
+        users.put(session, client);
+        return client;
+    }
+
+    ClientConnection removeClient(Session session) {
+        return users.remove(session);
+    }
+
     @SuppressWarnings({"unchecked"})
     public void onBinaryMessage(WsBinaryMessageContext context) {
         try {
@@ -197,6 +319,14 @@ public class SocketHandler {
                                 dcService.publishEvent(newPipelineEvent);
                                 break;
                             }
+                        case SMT_SENDFULLSETTINGS:
+                            {
+                                // The client missed a settings patch and needs a fresh snapshot
+                                dcService.publishEvent(
+                                        new IncomingWebSocketEvent<>(
+                                                DataChangeDestination.DCD_GENSETTINGS, "sendFullSettings", context));
+                                break;
+                            }
                         case SMT_CHANGEBRIGHTNESS:
                             {
                                 HardwareManager.getInstance()
@@ -333,25 +463,78 @@ public class SocketHandler {
         }
     }
 
-    private void sendMessage(Object message, WsContext user) throws JsonProcessingException {
-        ByteBuffer b = ByteBuffer.wrap(objectMapper.writeValueAsBytes(message));
-        user.send(b);
+    /**
+     * Sends a message to every connected client except the one given. The message is serialized
+     * once and the resulting buffer is shared by every client's write.
+     *
+     * @param message The message to send.
+     * @param userToSkip The client to skip, usually the one the message originated from, or null.
+     */
+    public void broadcastMessage(Object message, WsContext userToSkip)
+            throws JsonProcessingException {
+        broadcastMessage(message, userToSkip, null);
     }
 
-    public void broadcastMessage(Object message, WsContext userToSkip)
+    /**
+     * Sends a message to every connected client except the one given. The message is serialized
+     * once and the resulting buffer is shared by every client's write.
+     *
+     * <p>If a coalesce key is given, the message only matters until a newer message with the same
+     * key is sent (e.g. a camera's latest pipeline result). For a client still busy receiving the
+     * previous such message, the new one replaces any that is already waiting instead of being
+     * queued behind it.
+     *
+     * @param message The message to send.
+     * @param userToSkip The client to skip, usually the one the message originated from, or null.
+     * @param coalesceKey The key identifying superseded messages, or null to always deliver.
+     */
+    public void broadcastMessage(Object message, WsContext userToSkip, String coalesceKey)
             throws JsonProcessingException {
-        if (userToSkip == null) {
-            for (WsContext user : users) {
-                sendMessage(message, user);
-            }
-        } else {
-            var skipUserPort = userToSkip.session.getRemote().getInetSocketAddress().getPort();
-            for (WsContext user : users) {
-                var userPort = user.session.getRemote().getInetSocketAddress().getPort();
-                if (userPort != skipUserPort) {
-                    sendMessage(message, user);
-                }
+        if (users.isEmpty()) return;
+
+        ByteBuffer serialized =
+                ByteBuffer.wrap(objectMapper.writeValueAsBytes(message)).asReadOnlyBuffer();
+        Session skipSession = userToSkip != null ? userToSkip.session : null;
+
+        for (var entry : users.entrySet()) {
+            if (entry.getKey() == skipSession) continue;
+
+            // Each write gets its own position/limit over the shared bytes
+            var buffer = serialized.duplicate();
+            if (coalesceKey == null) {
+                entry.getValue().send(buffer);
+            } else {
+                entry.getValue().sendLatest(buffer, coalesceKey);
             }
         }
     }
+
+    /**
+     * Sends a message to one client, behind anything already queued for it.
+     *
+     * @param message The message to send.
+     * @param destination The client to send it to.
+     */
+    public void sendMessage(Object message, WsContext destination) throws JsonProcessingException {
+        var client = users.get(destination.session);
+        if (client == null) return;
+
+        client.send(ByteBuffer.wrap(objectMapper.writeValueAsBytes(message)));
+    }
+
+    /**
+     * Returns the number of messages written to each connected client that have not yet been
+     * acknowledged by the socket, keyed by the client's remote address.
+     *
+     * @return The send queue depth of each client.
+     */
+    public Map<String, Integer> getSendQueueDepths() {
+        var depths = new HashMap<String, Integer>();
+        for (var client : users.values()) {
+            var insa = client.session.getRemote().getInetSocketAddress();
+            var host = insa.getAddress().toString() + ":" + insa.getPort();
+            depths.put(host, client.queueDepth.get());
+        }
+        return depths;
+    }
 }
@@ -36,7 +36,8 @@ public enum SocketMessageType {
     SMT_DUPLICATEPIPELINE("duplicatePipeline"),
     SMT_CHANGEBRIGHTNESS("enabledLEDPercentage"),
     SMT_ROBOTOFFSETPOINT("robotOffsetPoint"),
-    SMT_CHANGEPIPELINETYPE("pipelineType");
+    SMT_CHANGEPIPELINETYPE("pipelineType"),
+    SMT_SENDFULLSETTINGS("sendFullSettings");
 
     public final String entryKey;
 
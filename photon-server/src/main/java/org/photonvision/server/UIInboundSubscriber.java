@@ -17,16 +17,15 @@
 
 package org.photonvision.server;
 
+import io.javalin.websocket.WsContext;
 import java.util.Collections;
-import org.photonvision.common.configuration.ConfigManager;
 import org.photonvision.common.dataflow.DataChangeDestination;
-import org.photonvision.common.dataflow.DataChangeService;
 import org.photonvision.common.dataflow.DataChangeSource;
 import org.photonvision.common.dataflow.DataChangeSubscriber;
 import org.photonvision.common.dataflow.events.DataChangeEvent;
 import org.photonvision.common.dataflow.events.IncomingWebSocketEvent;
-import org.photonvision.common.dataflow.events.OutgoingUIEvent;
 import org.photonvision.common.dataflow.networktables.NetworkTablesManager;
+import org.photonvision.common.dataflow.websocket.UISettingsPublisher;
 import org.photonvision.common.logging.Logger;
 
 public class UIInboundSubscriber extends DataChangeSubscriber {
@@ -42,11 +41,13 @@ public class UIInboundSubscriber extends DataChangeSubscriber {
             var incomingWSEvent = (IncomingWebSocketEvent<?>) event;
             if (incomingWSEvent.propertyName.equals("userConnected")
                     || incomingWSEvent.propertyName.equals("sendFullSettings")) {
-                // Send full settings
-                var settings = ConfigManager.getInstance().getConfig().toHashMap();
-                var message =
-                        new OutgoingUIEvent<>("fullsettings", settings, incomingWSEvent.originContext);
-                DataChangeService.getInstance().publishEvent(message);
+                // Send full settings, only to the client that connected or fell out of sync
+                if (incomingWSEvent.data instanceof WsContext) {
+                    UISettingsPublisher.getInstance()
+                            .publishFullSettings((WsContext) incomingWSEvent.data);
+                } else {
+                    UISettingsPublisher.getInstance().publishFullSettings();
+                }
                 Logger.sendConnectedBacklog();
                 NetworkTablesManager.getInstance().broadcastConnectedStatus();
             }
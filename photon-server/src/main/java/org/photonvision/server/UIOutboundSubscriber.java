@@ -47,11 +47,14 @@ class UIOutboundSubscriber extends DataChangeSubscriber {
         if (event instanceof OutgoingUIEvent) {
             var thisEvent = (OutgoingUIEvent) event;
             try {
-                if (event.data instanceof HashMap) {
+                if (thisEvent.destinationContext != null) {
+                    socketHandler.sendMessage(event.data, thisEvent.destinationContext);
+                } else if (event.data instanceof HashMap) {
                     var data = (HashMap) event.data;
-                    socketHandler.broadcastMessage(data, thisEvent.originContext);
+                    socketHandler.broadcastMessage(data, thisEvent.originContext, thisEvent.coalesceKey);
                 } else {
-                    socketHandler.broadcastMessage(event.data, thisEvent.originContext);
+                    socketHandler.broadcastMessage(
+                            event.data, thisEvent.originContext, thisEvent.coalesceKey);
                 }
             } catch (JsonProcessingException e) {
                 logger.error("Failed to process outgoing message!", e);
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.server;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+public class SocketHandlerTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper(new MessagePackFactory());
+
+    /**
+     * A websocket client without a socket. A fast one finishes every write straight away, a slow one
+     * holds on to them until told to finish.
+     */
+    private static class FakeClient {
+        private static final AtomicInteger nextPort = new AtomicInteger(5800);
+
+        final boolean fast;
+        final InetSocketAddress address =
+                new InetSocketAddress("127.0.0.1", nextPort.getAndIncrement());
+        final List<ByteBuffer> written = new ArrayList<>();
+        final List<WriteCallback> unfinished = new ArrayList<>();
+        final List<Integer> closeCodes = new ArrayList<>();
+        final Session session;
+
+        FakeClient(boolean fast) {
+            this.fast = fast;
+            var remote =
+                    (RemoteEndpoint)
+                            Proxy.newProxyInstance(
+                                    RemoteEndpoint.class.getClassLoader(),
+                                    new Class<?>[] {RemoteEndpoint.class},
+                                    (proxy, method, args) -> {
+                                        if (method.getName().equals("sendBytes") && args.length == 2) {
+                                            written.add((ByteBuffer) args[0]);
+                                            var callback = (WriteCallback) args[1];
+                                            if (this.fast) callback.writeSuccess();
+                                            else unfinished.add(callback);
+                                            return null;
+                                        }
+                                        if (method.getName().equals("getInetSocketAddress")) return address;
+                                        throw new UnsupportedOperationException(method.getName());
+                                    });
+            session =
+                    (Session)
+                            Proxy.newProxyInstance(
+                                    Session.class.getClassLoader(),
+                                    new Class<?>[] {Session.class},
+                                    (proxy, method, args) -> {
+                                        switch (method.getName()) {
+                                            case "getRemote":
+                                                return remote;
+                                            case "getRemoteAddress":
+                                                return address;
+                                            case "close":
+                                                closeCodes.add((Integer) args[0]);
+                                                return null;
+                                            case "hashCode":
+                                                return System.identityHashCode(proxy);
+                                            case "equals":
+                                                return proxy == args[0];
+                                            case "toString":
+                                                return "FakeClient";
+                                            default:
+                                                throw new UnsupportedOperationException(method.getName());
+                                        }
+                                    });
+        }
+
+        void finishOldestWrite() {
+            unfinished.remove(0).writeSuccess();
+        }
+
+        List<Map<String, Object>> messages() throws IOException {
+            var messages = new ArrayList<Map<String, Object>>();
+            for (var buffer : written) {
+                var bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                messages.add(objectMapper.readValue(bytes, new TypeReference<>() {}));
+            }
+            return messages;
+        }
+    }
+
+    /** Counts how many times it's been serialized. */
+    public static class CountingMessage {
+        final AtomicInteger serializations = new AtomicInteger();
+
+        public int getSerialization() {
+            return serializations.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void broadcastSerializesOnce() throws IOException {
+        var handler = new SocketHandler();
+        var clients = List.of(new FakeClient(true), new FakeClient(true), new FakeClient(false));
+        for (var client : clients) handler.addClient(client.session);
+
+        var message = new CountingMessage();
+        handler.broadcastMessage(message, null);
+
+        Assertions.assertEquals(1, message.serializations.get());
+        for (var client : clients) {
+            Assertions.assertEquals(List.of(Map.of("serialization", 1)), client.messages());
+        }
+
+        // The bytes are shared, but reading one client's copy mustn't move another's
+        var first = clients.get(0).written.get(0);
+        first.position(first.limit());
+        Assertions.assertTrue(clients.get(1).written.get(0).hasRemaining());
+    }
+
+    @Test
+    public void slowClientOnlyGetsLatestResult() throws IOException {
+        var handler = new SocketHandler();
+        var fast = new FakeClient(true);
+        var slow = new FakeClient(false);
+        handler.addClient(fast.session);
+        var slowConnection = handler.addClient(slow.session);
+
+        for (int i = 0; i < 10; i++) {
+            handler.broadcastMessage(Map.of("updatePipelineResult", i), null, "updatePipelineResult0");
+        }
+
+        // The fast client gets everything; the slow one is still on the first, with only the newest
+        // waiting behind it
+        Assertions.assertEquals(10, fast.written.size());
+        Assertions.assertEquals(1, slow.written.size());
+        Assertions.assertEquals(1, slowConnection.getQueueDepth());
+        Assertions.assertEquals(8, slowConnection.getDroppedCount());
+
+        slow.finishOldestWrite();
+        slow.finishOldestWrite();
+        Assertions.assertEquals(
+                List.of(Map.of("updatePipelineResult", 0), Map.of("updatePipelineResult", 9)),
+                slow.messages());
+        Assertions.assertEquals(0, slowConnection.getQueueDepth());
+        Assertions.assertTrue(slow.closeCodes.isEmpty());
+    }
+
+    @Test
+    public void clientWithTooManyUnsentMessagesIsDisconnected() throws IOException {
+        var handler = new SocketHandler();
+        var fast = new FakeClient(true);
+        var slow = new FakeClient(false);
+        handler.addClient(fast.session);
+        handler.addClient(slow.session);
+
+        int sent = SocketHandler.ClientConnection.kMaxQueuedMessages + 10;
+        for (int i = 0; i < sent; i++) {
+            handler.broadcastMessage(Map.of("log", i), null);
+        }
+
+        // Only closed once, however many messages overflow, and the other client doesn't notice
+        Assertions.assertEquals(List.of(StatusCode.POLICY_VIOLATION), slow.closeCodes);
+        Assertions.assertEquals(SocketHandler.ClientConnection.kMaxQueuedMessages, slow.written.size());
+        Assertions.assertEquals(sent, fast.written.size());
+        Assertions.assertTrue(fast.closeCodes.isEmpty());
+
+        // Which the metrics show
+        Assertions.assertEquals(
+                Map.of(
+                        "/127.0.0.1:" + fast.address.getPort(),
+                        0,
+                        "/127.0.0.1:" + slow.address.getPort(),
+                        SocketHandler.ClientConnection.kMaxQueuedMessages),
+                handler.getSendQueueDepths());
+    }
+}
@@ -46,9 +46,11 @@ public class Packet {
         size = packetData.length;
     }
 
-    /** Clears the packet and resets the read and write positions. */
+    /**
+     * Resets the read and write positions. The data itself is left as is, since it may be an array
+     * passed to {@link #setData(byte[])} that the caller still owns.
+     */
     public void clear() {
-        packetData = new byte[size];
         readPos = 0;
         writePos = 0;
     }
@@ -67,13 +69,16 @@ public class Packet {
     }
 
     /**
-     * Sets the packet data.
+     * Sets the packet data and resets the read and write positions. The array is used directly,
+     * not copied.
      *
      * @param data The packet data.
      */
     public void setData(byte[] data) {
         packetData = data;
         size = data.length;
+        readPos = 0;
+        writePos = 0;
     }
 
     /**
@@ -29,6 +29,9 @@ public class PhotonPipelineResult {
     // Targets to store.
     public final List<PhotonTrackedTarget> targets = new ArrayList<>();
 
+    // Target instances owned by this result, reused across calls to createFromPacket.
+    private final List<PhotonTrackedTarget> targetPool = new ArrayList<>();
+
     // Latency in milliseconds.
     private double latencyMillis;
 
@@ -93,7 +96,8 @@ public class PhotonPipelineResult {
     }
 
     /**
-     * Returns a copy of the vector of targets.
+     * Returns a copy of the vector of targets. Allocation-sensitive callers may iterate {@link
+     * #targets} directly instead.
      *
      * @return A copy of the vector of targets.
      */
@@ -119,6 +123,9 @@ public class PhotonPipelineResult {
     /**
      * Populates the fields of the pipeline result from the packet.
      *
+     * <p>Target objects decoded by a previous call on this same result are reused rather than
+     * reallocated, so references to them obtained before this call will observe the new values.
+     *
      * @param packet The incoming packet.
      * @return The incoming packet.
      */
@@ -131,7 +138,8 @@ public class PhotonPipelineResult {
 
         // Decode the information of each target.
         for (int i = 0; i < (int) targetCount; ++i) {
-            var target = new PhotonTrackedTarget();
+            if (i >= targetPool.size()) targetPool.add(new PhotonTrackedTarget());
+            var target = targetPool.get(i);
             target.createFromPacket(packet);
             targets.add(target);
         }
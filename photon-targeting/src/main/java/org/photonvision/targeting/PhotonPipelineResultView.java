@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) Photon Vision.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.photonvision.targeting;
+
+/**
+ * A read-only, lazily decoded view over the raw bytes of a serialized {@link
+ * PhotonPipelineResult}. Nothing is decoded until a getter is called, and no objects are allocated
+ * by any getter, so a single view can be reused for every loop iteration by callers that only need
+ * a few primitive values (e.g. the yaw and pitch of the best target).
+ *
+ * <p>The view does not copy the bytes it wraps; the array must not be mutated while it is in use.
+ */
+public class PhotonPipelineResultView {
+    private static final int LATENCY_OFFSET = 0;
+    private static final int TARGET_COUNT_OFFSET = Double.BYTES;
+    private static final int TARGETS_OFFSET = TARGET_COUNT_OFFSET + 1;
+
+    // Offsets, in doubles, of each field within one packed target.
+    private static final int YAW = 0;
+    private static final int PITCH = 1;
+    private static final int AREA = 2;
+    private static final int SKEW = 3;
+    private static final int CAMERA_TO_TARGET_X = 4;
+    private static final int CAMERA_TO_TARGET_Y = 5;
+    private static final int CAMERA_TO_TARGET_DEGREES = 6;
+    private static final int CORNERS = 7;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] data = EMPTY;
+
+    /** Constructs an empty view. */
+    public PhotonPipelineResultView() {}
+
+    /**
+     * Constructs a view over the given serialized result.
+     *
+     * @param data The bytes of a packet populated by {@link PhotonPipelineResult#populatePacket}.
+     */
+    public PhotonPipelineResultView(byte[] data) {
+        setData(data);
+    }
+
+    /**
+     * Points this view at a new serialized result.
+     *
+     * @param data The bytes of a packet populated by {@link PhotonPipelineResult#populatePacket}.
+     */
+    public void setData(byte[] data) {
+        this.data = data == null ? EMPTY : data;
+    }
+
+    /**
+     * Returns whether this view wraps a complete result. An empty view reports no targets and zero
+     * latency.
+     *
+     * @return Whether this view wraps a complete result.
+     */
+    public boolean isValid() {
+        return data.length >= TARGETS_OFFSET
+                && data.length
+                        >= TARGETS_OFFSET + getTargetCount() * PhotonTrackedTarget.PACK_SIZE_BYTES;
+    }
+
+    /**
+     * Returns the latency in the pipeline.
+     *
+     * @return The latency in the pipeline.
+     */
+    public double getLatencyMillis() {
+        return data.length < TARGETS_OFFSET ? 0 : readDouble(LATENCY_OFFSET);
+    }
+
+    /**
+     * Returns the number of targets in the result.
+     *
+     * @return The number of targets in the result.
+     */
+    public int getTargetCount() {
+        return data.length < TARGETS_OFFSET ? 0 : data[TARGET_COUNT_OFFSET];
+    }
+
+    /**
+     * Returns whether the pipeline has targets.
+     *
+     * @return Whether the pipeline has targets.
+     */
+    public boolean hasTargets() {
+        return getTargetCount() > 0;
+    }
+
+    public double getYaw(int target) {
+        return readTargetField(target, YAW);
+    }
+
+    public double getPitch(int target) {
+        return readTargetField(target, PITCH);
+    }
+
+    public double getArea(int target) {
+        return readTargetField(target, AREA);
+    }
+
+    public double getSkew(int target) {
+        return readTargetField(target, SKEW);
+    }
+
+    public double getCameraToTargetX(int target) {
+        return readTargetField(target, CAMERA_TO_TARGET_X);
+    }
+
+    public double getCameraToTargetY(int target) {
+        return readTargetField(target, CAMERA_TO_TARGET_Y);
+    }
+
+    public double getCameraToTargetDegrees(int target) {
+        return readTargetField(target, CAMERA_TO_TARGET_DEGREES);
+    }
+
+    public double getCornerX(int target, int corner) {
+        return readTargetField(target, CORNERS + 2 * corner);
+    }
+
+    public double getCornerY(int target, int corner) {
+        return readTargetField(target, CORNERS + 2 * corner + 1);
+    }
+
+    private double readTargetField(int target, int field) {
+        if (target < 0 || target >= getTargetCount()) {
+            throw new IndexOutOfBoundsException(
+                    "Target " + target + " out of range for " + getTargetCount() + " targets");
+        }
+        int targetOffset = TARGETS_OFFSET + target * PhotonTrackedTarget.PACK_SIZE_BYTES;
+        return readDouble(targetOffset + field * Double.BYTES);
+    }
+
+    private double readDouble(int offset) {
+        long bits = 0;
+        for (int i = 0; i < Double.BYTES; i++) {
+            bits = (bits << 8) | (0xff & data[offset + i]);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+}
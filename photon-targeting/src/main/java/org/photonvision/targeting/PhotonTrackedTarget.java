@@ -32,7 +32,15 @@ public class PhotonTrackedTarget {
     private double pitch;
     private double area;
     private double skew;
-    private Transform2d cameraToTarget = new Transform2d();
+
+    // Decoded values are kept as primitives, and the geometry/corner objects are only built (and
+    // then cached) the first time they're asked for. This keeps decoding allocation-free for users
+    // that only care about yaw/pitch.
+    private double cameraToTargetX;
+    private double cameraToTargetY;
+    private double cameraToTargetDegrees;
+    private final double[] cornerData = new double[8];
+    private Transform2d cameraToTarget;
     private List<TargetCorner> targetCorners;
 
     public PhotonTrackedTarget() {}
@@ -51,7 +59,14 @@ public class PhotonTrackedTarget {
         this.area = area;
         this.skew = skew;
         this.cameraToTarget = pose;
+        this.cameraToTargetX = pose.getX();
+        this.cameraToTargetY = pose.getY();
+        this.cameraToTargetDegrees = pose.getRotation().getDegrees();
         this.targetCorners = corners;
+        for (int i = 0; i < 4; i++) {
+            cornerData[2 * i] = corners.get(i).x;
+            cornerData[2 * i + 1] = corners.get(i).y;
+        }
     }
 
     public double getYaw() {
@@ -75,10 +90,75 @@ public class PhotonTrackedTarget {
      * particular order, of the minimum area bounding rectangle of this target
      */
     public List<TargetCorner> getCorners() {
+        if (targetCorners == null) {
+            var corners = new ArrayList<TargetCorner>(4);
+            for (int i = 0; i < 4; i++) {
+                corners.add(new TargetCorner(cornerData[2 * i], cornerData[2 * i + 1]));
+            }
+            targetCorners = corners;
+        }
         return targetCorners;
     }
 
+    /**
+     * Returns the x coordinate, in pixels, of the given corner without allocating a {@link
+     * TargetCorner}.
+     *
+     * @param index The index of the corner, in [0, 4).
+     * @return The x coordinate of the corner.
+     */
+    public double getCornerX(int index) {
+        return cornerData[2 * index];
+    }
+
+    /**
+     * Returns the y coordinate, in pixels, of the given corner without allocating a {@link
+     * TargetCorner}.
+     *
+     * @param index The index of the corner, in [0, 4).
+     * @return The y coordinate of the corner.
+     */
+    public double getCornerY(int index) {
+        return cornerData[2 * index + 1];
+    }
+
+    /**
+     * Returns the x component, in meters, of {@link #getCameraToTarget()} without allocating a
+     * {@link Transform2d}.
+     *
+     * @return The x component of the camera to target transform.
+     */
+    public double getCameraToTargetX() {
+        return cameraToTargetX;
+    }
+
+    /**
+     * Returns the y component, in meters, of {@link #getCameraToTarget()} without allocating a
+     * {@link Transform2d}.
+     *
+     * @return The y component of the camera to target transform.
+     */
+    public double getCameraToTargetY() {
+        return cameraToTargetY;
+    }
+
+    /**
+     * Returns the rotation, in degrees, of {@link #getCameraToTarget()} without allocating a {@link
+     * Transform2d}.
+     *
+     * @return The rotation of the camera to target transform.
+     */
+    public double getCameraToTargetDegrees() {
+        return cameraToTargetDegrees;
+    }
+
     public Transform2d getCameraToTarget() {
+        if (cameraToTarget == null) {
+            cameraToTarget =
+                    new Transform2d(
+                            new Translation2d(cameraToTargetX, cameraToTargetY),
+                            Rotation2d.fromDegrees(cameraToTargetDegrees));
+        }
         return cameraToTarget;
     }
 
@@ -90,17 +170,19 @@ public class PhotonTrackedTarget {
         return Double.compare(that.yaw, yaw) == 0
                 && Double.compare(that.pitch, pitch) == 0
                 && Double.compare(that.area, area) == 0
-                && Objects.equals(cameraToTarget, that.cameraToTarget)
-                && Objects.equals(targetCorners, that.targetCorners);
+                && Objects.equals(getCameraToTarget(), that.getCameraToTarget())
+                && Objects.equals(getCorners(), that.getCorners());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(yaw, pitch, area, cameraToTarget);
+        return Objects.hash(yaw, pitch, area, getCameraToTarget());
     }
 
     /**
-     * Populates the fields of this class with information from the incoming packet.
+     * Populates the fields of this class with information from the incoming packet. Any previously
+     * cached corner list or camera-to-target transform is discarded, so instances may be reused
+     * across packets.
      *
      * @param packet The incoming packet.
      * @return The incoming packet.
@@ -111,18 +193,16 @@ public class PhotonTrackedTarget {
         this.area = packet.decodeDouble();
         this.skew = packet.decodeDouble();
 
-        double x = packet.decodeDouble();
-        double y = packet.decodeDouble();
-        double r = packet.decodeDouble();
+        this.cameraToTargetX = packet.decodeDouble();
+        this.cameraToTargetY = packet.decodeDouble();
+        this.cameraToTargetDegrees = packet.decodeDouble();
 
-        this.targetCorners = new ArrayList<>(4);
-        for (int i = 0; i < 4; i++) {
-            double cx = packet.decodeDouble();
-            double cy = packet.decodeDouble();
-            targetCorners.add(new TargetCorner(cx, cy));
+        for (int i = 0; i < cornerData.length; i++) {
+            cornerData[i] = packet.decodeDouble();
         }
 
-        this.cameraToTarget = new Transform2d(new Translation2d(x, y), Rotation2d.fromDegrees(r));
+        this.cameraToTarget = null;
+        this.targetCorners = null;
 
         return packet;
     }
@@ -138,13 +218,12 @@ public class PhotonTrackedTarget {
         packet.encode(pitch);
         packet.encode(area);
         packet.encode(skew);
-        packet.encode(cameraToTarget.getTranslation().getX());
-        packet.encode(cameraToTarget.getTranslation().getY());
-        packet.encode(cameraToTarget.getRotation().getDegrees());
+        packet.encode(cameraToTargetX);
+        packet.encode(cameraToTargetY);
+        packet.encode(cameraToTargetDegrees);
 
-        for (int i = 0; i < 4; i++) {
-            packet.encode(targetCorners.get(i).x);
-            packet.encode(targetCorners.get(i).y);
+        for (double corner : cornerData) {
+            packet.encode(corner);
         }
 
         return packet;